@@ -10,155 +10,237 @@ package org.httpclient;
  * @author zzw
  */
 import java.time.Instant;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.quartz.Job;
-import org.quartz.JobExecutionContext;
-import org.quartz.JobExecutionException;
+import static java.util.Objects.requireNonNull;
 
-import org.util.time.TimeZoneFormat;
+import org.httpclient.scheduler.PeriodicJob;
 
-import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-//import com.fasterxml.jackson.datatype:jackson-datatype-jsr310;
 
+import org.httpclient.v1.assignment.VehicleAssigner;
+import org.httpclient.v1.order.DeadlineEstimator;
+import org.httpclient.v1.order.OrderFanIn;
+import org.httpclient.v1.order.OrderSource;
+import org.httpclient.v1.order.TransportSink;
 import org.httpclient.v1.telegrams.RequestResponse;
 
 import org.httpclient.v1.order.binding.Property;
 import org.httpclient.v1.order.binding.Destination;
 import org.httpclient.v1.order.binding.Transport;
 
-public class OrderPollingJob implements Job {
-    // 
-    static String host = "http://127.0.0.1:";
-    static String port = "55200";
-    static String url = "/v1/hello";
+public class OrderPollingJob implements PeriodicJob {
+    
+    private static final Logger LOG = Logger.getLogger(OrderPollingJob.class.getName());
+    
+    // The upstream system the orders are polled from
+    private final OrderSource orderSource;
+    // Merges the orders of all sources
+    private final OrderFanIn orderFanIn;
+    // This source's input of the fan-in
+    private final TransportSink transportSink;
     
-    static int chinaZoneTime = 8;
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
     
-    static String placeOrderSucessResponse = "Successful operation";
+    // Selects the intended vehicle
+    private VehicleAssigner vehicleAssigner;
     
-    // 
-    String requestOrderResponse;
-    String placeOrderResponse;
+    // Estimates the deadline
+    private DeadlineEstimator deadlineEstimator;
+    
+    // The number of orders skipped because they were invalid
+    private final AtomicLong invalidOrderCount = new AtomicLong();
+    
+    public OrderPollingJob(OrderSource orderSource, OrderFanIn orderFanIn) {
+        this.orderSource = requireNonNull(orderSource, "orderSource");
+        this.orderFanIn = requireNonNull(orderFanIn, "orderFanIn");
+        this.transportSink = orderFanIn.inputFor(orderSource.getName());
+    }
+    
+    public void setVehicleAssigner(VehicleAssigner vehicleAssigner) {
+        this.vehicleAssigner = vehicleAssigner;
+    }
+    
+    public void setDeadlineEstimator(DeadlineEstimator deadlineEstimator) {
+        this.deadlineEstimator = deadlineEstimator;
+    }
+    
+    public OrderSource getOrderSource() {
+        return orderSource;
+    }
+    
+    /**
+     * Returns the number of orders skipped so far because they were invalid.
+     *
+     * @return The number of orders skipped so far.
+     */
+    public long getInvalidOrderCount() {
+        return invalidOrderCount.get();
+    }
     
     @Override
-    public void execute(JobExecutionContext arg) throws JobExecutionException {
-        
-        //return order(data type:String ) through get request(Http)
-        String geturl = host + port + url;
-        requestOrderResponse = HttpClientUtils.sendGetRequest(geturl,"UTF-8");
-        System.out.println(requestOrderResponse);
+    public void execute() {
         
-        //Combine orders into corresponding data structures
+        // The job runs at the source's minimum interval, the source decides whether it is due.
+        // A source whose orders are still waiting in the fan-in is not polled again.
+        if(!orderSource.isDue() || !orderFanIn.hasCapacity(orderSource.getName())){
+            return;
+        }
         
-        //Placing orders Json->url
+        //return orders(data type:String ) through get request(Http)
+        String requestOrderResponse = orderSource.poll();
         // if there is no order, return
         if(requestOrderResponse == null){
+            orderSource.recordPollResult(-1);
             return;
         }
-        // place order to openTcs through post 
-        else{
+        
+        // The poll result is recorded even if submitting fails, so the interval still adapts.
+        int orderCount = -1;
+        try {
+            orderCount = submitOrders(requestOrderResponse);
+        }
+        finally {
+            orderSource.recordPollResult(orderCount);
+        }
+    }
+    
+    /**
+     * Parses a response of the order source and submits the orders in it.
+     * Invalid orders - e.g. without an order number or a location - are logged, counted and skipped;
+     * the other orders of the response are submitted nevertheless.
+     * Also used to replay recorded responses.
+     *
+     * @param response The response, a single order or an array of orders.
+     * @return The number of orders submitted, or -1, if the response is invalid.
+     */
+    public int submitOrders(String response) {
+        //Parsing request response, a single order or an array of orders
+        List<RequestResponse> orders;
+        try {
+            orders = parseOrders(response);
+        } catch (JsonProcessingException ex) {
+            LOG.log(Level.SEVERE, "Invalid orders from " + orderSource.getName(), ex);
+            return -1;
+        }
+        
+        // place orders to openTcs through the fan-in
+        int submitted = 0;
+        for(RequestResponse reqres : orders){
+            if(reqres == null || !isValid(reqres)){
+                invalidOrderCount.incrementAndGet();
+                continue;
+            }
+            Transport transport;
             try {
-                //Parsing request response
-                //simulication requestOrderResponse
-                
-                //Init
-                RequestResponse reqres = new RequestResponse();
-                
-                Transport transport = new Transport();
-                
-                ObjectMapper mapper = new ObjectMapper();
-                mapper.registerModule(new JavaTimeModule());
-                
-                Instant deadline = null;
-                String intendedVehicle;
-                List<Destination> destinations = new LinkedList<>();
-                List<Property> properties = new LinkedList<>();
-                List<String> dependencies = new LinkedList<>();
-                
-                // Order deadline: get current time, offsetTime = 2h
-                // TODO Estimate the time according to the amount of tasks
-                deadline = Instant.ofEpochMilli(new Date(System.currentTimeMillis() + 120*60*1000).getTime());
-                System.out.println(deadline);
-                
-                // The (optional) intended vehicle of the transport order
-                // TODO According to the actual number of cars
-                Random rand = new Random();
-                int vechicleNum = rand.nextInt(4+1);
-                if(vechicleNum < 10){
-                    intendedVehicle = "Vehicle-0" + String.valueOf(vechicleNum);    
-                }
-                else{
-                    intendedVehicle = "Vehicle-" + String.valueOf(vechicleNum);
-                }
-                System.out.println(intendedVehicle);
-                
-                
-                //The destinations
-                // TODO need use json
-                requestOrderResponse = "{\"orderNum\":\"R202106101735\",\"loadingLocation\":\"Point-0034\",\"unloadingLocation\":\"Point-0110\"}";
-                reqres = mapper.readValue(requestOrderResponse, RequestResponse.class);
-                System.out.println(reqres);
-                
-                //Under the current situation, it is set to move
-                Destination destination = new Destination();
-                destination.setLocationName(reqres.getLoadingLocation());
-                destination.setOperation("MOVE");
-                destinations.add(destination);
-                destination.setLocationName(reqres.getUnloadingLocation());
-                destination.setOperation("MOVE");
-                destinations.add(destination);
-                
-                // Combined order TODO
-                transport.setDeadline(deadline);
-                transport.setIntendedVehicle(intendedVehicle);
-                transport.setDestinations(destinations);
-                transport.setProperties(properties);
-                transport.setDependencies(dependencies);
-                
-                //Combined body
-                String json = mapper.writeValueAsString(transport);
-                System.out.println(json);  
-
-                //Combined URL
-                String url1 = "/v1/transportOrders/" + reqres.getOrderNum();
-                String requestopenTcsUrl = host + port + url1;
-                System.out.println(requestopenTcsUrl);
-                
-                try {
-                    placeOrderResponse = HttpClientUtils.sendPostByJson(requestopenTcsUrl, json);
-                } catch (Exception ex) {
-                    Logger.getLogger(OrderPollingJob.class.getName()).log(Level.SEVERE, null, ex);
-                }
-                
-            } catch (JsonProcessingException ex) {
-                Logger.getLogger(OrderPollingJob.class.getName()).log(Level.SEVERE, null, ex);
+                transport = createTransport(reqres);
+            } catch (RuntimeException ex) {
+                LOG.log(Level.WARNING, "Could not create transport order " + reqres.getOrderNum() + " from " + orderSource.getName() + ", skipping it", ex);
+                invalidOrderCount.incrementAndGet();
+                continue;
+            }
+            transportSink.submit(reqres.getOrderNum(), transport);
+            submitted++;
+        }
+        return submitted;
+    }
+    
+    /**
+     * Parses the orders in the given response.
+     *
+     * @param response The response.
+     * @return The orders, with <code>null</code> for each order that could not be parsed.
+     * @throws JsonProcessingException If the response is not valid JSON.
+     */
+    private List<RequestResponse> parseOrders(String response) throws JsonProcessingException {
+        List<RequestResponse> orders = new ArrayList<>();
+        if(response.isBlank()){
+            return orders;
+        }
+        JsonNode root = mapper.readTree(response);
+        if(root.isArray()){
+            for(JsonNode node : root){
+                orders.add(parseOrder(node));
             }
-            
+        }
+        else if(root.isObject()){
+            orders.add(parseOrder(root));
+        }
+        return orders;
+    }
+    
+    private RequestResponse parseOrder(JsonNode node) {
+        try {
+            return mapper.treeToValue(node, RequestResponse.class);
+        } catch (JsonProcessingException ex) {
+            LOG.log(Level.WARNING, "Invalid order from " + orderSource.getName() + ", skipping it: " + node, ex);
+            return null;
+        }
+    }
+    
+    private boolean isValid(RequestResponse reqres) {
+        if(isBlank(reqres.getOrderNum()) || isBlank(reqres.getLoadingLocation()) || isBlank(reqres.getUnloadingLocation())){
+            LOG.log(Level.WARNING, "Order " + reqres.getOrderNum() + " from " + orderSource.getName()
+                    + " lacks an order number or location, skipping it (loading: " + reqres.getLoadingLocation()
+                    + ", unloading: " + reqres.getUnloadingLocation() + ")");
+            return false;
+        }
+        return true;
+    }
+    
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+    
+    private Transport createTransport(RequestResponse reqres) {
+        Transport transport = new Transport();
+        
+        List<Destination> destinations = new LinkedList<>();
+        List<Property> properties = new LinkedList<>();
+        List<String> dependencies = new LinkedList<>();
+        
+        // The (optional) intended vehicle of the transport order
+        // Left unset if no vehicle is available, the kernel's dispatcher decides then
+        String intendedVehicle = null;
+        if(vehicleAssigner != null){
+            intendedVehicle = vehicleAssigner.selectVehicle(reqres.getOrderNum(), reqres.getLoadingLocation());
         }
         
-        //place order sucess or fail, 
-        if(placeOrderResponse == null ? placeOrderSucessResponse == null : placeOrderResponse.equals(placeOrderSucessResponse)){
-            
+        // Order deadline: estimated from the route and the vehicle's queued work,
+        // without an estimator: get current time, offsetTime = 2h
+        Instant deadline;
+        if(deadlineEstimator != null){
+            deadline = deadlineEstimator.estimateDeadline(reqres.getOrderNum(), reqres.getLoadingLocation(), reqres.getUnloadingLocation(), intendedVehicle);
         }
         else{
-            
+            deadline = Instant.ofEpochMilli(new Date(System.currentTimeMillis() + 120*60*1000).getTime());
         }
-           
+        
+        //Under the current situation, it is set to move
+        Destination loading = new Destination();
+        loading.setLocationName(reqres.getLoadingLocation());
+        loading.setOperation("MOVE");
+        destinations.add(loading);
+        Destination unloading = new Destination();
+        unloading.setLocationName(reqres.getUnloadingLocation());
+        unloading.setOperation("MOVE");
+        destinations.add(unloading);
+        
+        // Combined order
+        transport.setDeadline(deadline);
+        transport.setIntendedVehicle(intendedVehicle);
+        transport.setDestinations(destinations);
+        transport.setProperties(properties);
+        transport.setDependencies(dependencies);
+        return transport;
     }
 }
\ No newline at end of file
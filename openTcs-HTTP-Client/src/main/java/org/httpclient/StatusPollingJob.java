@@ -5,10 +5,172 @@
  */
 package org.httpclient;
 
+import java.io.IOException;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.util.Objects.requireNonNull;
+
+import org.httpclient.scheduler.PeriodicJob;
+import org.httpclient.v1.status.RequestStatusHandler;
+import org.httpclient.v1.status.StatusEventDispatcher;
+import org.httpclient.v1.status.binding.StatusMessage;
+import org.httpclient.v1.status.binding.TransportOrderState;
+import org.httpclient.v1.status.binding.VehicleState;
+
 /**
+ * Keeps the bridge's view of the kernel's status in sync by polling the kernel incrementally.
+ * <p>
+ * Only status messages newer than the highest sequence number seen so far are requested, so the
+ * amount of data transferred and parsed depends on the rate of changes, not on the size of the
+ * fleet.
+ * Messages are dispatched one by one while the response is being received.
+ * If messages were missed (a gap in the sequence numbers, e.g. because the kernel's event buffer
+ * overflowed) or the kernel could not be reached (it may have been restarted, resetting its
+ * sequence numbers), the complete vehicle and transport order states are requested once (a
+ * snapshot) and incremental polling continues from there.
+ * </p>
+ * <p>
+ * The sequence number to continue from is determined without downloading the kernel's whole
+ * event buffer where possible: after a gap, it is the highest one in the response revealing the
+ * gap; after a failed request, only the messages newer than the last one seen are requested.
+ * Only at startup, or if the kernel has no newer messages after a failed request (it may have been
+ * restarted), all buffered messages are requested.
+ * </p>
  *
  * @author zzw
  */
-public class StatusPollingJob {
+public class StatusPollingJob implements PeriodicJob {
+    
+    private static final Logger LOG = Logger.getLogger(StatusPollingJob.class.getName());
+    
+    // Marks the sequence number as unknown, requiring a snapshot
+    private static final long SEQUENCE_NUMBER_UNKNOWN = -1;
+    
+    // Requests the status data from the kernel
+    private final RequestStatusHandler requestStatusHandler;
+    
+    // Hands the status data to the bridge's components
+    private final StatusEventDispatcher statusEventDispatcher;
+    
+    // The highest sequence number of the messages dispatched so far
+    private volatile long lastSequenceNumber = SEQUENCE_NUMBER_UNKNOWN;
+    
+    // The number of snapshots requested so far
+    private volatile long snapshotCount;
+    
+    // Whether the last poll revealed missed messages
+    private volatile boolean gapDetected;
+    
+    // The highest sequence number in the current response, including messages not dispatched
+    private long latestSequenceNumber;
+    
+    // The last sequence number known before a failed request, to continue from after it
+    private long resumeSequenceNumber = SEQUENCE_NUMBER_UNKNOWN;
+    
+    public StatusPollingJob(RequestStatusHandler requestStatusHandler, StatusEventDispatcher statusEventDispatcher) {
+        this.requestStatusHandler = requireNonNull(requestStatusHandler, "requestStatusHandler");
+        this.statusEventDispatcher = requireNonNull(statusEventDispatcher, "statusEventDispatcher");
+    }
+    
+    public long getLastSequenceNumber() {
+        return lastSequenceNumber;
+    }
+    
+    public long getSnapshotCount() {
+        return snapshotCount;
+    }
+    
+    public boolean isGapDetected() {
+        return gapDetected;
+    }
+    
+    @Override
+    public void execute() throws IOException {
+        
+        if(lastSequenceNumber == SEQUENCE_NUMBER_UNKNOWN){
+            resync(fetchLatestSequenceNumber());
+            return;
+        }
+        
+        //request only the messages newer than the ones already seen, dispatching them while they are received
+        gapDetected = false;
+        latestSequenceNumber = lastSequenceNumber;
+        try {
+            requestStatusHandler.fetchStatusMessages(lastSequenceNumber + 1, this::onMessage);
+        } catch (IOException ex) {
+            // the kernel may have been restarted, resetting its sequence numbers
+            resumeSequenceNumber = lastSequenceNumber;
+            lastSequenceNumber = SEQUENCE_NUMBER_UNKNOWN;
+            throw ex;
+        }
+        if(gapDetected){
+            // the rest of the response was read without dispatching it, its latest message is the
+            // one to continue after
+            resync(latestSequenceNumber);
+        }
+    }
+    
+    private boolean onMessage(StatusMessage message) {
+        long sequenceNumber = message.getSequenceNumber();
+        latestSequenceNumber = Math.max(latestSequenceNumber, sequenceNumber);
+        if(gapDetected || sequenceNumber <= lastSequenceNumber){
+            return true;
+        }
+        // messages between the last one seen and this one are lost
+        if(sequenceNumber > lastSequenceNumber + 1){
+            LOG.log(Level.INFO, "Status messages {0} to {1} missed, requesting snapshot",
+                    new Object[]{lastSequenceNumber + 1, sequenceNumber - 1});
+            gapDetected = true;
+            return true;
+        }
+        lastSequenceNumber = sequenceNumber;
+        statusEventDispatcher.dispatch(message);
+        return true;
+    }
+    
+    /**
+     * Requests the latest sequence number from the kernel.
+     * Asks only for the messages newer than the last one known before a failed request, if any, and
+     * for all buffered messages only if there are none.
+     *
+     * @return The latest sequence number, or 0, if the kernel has not buffered any messages.
+     * @throws IOException If a request failed.
+     */
+    private long fetchLatestSequenceNumber() throws IOException {
+        latestSequenceNumber = SEQUENCE_NUMBER_UNKNOWN;
+        if(resumeSequenceNumber != SEQUENCE_NUMBER_UNKNOWN){
+            requestStatusHandler.fetchStatusMessages(resumeSequenceNumber + 1, this::onLatestMessage);
+            if(latestSequenceNumber != SEQUENCE_NUMBER_UNKNOWN){
+                return latestSequenceNumber;
+            }
+        }
+        requestStatusHandler.fetchStatusMessages(0, this::onLatestMessage);
+        return Math.max(latestSequenceNumber, 0);
+    }
+    
+    private boolean onLatestMessage(StatusMessage message) {
+        latestSequenceNumber = Math.max(latestSequenceNumber, message.getSequenceNumber());
+        return true;
+    }
     
+    private void resync(long sequenceNumber) throws IOException {
+        // The latest sequence number is determined before the snapshot is taken, so changes made
+        // in between are received again with the next incremental poll instead of being lost.
+        List<VehicleState> vehicles = requestStatusHandler.fetchVehicles();
+        List<TransportOrderState> transportOrders = requestStatusHandler.fetchTransportOrders();
+        for(VehicleState vehicle : vehicles){
+            statusEventDispatcher.dispatch(vehicle);
+        }
+        for(TransportOrderState transportOrder : transportOrders){
+            statusEventDispatcher.dispatch(transportOrder);
+        }
+        
+        lastSequenceNumber = sequenceNumber;
+        resumeSequenceNumber = SEQUENCE_NUMBER_UNKNOWN;
+        snapshotCount++;
+        LOG.log(Level.INFO, "Status snapshot with {0} vehicles and {1} transport orders, continuing after {2}",
+                new Object[]{vehicles.size(), transportOrders.size(), lastSequenceNumber});
+    }
 }
@@ -0,0 +1,181 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import static java.util.Objects.requireNonNull;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.openTcs.util.Assertions.checkInRange;
+import static org.openTcs.util.Assertions.checkState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A lightweight {@link JobScheduler} based on a {@link ScheduledExecutorService}.
+ * <p>
+ * Each job reschedules itself only after an execution has finished, so executions of the same job
+ * never overlap.
+ * The next execution time is derived from the previous nominal one, which keeps the interval
+ * stable; if an execution overran the interval, the job's {@link JobSchedule.MisfirePolicy}
+ * decides whether it is run again immediately or at the next regular time.
+ * </p>
+ *
+ * @author zzw
+ */
+public class ExecutorJobScheduler
+    implements JobScheduler {
+
+  /**
+   * This class's logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(ExecutorJobScheduler.class);
+  /**
+   * The executor running the jobs.
+   */
+  private final ScheduledThreadPoolExecutor executor;
+  /**
+   * The jobs scheduled before this scheduler was started.
+   */
+  private final List<ScheduledJob> pendingJobs = new ArrayList<>();
+  /**
+   * Whether this scheduler has been started.
+   */
+  private boolean started;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param threadCount The number of threads executing jobs.
+   */
+  public ExecutorJobScheduler(int threadCount) {
+    checkInRange(threadCount, 1, Integer.MAX_VALUE, "threadCount");
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.executor = new ScheduledThreadPoolExecutor(threadCount, runnable -> {
+      Thread thread = new Thread(runnable, "job-scheduler-" + threadNumber.incrementAndGet());
+      thread.setDaemon(false);
+      return thread;
+    });
+    this.executor.setRemoveOnCancelPolicy(true);
+  }
+
+  @Override
+  public synchronized void schedule(String name, PeriodicJob job, JobSchedule schedule) {
+    ScheduledJob scheduledJob = new ScheduledJob(requireNonNull(name, "name"),
+                                                 requireNonNull(job, "job"),
+                                                 requireNonNull(schedule, "schedule"));
+    if (started) {
+      scheduledJob.start();
+    }
+    else {
+      pendingJobs.add(scheduledJob);
+    }
+  }
+
+  @Override
+  public synchronized void start() {
+    checkState(!started, "Already started");
+
+    started = true;
+    for (ScheduledJob job : pendingJobs) {
+      job.start();
+    }
+    pendingJobs.clear();
+  }
+
+  @Override
+  public synchronized void shutdown() {
+    executor.shutdown();
+  }
+
+  /**
+   * A job and its scheduling state.
+   */
+  private class ScheduledJob
+      implements Runnable {
+
+    private final String name;
+    private final PeriodicJob job;
+    private final JobSchedule schedule;
+    private final long intervalNanos;
+    /**
+     * The nominal (jitter-free) time of the current execution.
+     */
+    private long nominalTime;
+
+    ScheduledJob(String name, PeriodicJob job, JobSchedule schedule) {
+      this.name = name;
+      this.job = job;
+      this.schedule = schedule;
+      this.intervalNanos = schedule.getInterval().toNanos();
+    }
+
+    void start() {
+      nominalTime = System.nanoTime() + schedule.getInitialDelay().toNanos();
+      scheduleAt(nominalTime);
+    }
+
+    @Override
+    public void run() {
+      // The job is rescheduled even if it failed - otherwise a single failure would silently stop
+      // it, as the executor only records the failure in the discarded future.
+      try {
+        job.execute();
+      }
+      catch (Exception exc) {
+        LOG.warn("Execution of job {} failed", name, exc);
+      }
+      catch (Error err) {
+        LOG.error("Execution of job {} failed", name, err);
+        throw err;
+      }
+      finally {
+        scheduleNext();
+      }
+    }
+
+    private void scheduleNext() {
+      long now = System.nanoTime();
+      nominalTime += intervalNanos;
+      if (nominalTime < now) {
+        long missed = (now - nominalTime) / intervalNanos + 1;
+        LOG.debug("Job {} overran its interval, {} execution(s) missed", name, missed);
+        switch (schedule.getMisfirePolicy()) {
+          case FIRE_NOW:
+            nominalTime = now;
+            break;
+          case SKIP:
+            nominalTime += missed * intervalNanos;
+            break;
+          default:
+            throw new IllegalArgumentException("Unhandled misfire policy: "
+                + schedule.getMisfirePolicy());
+        }
+      }
+      scheduleAt(nominalTime);
+    }
+
+    private void scheduleAt(long time) {
+      if (executor.isShutdown()) {
+        return;
+      }
+      long jitterNanos = schedule.getJitter().toNanos();
+      long delay = Math.max(0, time - System.nanoTime())
+          + (jitterNanos > 0 ? ThreadLocalRandom.current().nextLong(jitterNanos) : 0);
+      try {
+        executor.schedule(this, delay, TimeUnit.NANOSECONDS);
+      }
+      catch (RejectedExecutionException exc) {
+        LOG.debug("Not rescheduling job {}, scheduler shut down", name);
+      }
+    }
+  }
+}
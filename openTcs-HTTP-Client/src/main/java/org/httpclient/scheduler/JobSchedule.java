@@ -0,0 +1,129 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.scheduler;
+
+import java.time.Duration;
+import static java.util.Objects.requireNonNull;
+import static org.openTcs.util.Assertions.checkArgument;
+
+/**
+ * Describes when a {@link PeriodicJob} is to be executed.
+ *
+ * @author zzw
+ */
+public class JobSchedule {
+
+  /**
+   * The nominal time between two executions.
+   */
+  private final Duration interval;
+  /**
+   * The delay before the first execution.
+   */
+  private final Duration initialDelay;
+  /**
+   * The maximum random delay added to each execution.
+   */
+  private final Duration jitter;
+  /**
+   * How executions missed because a previous one took too long are handled.
+   */
+  private final MisfirePolicy misfirePolicy;
+
+  /**
+   * Creates a new instance without initial delay and jitter, firing missed executions immediately.
+   *
+   * @param interval The nominal time between two executions.
+   */
+  public JobSchedule(Duration interval) {
+    this(interval, Duration.ZERO, Duration.ZERO, MisfirePolicy.FIRE_NOW);
+  }
+
+  private JobSchedule(Duration interval,
+                      Duration initialDelay,
+                      Duration jitter,
+                      MisfirePolicy misfirePolicy) {
+    this.interval = requireNonNull(interval, "interval");
+    this.initialDelay = requireNonNull(initialDelay, "initialDelay");
+    this.jitter = requireNonNull(jitter, "jitter");
+    this.misfirePolicy = requireNonNull(misfirePolicy, "misfirePolicy");
+    checkArgument(!interval.isNegative() && !interval.isZero(), "interval <= 0: %s", interval);
+    checkArgument(!initialDelay.isNegative(), "initialDelay < 0: %s", initialDelay);
+    checkArgument(!jitter.isNegative(), "jitter < 0: %s", jitter);
+  }
+
+  public Duration getInterval() {
+    return interval;
+  }
+
+  public Duration getInitialDelay() {
+    return initialDelay;
+  }
+
+  /**
+   * Creates a copy of this object, with the given initial delay.
+   *
+   * @param initialDelay The value to be set in the copy.
+   * @return A copy of this object, differing in the given value.
+   */
+  public JobSchedule withInitialDelay(Duration initialDelay) {
+    return new JobSchedule(interval, initialDelay, jitter, misfirePolicy);
+  }
+
+  public Duration getJitter() {
+    return jitter;
+  }
+
+  /**
+   * Creates a copy of this object, with the given jitter.
+   * Spreading executions randomly avoids several bridges/jobs hitting the kernel at the same time.
+   *
+   * @param jitter The value to be set in the copy.
+   * @return A copy of this object, differing in the given value.
+   */
+  public JobSchedule withJitter(Duration jitter) {
+    return new JobSchedule(interval, initialDelay, jitter, misfirePolicy);
+  }
+
+  public MisfirePolicy getMisfirePolicy() {
+    return misfirePolicy;
+  }
+
+  /**
+   * Creates a copy of this object, with the given misfire policy.
+   *
+   * @param misfirePolicy The value to be set in the copy.
+   * @return A copy of this object, differing in the given value.
+   */
+  public JobSchedule withMisfirePolicy(MisfirePolicy misfirePolicy) {
+    return new JobSchedule(interval, initialDelay, jitter, misfirePolicy);
+  }
+
+  @Override
+  public String toString() {
+    return "JobSchedule{"
+        + "interval=" + interval
+        + ", initialDelay=" + initialDelay
+        + ", jitter=" + jitter
+        + ", misfirePolicy=" + misfirePolicy
+        + '}';
+  }
+
+  /**
+   * Defines how executions are handled that were missed because a previous execution took longer
+   * than the interval.
+   */
+  public enum MisfirePolicy {
+    /**
+     * Missed executions are coalesced into a single one that is started immediately.
+     */
+    FIRE_NOW,
+    /**
+     * Missed executions are skipped; the next execution takes place at the next regular time.
+     */
+    SKIP
+  }
+}
@@ -0,0 +1,35 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.scheduler;
+
+/**
+ * Executes {@link PeriodicJob}s according to their {@link JobSchedule}s.
+ *
+ * @author zzw
+ */
+public interface JobScheduler {
+
+  /**
+   * Schedules the given job.
+   * Jobs may be scheduled before or after the scheduler has been started.
+   *
+   * @param name The job's (unique) name.
+   * @param job The job.
+   * @param schedule The job's schedule.
+   */
+  void schedule(String name, PeriodicJob job, JobSchedule schedule);
+
+  /**
+   * Starts executing the scheduled jobs.
+   */
+  void start();
+
+  /**
+   * Stops executing the scheduled jobs.
+   * Executions currently running are not interrupted.
+   */
+  void shutdown();
+}
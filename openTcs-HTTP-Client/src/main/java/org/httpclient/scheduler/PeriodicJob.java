@@ -0,0 +1,24 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.scheduler;
+
+/**
+ * A job executed periodically by a {@link JobScheduler}.
+ * Executions of the same job never overlap.
+ *
+ * @author zzw
+ */
+public interface PeriodicJob {
+
+  /**
+   * Executes the job once.
+   *
+   * @throws Exception If the execution failed. The job is still executed again at its next
+   * scheduled time.
+   */
+  void execute()
+      throws Exception;
+}
@@ -0,0 +1,209 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.scheduler;
+
+import java.time.Duration;
+import java.util.Date;
+import static java.util.Objects.requireNonNull;
+import java.util.Properties;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobBuilder;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.SimpleScheduleBuilder;
+import org.quartz.Trigger;
+import org.quartz.TriggerBuilder;
+import org.quartz.impl.StdSchedulerFactory;
+import static org.openTcs.util.Assertions.checkArgument;
+import static org.openTcs.util.Assertions.checkInRange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link JobScheduler} delegating to Quartz.
+ * Jitter is not supported by Quartz' simple triggers and is ignored.
+ * <p>
+ * Quartz only treats an execution as misfired if it is late by more than the scheduler-wide
+ * misfire threshold (one minute by default), so the threshold is set well below the jobs'
+ * intervals - otherwise {@link JobSchedule.MisfirePolicy#SKIP} would never take effect.
+ * </p>
+ *
+ * @author zzw
+ */
+public class QuartzJobScheduler
+    implements JobScheduler {
+
+  /**
+   * This class's logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(QuartzJobScheduler.class);
+  /**
+   * The key of the job data map entry holding the periodic job.
+   */
+  private static final String KEY_JOB = "periodicJob";
+  /**
+   * The key of the job data map entry holding the job's name.
+   */
+  private static final String KEY_NAME = "jobName";
+  /**
+   * The default misfire threshold.
+   */
+  public static final Duration DEFAULT_MISFIRE_THRESHOLD = Duration.ofMillis(250);
+  /**
+   * The Quartz scheduler.
+   */
+  private final Scheduler scheduler;
+  /**
+   * How late an execution may be before Quartz treats it as misfired.
+   */
+  private final Duration misfireThreshold;
+
+  /**
+   * Creates a new instance with the {@link #DEFAULT_MISFIRE_THRESHOLD default misfire threshold}.
+   *
+   * @param threadCount The number of threads executing jobs.
+   * @throws IllegalStateException If the Quartz scheduler could not be created.
+   */
+  public QuartzJobScheduler(int threadCount)
+      throws IllegalStateException {
+    this(threadCount, DEFAULT_MISFIRE_THRESHOLD);
+  }
+
+  /**
+   * Creates a new instance.
+   *
+   * @param threadCount The number of threads executing jobs.
+   * @param misfireThreshold How late an execution may be before it is treated as misfired and
+   * handled according to the job's {@link JobSchedule.MisfirePolicy}. Should be well below the
+   * shortest interval of the scheduled jobs.
+   * @throws IllegalStateException If the Quartz scheduler could not be created.
+   */
+  public QuartzJobScheduler(int threadCount, Duration misfireThreshold)
+      throws IllegalStateException {
+    checkInRange(threadCount, 1, Integer.MAX_VALUE, "threadCount");
+    this.misfireThreshold = requireNonNull(misfireThreshold, "misfireThreshold");
+    checkArgument(!misfireThreshold.isNegative() && !misfireThreshold.isZero(),
+                  "misfireThreshold <= 0: %s",
+                  misfireThreshold);
+
+    Properties properties = new Properties();
+    properties.setProperty("org.quartz.scheduler.instanceName", "BridgeScheduler");
+    properties.setProperty("org.quartz.scheduler.skipUpdateCheck", "true");
+    properties.setProperty("org.quartz.threadPool.threadCount", Integer.toString(threadCount));
+    properties.setProperty("org.quartz.jobStore.misfireThreshold",
+                           Long.toString(misfireThreshold.toMillis()));
+    properties.setProperty("org.quartz.jobStore.class", "org.quartz.simpl.RAMJobStore");
+    try {
+      this.scheduler = new StdSchedulerFactory(properties).getScheduler();
+    }
+    catch (SchedulerException exc) {
+      throw new IllegalStateException("Could not create Quartz scheduler", exc);
+    }
+  }
+
+  @Override
+  public void schedule(String name, PeriodicJob job, JobSchedule schedule) {
+    requireNonNull(name, "name");
+    requireNonNull(job, "job");
+    requireNonNull(schedule, "schedule");
+
+    if (!schedule.getJitter().isZero()) {
+      LOG.info("Ignoring jitter for job {}, not supported with Quartz", name);
+    }
+    if (schedule.getInterval().compareTo(misfireThreshold) <= 0) {
+      LOG.warn("Interval of job {} ({}) does not exceed the misfire threshold ({}), "
+          + "late executions will not be treated as misfires",
+               name,
+               schedule.getInterval(),
+               misfireThreshold);
+    }
+
+    JobDetail jobDetail = JobBuilder.newJob(QuartzJobAdapter.class)
+        .withIdentity(name)
+        .build();
+    jobDetail.getJobDataMap().put(KEY_JOB, job);
+    jobDetail.getJobDataMap().put(KEY_NAME, name);
+
+    SimpleScheduleBuilder scheduleBuilder = SimpleScheduleBuilder.simpleSchedule()
+        .withIntervalInMilliseconds(schedule.getInterval().toMillis())
+        .repeatForever();
+    switch (schedule.getMisfirePolicy()) {
+      case FIRE_NOW:
+        scheduleBuilder = scheduleBuilder.withMisfireHandlingInstructionFireNow();
+        break;
+      case SKIP:
+        scheduleBuilder = scheduleBuilder.withMisfireHandlingInstructionNextWithRemainingCount();
+        break;
+      default:
+        throw new IllegalArgumentException("Unhandled misfire policy: "
+            + schedule.getMisfirePolicy());
+    }
+    Trigger trigger = TriggerBuilder.newTrigger()
+        .withIdentity(name)
+        .startAt(new Date(System.currentTimeMillis() + schedule.getInitialDelay().toMillis()))
+        .withSchedule(scheduleBuilder)
+        .build();
+
+    try {
+      scheduler.scheduleJob(jobDetail, trigger);
+    }
+    catch (SchedulerException exc) {
+      throw new IllegalStateException("Could not schedule job " + name, exc);
+    }
+  }
+
+  @Override
+  public void start() {
+    try {
+      scheduler.start();
+    }
+    catch (SchedulerException exc) {
+      throw new IllegalStateException("Could not start Quartz scheduler", exc);
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    try {
+      scheduler.shutdown();
+    }
+    catch (SchedulerException exc) {
+      LOG.warn("Exception shutting down Quartz scheduler", exc);
+    }
+  }
+
+  /**
+   * Executes a {@link PeriodicJob} on behalf of Quartz.
+   */
+  @DisallowConcurrentExecution
+  public static class QuartzJobAdapter
+      implements Job {
+
+    /**
+     * Creates a new instance.
+     */
+    public QuartzJobAdapter() {
+    }
+
+    @Override
+    public void execute(JobExecutionContext context)
+        throws JobExecutionException {
+      PeriodicJob job = (PeriodicJob) context.getMergedJobDataMap().get(KEY_JOB);
+      try {
+        job.execute();
+      }
+      catch (Exception exc) {
+        LOG.warn("Execution of job {} failed",
+                 context.getMergedJobDataMap().getString(KEY_NAME),
+                 exc);
+      }
+    }
+  }
+}
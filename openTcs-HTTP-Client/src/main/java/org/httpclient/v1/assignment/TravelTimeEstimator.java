@@ -0,0 +1,26 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.assignment;
+
+import java.util.OptionalLong;
+
+/**
+ * Estimates how long a vehicle needs to travel between two positions in the plant model.
+ *
+ * @author zzw
+ */
+public interface TravelTimeEstimator {
+
+  /**
+   * Estimates the travel time from the given point to the given destination.
+   *
+   * @param sourcePoint The name of the point the vehicle starts at.
+   * @param destination The name of the destination point or location.
+   * @return The estimated travel time (in ms), or an empty value, if the destination is unknown or
+   * not reachable from the source point.
+   */
+  OptionalLong estimateTravelTime(String sourcePoint, String destination);
+}
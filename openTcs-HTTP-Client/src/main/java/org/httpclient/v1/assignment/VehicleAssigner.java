@@ -0,0 +1,109 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.assignment;
+
+import static java.util.Objects.requireNonNull;
+import java.util.OptionalLong;
+import javax.annotation.Nullable;
+import org.httpclient.v1.assignment.VehicleStateCache.CachedVehicle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Selects the intended vehicle for new transport orders.
+ * <p>
+ * Among all vehicles that are currently available according to the {@link VehicleStateCache}, the
+ * one with the lowest estimated travel time to the order's loading location is chosen.
+ * If no vehicle is available or no estimate can be made, no vehicle is selected and the decision is
+ * left to the kernel's dispatcher.
+ * With an estimator that cannot estimate anything - e.g. one based on an empty plant model - the
+ * assigner is thus inert; the first time available vehicles are passed over for lack of estimates,
+ * a warning is logged.
+ * </p>
+ *
+ * @author zzw
+ */
+public class VehicleAssigner {
+
+  /**
+   * This class's logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(VehicleAssigner.class);
+  /**
+   * The cache providing the vehicles' states.
+   */
+  private final VehicleStateCache vehicleStateCache;
+  /**
+   * Estimates the vehicles' travel times.
+   */
+  private final TravelTimeEstimator travelTimeEstimator;
+  /**
+   * Whether available vehicles have been passed over for lack of estimates before.
+   */
+  private boolean estimatesMissing;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param vehicleStateCache The cache providing the vehicles' states.
+   * @param travelTimeEstimator Estimates the vehicles' travel times.
+   */
+  public VehicleAssigner(VehicleStateCache vehicleStateCache,
+                         TravelTimeEstimator travelTimeEstimator) {
+    this.vehicleStateCache = requireNonNull(vehicleStateCache, "vehicleStateCache");
+    this.travelTimeEstimator = requireNonNull(travelTimeEstimator, "travelTimeEstimator");
+  }
+
+  /**
+   * Selects the intended vehicle for a transport order and reserves it in the cache.
+   *
+   * @param orderName The name of the transport order.
+   * @param loadingLocation The name of the order's loading location.
+   * @return The name of the selected vehicle, or <code>null</code>, if the kernel's dispatcher
+   * should decide.
+   */
+  @Nullable
+  public synchronized String selectVehicle(String orderName, String loadingLocation) {
+    requireNonNull(orderName, "orderName");
+    requireNonNull(loadingLocation, "loadingLocation");
+
+    CachedVehicle bestVehicle = null;
+    long bestTravelTime = Long.MAX_VALUE;
+    int availableCount = 0;
+    for (CachedVehicle vehicle : vehicleStateCache.getVehicles()) {
+      if (!vehicle.isAvailable() || vehicle.getCurrentPosition() == null) {
+        continue;
+      }
+      availableCount++;
+      OptionalLong travelTime = travelTimeEstimator.estimateTravelTime(vehicle.getCurrentPosition(),
+                                                                       loadingLocation);
+      if (travelTime.isPresent() && travelTime.getAsLong() < bestTravelTime) {
+        bestVehicle = vehicle;
+        bestTravelTime = travelTime.getAsLong();
+      }
+    }
+
+    if (bestVehicle == null) {
+      if (availableCount > 0 && !estimatesMissing) {
+        estimatesMissing = true;
+        LOG.warn("No travel time to {} estimated for {} available vehicles, leaving {} to the "
+            + "dispatcher.", loadingLocation, availableCount, orderName);
+      }
+      else {
+        LOG.debug("No vehicle selected for {}, leaving it to the dispatcher.", orderName);
+      }
+      return null;
+    }
+
+    LOG.debug("Selected {} for {} (estimated travel time to {}: {} ms).",
+              bestVehicle.getName(),
+              orderName,
+              loadingLocation,
+              bestTravelTime);
+    vehicleStateCache.markAssigned(bestVehicle.getName(), orderName);
+    return bestVehicle.getName();
+  }
+}
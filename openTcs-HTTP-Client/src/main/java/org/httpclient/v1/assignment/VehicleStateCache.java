@@ -0,0 +1,507 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.assignment;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import static java.util.Objects.requireNonNull;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import org.httpclient.v1.order.SubmissionListener;
+import org.httpclient.v1.status.binding.OrderStatusMessage;
+import org.httpclient.v1.status.binding.StatusMessage;
+import org.httpclient.v1.status.binding.StatusMessageList;
+import org.httpclient.v1.status.binding.TransportOrderState;
+import org.httpclient.v1.status.binding.VehicleState;
+import org.httpclient.v1.status.binding.VehicleStatusMessage;
+import org.openTcs.data.model.Vehicle;
+import org.openTcs.util.event.EventHandler;
+
+/**
+ * Keeps the latest known state of every vehicle, as reported via the status channel.
+ * <p>
+ * The cache is fed with {@link VehicleStatusMessage}s and {@link VehicleState}s (or whole
+ * {@link StatusMessageList}s) by subscribing it to the event bus the status data is published on.
+ * Lookups by vehicle name are constant time and never require a request to the kernel.
+ * </p>
+ * <p>
+ * Vehicles selected for transport orders not yet known to be processed are reserved for them, and
+ * reported as processing the order, so several orders of the same burst are not assigned to a
+ * single vehicle.
+ * Reservations are kept apart from the vehicles' states, by transport order, so status updates
+ * that precede the order's submission do not clear them.
+ * A reservation ends when the kernel rejects the order, when the vehicle is reported to process
+ * the order, or when the order has reached a final state; the cache is therefore also subscribed
+ * to transport order status data and notified of submissions.
+ * </p>
+ *
+ * @author zzw
+ */
+public class VehicleStateCache
+    implements EventHandler,
+               SubmissionListener {
+
+  /**
+   * The cached vehicles, mapped by name.
+   */
+  private final Map<String, CachedVehicle> vehicles = new ConcurrentHashMap<>();
+  /**
+   * The names of the reserved vehicles, by transport order name.
+   */
+  private final Map<String, String> vehicleByOrder = new ConcurrentHashMap<>();
+  /**
+   * The names of the transport orders vehicles are reserved for, by vehicle name.
+   */
+  private final Map<String, Set<String>> ordersByVehicle = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a new instance.
+   */
+  public VehicleStateCache() {
+  }
+
+  @Override
+  public void onEvent(Object event) {
+    if (event instanceof VehicleStatusMessage) {
+      update((VehicleStatusMessage) event);
+    }
+    else if (event instanceof VehicleState) {
+      update((VehicleState) event);
+    }
+    else if (event instanceof OrderStatusMessage) {
+      update((OrderStatusMessage) event);
+    }
+    else if (event instanceof TransportOrderState) {
+      TransportOrderState orderState = (TransportOrderState) event;
+      if (orderState.getName() != null
+          && orderState.getState() != null
+          && orderState.getState().isFinalState()) {
+        release(orderState.getName());
+      }
+    }
+    else if (event instanceof StatusMessageList) {
+      for (StatusMessage message : ((StatusMessageList) event).getStatusMessages()) {
+        if (message instanceof VehicleStatusMessage) {
+          update((VehicleStatusMessage) message);
+        }
+        else if (message instanceof OrderStatusMessage) {
+          update((OrderStatusMessage) message);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void onSubmitted(String orderName, boolean accepted) {
+    if (!accepted) {
+      release(orderName);
+    }
+  }
+
+  /**
+   * Updates the cache with the given vehicle status message.
+   * Energy related values are not part of the message and are retained from the previous state.
+   *
+   * @param message The message.
+   */
+  public void update(VehicleStatusMessage message) {
+    requireNonNull(message, "message");
+
+    vehicles.compute(message.getVehicleName(),
+                     (name, previous) -> CachedVehicle.fromStatusMessage(message, previous));
+    releaseProcessed(emptyToNull(message.getTransportOrderName()));
+  }
+
+  /**
+   * Updates the cache with the given vehicle state.
+   *
+   * @param vehicleState The vehicle state.
+   */
+  public void update(VehicleState vehicleState) {
+    requireNonNull(vehicleState, "vehicleState");
+
+    vehicles.put(vehicleState.getName(), CachedVehicle.fromVehicleState(vehicleState));
+    releaseProcessed(emptyToNull(vehicleState.getTransportOrder()));
+  }
+
+  /**
+   * Reserves the given vehicle for the given transport order, until the kernel rejects the order,
+   * the vehicle is reported to process it or it has reached a final state.
+   * While reserved, the vehicle is reported as processing the order, if it is not reported to
+   * process another one.
+   * This prevents assigning several orders of the same burst to a single vehicle.
+   *
+   * @param vehicleName The name of the vehicle.
+   * @param orderName The name of the transport order.
+   */
+  public synchronized void markAssigned(String vehicleName, String orderName) {
+    requireNonNull(vehicleName, "vehicleName");
+    requireNonNull(orderName, "orderName");
+
+    release(orderName);
+    vehicleByOrder.put(orderName, vehicleName);
+    ordersByVehicle.computeIfAbsent(vehicleName, name -> ConcurrentHashMap.newKeySet())
+        .add(orderName);
+  }
+
+  /**
+   * Ends the reservation of a vehicle for the given transport order, e.g. because the order is to
+   * be processed by another vehicle.
+   *
+   * @param orderName The name of the transport order.
+   */
+  public synchronized void release(String orderName) {
+    requireNonNull(orderName, "orderName");
+
+    String vehicleName = vehicleByOrder.remove(orderName);
+    if (vehicleName == null) {
+      return;
+    }
+    Set<String> orders = ordersByVehicle.get(vehicleName);
+    if (orders != null) {
+      orders.remove(orderName);
+      if (orders.isEmpty()) {
+        ordersByVehicle.remove(vehicleName);
+      }
+    }
+  }
+
+  /**
+   * Returns the name of the vehicle reserved for the given transport order.
+   *
+   * @param orderName The name of the transport order.
+   * @return The name of the reserved vehicle, or <code>null</code>, if there is none.
+   */
+  @Nullable
+  public String getReservedVehicle(String orderName) {
+    return vehicleByOrder.get(requireNonNull(orderName, "orderName"));
+  }
+
+  /**
+   * Returns the cached state of the vehicle with the given name.
+   *
+   * @param vehicleName The name of the vehicle.
+   * @return The cached state, or <code>null</code>, if nothing is known about the vehicle.
+   */
+  @Nullable
+  public CachedVehicle getVehicle(String vehicleName) {
+    CachedVehicle vehicle = vehicles.get(requireNonNull(vehicleName, "vehicleName"));
+    return vehicle == null ? null : withReservation(vehicle);
+  }
+
+  /**
+   * Returns the cached states of all known vehicles.
+   *
+   * @return The cached states of all known vehicles.
+   */
+  public Collection<CachedVehicle> getVehicles() {
+    Collection<CachedVehicle> result = new ArrayList<>(vehicles.size());
+    for (CachedVehicle vehicle : vehicles.values()) {
+      result.add(withReservation(vehicle));
+    }
+    return result;
+  }
+
+  /**
+   * Removes all cached states.
+   * Reservations are kept, as they do not depend on the vehicles' reported states.
+   */
+  public void clear() {
+    vehicles.clear();
+  }
+
+  private void update(OrderStatusMessage message) {
+    if (message.getOrderName() != null
+        && message.getOrderState() != null
+        && message.getOrderState().toTransportOrderState().isFinalState()) {
+      release(message.getOrderName());
+    }
+  }
+
+  private void releaseProcessed(@Nullable String orderName) {
+    // Once a vehicle is reported to process the order, the status data reflects the assignment.
+    if (orderName != null) {
+      release(orderName);
+    }
+  }
+
+  private CachedVehicle withReservation(CachedVehicle vehicle) {
+    if (vehicle.getTransportOrder() != null) {
+      return vehicle;
+    }
+    Set<String> orders = ordersByVehicle.get(vehicle.getName());
+    if (orders == null) {
+      return vehicle;
+    }
+    Iterator<String> iterator = orders.iterator();
+    return iterator.hasNext() ? vehicle.withTransportOrder(iterator.next()) : vehicle;
+  }
+
+  @Nullable
+  private static String emptyToNull(@Nullable String value) {
+    return value == null || value.isEmpty() ? null : value;
+  }
+
+  /**
+   * An immutable snapshot of a vehicle's state.
+   */
+  public static class CachedVehicle {
+
+    /**
+     * The energy level of a vehicle for which no energy level has been reported, yet.
+     */
+    public static final int ENERGY_LEVEL_UNKNOWN = -1;
+    /**
+     * The vehicle's name.
+     */
+    private final String name;
+    /**
+     * The vehicle's state.
+     */
+    private final Vehicle.State state;
+    /**
+     * The vehicle's processing state.
+     */
+    private final Vehicle.ProcState procState;
+    /**
+     * The vehicle's integration level, or <code>null</code>, if not known.
+     */
+    private final Vehicle.IntegrationLevel integrationLevel;
+    /**
+     * The vehicle's energy level, or {@link #ENERGY_LEVEL_UNKNOWN}.
+     */
+    private final int energyLevel;
+    /**
+     * The energy level at/below which the vehicle's energy level is considered critical.
+     */
+    private final int energyLevelCritical;
+    /**
+     * The energy level at/above which the vehicle's energy level is considered good.
+     */
+    private final int energyLevelGood;
+    /**
+     * The name of the point the vehicle occupies.
+     */
+    private final String currentPosition;
+    /**
+     * The name of the transport order the vehicle processes.
+     */
+    private final String transportOrder;
+    /**
+     * When the data for this snapshot was created.
+     */
+    private final Instant updateTime;
+
+    private CachedVehicle(String name,
+                          Vehicle.State state,
+                          Vehicle.ProcState procState,
+                          @Nullable Vehicle.IntegrationLevel integrationLevel,
+                          int energyLevel,
+                          int energyLevelCritical,
+                          int energyLevelGood,
+                          @Nullable String currentPosition,
+                          @Nullable String transportOrder,
+                          Instant updateTime) {
+      this.name = requireNonNull(name, "name");
+      this.state = requireNonNull(state, "state");
+      this.procState = requireNonNull(procState, "procState");
+      this.integrationLevel = integrationLevel;
+      this.energyLevel = energyLevel;
+      this.energyLevelCritical = energyLevelCritical;
+      this.energyLevelGood = energyLevelGood;
+      this.currentPosition = currentPosition;
+      this.transportOrder = transportOrder;
+      this.updateTime = requireNonNull(updateTime, "updateTime");
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public Vehicle.State getState() {
+      return state;
+    }
+
+    public Vehicle.ProcState getProcState() {
+      return procState;
+    }
+
+    @Nullable
+    public Vehicle.IntegrationLevel getIntegrationLevel() {
+      return integrationLevel;
+    }
+
+    public int getEnergyLevel() {
+      return energyLevel;
+    }
+
+    public int getEnergyLevelCritical() {
+      return energyLevelCritical;
+    }
+
+    public int getEnergyLevelGood() {
+      return energyLevelGood;
+    }
+
+    @Nullable
+    public String getCurrentPosition() {
+      return currentPosition;
+    }
+
+    @Nullable
+    public String getTransportOrder() {
+      return transportOrder;
+    }
+
+    public Instant getUpdateTime() {
+      return updateTime;
+    }
+
+    /**
+     * Checks whether the vehicle's energy level is known to be critical.
+     *
+     * @return <code>true</code> if, and only if, an energy level has been reported and it is
+     * at/below the critical level.
+     */
+    public boolean isEnergyLevelCritical() {
+      return energyLevel != ENERGY_LEVEL_UNKNOWN && energyLevel <= energyLevelCritical;
+    }
+
+    /**
+     * Returns the band the vehicle's energy level is in.
+     *
+     * @return The band the vehicle's energy level is in.
+     */
+    public EnergyBand getEnergyBand() {
+      if (energyLevel == ENERGY_LEVEL_UNKNOWN) {
+        return EnergyBand.UNKNOWN;
+      }
+      if (energyLevel <= energyLevelCritical) {
+        return EnergyBand.CRITICAL;
+      }
+      if (energyLevel < energyLevelGood) {
+        return EnergyBand.DEGRADED;
+      }
+      return EnergyBand.GOOD;
+    }
+
+    /**
+     * Checks whether the vehicle is currently free to accept a new transport order.
+     *
+     * @return <code>true</code> if, and only if, the vehicle is idle, does not process a transport
+     * order and its energy level is not critical.
+     */
+    public boolean isAvailable() {
+      return (state == Vehicle.State.IDLE || state == Vehicle.State.CHARGING)
+          && procState == Vehicle.ProcState.IDLE
+          && transportOrder == null
+          && (integrationLevel == null
+              || integrationLevel == Vehicle.IntegrationLevel.TO_BE_UTILIZED)
+          && !isEnergyLevelCritical();
+    }
+
+    /**
+     * Creates a snapshot from the given vehicle status message.
+     * Energy related values are not part of the message and are retained from the previous state.
+     *
+     * @param message The message.
+     * @param previous The vehicle's previous state, or <code>null</code>.
+     * @return The snapshot.
+     */
+    public static CachedVehicle fromStatusMessage(VehicleStatusMessage message,
+                                                  @Nullable CachedVehicle previous) {
+      requireNonNull(message, "message");
+
+      return new CachedVehicle(
+          message.getVehicleName(),
+          message.getState() == null ? Vehicle.State.UNKNOWN : message.getState(),
+          message.getProcState() == null ? Vehicle.ProcState.IDLE : message.getProcState(),
+          previous == null ? null : previous.getIntegrationLevel(),
+          previous == null ? ENERGY_LEVEL_UNKNOWN : previous.getEnergyLevel(),
+          previous == null ? 0 : previous.getEnergyLevelCritical(),
+          previous == null ? 0 : previous.getEnergyLevelGood(),
+          message.getPosition(),
+          emptyToNull(message.getTransportOrderName()),
+          message.getCreationTimeStamp()
+      );
+    }
+
+    /**
+     * Creates a snapshot from the given vehicle state.
+     *
+     * @param vehicleState The vehicle state.
+     * @return The snapshot.
+     */
+    public static CachedVehicle fromVehicleState(VehicleState vehicleState) {
+      requireNonNull(vehicleState, "vehicleState");
+
+      return new CachedVehicle(vehicleState.getName(),
+                               vehicleState.getState(),
+                               vehicleState.getProcState(),
+                               vehicleState.getIntegrationLevel(),
+                               vehicleState.getEnergyLevel(),
+                               vehicleState.getEnergyLevelCritical(),
+                               vehicleState.getEnergyLevelGood(),
+                               vehicleState.getCurrentPosition(),
+                               vehicleState.getTransportOrder(),
+                               Instant.now());
+    }
+
+    private CachedVehicle withTransportOrder(String transportOrder) {
+      return new CachedVehicle(name,
+                               state,
+                               procState,
+                               integrationLevel,
+                               energyLevel,
+                               energyLevelCritical,
+                               energyLevelGood,
+                               currentPosition,
+                               transportOrder,
+                               updateTime);
+    }
+
+    @Override
+    public String toString() {
+      return "CachedVehicle{"
+          + "name=" + name
+          + ", state=" + state
+          + ", procState=" + procState
+          + ", integrationLevel=" + integrationLevel
+          + ", energyLevel=" + energyLevel
+          + ", energyBand=" + getEnergyBand()
+          + ", currentPosition=" + currentPosition
+          + ", transportOrder=" + transportOrder
+          + ", updateTime=" + updateTime
+          + '}';
+    }
+
+    /**
+     * The bands a vehicle's energy level may be in.
+     */
+    public enum EnergyBand {
+      /**
+       * No energy level has been reported, yet.
+       */
+      UNKNOWN,
+      /**
+       * The energy level is at/below the critical level.
+       */
+      CRITICAL,
+      /**
+       * The energy level is above the critical but below the good level.
+       */
+      DEGRADED,
+      /**
+       * The energy level is at/above the good level.
+       */
+      GOOD
+    }
+  }
+}
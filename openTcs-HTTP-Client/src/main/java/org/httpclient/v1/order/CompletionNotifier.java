@@ -0,0 +1,408 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.order;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static java.util.Objects.requireNonNull;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.httpclient.v1.status.binding.OrderStatusMessage;
+import org.httpclient.v1.status.binding.StatusMessage;
+import org.httpclient.v1.status.binding.StatusMessageList;
+import org.httpclient.v1.status.binding.TransportOrderState;
+import org.httpclient.v1.telegrams.OrderCompletion;
+import org.httpclient.v1.telegrams.ResponseRequest;
+import org.openTcs.data.order.TransportOrder;
+import org.openTcs.util.event.EventHandler;
+import static org.openTcs.util.Assertions.checkArgument;
+import static org.openTcs.util.Assertions.checkInRange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reports the final states of the transport orders submitted via this bridge back to the upstream
+ * system.
+ * <p>
+ * Orders are tracked once the kernel has accepted them.
+ * When an order reaches a {@link TransportOrder.State#isFinalState() final state} according to the
+ * status channel, its completion is buffered; the buffer is sent as a single gzip-compressed
+ * callback once it holds a maximum number of completions or the oldest completion has waited for a
+ * maximum delay, whichever comes first.
+ * As the status channel may report an order's final state before its acceptance has been
+ * reported, the final states of orders not tracked (yet) are kept for a limited number of orders
+ * and reported as soon as the orders are accepted.
+ * </p>
+ * <p>
+ * Callbacks are sent one after the other by a single thread and retried with exponential backoff,
+ * so completions reach the upstream system in the order they were observed.
+ * Completions arriving while a callback is being retried are coalesced into the next one.
+ * If a callback still fails after the maximum number of attempts, its completions are put back
+ * in front of the buffer and sent again with the next callback; only if the buffer exceeds its
+ * maximum size are the oldest completions dropped.
+ * </p>
+ * <p>
+ * To learn about accepted orders, this instance needs to be registered as a
+ * {@link SubmissionListener} with the submission queue.
+ * </p>
+ *
+ * @author zzw
+ */
+public class CompletionNotifier
+    implements EventHandler,
+               SubmissionListener {
+
+  /**
+   * This class's logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(CompletionNotifier.class);
+  /**
+   * The URL completions are posted to.
+   */
+  private final String callbackUrl;
+  /**
+   * The maximum number of completions per callback.
+   */
+  private final int maxBatchSize;
+  /**
+   * The maximum number of completions buffered, including those of failed callbacks.
+   */
+  private final int maxPending;
+  /**
+   * The maximum time a completion waits before a callback is sent (in ms).
+   */
+  private final long maxDelayMillis;
+  /**
+   * The maximum number of attempts to send a callback.
+   */
+  private final int maxAttempts;
+  /**
+   * The delay before the first retry (in ms).
+   */
+  private final long initialRetryDelayMillis;
+  /**
+   * The names of the accepted transport orders whose completion has not been reported, yet.
+   */
+  private final Set<String> trackedOrders = new HashSet<>();
+  /**
+   * The completions of orders not tracked (yet), by order name, the oldest first.
+   * Guarded by {@link #trackedOrders}.
+   */
+  private final Map<String, OrderCompletion> untrackedCompletions = new LinkedHashMap<>();
+  /**
+   * The completions not yet sent, in the order they were observed.
+   */
+  private final List<OrderCompletion> pending = new ArrayList<>();
+  /**
+   * Serializes callbacks.
+   */
+  private final ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+  /**
+   * Sends the callbacks.
+   */
+  private final ScheduledExecutorService executor;
+  /**
+   * The HTTP client.
+   */
+  private final CloseableHttpClient httpClient;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param callbackUrl The URL completions are posted to.
+   * @param maxBatchSize The maximum number of completions per callback.
+   * @param maxPending The maximum number of completions buffered, including those of failed
+   * callbacks; also the maximum number of final states of orders not tracked (yet) that are kept.
+   * @param maxDelay The maximum time a completion waits before a callback is sent.
+   * @param maxAttempts The maximum number of attempts to send a callback.
+   * @param initialRetryDelay The delay before the first retry, doubled with every further retry.
+   * @param timeout The connect and read timeout.
+   */
+  public CompletionNotifier(String callbackUrl,
+                            int maxBatchSize,
+                            int maxPending,
+                            Duration maxDelay,
+                            int maxAttempts,
+                            Duration initialRetryDelay,
+                            Duration timeout) {
+    this.callbackUrl = requireNonNull(callbackUrl, "callbackUrl");
+    this.maxBatchSize = checkInRange(maxBatchSize, 1, Integer.MAX_VALUE, "maxBatchSize");
+    this.maxPending = checkInRange(maxPending, maxBatchSize, Integer.MAX_VALUE, "maxPending");
+    this.maxDelayMillis = requireNonNull(maxDelay, "maxDelay").toMillis();
+    this.maxAttempts = checkInRange(maxAttempts, 1, Integer.MAX_VALUE, "maxAttempts");
+    this.initialRetryDelayMillis = requireNonNull(initialRetryDelay, "initialRetryDelay")
+        .toMillis();
+    requireNonNull(timeout, "timeout");
+    checkArgument(maxDelayMillis >= 0, "maxDelay < 0: %s", maxDelay);
+    checkArgument(initialRetryDelayMillis >= 0, "initialRetryDelay < 0: %s", initialRetryDelay);
+
+    this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "completion-notifier");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.httpClient = HttpClients.custom()
+        .setDefaultRequestConfig(RequestConfig.custom()
+            .setConnectTimeout((int) timeout.toMillis())
+            .setConnectionRequestTimeout((int) timeout.toMillis())
+            .setSocketTimeout((int) timeout.toMillis())
+            .build())
+        .build();
+  }
+
+  /**
+   * Sends the completions still buffered and stops sending callbacks.
+   */
+  public void terminate() {
+    try {
+      executor.execute(this::flush);
+    }
+    catch (RejectedExecutionException exc) {
+      LOG.debug("Already terminated");
+    }
+    executor.shutdown();
+    try {
+      executor.awaitTermination(maxDelayMillis + 1000, TimeUnit.MILLISECONDS);
+    }
+    catch (InterruptedException exc) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      httpClient.close();
+    }
+    catch (IOException exc) {
+      LOG.warn("Exception closing HTTP client", exc);
+    }
+  }
+
+  @Override
+  public void onSubmitted(String orderName, boolean accepted) {
+    OrderCompletion completion;
+    synchronized (trackedOrders) {
+      completion = untrackedCompletions.remove(orderName);
+      if (accepted && completion == null) {
+        trackedOrders.add(orderName);
+      }
+    }
+    if (accepted && completion != null) {
+      enqueue(completion);
+    }
+  }
+
+  @Override
+  public void onEvent(Object event) {
+    if (event instanceof OrderStatusMessage) {
+      update((OrderStatusMessage) event);
+    }
+    else if (event instanceof TransportOrderState) {
+      TransportOrderState orderState = (TransportOrderState) event;
+      update(orderState.getName(), orderState.getState(), orderState.getProcessingVehicle());
+    }
+    else if (event instanceof StatusMessageList) {
+      for (StatusMessage message : ((StatusMessageList) event).getStatusMessages()) {
+        if (message instanceof OrderStatusMessage) {
+          update((OrderStatusMessage) message);
+        }
+      }
+    }
+  }
+
+  private void update(OrderStatusMessage message) {
+    if (message.getOrderState() == null) {
+      return;
+    }
+    update(message.getOrderName(),
+           message.getOrderState().toTransportOrderState(),
+           message.getProcessingVehicleName());
+  }
+
+  private void update(String orderName, TransportOrder.State state, String processingVehicle) {
+    if (orderName == null || state == null || !state.isFinalState()) {
+      return;
+    }
+
+    OrderCompletion completion = new OrderCompletion();
+    completion.setOrderNum(orderName);
+    completion.setState(state.name());
+    completion.setProcessingVehicle(processingVehicle);
+    completion.setCompletionTime(Instant.now());
+
+    synchronized (trackedOrders) {
+      if (!trackedOrders.remove(orderName)) {
+        // Not accepted yet, or not submitted via this bridge at all.
+        if (untrackedCompletions.putIfAbsent(orderName, completion) == null
+            && untrackedCompletions.size() > maxPending) {
+          Iterator<String> eldest = untrackedCompletions.keySet().iterator();
+          eldest.next();
+          eldest.remove();
+        }
+        return;
+      }
+    }
+    enqueue(completion);
+  }
+
+  private void enqueue(OrderCompletion completion) {
+    try {
+      synchronized (pending) {
+        pending.add(completion);
+        if (pending.size() > maxPending) {
+          OrderCompletion dropped = pending.remove(0);
+          LOG.error("Too many completions buffered, dropping completion of {}",
+                    dropped.getOrderNum());
+        }
+        if (pending.size() == 1) {
+          executor.schedule(this::flush, maxDelayMillis, TimeUnit.MILLISECONDS);
+        }
+        if (pending.size() == maxBatchSize) {
+          executor.execute(this::flush);
+        }
+      }
+    }
+    catch (RejectedExecutionException exc) {
+      LOG.warn("Terminated, not reporting completion of {}", completion.getOrderNum());
+    }
+  }
+
+  private void flush() {
+    while (true) {
+      List<OrderCompletion> batch;
+      synchronized (pending) {
+        if (pending.isEmpty()) {
+          return;
+        }
+        List<OrderCompletion> head = pending.subList(0, Math.min(maxBatchSize, pending.size()));
+        batch = new ArrayList<>(head);
+        head.clear();
+      }
+      if (!send(batch)) {
+        requeue(batch);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Puts the completions of a failed callback back in front of the buffer and schedules the next
+   * attempt to send them.
+   *
+   * @param batch The completions.
+   */
+  private void requeue(List<OrderCompletion> batch) {
+    synchronized (pending) {
+      pending.addAll(0, batch);
+      int excess = pending.size() - maxPending;
+      if (excess > 0) {
+        pending.subList(0, excess).clear();
+        LOG.error("Too many completions buffered, dropping {} completions", excess);
+      }
+      LOG.warn("Reporting {} completions to {} failed, retrying later",
+               pending.size(),
+               callbackUrl);
+      try {
+        executor.schedule(this::flush, Math.max(maxDelayMillis, 1), TimeUnit.MILLISECONDS);
+      }
+      catch (RejectedExecutionException exc) {
+        LOG.error("Terminated, not reporting {} completions to {}", pending.size(), callbackUrl);
+      }
+    }
+  }
+
+  /**
+   * Sends the given completions, retrying with exponential backoff.
+   *
+   * @param batch The completions.
+   * @return <code>false</code> if the completions should be sent again later.
+   */
+  private boolean send(List<OrderCompletion> batch) {
+    ResponseRequest report = new ResponseRequest();
+    report.setCreationTime(Instant.now());
+    report.setCompletions(batch);
+
+    byte[] body;
+    try {
+      body = gzip(mapper.writeValueAsBytes(report));
+    }
+    catch (JsonProcessingException exc) {
+      LOG.warn("Could not serialize completion report", exc);
+      return true;
+    }
+    catch (IOException exc) {
+      LOG.warn("Could not compress completion report", exc);
+      return true;
+    }
+
+    long retryDelay = initialRetryDelayMillis;
+    for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+      if (post(body)) {
+        return true;
+      }
+      if (attempt < maxAttempts) {
+        try {
+          Thread.sleep(retryDelay);
+        }
+        catch (InterruptedException exc) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+        retryDelay *= 2;
+      }
+    }
+    return false;
+  }
+
+  private boolean post(byte[] body) {
+    HttpPost httpPost = new HttpPost(callbackUrl);
+    httpPost.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+    httpPost.setEntity(new ByteArrayEntity(body, ContentType.APPLICATION_JSON));
+    try (CloseableHttpResponse response = httpClient.execute(httpPost)) {
+      EntityUtils.consume(response.getEntity());
+      int status = response.getStatusLine().getStatusCode();
+      if (status >= 200 && status < 300) {
+        return true;
+      }
+      LOG.debug("Callback rejected with {}", response.getStatusLine());
+      return false;
+    }
+    catch (IOException exc) {
+      LOG.debug("Sending callback failed", exc);
+      return false;
+    }
+  }
+
+  private static byte[] gzip(byte[] data)
+      throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+    try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+      gzipOut.write(data);
+    }
+    return out.toByteArray();
+  }
+}
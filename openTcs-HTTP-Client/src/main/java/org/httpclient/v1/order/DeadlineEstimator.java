@@ -0,0 +1,154 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.order;
+
+import java.time.Duration;
+import java.time.Instant;
+import static java.util.Objects.requireNonNull;
+import java.util.OptionalLong;
+import javax.annotation.Nullable;
+import org.httpclient.v1.assignment.TravelTimeEstimator;
+import org.httpclient.v1.assignment.VehicleStateCache;
+import org.httpclient.v1.assignment.VehicleStateCache.CachedVehicle;
+import static org.openTcs.util.Assertions.checkArgument;
+
+/**
+ * Estimates deadlines for new transport orders.
+ * <p>
+ * The deadline is the current time plus the work already queued for the intended vehicle, the
+ * vehicle's travel time to the loading location and the travel time from the loading to the
+ * unloading location, multiplied by a slack factor and extended by a fixed slack.
+ * If no travel time can be estimated, a default lead time is used instead.
+ * An order queued for a vehicle after other orders - e.g. a successor in a chain of orders - gets
+ * a deadline behind the work queued before it; see
+ * {@link #estimateQueuedDeadline(java.lang.String, java.lang.String, long)}.
+ * </p>
+ *
+ * @author zzw
+ */
+public class DeadlineEstimator {
+
+  /**
+   * Estimates travel times between points/locations.
+   */
+  private final TravelTimeEstimator travelTimeEstimator;
+  /**
+   * Provides the vehicles' current positions.
+   */
+  private final VehicleStateCache vehicleStateCache;
+  /**
+   * Keeps track of the vehicles' queued work.
+   */
+  private final VehicleWorkload vehicleWorkload;
+  /**
+   * The factor the estimated duration is multiplied with.
+   */
+  private final double slackFactor;
+  /**
+   * The fixed slack added to the estimated duration.
+   */
+  private final Duration slackOffset;
+  /**
+   * The lead time used if no duration can be estimated.
+   */
+  private final Duration defaultLeadTime;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param travelTimeEstimator Estimates travel times between points/locations.
+   * @param vehicleStateCache Provides the vehicles' current positions.
+   * @param vehicleWorkload Keeps track of the vehicles' queued work.
+   * @param slackFactor The factor the estimated duration is multiplied with (at least 1).
+   * @param slackOffset The fixed slack added to the estimated duration.
+   * @param defaultLeadTime The lead time used if no duration can be estimated.
+   */
+  public DeadlineEstimator(TravelTimeEstimator travelTimeEstimator,
+                           VehicleStateCache vehicleStateCache,
+                           VehicleWorkload vehicleWorkload,
+                           double slackFactor,
+                           Duration slackOffset,
+                           Duration defaultLeadTime) {
+    this.travelTimeEstimator = requireNonNull(travelTimeEstimator, "travelTimeEstimator");
+    this.vehicleStateCache = requireNonNull(vehicleStateCache, "vehicleStateCache");
+    this.vehicleWorkload = requireNonNull(vehicleWorkload, "vehicleWorkload");
+    checkArgument(slackFactor >= 1.0, "slackFactor < 1: %s", slackFactor);
+    this.slackFactor = slackFactor;
+    this.slackOffset = requireNonNull(slackOffset, "slackOffset");
+    this.defaultLeadTime = requireNonNull(defaultLeadTime, "defaultLeadTime");
+  }
+
+  /**
+   * Estimates the deadline for a transport order.
+   * If an intended vehicle is given, the order's estimated work is added to the vehicle's queue.
+   *
+   * @param orderName The name of the transport order.
+   * @param loadingLocation The name of the loading location.
+   * @param unloadingLocation The name of the unloading location.
+   * @param intendedVehicle The name of the intended vehicle, or <code>null</code>.
+   * @return The estimated deadline.
+   */
+  public Instant estimateDeadline(String orderName,
+                                  String loadingLocation,
+                                  String unloadingLocation,
+                                  @Nullable String intendedVehicle) {
+    requireNonNull(orderName, "orderName");
+    requireNonNull(loadingLocation, "loadingLocation");
+    requireNonNull(unloadingLocation, "unloadingLocation");
+
+    Instant now = Instant.now();
+    OptionalLong transitTime = travelTimeEstimator.estimateTravelTime(loadingLocation,
+                                                                      unloadingLocation);
+    if (!transitTime.isPresent()) {
+      return now.plus(defaultLeadTime);
+    }
+
+    long orderWork = transitTime.getAsLong();
+    long queuedWork = 0;
+    if (intendedVehicle != null) {
+      orderWork += approachTime(intendedVehicle, loadingLocation);
+      queuedWork = vehicleWorkload.getQueuedWork(intendedVehicle);
+      vehicleWorkload.add(intendedVehicle, orderName, orderWork);
+    }
+
+    return deadline(now, queuedWork + orderWork);
+  }
+
+  /**
+   * Estimates the deadline for a transport order moved to the end of a vehicle's queue.
+   * The order's work is removed from the queue it was added to before, if any, and added to the
+   * given vehicle's queue after the work already queued there.
+   *
+   * @param orderName The name of the transport order.
+   * @param vehicleName The name of the vehicle.
+   * @param orderWork The estimated work of the order (in ms), from the end of the queued work.
+   * @return The estimated deadline.
+   */
+  public Instant estimateQueuedDeadline(String orderName, String vehicleName, long orderWork) {
+    requireNonNull(orderName, "orderName");
+    requireNonNull(vehicleName, "vehicleName");
+
+    Instant now = Instant.now();
+    vehicleWorkload.remove(orderName);
+    long queuedWork = vehicleWorkload.getQueuedWork(vehicleName);
+    vehicleWorkload.add(vehicleName, orderName, orderWork);
+    return deadline(now, queuedWork + orderWork);
+  }
+
+  private Instant deadline(Instant now, long work) {
+    long duration = (long) Math.ceil(work * slackFactor);
+    return now.plusMillis(duration).plus(slackOffset);
+  }
+
+  private long approachTime(String vehicleName, String loadingLocation) {
+    CachedVehicle vehicle = vehicleStateCache.getVehicle(vehicleName);
+    if (vehicle == null || vehicle.getCurrentPosition() == null) {
+      return 0;
+    }
+    return travelTimeEstimator.estimateTravelTime(vehicle.getCurrentPosition(), loadingLocation)
+        .orElse(0);
+  }
+}
@@ -0,0 +1,388 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.order;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import static java.util.Objects.requireNonNull;
+import java.util.OptionalLong;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.httpclient.v1.assignment.TravelTimeEstimator;
+import org.httpclient.v1.assignment.VehicleStateCache;
+import org.httpclient.v1.assignment.VehicleStateCache.CachedVehicle;
+import org.httpclient.v1.order.binding.Transport;
+import static org.openTcs.util.Assertions.checkArgument;
+import static org.openTcs.util.Assertions.checkInRange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bundles transport orders with nearby loading locations into chains processed by one vehicle.
+ * <p>
+ * Orders are collected for a short window.
+ * Each window's orders are then clustered around the oldest remaining order: orders whose loading
+ * location is within a maximum travel time of the cluster's first loading location join it, in
+ * nearest-neighbour order from the previous order's unloading location.
+ * Like the orders in an {@link org.openTcs.data.order.OrderSequence}, the orders of a chain share
+ * the same intended vehicle and are processed one after the other - each order depends on its
+ * predecessor, and it is passed downstream only after its predecessor has been accepted by the
+ * kernel.
+ * If a predecessor is rejected, its successor is passed on without the dependency instead.
+ * </p>
+ * <p>
+ * The empty travel time saved is estimated as the difference between the approach of each
+ * successor's originally intended vehicle and the travel time from the predecessor's unloading
+ * location.
+ * A successor's deadline is estimated anew for the chain's vehicle, behind the work queued for it
+ * up to and including the predecessor; the successor's reservation and queued work move from its
+ * originally selected vehicle to the chain's vehicle.
+ * To be informed about completed submissions, this instance needs to be registered as a
+ * {@link SubmissionListener} with the submission queue.
+ * </p>
+ *
+ * @author zzw
+ */
+public class OrderBundler
+    implements TransportSink,
+               SubmissionListener {
+
+  /**
+   * This class's logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(OrderBundler.class);
+  /**
+   * The downstream sink.
+   */
+  private final TransportSink downstream;
+  /**
+   * Estimates travel times between points/locations.
+   */
+  private final TravelTimeEstimator travelTimeEstimator;
+  /**
+   * Provides the vehicles' current positions and reserves them for orders.
+   */
+  private final VehicleStateCache vehicleStateCache;
+  /**
+   * Estimates the deadlines of orders moved to a chain's vehicle.
+   */
+  private final DeadlineEstimator deadlineEstimator;
+  /**
+   * The time orders are collected for (in ms).
+   */
+  private final long windowMillis;
+  /**
+   * The maximum travel time between the loading locations of a chain's orders (in ms).
+   */
+  private final long maxLoadingTravelTime;
+  /**
+   * The maximum number of orders in a chain.
+   */
+  private final int maxChainLength;
+  /**
+   * Flushes the collected orders at the end of each window.
+   */
+  private final ScheduledExecutorService executor;
+  /**
+   * The orders collected in the current window.
+   */
+  private final List<BundledOrder> collected = new ArrayList<>();
+  /**
+   * The remainders of chains, by the name of the order they are waiting for.
+   */
+  private final Map<String, Deque<BundledOrder>> waitingChains = new HashMap<>();
+  /**
+   * The number of chains created.
+   */
+  private long chainCount;
+  /**
+   * The number of orders added to chains as successors.
+   */
+  private long chainedOrderCount;
+  /**
+   * The estimated empty travel time saved (in ms).
+   */
+  private long travelTimeSaved;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param downstream The downstream sink.
+   * @param travelTimeEstimator Estimates travel times between points/locations.
+   * @param vehicleStateCache Provides the vehicles' current positions and reserves them for
+   * orders.
+   * @param deadlineEstimator Estimates the deadlines of orders moved to a chain's vehicle.
+   * @param window The time orders are collected for.
+   * @param maxLoadingTravelTime The maximum travel time between the loading locations of a chain's
+   * orders.
+   * @param maxChainLength The maximum number of orders in a chain.
+   */
+  public OrderBundler(TransportSink downstream,
+                      TravelTimeEstimator travelTimeEstimator,
+                      VehicleStateCache vehicleStateCache,
+                      DeadlineEstimator deadlineEstimator,
+                      Duration window,
+                      Duration maxLoadingTravelTime,
+                      int maxChainLength) {
+    this.downstream = requireNonNull(downstream, "downstream");
+    this.travelTimeEstimator = requireNonNull(travelTimeEstimator, "travelTimeEstimator");
+    this.vehicleStateCache = requireNonNull(vehicleStateCache, "vehicleStateCache");
+    this.deadlineEstimator = requireNonNull(deadlineEstimator, "deadlineEstimator");
+    this.windowMillis = requireNonNull(window, "window").toMillis();
+    this.maxLoadingTravelTime = requireNonNull(maxLoadingTravelTime, "maxLoadingTravelTime")
+        .toMillis();
+    this.maxChainLength = checkInRange(maxChainLength, 1, Integer.MAX_VALUE, "maxChainLength");
+    checkArgument(windowMillis > 0, "window <= 0: %s", window);
+    checkArgument(this.maxLoadingTravelTime >= 0,
+                  "maxLoadingTravelTime < 0: %s",
+                  maxLoadingTravelTime);
+    this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "order-bundler");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Stops bundling.
+   * Orders still being collected are bundled and passed downstream immediately.
+   */
+  public void terminate() {
+    synchronized (this) {
+      executor.shutdown();
+    }
+    flush();
+  }
+
+  @Override
+  public void submit(String orderName, Transport transport) {
+    requireNonNull(orderName, "orderName");
+    requireNonNull(transport, "transport");
+
+    if (transport.getDestinations() == null
+        || transport.getDestinations().isEmpty()
+        || transport.getDestinations().get(0).getLocationName() == null
+        || transport.getDestinations().get(transport.getDestinations().size() - 1)
+            .getLocationName() == null) {
+      downstream.submit(orderName, transport);
+      return;
+    }
+
+    synchronized (this) {
+      if (!executor.isShutdown()) {
+        collected.add(new BundledOrder(orderName, transport));
+        if (collected.size() == 1) {
+          executor.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+        }
+        return;
+      }
+    }
+    downstream.submit(orderName, transport);
+  }
+
+  @Override
+  public void onSubmitted(String orderName, boolean accepted) {
+    BundledOrder next;
+    synchronized (this) {
+      Deque<BundledOrder> chain = waitingChains.remove(orderName);
+      if (chain == null) {
+        return;
+      }
+      next = chain.poll();
+      if (!accepted) {
+        LOG.debug("Predecessor {} of {} rejected, passing on without dependency",
+                  orderName,
+                  next.orderName);
+        next.transport.getDependencies().remove(orderName);
+      }
+      if (!chain.isEmpty()) {
+        waitingChains.put(next.orderName, chain);
+      }
+    }
+    downstream.submit(next.orderName, next.transport);
+  }
+
+  /**
+   * Returns the number of chains created so far.
+   *
+   * @return The number of chains created so far.
+   */
+  public synchronized long getChainCount() {
+    return chainCount;
+  }
+
+  /**
+   * Returns the number of orders added to chains as successors so far.
+   *
+   * @return The number of orders added to chains as successors so far.
+   */
+  public synchronized long getChainedOrderCount() {
+    return chainedOrderCount;
+  }
+
+  /**
+   * Returns the estimated empty travel time saved by chaining orders so far.
+   *
+   * @return The estimated empty travel time saved.
+   */
+  public synchronized Duration getEstimatedTravelTimeSaved() {
+    return Duration.ofMillis(travelTimeSaved);
+  }
+
+  private void flush() {
+    List<BundledOrder> heads = new ArrayList<>();
+    synchronized (this) {
+      List<BundledOrder> remaining = new LinkedList<>(collected);
+      collected.clear();
+      while (!remaining.isEmpty()) {
+        List<BundledOrder> chain = buildChain(remaining);
+        heads.add(chain.get(0));
+        if (chain.size() > 1) {
+          waitingChains.put(chain.get(0).orderName, new ArrayDeque<>(chain.subList(1, chain.size())));
+        }
+      }
+    }
+    for (BundledOrder head : heads) {
+      downstream.submit(head.orderName, head.transport);
+    }
+  }
+
+  /**
+   * Removes the oldest order and the orders chained to it from the given list.
+   *
+   * @param remaining The orders not yet processed, oldest first.
+   * @return The chain, starting with the oldest order.
+   */
+  private List<BundledOrder> buildChain(List<BundledOrder> remaining) {
+    List<BundledOrder> chain = new ArrayList<>();
+    BundledOrder head = remaining.remove(0);
+    chain.add(head);
+
+    String vehicleName = head.transport.getIntendedVehicle();
+    if (vehicleName == null || maxChainLength == 1) {
+      // Without a vehicle, the orders could be processed by different vehicles.
+      return chain;
+    }
+
+    List<BundledOrder> candidates = new ArrayList<>();
+    for (BundledOrder order : remaining) {
+      OptionalLong distance = travelTimeEstimator.estimateTravelTime(head.loadingLocation,
+                                                                     order.loadingLocation);
+      if (distance.isPresent() && distance.getAsLong() <= maxLoadingTravelTime) {
+        candidates.add(order);
+      }
+    }
+
+    long chainSaved = 0;
+    BundledOrder current = head;
+    while (chain.size() < maxChainLength && !candidates.isEmpty()) {
+      BundledOrder nearest = null;
+      long nearestTime = Long.MAX_VALUE;
+      for (BundledOrder candidate : candidates) {
+        OptionalLong time = travelTimeEstimator.estimateTravelTime(current.unloadingLocation,
+                                                                   candidate.loadingLocation);
+        if (time.isPresent() && time.getAsLong() < nearestTime) {
+          nearest = candidate;
+          nearestTime = time.getAsLong();
+        }
+      }
+      if (nearest == null) {
+        break;
+      }
+      candidates.remove(nearest);
+      remaining.remove(nearest);
+      chainSaved += Math.max(0, approachTime(nearest) - nearestTime);
+      chainTo(nearest, current, vehicleName, nearestTime);
+      chain.add(nearest);
+      current = nearest;
+    }
+
+    if (chain.size() > 1) {
+      chainCount++;
+      chainedOrderCount += chain.size() - 1;
+      travelTimeSaved += chainSaved;
+      LOG.info("Chained {} orders for vehicle {}, estimated empty travel saved: {} ms",
+               chain.size(),
+               vehicleName,
+               chainSaved);
+    }
+    return chain;
+  }
+
+  private void chainTo(BundledOrder order,
+                       BundledOrder predecessor,
+                       String vehicleName,
+                       long emptyTravelTime) {
+    if (order.transport.getDependencies() == null) {
+      order.transport.setDependencies(new LinkedList<>());
+    }
+    order.transport.getDependencies().add(predecessor.orderName);
+    String originalVehicleName = order.transport.getIntendedVehicle();
+    order.transport.setIntendedVehicle(vehicleName);
+    // Move the reservation to the chain's vehicle, which stays reserved until it processes the
+    // order, and free the originally selected vehicle for other orders.
+    if (originalVehicleName == null || !originalVehicleName.equals(vehicleName)) {
+      vehicleStateCache.markAssigned(vehicleName, order.orderName);
+    }
+
+    // Move the order's work to the chain's vehicle, behind its predecessor; this removes it from
+    // the originally selected vehicle's workload.
+    long transitTime = travelTimeEstimator.estimateTravelTime(order.loadingLocation,
+                                                              order.unloadingLocation)
+        .orElse(0);
+    order.transport.setDeadline(
+        deadlineEstimator.estimateQueuedDeadline(order.orderName,
+                                                 vehicleName,
+                                                 emptyTravelTime + transitTime));
+  }
+
+  /**
+   * Returns the approach time of the given order's originally intended vehicle.
+   *
+   * @param order The order.
+   * @return The approach time (in ms), or 0, if it cannot be estimated.
+   */
+  private long approachTime(BundledOrder order) {
+    String vehicleName = order.transport.getIntendedVehicle();
+    if (vehicleName == null) {
+      return 0;
+    }
+    CachedVehicle vehicle = vehicleStateCache.getVehicle(vehicleName);
+    if (vehicle == null || vehicle.getCurrentPosition() == null) {
+      return 0;
+    }
+    return travelTimeEstimator.estimateTravelTime(vehicle.getCurrentPosition(),
+                                                  order.loadingLocation)
+        .orElse(0);
+  }
+
+  /**
+   * A transport order collected for bundling.
+   */
+  private static class BundledOrder {
+
+    private final String orderName;
+    private final Transport transport;
+    private final String loadingLocation;
+    private final String unloadingLocation;
+
+    BundledOrder(String orderName, Transport transport) {
+      this.orderName = orderName;
+      this.transport = transport;
+      this.loadingLocation = transport.getDestinations().get(0).getLocationName();
+      this.unloadingLocation = transport.getDestinations()
+          .get(transport.getDestinations().size() - 1)
+          .getLocationName();
+    }
+  }
+}
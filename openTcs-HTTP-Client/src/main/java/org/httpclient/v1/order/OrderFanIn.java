@@ -0,0 +1,174 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.order;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import static java.util.Objects.requireNonNull;
+import java.util.Set;
+import org.httpclient.v1.order.binding.Transport;
+import static org.openTcs.util.Assertions.checkInRange;
+
+/**
+ * Merges the transport orders of several {@link OrderSource}s into a single downstream sink.
+ * <p>
+ * Each source has its own backlog.
+ * Orders are passed on round-robin across the sources' backlogs, and only as long as fewer than a
+ * maximum number of passed orders still await submission to the kernel.
+ * A source delivering a large burst therefore only delays its own orders, while the others keep
+ * getting their share of the pipeline.
+ * To be informed about completed submissions, this instance needs to be registered as a
+ * {@link SubmissionListener} with the submission queue.
+ * </p>
+ *
+ * @author zzw
+ */
+public class OrderFanIn
+    implements SubmissionListener {
+
+  /**
+   * The downstream sink.
+   */
+  private final TransportSink downstream;
+  /**
+   * The maximum number of orders passed downstream and not yet submitted.
+   */
+  private final int maxOutstanding;
+  /**
+   * The backlog size at which a source should not be polled any more.
+   */
+  private final int maxBacklog;
+  /**
+   * The sources' backlogs, in round-robin order.
+   */
+  private final List<Backlog> backlogs = new ArrayList<>();
+  /**
+   * The names of the orders passed downstream and not yet submitted.
+   */
+  private final Set<String> outstanding = new HashSet<>();
+  /**
+   * The index of the backlog to take the next order from.
+   */
+  private int nextBacklog;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param downstream The downstream sink.
+   * @param maxOutstanding The maximum number of orders passed downstream and not yet submitted.
+   * @param maxBacklog The backlog size at which a source should not be polled any more.
+   */
+  public OrderFanIn(TransportSink downstream, int maxOutstanding, int maxBacklog) {
+    this.downstream = requireNonNull(downstream, "downstream");
+    this.maxOutstanding = checkInRange(maxOutstanding, 1, Integer.MAX_VALUE, "maxOutstanding");
+    this.maxBacklog = checkInRange(maxBacklog, 1, Integer.MAX_VALUE, "maxBacklog");
+  }
+
+  /**
+   * Returns the input for the given source.
+   *
+   * @param sourceName The source's name.
+   * @return The input for the given source.
+   */
+  public synchronized TransportSink inputFor(String sourceName) {
+    requireNonNull(sourceName, "sourceName");
+
+    for (Backlog backlog : backlogs) {
+      if (backlog.sourceName.equals(sourceName)) {
+        return backlog;
+      }
+    }
+    Backlog backlog = new Backlog(sourceName);
+    backlogs.add(backlog);
+    return backlog;
+  }
+
+  /**
+   * Checks whether the given source's backlog has room for more orders.
+   * Sources without room should not be polled until their backlog has been worked off.
+   *
+   * @param sourceName The source's name.
+   * @return <code>true</code> if, and only if, the source's backlog has room for more orders.
+   */
+  public synchronized boolean hasCapacity(String sourceName) {
+    requireNonNull(sourceName, "sourceName");
+
+    for (Backlog backlog : backlogs) {
+      if (backlog.sourceName.equals(sourceName)) {
+        return backlog.orders.size() < maxBacklog;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void onSubmitted(String orderName, boolean accepted) {
+    synchronized (this) {
+      if (outstanding.remove(orderName)) {
+        pump();
+      }
+    }
+  }
+
+  private void offer(Backlog backlog, String orderName, Transport transport) {
+    synchronized (this) {
+      backlog.orders.add(new QueuedOrder(orderName, transport));
+      pump();
+    }
+  }
+
+  private void pump() {
+    int emptyBacklogs = 0;
+    while (outstanding.size() < maxOutstanding && emptyBacklogs < backlogs.size()) {
+      Backlog backlog = backlogs.get(nextBacklog);
+      nextBacklog = (nextBacklog + 1) % backlogs.size();
+      QueuedOrder order = backlog.orders.poll();
+      if (order == null) {
+        emptyBacklogs++;
+        continue;
+      }
+      emptyBacklogs = 0;
+      outstanding.add(order.orderName);
+      downstream.submit(order.orderName, order.transport);
+    }
+  }
+
+  /**
+   * A source's backlog.
+   */
+  private class Backlog
+      implements TransportSink {
+
+    private final String sourceName;
+    private final Deque<QueuedOrder> orders = new ArrayDeque<>();
+
+    Backlog(String sourceName) {
+      this.sourceName = sourceName;
+    }
+
+    @Override
+    public void submit(String orderName, Transport transport) {
+      offer(this, requireNonNull(orderName, "orderName"), requireNonNull(transport, "transport"));
+    }
+  }
+
+  /**
+   * An order waiting in a backlog.
+   */
+  private static class QueuedOrder {
+
+    private final String orderName;
+    private final Transport transport;
+
+    QueuedOrder(String orderName, Transport transport) {
+      this.orderName = orderName;
+      this.transport = transport;
+    }
+  }
+}
@@ -0,0 +1,279 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.order;
+
+import java.time.Instant;
+import javax.annotation.Nullable;
+import org.httpclient.v1.order.OrderStore.StoredOrder;
+import org.httpclient.v1.status.filter.TransportOrderFilter;
+import static org.openTcs.util.Assertions.checkArgument;
+import org.openTcs.data.order.TransportOrder;
+
+/**
+ * A query for transport orders in an {@link OrderStore}.
+ * <p>
+ * All criteria set must be met; criteria not set (<code>null</code>) match any order.
+ * Instances are immutable; criteria are set by creating modified copies.
+ * </p>
+ *
+ * @author zzw
+ */
+public class OrderQuery {
+
+  /**
+   * The requested state.
+   */
+  @Nullable
+  private final TransportOrder.State state;
+  /**
+   * The name of the requested intended vehicle.
+   */
+  @Nullable
+  private final String intendedVehicle;
+  /**
+   * The name of the requested processing vehicle.
+   */
+  @Nullable
+  private final String processingVehicle;
+  /**
+   * The requested type.
+   */
+  @Nullable
+  private final String type;
+  /**
+   * The earliest requested deadline (inclusive).
+   */
+  @Nullable
+  private final Instant deadlineFrom;
+  /**
+   * The latest requested deadline (exclusive).
+   */
+  @Nullable
+  private final Instant deadlineTo;
+
+  /**
+   * Creates a new instance matching all transport orders.
+   */
+  public OrderQuery() {
+    this(null, null, null, null, null, null);
+  }
+
+  private OrderQuery(@Nullable TransportOrder.State state,
+                     @Nullable String intendedVehicle,
+                     @Nullable String processingVehicle,
+                     @Nullable String type,
+                     @Nullable Instant deadlineFrom,
+                     @Nullable Instant deadlineTo) {
+    this.state = state;
+    this.intendedVehicle = intendedVehicle;
+    this.processingVehicle = processingVehicle;
+    this.type = type;
+    this.deadlineFrom = deadlineFrom;
+    this.deadlineTo = deadlineTo;
+  }
+
+  /**
+   * Creates a query equivalent to the given filter.
+   *
+   * @param filter The filter.
+   * @return The query.
+   */
+  public static OrderQuery fromFilter(TransportOrderFilter filter) {
+    return new OrderQuery().withIntendedVehicle(filter.getIntendedVehicle());
+  }
+
+  /**
+   * Returns the requested state.
+   *
+   * @return The requested state, or <code>null</code>, if any state is requested.
+   */
+  @Nullable
+  public TransportOrder.State getState() {
+    return state;
+  }
+
+  /**
+   * Returns a copy of this query requesting the given state.
+   *
+   * @param state The state, or <code>null</code> for any.
+   * @return A copy of this query requesting the given state.
+   */
+  public OrderQuery withState(@Nullable TransportOrder.State state) {
+    return new OrderQuery(state,
+                          intendedVehicle,
+                          processingVehicle,
+                          type,
+                          deadlineFrom,
+                          deadlineTo);
+  }
+
+  /**
+   * Returns the name of the requested intended vehicle.
+   *
+   * @return The name of the requested intended vehicle, or <code>null</code>.
+   */
+  @Nullable
+  public String getIntendedVehicle() {
+    return intendedVehicle;
+  }
+
+  /**
+   * Returns a copy of this query requesting the given intended vehicle.
+   *
+   * @param intendedVehicle The name of the intended vehicle, or <code>null</code> for any.
+   * @return A copy of this query requesting the given intended vehicle.
+   */
+  public OrderQuery withIntendedVehicle(@Nullable String intendedVehicle) {
+    return new OrderQuery(state,
+                          intendedVehicle,
+                          processingVehicle,
+                          type,
+                          deadlineFrom,
+                          deadlineTo);
+  }
+
+  /**
+   * Returns the name of the requested processing vehicle.
+   *
+   * @return The name of the requested processing vehicle, or <code>null</code>.
+   */
+  @Nullable
+  public String getProcessingVehicle() {
+    return processingVehicle;
+  }
+
+  /**
+   * Returns a copy of this query requesting the given processing vehicle.
+   *
+   * @param processingVehicle The name of the processing vehicle, or <code>null</code> for any.
+   * @return A copy of this query requesting the given processing vehicle.
+   */
+  public OrderQuery withProcessingVehicle(@Nullable String processingVehicle) {
+    return new OrderQuery(state,
+                          intendedVehicle,
+                          processingVehicle,
+                          type,
+                          deadlineFrom,
+                          deadlineTo);
+  }
+
+  /**
+   * Returns the requested type.
+   *
+   * @return The requested type, or <code>null</code>.
+   */
+  @Nullable
+  public String getType() {
+    return type;
+  }
+
+  /**
+   * Returns a copy of this query requesting the given type.
+   *
+   * @param type The type, or <code>null</code> for any.
+   * @return A copy of this query requesting the given type.
+   */
+  public OrderQuery withType(@Nullable String type) {
+    return new OrderQuery(state,
+                          intendedVehicle,
+                          processingVehicle,
+                          type,
+                          deadlineFrom,
+                          deadlineTo);
+  }
+
+  /**
+   * Returns the earliest requested deadline (inclusive).
+   *
+   * @return The earliest requested deadline, or <code>null</code>.
+   */
+  @Nullable
+  public Instant getDeadlineFrom() {
+    return deadlineFrom;
+  }
+
+  /**
+   * Returns the latest requested deadline (exclusive).
+   *
+   * @return The latest requested deadline, or <code>null</code>.
+   */
+  @Nullable
+  public Instant getDeadlineTo() {
+    return deadlineTo;
+  }
+
+  /**
+   * Returns a copy of this query requesting orders with deadlines in the given range.
+   * Orders without a deadline never match a deadline range.
+   *
+   * @param deadlineFrom The earliest deadline (inclusive), or <code>null</code> for no lower bound.
+   * @param deadlineTo The latest deadline (exclusive), or <code>null</code> for no upper bound.
+   * @return A copy of this query requesting orders with deadlines in the given range.
+   */
+  public OrderQuery withDeadlineRange(@Nullable Instant deadlineFrom, @Nullable Instant deadlineTo) {
+    checkArgument(deadlineFrom == null || deadlineTo == null || !deadlineTo.isBefore(deadlineFrom),
+                  "deadlineTo %s before deadlineFrom %s",
+                  deadlineTo,
+                  deadlineFrom);
+    return new OrderQuery(state,
+                          intendedVehicle,
+                          processingVehicle,
+                          type,
+                          deadlineFrom,
+                          deadlineTo);
+  }
+
+  /**
+   * Checks whether this query requests a deadline range.
+   *
+   * @return <code>true</code> if this query requests a deadline range.
+   */
+  public boolean hasDeadlineRange() {
+    return deadlineFrom != null || deadlineTo != null;
+  }
+
+  /**
+   * Checks whether the given order meets all criteria of this query.
+   *
+   * @param order The order.
+   * @return <code>true</code> if the given order meets all criteria of this query.
+   */
+  public boolean test(StoredOrder order) {
+    if (state != null && state != order.getState()) {
+      return false;
+    }
+    if (intendedVehicle != null && !intendedVehicle.equals(order.getIntendedVehicle())) {
+      return false;
+    }
+    if (processingVehicle != null && !processingVehicle.equals(order.getProcessingVehicle())) {
+      return false;
+    }
+    if (type != null && !type.equals(order.getType())) {
+      return false;
+    }
+    if (hasDeadlineRange()) {
+      Instant deadline = order.getDeadline();
+      if (deadline == null
+          || (deadlineFrom != null && deadline.isBefore(deadlineFrom))
+          || (deadlineTo != null && !deadline.isBefore(deadlineTo))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return "OrderQuery{"
+        + "state=" + state
+        + ", intendedVehicle=" + intendedVehicle
+        + ", processingVehicle=" + processingVehicle
+        + ", type=" + type
+        + ", deadlineFrom=" + deadlineFrom
+        + ", deadlineTo=" + deadlineTo
+        + '}';
+  }
+}
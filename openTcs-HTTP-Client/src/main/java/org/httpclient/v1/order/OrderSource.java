@@ -0,0 +1,232 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.order;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import static java.util.Objects.requireNonNull;
+import java.nio.charset.StandardCharsets;
+import javax.annotation.Nullable;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.httpclient.v1.replay.PayloadLog;
+import org.httpclient.v1.replay.PayloadRecorder;
+import static org.openTcs.util.Assertions.checkArgument;
+import static org.openTcs.util.Assertions.checkInRange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An upstream system (e.g. a WMS or MES) that transport orders are polled from.
+ * <p>
+ * Each source has its own connection pool, so a slow source does not hold up connections to the
+ * others, and its own adaptive poll interval: after a poll that returned orders, the source is
+ * polled again after the minimum interval; after empty or failed polls, the interval is doubled up
+ * to the maximum interval.
+ * </p>
+ *
+ * @author zzw
+ */
+public class OrderSource
+    implements Closeable {
+
+  /**
+   * This class's logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(OrderSource.class);
+  /**
+   * The source's name.
+   */
+  private final String name;
+  /**
+   * The URL orders are polled from.
+   */
+  private final String url;
+  /**
+   * The minimum time between two polls (in ns).
+   */
+  private final long minIntervalNanos;
+  /**
+   * The maximum time between two polls (in ns).
+   */
+  private final long maxIntervalNanos;
+  /**
+   * The connection pool.
+   */
+  private final PoolingHttpClientConnectionManager connectionManager;
+  /**
+   * The HTTP client using the connection pool.
+   */
+  private final CloseableHttpClient httpClient;
+  /**
+   * The current time between two polls (in ns).
+   */
+  private long intervalNanos;
+  /**
+   * The time of the next poll (in ns).
+   */
+  private long nextPollTime = System.nanoTime();
+  /**
+   * Records the responses, if set.
+   */
+  @Nullable
+  private volatile PayloadRecorder payloadRecorder;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param name The source's name.
+   * @param url The URL orders are polled from.
+   * @param minInterval The minimum time between two polls.
+   * @param maxInterval The maximum time between two polls.
+   * @param maxConnections The maximum number of connections to the source.
+   * @param timeout The connect and read timeout.
+   */
+  public OrderSource(String name,
+                     String url,
+                     Duration minInterval,
+                     Duration maxInterval,
+                     int maxConnections,
+                     Duration timeout) {
+    this.name = requireNonNull(name, "name");
+    this.url = requireNonNull(url, "url");
+    this.minIntervalNanos = requireNonNull(minInterval, "minInterval").toNanos();
+    this.maxIntervalNanos = requireNonNull(maxInterval, "maxInterval").toNanos();
+    checkArgument(minIntervalNanos > 0, "minInterval <= 0: %s", minInterval);
+    checkArgument(maxIntervalNanos >= minIntervalNanos,
+                  "maxInterval < minInterval: %s",
+                  maxInterval);
+    checkInRange(maxConnections, 1, Integer.MAX_VALUE, "maxConnections");
+    requireNonNull(timeout, "timeout");
+
+    this.intervalNanos = minIntervalNanos;
+    this.connectionManager = new PoolingHttpClientConnectionManager();
+    this.connectionManager.setMaxTotal(maxConnections);
+    this.connectionManager.setDefaultMaxPerRoute(maxConnections);
+    this.httpClient = HttpClients.custom()
+        .setConnectionManager(connectionManager)
+        .setDefaultRequestConfig(RequestConfig.custom()
+            .setConnectTimeout((int) timeout.toMillis())
+            .setConnectionRequestTimeout((int) timeout.toMillis())
+            .setSocketTimeout((int) timeout.toMillis())
+            .build())
+        .build();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  /**
+   * Returns the minimum time between two polls.
+   *
+   * @return The minimum time between two polls.
+   */
+  public Duration getMinInterval() {
+    return Duration.ofNanos(minIntervalNanos);
+  }
+
+  /**
+   * Returns the current time between two polls.
+   *
+   * @return The current time between two polls.
+   */
+  public synchronized Duration getCurrentInterval() {
+    return Duration.ofNanos(intervalNanos);
+  }
+
+  /**
+   * Checks whether this source is due to be polled again.
+   *
+   * @return <code>true</code> if, and only if, the current poll interval has passed since the last
+   * poll.
+   */
+  public synchronized boolean isDue() {
+    return System.nanoTime() - nextPollTime >= 0;
+  }
+
+  /**
+   * Sets the recorder the responses are recorded with.
+   *
+   * @param payloadRecorder The recorder, or <code>null</code> to stop recording.
+   */
+  public void setPayloadRecorder(@Nullable PayloadRecorder payloadRecorder) {
+    this.payloadRecorder = payloadRecorder;
+  }
+
+  /**
+   * Polls this source for orders.
+   *
+   * @return The response body, or <code>null</code>, if the request failed.
+   */
+  @Nullable
+  public String poll() {
+    HttpGet httpGet = new HttpGet(url);
+    try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
+      HttpEntity entity = response.getEntity();
+      String body = entity == null ? null : EntityUtils.toString(entity, "UTF-8");
+      if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+        LOG.debug("Order source {} responded with {}", name, response.getStatusLine());
+        return null;
+      }
+      PayloadRecorder recorder = payloadRecorder;
+      if (recorder != null && body != null) {
+        byte[] payload = body.getBytes(StandardCharsets.UTF_8);
+        recorder.record(PayloadLog.Kind.ORDERS, name, payload, payload.length);
+      }
+      return body;
+    }
+    catch (IOException exc) {
+      LOG.debug("Polling order source {} failed", name, exc);
+      return null;
+    }
+  }
+
+  /**
+   * Adapts the poll interval to the result of the last poll.
+   *
+   * @param orderCount The number of orders received, or a negative value, if the poll failed.
+   */
+  public synchronized void recordPollResult(int orderCount) {
+    if (orderCount > 0) {
+      intervalNanos = minIntervalNanos;
+    }
+    else {
+      intervalNanos = Math.min(maxIntervalNanos, intervalNanos * 2);
+    }
+    nextPollTime = System.nanoTime() + intervalNanos;
+  }
+
+  @Override
+  public void close() {
+    try {
+      httpClient.close();
+    }
+    catch (IOException exc) {
+      LOG.warn("Exception closing HTTP client for order source {}", name, exc);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "OrderSource{"
+        + "name=" + name
+        + ", url=" + url
+        + '}';
+  }
+}
@@ -0,0 +1,602 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.order;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import static java.util.Objects.requireNonNull;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import org.httpclient.v1.order.binding.Transport;
+import org.httpclient.v1.status.StatusEventConsumer;
+import org.httpclient.v1.status.binding.OrderStatusMessage;
+import org.httpclient.v1.status.binding.StatusMessage;
+import org.httpclient.v1.status.binding.StatusMessageList;
+import org.httpclient.v1.status.binding.TransportOrderState;
+import org.httpclient.v1.status.filter.TransportOrderFilter;
+import org.openTcs.data.order.TransportOrder;
+import static org.openTcs.util.Assertions.checkInRange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in-memory store of transport orders, indexed by state, intended vehicle, processing vehicle,
+ * type and deadline.
+ * <p>
+ * The store is kept up to date from {@link OrderStatusMessage}s and {@link TransportOrderState}s
+ * as a {@link StatusEventConsumer}.
+ * Deadlines are not part of the kernel's status data; they are recorded from the transport orders
+ * passing through this store, as a {@link TransportSink}, on their way to the kernel.
+ * Orders passing through are stored right away; to have orders the kernel rejected removed again,
+ * this instance needs to be registered as a {@link SubmissionListener} with the submission queue.
+ * </p>
+ * <p>
+ * Queries are planned against the indexes instead of being evaluated against every order: of all
+ * index buckets selected by the query's criteria, the smallest one is scanned and only its orders
+ * are checked against the remaining criteria.
+ * Orders in a final state are retained up to a maximum number, the oldest ones being evicted
+ * first.
+ * Orders that are unknown and already in a final state, e.g. finished orders reported by the
+ * kernel's snapshot after a resync, are not stored at all, so they neither exceed the maximum nor
+ * evict orders that finished while being tracked.
+ * </p>
+ *
+ * @author zzw
+ */
+public class OrderStore
+    implements StatusEventConsumer,
+               SubmissionListener,
+               TransportSink {
+
+  /**
+   * This class's logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(OrderStore.class);
+  /**
+   * The downstream sink.
+   */
+  private final TransportSink downstream;
+  /**
+   * The maximum number of orders in a final state retained.
+   */
+  private final int maxRetainedFinalOrders;
+  /**
+   * Guards the orders and indexes.
+   */
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  /**
+   * The orders, by name.
+   */
+  private final Map<String, StoredOrder> orders = new HashMap<>();
+  /**
+   * The state index.
+   */
+  private final Index<TransportOrder.State> stateIndex
+      = new Index<>(new EnumMap<>(TransportOrder.State.class), StoredOrder::getState);
+  /**
+   * The intended vehicle index.
+   */
+  private final Index<String> intendedVehicleIndex
+      = new Index<>(new HashMap<>(), StoredOrder::getIntendedVehicle);
+  /**
+   * The processing vehicle index.
+   */
+  private final Index<String> processingVehicleIndex
+      = new Index<>(new HashMap<>(), StoredOrder::getProcessingVehicle);
+  /**
+   * The type index.
+   */
+  private final Index<String> typeIndex = new Index<>(new HashMap<>(), StoredOrder::getType);
+  /**
+   * The deadline index's buckets, sorted for range scans.
+   */
+  private final NavigableMap<Instant, Set<String>> deadlineBuckets = new TreeMap<>();
+  /**
+   * The deadline index.
+   */
+  private final Index<Instant> deadlineIndex
+      = new Index<>(deadlineBuckets, StoredOrder::getDeadline);
+  /**
+   * The names of the orders in a final state, in the order they reached it.
+   */
+  private final Deque<String> finalOrders = new ArrayDeque<>();
+  /**
+   * The number of unknown orders not stored because they were already in a final state.
+   */
+  private long droppedFinalOrderCount;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param downstream The downstream sink.
+   * @param maxRetainedFinalOrders The maximum number of orders in a final state retained.
+   */
+  public OrderStore(TransportSink downstream, int maxRetainedFinalOrders) {
+    this.downstream = requireNonNull(downstream, "downstream");
+    this.maxRetainedFinalOrders = checkInRange(maxRetainedFinalOrders,
+                                               0,
+                                               Integer.MAX_VALUE,
+                                               "maxRetainedFinalOrders");
+  }
+
+  @Override
+  public void submit(String orderName, Transport transport) {
+    requireNonNull(orderName, "orderName");
+    requireNonNull(transport, "transport");
+
+    lock.writeLock().lock();
+    try {
+      update(StoredOrder.fromTransport(orderName, transport, orders.get(orderName)));
+    }
+    finally {
+      lock.writeLock().unlock();
+    }
+    downstream.submit(orderName, transport);
+  }
+
+  @Override
+  public void onSubmitted(String orderName, boolean accepted) {
+    if (accepted) {
+      return;
+    }
+
+    lock.writeLock().lock();
+    try {
+      StoredOrder order = orders.get(orderName);
+      // Only remove the order if the kernel has never reported it, i.e. not a kernel order with the
+      // same name.
+      if (order != null && order.getState() == TransportOrder.State.RAW) {
+        remove(order);
+      }
+    }
+    finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void onEvent(Object event, long sequence, boolean endOfBatch) {
+    if (event instanceof OrderStatusMessage) {
+      lock.writeLock().lock();
+      try {
+        onStatusMessage((OrderStatusMessage) event);
+      }
+      finally {
+        lock.writeLock().unlock();
+      }
+    }
+    else if (event instanceof TransportOrderState) {
+      TransportOrderState state = (TransportOrderState) event;
+      lock.writeLock().lock();
+      try {
+        update(StoredOrder.fromTransportOrderState(state, orders.get(state.getName())));
+      }
+      finally {
+        lock.writeLock().unlock();
+      }
+    }
+    else if (event instanceof StatusMessageList) {
+      lock.writeLock().lock();
+      try {
+        for (StatusMessage message : ((StatusMessageList) event).getStatusMessages()) {
+          if (message instanceof OrderStatusMessage) {
+            onStatusMessage((OrderStatusMessage) message);
+          }
+        }
+      }
+      finally {
+        lock.writeLock().unlock();
+      }
+    }
+  }
+
+  /**
+   * Returns the order with the given name.
+   *
+   * @param orderName The order's name.
+   * @return The order, or <code>null</code>, if nothing is known about it.
+   */
+  @Nullable
+  public StoredOrder getOrder(String orderName) {
+    requireNonNull(orderName, "orderName");
+
+    lock.readLock().lock();
+    try {
+      return orders.get(orderName);
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the number of orders stored.
+   *
+   * @return The number of orders stored.
+   */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return orders.size();
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the number of unknown orders that were not stored because they were already in a
+   * final state.
+   *
+   * @return The number of unknown orders not stored.
+   */
+  public long getDroppedFinalOrderCount() {
+    lock.readLock().lock();
+    try {
+      return droppedFinalOrderCount;
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the orders accepted by the given filter, using the intended vehicle index.
+   *
+   * @param filter The filter.
+   * @return The orders accepted by the given filter.
+   */
+  public List<StoredOrder> select(TransportOrderFilter filter) {
+    requireNonNull(filter, "filter");
+
+    return select(OrderQuery.fromFilter(filter));
+  }
+
+  /**
+   * Returns the orders matching the given query.
+   *
+   * @param query The query.
+   * @return The orders matching the given query, in no particular order.
+   */
+  public List<StoredOrder> select(OrderQuery query) {
+    requireNonNull(query, "query");
+
+    lock.readLock().lock();
+    try {
+      Collection<Set<String>> buckets = plan(query);
+      List<StoredOrder> result = new ArrayList<>();
+      for (Set<String> bucket : buckets) {
+        for (String orderName : bucket) {
+          StoredOrder order = orders.get(orderName);
+          if (query.test(order)) {
+            result.add(order);
+          }
+        }
+      }
+      return result;
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the number of orders the given query would scan.
+   *
+   * @param query The query.
+   * @return The number of candidate orders in the index buckets planned for the query.
+   */
+  long plannedScanSize(OrderQuery query) {
+    lock.readLock().lock();
+    try {
+      return countUpTo(plan(query), Long.MAX_VALUE);
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Selects the index buckets to scan for the given query.
+   *
+   * @param query The query.
+   * @return The names of the candidate orders, in buckets.
+   */
+  private Collection<Set<String>> plan(OrderQuery query) {
+    Set<String> best = null;
+    if (query.getState() != null) {
+      best = smaller(best, stateIndex.bucket(query.getState()));
+    }
+    if (query.getIntendedVehicle() != null) {
+      best = smaller(best, intendedVehicleIndex.bucket(query.getIntendedVehicle()));
+    }
+    if (query.getProcessingVehicle() != null) {
+      best = smaller(best, processingVehicleIndex.bucket(query.getProcessingVehicle()));
+    }
+    if (query.getType() != null) {
+      best = smaller(best, typeIndex.bucket(query.getType()));
+    }
+
+    if (query.hasDeadlineRange()) {
+      Collection<Set<String>> range = deadlineRange(query.getDeadlineFrom(),
+                                                    query.getDeadlineTo());
+      // Counting the orders in the range stops as soon as it exceeds the best bucket found.
+      long limit = best == null ? Long.MAX_VALUE : best.size();
+      if (countUpTo(range, limit) < limit) {
+        LOG.debug("Planned {} as deadline range scan", query);
+        return range;
+      }
+    }
+    if (best == null) {
+      LOG.debug("Planned {} as full scan", query);
+      return Collections.singletonList(orders.keySet());
+    }
+    return Collections.singletonList(best);
+  }
+
+  private Collection<Set<String>> deadlineRange(@Nullable Instant from, @Nullable Instant to) {
+    if (from != null && to != null) {
+      return deadlineBuckets.subMap(from, true, to, false).values();
+    }
+    if (from != null) {
+      return deadlineBuckets.tailMap(from, true).values();
+    }
+    return deadlineBuckets.headMap(to, false).values();
+  }
+
+  private static Set<String> smaller(@Nullable Set<String> best, Set<String> candidate) {
+    return best == null || candidate.size() < best.size() ? candidate : best;
+  }
+
+  private static long countUpTo(Collection<Set<String>> buckets, long limit) {
+    long count = 0;
+    for (Set<String> bucket : buckets) {
+      count += bucket.size();
+      if (count >= limit) {
+        break;
+      }
+    }
+    return count;
+  }
+
+  private void onStatusMessage(OrderStatusMessage message) {
+    if (message.getOrderName() == null || message.getOrderState() == null) {
+      return;
+    }
+    update(StoredOrder.fromStatusMessage(message, orders.get(message.getOrderName())));
+  }
+
+  private void update(StoredOrder order) {
+    if (order.getState().isFinalState() && !orders.containsKey(order.getName())) {
+      droppedFinalOrderCount++;
+      return;
+    }
+    StoredOrder previous = orders.put(order.getName(), order);
+    stateIndex.update(previous, order);
+    intendedVehicleIndex.update(previous, order);
+    processingVehicleIndex.update(previous, order);
+    typeIndex.update(previous, order);
+    deadlineIndex.update(previous, order);
+
+    if (order.getState().isFinalState()
+        && (previous == null || !previous.getState().isFinalState())) {
+      finalOrders.add(order.getName());
+      evictFinalOrders();
+    }
+  }
+
+  private void evictFinalOrders() {
+    while (finalOrders.size() > maxRetainedFinalOrders) {
+      StoredOrder order = orders.get(finalOrders.poll());
+      if (order != null && order.getState().isFinalState()) {
+        remove(order);
+      }
+    }
+  }
+
+  private void remove(StoredOrder order) {
+    orders.remove(order.getName());
+    stateIndex.remove(order);
+    intendedVehicleIndex.remove(order);
+    processingVehicleIndex.remove(order);
+    typeIndex.remove(order);
+    deadlineIndex.remove(order);
+  }
+
+  /**
+   * A transport order as known to the store.
+   */
+  public static class StoredOrder {
+
+    /**
+     * The order's name.
+     */
+    private final String name;
+    /**
+     * The order's type.
+     */
+    @Nullable
+    private final String type;
+    /**
+     * The order's state.
+     */
+    private final TransportOrder.State state;
+    /**
+     * The name of the vehicle intended to process the order.
+     */
+    @Nullable
+    private final String intendedVehicle;
+    /**
+     * The name of the vehicle processing the order.
+     */
+    @Nullable
+    private final String processingVehicle;
+    /**
+     * The order's deadline.
+     */
+    @Nullable
+    private final Instant deadline;
+
+    private StoredOrder(String name,
+                        @Nullable String type,
+                        TransportOrder.State state,
+                        @Nullable String intendedVehicle,
+                        @Nullable String processingVehicle,
+                        @Nullable Instant deadline) {
+      this.name = requireNonNull(name, "name");
+      this.type = type;
+      this.state = requireNonNull(state, "state");
+      this.intendedVehicle = intendedVehicle;
+      this.processingVehicle = processingVehicle;
+      this.deadline = deadline;
+    }
+
+    static StoredOrder fromTransport(String orderName,
+                                     Transport transport,
+                                     @Nullable StoredOrder previous) {
+      if (previous == null) {
+        return new StoredOrder(orderName,
+                               null,
+                               TransportOrder.State.RAW,
+                               transport.getIntendedVehicle(),
+                               null,
+                               transport.getDeadline());
+      }
+      return new StoredOrder(orderName,
+                             previous.type,
+                             previous.state,
+                             transport.getIntendedVehicle(),
+                             previous.processingVehicle,
+                             transport.getDeadline());
+    }
+
+    static StoredOrder fromStatusMessage(OrderStatusMessage message,
+                                         @Nullable StoredOrder previous) {
+      return new StoredOrder(message.getOrderName(),
+                             previous == null ? null : previous.type,
+                             message.getOrderState().toTransportOrderState(),
+                             previous == null ? null : previous.intendedVehicle,
+                             message.getProcessingVehicleName(),
+                             previous == null ? null : previous.deadline);
+    }
+
+    static StoredOrder fromTransportOrderState(TransportOrderState state,
+                                               @Nullable StoredOrder previous) {
+      return new StoredOrder(state.getName(),
+                             state.getType(),
+                             state.getState(),
+                             state.getIntendedVehicle(),
+                             state.getProcessingVehicle(),
+                             previous == null ? null : previous.deadline);
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    @Nullable
+    public String getType() {
+      return type;
+    }
+
+    public TransportOrder.State getState() {
+      return state;
+    }
+
+    @Nullable
+    public String getIntendedVehicle() {
+      return intendedVehicle;
+    }
+
+    @Nullable
+    public String getProcessingVehicle() {
+      return processingVehicle;
+    }
+
+    @Nullable
+    public Instant getDeadline() {
+      return deadline;
+    }
+
+    @Override
+    public String toString() {
+      return "StoredOrder{"
+          + "name=" + name
+          + ", type=" + type
+          + ", state=" + state
+          + ", intendedVehicle=" + intendedVehicle
+          + ", processingVehicle=" + processingVehicle
+          + ", deadline=" + deadline
+          + '}';
+    }
+  }
+
+  /**
+   * A secondary index mapping an order attribute to the names of the orders having it.
+   *
+   * @param <K> The attribute's type.
+   */
+  private static class Index<K> {
+
+    /**
+     * The buckets.
+     */
+    private final Map<K, Set<String>> buckets;
+    /**
+     * Extracts the attribute from an order.
+     */
+    private final Function<StoredOrder, K> attribute;
+
+    Index(Map<K, Set<String>> buckets, Function<StoredOrder, K> attribute) {
+      this.buckets = buckets;
+      this.attribute = attribute;
+    }
+
+    Set<String> bucket(K key) {
+      return buckets.getOrDefault(key, Collections.emptySet());
+    }
+
+    void update(@Nullable StoredOrder previous, StoredOrder current) {
+      if (previous != null) {
+        if (Objects.equals(attribute.apply(previous), attribute.apply(current))) {
+          return;
+        }
+        remove(previous);
+      }
+      K key = attribute.apply(current);
+      if (key != null) {
+        buckets.computeIfAbsent(key, k -> new HashSet<>()).add(current.getName());
+      }
+    }
+
+    void remove(StoredOrder order) {
+      K key = attribute.apply(order);
+      if (key == null) {
+        return;
+      }
+      Set<String> bucket = buckets.get(key);
+      bucket.remove(order.getName());
+      if (bucket.isEmpty()) {
+        buckets.remove(key);
+      }
+    }
+  }
+}
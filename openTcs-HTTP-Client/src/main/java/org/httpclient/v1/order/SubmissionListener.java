@@ -0,0 +1,22 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.order;
+
+/**
+ * Is notified about the results of transport order submissions to the kernel.
+ *
+ * @author zzw
+ */
+public interface SubmissionListener {
+
+  /**
+   * Called after a transport order has been submitted to the kernel.
+   *
+   * @param orderName The name of the transport order.
+   * @param accepted Whether the kernel accepted the transport order.
+   */
+  void onSubmitted(String orderName, boolean accepted);
+}
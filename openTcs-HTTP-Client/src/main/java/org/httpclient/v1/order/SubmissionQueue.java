@@ -0,0 +1,395 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.order;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import static java.util.Objects.requireNonNull;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+import org.httpclient.HttpClientUtils;
+import org.httpclient.v1.order.binding.Transport;
+import static org.openTcs.util.Assertions.checkInRange;
+import static org.openTcs.util.Assertions.checkState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Submits transport orders to the kernel in earliest-deadline-first order.
+ * <p>
+ * Orders are queued by their {@link Transport#getDeadline() deadline} (orders without a deadline
+ * last, ties in submission order), so urgent orders overtake bulk orders submitted earlier.
+ * Towards the kernel, submissions are limited by a {@link TokenBucket} and by a maximum number of
+ * requests in flight.
+ * The time orders spend waiting in the queue is recorded per {@link PriorityBand}.
+ * </p>
+ *
+ * @author zzw
+ */
+public class SubmissionQueue
+    implements TransportSink {
+
+  /**
+   * This class's logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(SubmissionQueue.class);
+  /**
+   * The order in which pending transports are submitted.
+   */
+  private static final Comparator<PendingTransport> EARLIEST_DEADLINE_FIRST
+      = Comparator.comparing((PendingTransport pending) -> pending.deadline,
+                             Comparator.nullsLast(Comparator.naturalOrder()))
+          .thenComparingLong(pending -> pending.sequenceNumber);
+  /**
+   * The base URL of the kernel's web API, e.g. <code>http://127.0.0.1:55200/v1</code>.
+   */
+  private final String kernelBaseUrl;
+  /**
+   * Limits the rate of submissions.
+   */
+  private final TokenBucket rateLimit;
+  /**
+   * Limits the number of submissions in flight.
+   */
+  private final Semaphore inFlight;
+  /**
+   * The time to deadline below which an order is considered urgent.
+   */
+  private final Duration urgentHorizon;
+  /**
+   * The time to deadline above which an order is considered bulk.
+   */
+  private final Duration bulkHorizon;
+  /**
+   * The pending transports.
+   */
+  private final PriorityBlockingQueue<PendingTransport> queue
+      = new PriorityBlockingQueue<>(64, EARLIEST_DEADLINE_FIRST);
+  /**
+   * Generates sequence numbers for pending transports.
+   */
+  private final AtomicLong sequenceNumbers = new AtomicLong();
+  /**
+   * The queue wait times, by priority band.
+   */
+  private final Map<PriorityBand, WaitTimes> waitTimes = new EnumMap<>(PriorityBand.class);
+  /**
+   * Serializes transports.
+   */
+  private final ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+  /**
+   * The listeners notified about submission results.
+   */
+  private final List<SubmissionListener> listeners = new CopyOnWriteArrayList<>();
+  /**
+   * Executes the submission requests.
+   */
+  private final ExecutorService requestExecutor;
+  /**
+   * Takes transports from the queue and hands them to the request executor.
+   */
+  private Thread dispatcherThread;
+  /**
+   * Whether this queue has been terminated.
+   */
+  private volatile boolean terminated;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param kernelBaseUrl The base URL of the kernel's web API.
+   * @param submissionsPerSecond The maximum sustained rate of submissions.
+   * @param burstSize The maximum number of submissions in a burst.
+   * @param maxInFlight The maximum number of submission requests in flight.
+   * @param urgentHorizon The time to deadline below which an order is considered urgent.
+   * @param bulkHorizon The time to deadline above which an order is considered bulk.
+   */
+  public SubmissionQueue(String kernelBaseUrl,
+                         double submissionsPerSecond,
+                         int burstSize,
+                         int maxInFlight,
+                         Duration urgentHorizon,
+                         Duration bulkHorizon) {
+    this.kernelBaseUrl = requireNonNull(kernelBaseUrl, "kernelBaseUrl");
+    this.rateLimit = new TokenBucket(submissionsPerSecond, burstSize);
+    this.inFlight = new Semaphore(checkInRange(maxInFlight, 1, Integer.MAX_VALUE, "maxInFlight"));
+    this.urgentHorizon = requireNonNull(urgentHorizon, "urgentHorizon");
+    this.bulkHorizon = requireNonNull(bulkHorizon, "bulkHorizon");
+    this.requestExecutor = Executors.newFixedThreadPool(maxInFlight, runnable -> {
+      Thread thread = new Thread(runnable, "submission-request");
+      thread.setDaemon(true);
+      return thread;
+    });
+    for (PriorityBand band : PriorityBand.values()) {
+      waitTimes.put(band, new WaitTimes());
+    }
+  }
+
+  /**
+   * Starts dispatching queued transports.
+   */
+  public synchronized void start() {
+    checkState(dispatcherThread == null, "Already started");
+
+    dispatcherThread = new Thread(this::dispatch, "submission-dispatcher");
+    dispatcherThread.setDaemon(true);
+    dispatcherThread.start();
+  }
+
+  /**
+   * Stops dispatching queued transports.
+   * Transports still in the queue are discarded.
+   */
+  public synchronized void terminate() {
+    terminated = true;
+    if (dispatcherThread != null) {
+      dispatcherThread.interrupt();
+    }
+    requestExecutor.shutdown();
+  }
+
+  /**
+   * Adds a listener to be notified about submission results.
+   *
+   * @param listener The listener.
+   */
+  public void addSubmissionListener(SubmissionListener listener) {
+    listeners.add(requireNonNull(listener, "listener"));
+  }
+
+  /**
+   * Adds a transport order to the queue.
+   *
+   * @param orderName The name of the transport order.
+   * @param transport The transport order.
+   */
+  @Override
+  public void submit(String orderName, Transport transport) {
+    requireNonNull(orderName, "orderName");
+    requireNonNull(transport, "transport");
+
+    queue.add(new PendingTransport(orderName,
+                                   transport,
+                                   bandOf(transport.getDeadline()),
+                                   sequenceNumbers.getAndIncrement()));
+  }
+
+  /**
+   * Returns the number of transports waiting to be submitted.
+   *
+   * @return The number of transports waiting to be submitted.
+   */
+  public int size() {
+    return queue.size();
+  }
+
+  /**
+   * Returns the queue wait times of the transports already submitted within the given band.
+   *
+   * @param band The priority band.
+   * @return The queue wait times.
+   */
+  public WaitStatistics getWaitStatistics(PriorityBand band) {
+    return waitTimes.get(requireNonNull(band, "band")).snapshot(band);
+  }
+
+  private PriorityBand bandOf(@Nullable Instant deadline) {
+    if (deadline == null) {
+      return PriorityBand.BULK;
+    }
+    Duration timeToDeadline = Duration.between(Instant.now(), deadline);
+    if (timeToDeadline.compareTo(urgentHorizon) <= 0) {
+      return PriorityBand.URGENT;
+    }
+    if (timeToDeadline.compareTo(bulkHorizon) > 0) {
+      return PriorityBand.BULK;
+    }
+    return PriorityBand.NORMAL;
+  }
+
+  private void dispatch() {
+    while (!terminated) {
+      try {
+        inFlight.acquire();
+        PendingTransport pending = queue.take();
+        rateLimit.acquire();
+        // A more urgent order may have arrived while waiting for the rate limit.
+        queue.add(pending);
+        pending = queue.take();
+
+        waitTimes.get(pending.band).record(System.nanoTime() - pending.enqueueTime);
+        PendingTransport submission = pending;
+        requestExecutor.execute(() -> {
+          try {
+            post(submission);
+          }
+          finally {
+            inFlight.release();
+          }
+        });
+      }
+      catch (InterruptedException exc) {
+        if (!terminated) {
+          LOG.warn("Unexpectedly interrupted", exc);
+        }
+        return;
+      }
+    }
+  }
+
+  private void post(PendingTransport pending) {
+    boolean accepted = false;
+    try {
+      String json = mapper.writeValueAsString(pending.transport);
+      String response = HttpClientUtils.sendPostByJson(
+          kernelBaseUrl + "/transportOrders/" + pending.orderName, json);
+      accepted = response != null;
+      if (!accepted) {
+        LOG.warn("Kernel did not accept transport order {}", pending.orderName);
+      }
+    }
+    catch (JsonProcessingException exc) {
+      LOG.warn("Could not serialize transport order {}", pending.orderName, exc);
+    }
+    catch (Exception exc) {
+      LOG.warn("Could not submit transport order {}", pending.orderName, exc);
+    }
+    for (SubmissionListener listener : listeners) {
+      listener.onSubmitted(pending.orderName, accepted);
+    }
+  }
+
+  /**
+   * The priority bands of queued transport orders, based on the time left until their deadline.
+   */
+  public enum PriorityBand {
+    /**
+     * The order's deadline is close.
+     */
+    URGENT,
+    /**
+     * The order's deadline is neither close nor far away.
+     */
+    NORMAL,
+    /**
+     * The order's deadline is far away or not set, e.g. replenishment orders.
+     */
+    BULK
+  }
+
+  /**
+   * A snapshot of the queue wait times within a priority band.
+   */
+  public static class WaitStatistics {
+
+    /**
+     * The priority band.
+     */
+    private final PriorityBand band;
+    /**
+     * The number of transport orders submitted.
+     */
+    private final long count;
+    /**
+     * The sum of all wait times (in ns).
+     */
+    private final long totalWaitNanos;
+    /**
+     * The maximum wait time (in ns).
+     */
+    private final long maxWaitNanos;
+
+    private WaitStatistics(PriorityBand band, long count, long totalWaitNanos, long maxWaitNanos) {
+      this.band = band;
+      this.count = count;
+      this.totalWaitNanos = totalWaitNanos;
+      this.maxWaitNanos = maxWaitNanos;
+    }
+
+    public PriorityBand getBand() {
+      return band;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public Duration getAverageWait() {
+      return count == 0 ? Duration.ZERO : Duration.ofNanos(totalWaitNanos / count);
+    }
+
+    public Duration getMaxWait() {
+      return Duration.ofNanos(maxWaitNanos);
+    }
+
+    @Override
+    public String toString() {
+      return "WaitStatistics{"
+          + "band=" + band
+          + ", count=" + count
+          + ", averageWait=" + getAverageWait()
+          + ", maxWait=" + getMaxWait()
+          + '}';
+    }
+  }
+
+  /**
+   * Accumulates queue wait times.
+   */
+  private static class WaitTimes {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    void record(long waitNanos) {
+      count.increment();
+      totalNanos.add(waitNanos);
+      maxNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    WaitStatistics snapshot(PriorityBand band) {
+      return new WaitStatistics(band, count.sum(), totalNanos.sum(), maxNanos.get());
+    }
+  }
+
+  /**
+   * A transport order waiting to be submitted.
+   */
+  private static class PendingTransport {
+
+    private final String orderName;
+    private final Transport transport;
+    private final Instant deadline;
+    private final PriorityBand band;
+    private final long sequenceNumber;
+    private final long enqueueTime = System.nanoTime();
+
+    PendingTransport(String orderName,
+                     Transport transport,
+                     PriorityBand band,
+                     long sequenceNumber) {
+      this.orderName = orderName;
+      this.transport = transport;
+      this.deadline = transport.getDeadline();
+      this.band = band;
+      this.sequenceNumber = sequenceNumber;
+    }
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.order;
+
+import java.util.concurrent.TimeUnit;
+import static org.openTcs.util.Assertions.checkArgument;
+import static org.openTcs.util.Assertions.checkInRange;
+
+/**
+ * A token bucket rate limiter.
+ * Tokens are refilled continuously at a fixed rate, up to a maximum burst size.
+ *
+ * @author zzw
+ */
+public class TokenBucket {
+
+  /**
+   * The time (in ns) it takes to refill one token.
+   */
+  private final long nanosPerToken;
+  /**
+   * The maximum number of tokens the bucket can hold.
+   */
+  private final int burstSize;
+  /**
+   * The number of tokens currently available.
+   */
+  private double tokens;
+  /**
+   * The last time (in ns) the tokens were refilled.
+   */
+  private long lastRefill;
+
+  /**
+   * Creates a new instance, initially filled completely.
+   *
+   * @param tokensPerSecond The refill rate (in tokens per second).
+   * @param burstSize The maximum number of tokens the bucket can hold.
+   */
+  public TokenBucket(double tokensPerSecond, int burstSize) {
+    checkArgument(tokensPerSecond > 0, "tokensPerSecond <= 0: %s", tokensPerSecond);
+    this.nanosPerToken = (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond);
+    this.burstSize = checkInRange(burstSize, 1, Integer.MAX_VALUE, "burstSize");
+    this.tokens = burstSize;
+    this.lastRefill = System.nanoTime();
+  }
+
+  /**
+   * Takes a token from the bucket, waiting until one is available.
+   *
+   * @throws InterruptedException If the calling thread was interrupted while waiting.
+   */
+  public void acquire()
+      throws InterruptedException {
+    long waitNanos;
+    while ((waitNanos = tryAcquire()) > 0) {
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+  }
+
+  /**
+   * Takes a token from the bucket, if one is available.
+   *
+   * @return <code>0</code>, if a token was taken, or the time (in ns) until the next token will be
+   * available.
+   */
+  public synchronized long tryAcquire() {
+    long now = System.nanoTime();
+    tokens = Math.min(burstSize, tokens + (double) (now - lastRefill) / nanosPerToken);
+    lastRefill = now;
+    if (tokens >= 1) {
+      tokens -= 1;
+      return 0;
+    }
+    return Math.max(1, (long) ((1 - tokens) * nanosPerToken));
+  }
+}
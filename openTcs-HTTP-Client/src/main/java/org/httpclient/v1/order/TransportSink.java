@@ -0,0 +1,24 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.order;
+
+import org.httpclient.v1.order.binding.Transport;
+
+/**
+ * Accepts transport orders on their way to the kernel.
+ *
+ * @author zzw
+ */
+public interface TransportSink {
+
+  /**
+   * Accepts the given transport order.
+   *
+   * @param orderName The name of the transport order.
+   * @param transport The transport order.
+   */
+  void submit(String orderName, Transport transport);
+}
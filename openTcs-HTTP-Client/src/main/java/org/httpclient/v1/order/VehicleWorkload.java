@@ -0,0 +1,142 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.order;
+
+import java.util.Map;
+import static java.util.Objects.requireNonNull;
+import java.util.concurrent.ConcurrentHashMap;
+import org.httpclient.v1.status.binding.OrderStatusMessage;
+import org.httpclient.v1.status.binding.StatusMessage;
+import org.httpclient.v1.status.binding.StatusMessageList;
+import org.httpclient.v1.status.binding.TransportOrderState;
+import org.openTcs.util.event.EventHandler;
+import static org.openTcs.util.Assertions.checkInRange;
+
+/**
+ * Keeps track of the estimated work queued for each vehicle by the transport orders submitted via
+ * this bridge.
+ * <p>
+ * Work is added when an order is submitted with an intended vehicle and removed as soon as the
+ * order reaches a final state according to the status channel, or when the kernel rejects the
+ * order.
+ * To learn about rejected orders, this instance needs to be registered as a
+ * {@link SubmissionListener} with the submission queue.
+ * </p>
+ *
+ * @author zzw
+ */
+public class VehicleWorkload
+    implements EventHandler,
+               SubmissionListener {
+
+  /**
+   * The queued work (in ms) per transport order, by vehicle name.
+   */
+  private final Map<String, Map<String, Long>> workByVehicle = new ConcurrentHashMap<>();
+  /**
+   * The vehicle names, by transport order name.
+   */
+  private final Map<String, String> vehicleByOrder = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a new instance.
+   */
+  public VehicleWorkload() {
+  }
+
+  @Override
+  public void onEvent(Object event) {
+    if (event instanceof OrderStatusMessage) {
+      update((OrderStatusMessage) event);
+    }
+    else if (event instanceof TransportOrderState) {
+      TransportOrderState orderState = (TransportOrderState) event;
+      if (orderState.getName() != null
+          && orderState.getState() != null
+          && orderState.getState().isFinalState()) {
+        remove(orderState.getName());
+      }
+    }
+    else if (event instanceof StatusMessageList) {
+      for (StatusMessage message : ((StatusMessageList) event).getStatusMessages()) {
+        if (message instanceof OrderStatusMessage) {
+          update((OrderStatusMessage) message);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void onSubmitted(String orderName, boolean accepted) {
+    if (!accepted) {
+      remove(orderName);
+    }
+  }
+
+  /**
+   * Adds the estimated work of a transport order to a vehicle's queue.
+   *
+   * @param vehicleName The name of the vehicle.
+   * @param orderName The name of the transport order.
+   * @param work The estimated work (in ms).
+   */
+  public void add(String vehicleName, String orderName, long work) {
+    requireNonNull(vehicleName, "vehicleName");
+    requireNonNull(orderName, "orderName");
+    checkInRange(work, 0, Long.MAX_VALUE, "work");
+
+    remove(orderName);
+    vehicleByOrder.put(orderName, vehicleName);
+    workByVehicle.computeIfAbsent(vehicleName, name -> new ConcurrentHashMap<>())
+        .put(orderName, work);
+  }
+
+  /**
+   * Removes a transport order's work from its vehicle's queue.
+   *
+   * @param orderName The name of the transport order.
+   */
+  public void remove(String orderName) {
+    requireNonNull(orderName, "orderName");
+
+    String vehicleName = vehicleByOrder.remove(orderName);
+    if (vehicleName == null) {
+      return;
+    }
+    Map<String, Long> work = workByVehicle.get(vehicleName);
+    if (work != null) {
+      work.remove(orderName);
+    }
+  }
+
+  /**
+   * Returns the estimated work queued for the given vehicle.
+   *
+   * @param vehicleName The name of the vehicle.
+   * @return The estimated work (in ms).
+   */
+  public long getQueuedWork(String vehicleName) {
+    requireNonNull(vehicleName, "vehicleName");
+
+    Map<String, Long> work = workByVehicle.get(vehicleName);
+    if (work == null) {
+      return 0;
+    }
+    long sum = 0;
+    for (long orderWork : work.values()) {
+      sum += orderWork;
+    }
+    return sum;
+  }
+
+  private void update(OrderStatusMessage message) {
+    if (message.getOrderName() != null
+        && message.getOrderState() != null
+        && message.getOrderState().toTransportOrderState().isFinalState()) {
+      remove(message.getOrderName());
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.replay;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Describes the format of payload logs, recordings of the raw payloads received by the bridge.
+ * <p>
+ * A log is a GZIP stream starting with a header - a magic number and the recording's start time
+ * (in ms since the epoch) - followed by records.
+ * Each record consists of the payload's {@link Kind}, its arrival time (in µs since the previous
+ * record, as a variable length integer), its key (the request path of a status payload or the name
+ * of an order source, in modified UTF-8), the payload's length (as a variable length integer) and
+ * the payload itself.
+ * </p>
+ *
+ * @author zzw
+ */
+public final class PayloadLog {
+
+  /**
+   * Identifies payload logs.
+   */
+  static final int MAGIC = 0x504C_4731;
+
+  private PayloadLog() {
+  }
+
+  static void writeVarLong(DataOutput out, long value)
+      throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) (value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  static long readVarLong(DataInput in)
+      throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < Long.SIZE; shift += 7) {
+      byte b = in.readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed variable length integer");
+  }
+
+  /**
+   * The kinds of payloads.
+   */
+  public enum Kind {
+    /**
+     * A response of the kernel's status API.
+     */
+    STATUS,
+    /**
+     * A response of an order source.
+     */
+    ORDERS;
+  }
+
+  /**
+   * A recorded payload.
+   */
+  public static class Record {
+
+    /**
+     * The payload's kind.
+     */
+    private final Kind kind;
+    /**
+     * The payload's key.
+     */
+    private final String key;
+    /**
+     * The payload's arrival time (in µs since the start of the recording).
+     */
+    private final long time;
+    /**
+     * The payload.
+     */
+    private final byte[] payload;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param kind The payload's kind.
+     * @param key The request path of a status payload or the name of an order source.
+     * @param time The payload's arrival time (in µs since the start of the recording).
+     * @param payload The payload.
+     */
+    public Record(Kind kind, String key, long time, byte[] payload) {
+      this.kind = requireNonNull(kind, "kind");
+      this.key = requireNonNull(key, "key");
+      this.time = time;
+      this.payload = requireNonNull(payload, "payload");
+    }
+
+    public Kind getKind() {
+      return kind;
+    }
+
+    public String getKey() {
+      return key;
+    }
+
+    public long getTime() {
+      return time;
+    }
+
+    public byte[] getPayload() {
+      return payload;
+    }
+  }
+}
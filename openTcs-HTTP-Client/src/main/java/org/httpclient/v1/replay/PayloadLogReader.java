@@ -0,0 +1,104 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.replay;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static java.util.Objects.requireNonNull;
+import java.util.zip.GZIPInputStream;
+import javax.annotation.Nullable;
+
+/**
+ * Reads the records of a {@link PayloadLog} one by one.
+ *
+ * @author zzw
+ */
+public class PayloadLogReader
+    implements Closeable {
+
+  /**
+   * Reads the log.
+   */
+  private final DataInputStream in;
+  /**
+   * The recording's start time (in ms since the epoch).
+   */
+  private final long startTime;
+  /**
+   * The arrival time of the previous record (in µs since the start of the recording).
+   */
+  private long lastTime;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param file The log file.
+   * @throws IOException If the log file could not be read or is not a payload log.
+   */
+  public PayloadLogReader(Path file)
+      throws IOException {
+    requireNonNull(file, "file");
+
+    this.in = new DataInputStream(new GZIPInputStream(
+        new BufferedInputStream(Files.newInputStream(file)), 1 << 16));
+    if (in.readInt() != PayloadLog.MAGIC) {
+      in.close();
+      throw new IOException("Not a payload log: " + file);
+    }
+    this.startTime = in.readLong();
+  }
+
+  /**
+   * Returns the recording's start time.
+   *
+   * @return The recording's start time (in ms since the epoch).
+   */
+  public long getStartTime() {
+    return startTime;
+  }
+
+  /**
+   * Reads the next record.
+   *
+   * @return The next record, or <code>null</code>, if the end of the log has been reached.
+   * @throws IOException If the log could not be read.
+   */
+  @Nullable
+  public PayloadLog.Record next()
+      throws IOException {
+    int kind;
+    try {
+      kind = in.read();
+    }
+    catch (EOFException exc) {
+      // The log was not closed properly, its last complete record has been read.
+      return null;
+    }
+    if (kind < 0) {
+      return null;
+    }
+    if (kind >= PayloadLog.Kind.values().length) {
+      throw new IOException("Unknown payload kind: " + kind);
+    }
+    long time = lastTime + PayloadLog.readVarLong(in);
+    String key = in.readUTF();
+    byte[] payload = new byte[Math.toIntExact(PayloadLog.readVarLong(in))];
+    in.readFully(payload);
+    lastTime = time;
+    return new PayloadLog.Record(PayloadLog.Kind.values()[kind], key, time, payload);
+  }
+
+  @Override
+  public void close()
+      throws IOException {
+    in.close();
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static java.util.Objects.requireNonNull;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records raw payloads with their arrival times in a {@link PayloadLog}.
+ * <p>
+ * Each record is flushed completely, so a log remains readable up to its last record if the bridge
+ * is stopped without closing the recorder.
+ * Recording errors are logged and disable the recorder; they never affect the payloads' processing.
+ * </p>
+ *
+ * @author zzw
+ */
+public class PayloadRecorder {
+
+  /**
+   * This class's logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(PayloadRecorder.class);
+  /**
+   * The log file.
+   */
+  private final Path file;
+  /**
+   * Writes the log.
+   */
+  private final DataOutputStream out;
+  /**
+   * The start of the recording (in ns, as returned by {@link System#nanoTime()}).
+   */
+  private final long startNanos;
+  /**
+   * The arrival time of the previous record (in µs since the start of the recording).
+   */
+  private long lastTime;
+  /**
+   * The number of records written.
+   */
+  private long recordCount;
+  /**
+   * Whether the recorder failed and stopped recording.
+   */
+  private boolean failed;
+
+  /**
+   * Creates a new instance, creating or replacing the given log file.
+   *
+   * @param file The log file.
+   * @throws IOException If the log file could not be created.
+   */
+  public PayloadRecorder(Path file)
+      throws IOException {
+    this.file = requireNonNull(file, "file");
+    this.out = new DataOutputStream(new GZIPOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(file)), 1 << 16, true));
+    this.startNanos = System.nanoTime();
+    out.writeInt(PayloadLog.MAGIC);
+    out.writeLong(System.currentTimeMillis());
+    out.flush();
+  }
+
+  /**
+   * Records the given payload, received now.
+   *
+   * @param kind The payload's kind.
+   * @param key The request path of a status payload or the name of an order source.
+   * @param payload The payload.
+   * @param length The payload's length.
+   */
+  public synchronized void record(PayloadLog.Kind kind, String key, byte[] payload, int length) {
+    requireNonNull(kind, "kind");
+    requireNonNull(key, "key");
+    requireNonNull(payload, "payload");
+    if (failed) {
+      return;
+    }
+
+    long time = Math.max(lastTime, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+    try {
+      out.writeByte(kind.ordinal());
+      PayloadLog.writeVarLong(out, time - lastTime);
+      out.writeUTF(key);
+      PayloadLog.writeVarLong(out, length);
+      out.write(payload, 0, length);
+      out.flush();
+      lastTime = time;
+      recordCount++;
+    }
+    catch (IOException exc) {
+      LOG.warn("Recording to {} failed, recording stopped", file, exc);
+      failed = true;
+    }
+  }
+
+  /**
+   * Returns the number of records written so far.
+   *
+   * @return The number of records written so far.
+   */
+  public synchronized long getRecordCount() {
+    return recordCount;
+  }
+
+  /**
+   * Finishes the log.
+   */
+  public synchronized void close() {
+    try {
+      out.close();
+    }
+    catch (IOException exc) {
+      LOG.warn("Closing {} failed", file, exc);
+    }
+    failed = true;
+  }
+}
@@ -0,0 +1,306 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.replay;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import static java.util.Objects.requireNonNull;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.Nullable;
+import org.httpclient.OrderPollingJob;
+import org.httpclient.StatusPollingJob;
+import org.httpclient.v1.status.ResponseSource;
+import static org.openTcs.util.Assertions.checkArgument;
+import static org.openTcs.util.Assertions.checkState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replays a {@link PayloadLog} through the bridge's decoding and dispatch path.
+ * <p>
+ * Recorded status responses are served to a {@link StatusPollingJob} as its
+ * {@link ResponseSource} (via a {@link org.httpclient.v1.status.RequestStatusHandler}), so they
+ * are decoded, checked for gaps and dispatched exactly as when they were received; recorded order
+ * source responses are passed to the {@link OrderPollingJob} of the same source.
+ * The status polling job is executed whenever the next record is a status response.
+ * </p>
+ * <p>
+ * Payloads are replayed at their recorded arrival times scaled by the speed factor, or as fast as
+ * possible.
+ * The maximum lag behind the schedule is recorded, as a measure of whether the pipeline keeps up.
+ * </p>
+ *
+ * @author zzw
+ */
+public class PayloadReplayer
+    implements ResponseSource {
+
+  /**
+   * This class's logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(PayloadReplayer.class);
+  /**
+   * The speed factor replaying as fast as possible.
+   */
+  public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+  /**
+   * The log file.
+   */
+  private final Path file;
+  /**
+   * The speed factor.
+   */
+  private final double speed;
+  /**
+   * The order polling jobs, by order source name.
+   */
+  private final Map<String, OrderPollingJob> orderPollingJobs = new HashMap<>();
+  /**
+   * The status polling job.
+   */
+  private StatusPollingJob statusPollingJob;
+  /**
+   * Reads the log while replaying.
+   */
+  private PayloadLogReader reader;
+  /**
+   * The next record, if already read.
+   */
+  private PayloadLog.Record nextRecord;
+  /**
+   * The start of the replay (in ns, as returned by {@link System#nanoTime()}).
+   */
+  private long startNanos;
+  /**
+   * The number of records replayed.
+   */
+  private long replayedCount;
+  /**
+   * The number of payload bytes replayed.
+   */
+  private long replayedBytes;
+  /**
+   * The number of status requests not matching the recorded ones.
+   */
+  private long mismatchCount;
+  /**
+   * The maximum lag behind the schedule (in ns).
+   */
+  private long maxLagNanos;
+  /**
+   * The duration of the last replay (in ns).
+   */
+  private long durationNanos;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param file The log file.
+   * @param speed The speed factor, e.g. 1 for the recorded speed, or {@link #MAX_SPEED}.
+   */
+  public PayloadReplayer(Path file, double speed) {
+    this.file = requireNonNull(file, "file");
+    checkArgument(speed > 0, "speed not positive: %s", speed);
+    this.speed = speed;
+  }
+
+  /**
+   * Sets the status polling job recorded status responses are replayed through.
+   * The job's status handler must use this replayer as its response source.
+   *
+   * @param statusPollingJob The status polling job.
+   */
+  public synchronized void setStatusPollingJob(StatusPollingJob statusPollingJob) {
+    this.statusPollingJob = requireNonNull(statusPollingJob, "statusPollingJob");
+  }
+
+  /**
+   * Adds an order polling job recorded responses of its order source are replayed through.
+   *
+   * @param orderPollingJob The order polling job.
+   */
+  public synchronized void addOrderPollingJob(OrderPollingJob orderPollingJob) {
+    requireNonNull(orderPollingJob, "orderPollingJob");
+
+    orderPollingJobs.put(orderPollingJob.getOrderSource().getName(), orderPollingJob);
+  }
+
+  /**
+   * Replays the log, returning when all records have been replayed.
+   *
+   * @throws IOException If the log could not be read.
+   */
+  public synchronized void replay()
+      throws IOException {
+    checkState(reader == null, "Already replaying");
+
+    replayedCount = 0;
+    replayedBytes = 0;
+    mismatchCount = 0;
+    maxLagNanos = 0;
+    reader = new PayloadLogReader(file);
+    startNanos = System.nanoTime();
+    try {
+      for (PayloadLog.Record record = peek(); record != null; record = peek()) {
+        if (record.getKind() == PayloadLog.Kind.STATUS && statusPollingJob != null) {
+          replayStatus();
+        }
+        else {
+          replayOrders(take());
+        }
+      }
+    }
+    finally {
+      durationNanos = System.nanoTime() - startNanos;
+      reader.close();
+      reader = null;
+      nextRecord = null;
+    }
+    LOG.info("Replayed {} records ({} bytes) from {} in {} ms, max. lag {} ms",
+             replayedCount,
+             replayedBytes,
+             file,
+             durationNanos / 1_000_000,
+             maxLagNanos / 1_000_000);
+  }
+
+  /**
+   * Serves the next recorded status response to the status polling job.
+   *
+   * @param path The requested path.
+   * @return The recorded response.
+   * @throws IOException If the next record is not a status response.
+   */
+  @Override
+  public InputStream open(String path)
+      throws IOException {
+    PayloadLog.Record record = peek();
+    if (record == null || record.getKind() != PayloadLog.Kind.STATUS) {
+      throw new IOException("No recorded status response for " + path);
+    }
+    take();
+    if (!resourceOf(record.getKey()).equals(resourceOf(path))) {
+      mismatchCount++;
+      LOG.warn("Requested {}, but {} was recorded", path, record.getKey());
+    }
+    awaitSchedule(record);
+    replayedCount++;
+    replayedBytes += record.getPayload().length;
+    return new ByteArrayInputStream(record.getPayload());
+  }
+
+  /**
+   * Returns the number of records replayed by the last replay.
+   *
+   * @return The number of records replayed by the last replay.
+   */
+  public synchronized long getReplayedCount() {
+    return replayedCount;
+  }
+
+  /**
+   * Returns the number of payload bytes replayed by the last replay.
+   *
+   * @return The number of payload bytes replayed by the last replay.
+   */
+  public synchronized long getReplayedBytes() {
+    return replayedBytes;
+  }
+
+  /**
+   * Returns the number of status requests of the last replay not matching the recorded ones,
+   * i.e. whether the replay diverged from the recording.
+   *
+   * @return The number of status requests not matching the recorded ones.
+   */
+  public synchronized long getMismatchCount() {
+    return mismatchCount;
+  }
+
+  /**
+   * Returns the maximum time the last replay lagged behind the schedule.
+   *
+   * @return The maximum lag (in ns).
+   */
+  public synchronized long getMaxLagNanos() {
+    return maxLagNanos;
+  }
+
+  /**
+   * Returns the duration of the last replay.
+   *
+   * @return The duration of the last replay (in ns).
+   */
+  public synchronized long getDurationNanos() {
+    return durationNanos;
+  }
+
+  private void replayStatus()
+      throws IOException {
+    long countBefore = replayedCount;
+    try {
+      statusPollingJob.execute();
+    }
+    catch (IOException exc) {
+      LOG.debug("Status polling job failed during replay", exc);
+    }
+    if (replayedCount == countBefore) {
+      // The job did not request anything, skip the record to make progress.
+      take();
+    }
+  }
+
+  private void replayOrders(PayloadLog.Record record) {
+    OrderPollingJob orderPollingJob = orderPollingJobs.get(record.getKey());
+    if (orderPollingJob == null) {
+      return;
+    }
+    awaitSchedule(record);
+    replayedCount++;
+    replayedBytes += record.getPayload().length;
+    orderPollingJob.submitOrders(new String(record.getPayload(), StandardCharsets.UTF_8));
+  }
+
+  private void awaitSchedule(PayloadLog.Record record) {
+    if (speed == MAX_SPEED) {
+      return;
+    }
+    long due = startNanos + (long) (record.getTime() * 1000 / speed);
+    long now = System.nanoTime();
+    while (due - now > 0) {
+      LockSupport.parkNanos(due - now);
+      now = System.nanoTime();
+    }
+    maxLagNanos = Math.max(maxLagNanos, now - due);
+  }
+
+  @Nullable
+  private PayloadLog.Record peek()
+      throws IOException {
+    checkState(reader != null, "Not replaying");
+    if (nextRecord == null) {
+      nextRecord = reader.next();
+    }
+    return nextRecord;
+  }
+
+  private PayloadLog.Record take()
+      throws IOException {
+    PayloadLog.Record record = peek();
+    nextRecord = null;
+    return record;
+  }
+
+  private static String resourceOf(String path) {
+    int query = path.indexOf('?');
+    return query < 0 ? path : path.substring(0, query);
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.replay;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import static java.util.Objects.requireNonNull;
+import org.httpclient.v1.status.ResponseSource;
+
+/**
+ * Records the responses of another source while they are being read.
+ * <p>
+ * Each response is recorded when it is closed, as it was read by the caller; responses are still
+ * parsed while they are being received.
+ * </p>
+ *
+ * @author zzw
+ */
+public class RecordingResponseSource
+    implements ResponseSource {
+
+  /**
+   * Provides the responses.
+   */
+  private final ResponseSource delegate;
+  /**
+   * Records the responses.
+   */
+  private final PayloadRecorder recorder;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param delegate Provides the responses.
+   * @param recorder Records the responses.
+   */
+  public RecordingResponseSource(ResponseSource delegate, PayloadRecorder recorder) {
+    this.delegate = requireNonNull(delegate, "delegate");
+    this.recorder = requireNonNull(recorder, "recorder");
+  }
+
+  @Override
+  public InputStream open(String path)
+      throws IOException {
+    return new RecordingInputStream(path, delegate.open(path));
+  }
+
+  /**
+   * Copies the bytes read and records them when closed.
+   */
+  private class RecordingInputStream
+      extends FilterInputStream {
+
+    private final String path;
+    private final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+    private boolean closed;
+
+    RecordingInputStream(String path, InputStream in) {
+      super(in);
+      this.path = path;
+    }
+
+    @Override
+    public int read()
+        throws IOException {
+      int result = super.read();
+      if (result >= 0) {
+        copy.write(result);
+      }
+      return result;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length)
+        throws IOException {
+      int count = super.read(buffer, offset, length);
+      if (count > 0) {
+        copy.write(buffer, offset, count);
+      }
+      return count;
+    }
+
+    @Override
+    public long skip(long n)
+        throws IOException {
+      // Skipped bytes are read, so they are recorded, too.
+      byte[] buffer = new byte[(int) Math.min(n, 8192)];
+      int count = read(buffer, 0, buffer.length);
+      return Math.max(count, 0);
+    }
+
+    @Override
+    public void close()
+        throws IOException {
+      if (!closed) {
+        closed = true;
+        recorder.record(PayloadLog.Kind.STATUS, path, copy.toByteArray(), copy.size());
+      }
+      super.close();
+    }
+  }
+}
@@ -0,0 +1,414 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.routing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static java.util.Objects.requireNonNull;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.openTcs.data.model.Location;
+import org.openTcs.data.model.Path;
+import org.openTcs.data.model.Point;
+import org.openTcs.data.model.Triple;
+import static org.openTcs.util.Assertions.checkArgument;
+import static org.openTcs.util.Assertions.checkInRange;
+
+/**
+ * A compact, immutable graph representation of a plant model's points, paths and locations.
+ * <p>
+ * Points are mapped to consecutive indices and the paths between them are stored as arrays of
+ * successors and travel times (in ms), so route searches do not need to allocate per edge.
+ * The predecessors of each point are stored the same way, for searches towards a destination.
+ * Travel times are derived from the paths' lengths and maximum velocities, capped at the given
+ * maximum vehicle velocity.
+ * Locked paths are ignored.
+ * </p>
+ *
+ * @author zzw
+ */
+public class PlantModel {
+
+  /**
+   * The index value for unknown points.
+   */
+  public static final int UNKNOWN_POINT = -1;
+  /**
+   * The point names, by index.
+   */
+  private final String[] pointNames;
+  /**
+   * The point coordinates, by index.
+   */
+  private final Triple[] pointPositions;
+  /**
+   * The point indices, by name.
+   */
+  private final Map<String, Integer> pointIndices;
+  /**
+   * The indices of the points linked to each location, by location name.
+   */
+  private final Map<String, int[]> locationPoints;
+  /**
+   * For each point index, the offset of its first outgoing edge in {@link #edgeTargets}.
+   * The edges of point <code>i</code> are at <code>edgeOffsets[i]..edgeOffsets[i+1]-1</code>.
+   */
+  private final int[] edgeOffsets;
+  /**
+   * The target point index of each edge.
+   */
+  private final int[] edgeTargets;
+  /**
+   * The travel time (in ms) of each edge.
+   */
+  private final int[] edgeTravelTimes;
+  /**
+   * For each point index, the offset of its first incoming edge in {@link #reverseEdgeSources}.
+   */
+  private final int[] reverseEdgeOffsets;
+  /**
+   * The source point index of each incoming edge.
+   */
+  private final int[] reverseEdgeSources;
+  /**
+   * The travel time (in ms) of each incoming edge.
+   */
+  private final int[] reverseEdgeTravelTimes;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param points The plant model's points.
+   * @param paths The plant model's paths.
+   * @param locations The plant model's locations.
+   * @param maxVehicleVelocity The maximum velocity of vehicles (in mm/s).
+   */
+  public PlantModel(Collection<Point> points,
+                    Collection<Path> paths,
+                    Collection<Location> locations,
+                    int maxVehicleVelocity) {
+    this(toBuilder(points, paths, locations), maxVehicleVelocity);
+  }
+
+  private PlantModel(Builder builder, int maxVehicleVelocity) {
+    checkInRange(maxVehicleVelocity, 1, Integer.MAX_VALUE, "maxVehicleVelocity");
+
+    pointNames = builder.pointNames.toArray(new String[builder.pointNames.size()]);
+    pointPositions = builder.pointPositions.toArray(new Triple[builder.pointPositions.size()]);
+    pointIndices = new HashMap<>(pointNames.length * 2);
+    for (int index = 0; index < pointNames.length; index++) {
+      pointIndices.put(pointNames[index], index);
+    }
+
+    locationPoints = new HashMap<>(builder.locationPoints.size() * 2);
+    for (Map.Entry<String, List<String>> entry : builder.locationPoints.entrySet()) {
+      locationPoints.put(entry.getKey(),
+                         entry.getValue().stream()
+                             .map(pointIndices::get)
+                             .filter(pointIndex -> pointIndex != null)
+                             .mapToInt(Integer::intValue)
+                             .toArray());
+    }
+
+    List<int[]> edges = new ArrayList<>(builder.paths.size() * 2);
+    for (PathEntry path : builder.paths) {
+      Integer source = pointIndices.get(path.sourcePoint);
+      Integer destination = pointIndices.get(path.destinationPoint);
+      if (source == null || destination == null) {
+        continue;
+      }
+      if (path.maxVelocity != 0) {
+        edges.add(new int[]{source, destination, travelTime(path.length,
+                                                             path.maxVelocity,
+                                                             maxVehicleVelocity)});
+      }
+      if (path.maxReverseVelocity != 0) {
+        edges.add(new int[]{destination, source, travelTime(path.length,
+                                                             path.maxReverseVelocity,
+                                                             maxVehicleVelocity)});
+      }
+    }
+
+    edgeOffsets = new int[pointNames.length + 1];
+    edgeTargets = new int[edges.size()];
+    edgeTravelTimes = new int[edges.size()];
+    fillEdges(edges, 0, 1, edgeOffsets, edgeTargets, edgeTravelTimes);
+    reverseEdgeOffsets = new int[pointNames.length + 1];
+    reverseEdgeSources = new int[edges.size()];
+    reverseEdgeTravelTimes = new int[edges.size()];
+    fillEdges(edges, 1, 0, reverseEdgeOffsets, reverseEdgeSources, reverseEdgeTravelTimes);
+  }
+
+  /**
+   * Stores the given edges grouped by one of their end points.
+   *
+   * @param edges The edges, as (source, destination, travel time).
+   * @param from The index of the end point the edges are grouped by.
+   * @param to The index of the other end point.
+   * @param offsets The offsets of each point's edges, filled by this method.
+   * @param others The other end points, filled by this method.
+   * @param travelTimes The travel times, filled by this method.
+   */
+  private static void fillEdges(List<int[]> edges,
+                                int from,
+                                int to,
+                                int[] offsets,
+                                int[] others,
+                                int[] travelTimes) {
+    int pointCount = offsets.length - 1;
+    for (int[] edge : edges) {
+      offsets[edge[from] + 1]++;
+    }
+    for (int i = 0; i < pointCount; i++) {
+      offsets[i + 1] += offsets[i];
+    }
+    int[] nextEdge = new int[pointCount];
+    System.arraycopy(offsets, 0, nextEdge, 0, pointCount);
+    for (int[] edge : edges) {
+      int edgeIndex = nextEdge[edge[from]]++;
+      others[edgeIndex] = edge[to];
+      travelTimes[edgeIndex] = edge[2];
+    }
+  }
+
+  private static Builder toBuilder(Collection<Point> points,
+                                   Collection<Path> paths,
+                                   Collection<Location> locations) {
+    requireNonNull(points, "points");
+    requireNonNull(paths, "paths");
+    requireNonNull(locations, "locations");
+
+    Builder builder = new Builder();
+    for (Point point : points) {
+      builder.addPoint(point.getName(), point.getPosition());
+    }
+    for (Location location : locations) {
+      builder.addLocation(location.getName(),
+                          location.getAttachedLinks().stream()
+                              .map(link -> link.getPoint().getName())
+                              .collect(Collectors.toList()));
+    }
+    for (Path path : paths) {
+      builder.addPath(path.getSourcePoint().getName(),
+                      path.getDestinationPoint().getName(),
+                      path.getLength(),
+                      path.isNavigableForward() ? path.getMaxVelocity() : 0,
+                      path.isNavigableReverse() ? path.getMaxReverseVelocity() : 0);
+    }
+    return builder;
+  }
+
+  /**
+   * Returns the number of points in this model.
+   *
+   * @return The number of points in this model.
+   */
+  public int getPointCount() {
+    return pointNames.length;
+  }
+
+  /**
+   * Returns the index of the point with the given name.
+   *
+   * @param pointName The point's name.
+   * @return The point's index, or {@link #UNKNOWN_POINT}.
+   */
+  public int getPointIndex(String pointName) {
+    Integer index = pointIndices.get(pointName);
+    return index == null ? UNKNOWN_POINT : index;
+  }
+
+  /**
+   * Returns the name of the point with the given index.
+   *
+   * @param pointIndex The point's index.
+   * @return The point's name.
+   */
+  public String getPointName(int pointIndex) {
+    return pointNames[pointIndex];
+  }
+
+  /**
+   * Returns the coordinates of the point with the given index.
+   *
+   * @param pointIndex The point's index.
+   * @return The point's coordinates (in mm).
+   */
+  public Triple getPointPosition(int pointIndex) {
+    return pointPositions[pointIndex];
+  }
+
+  /**
+   * Returns the names of the locations in this model.
+   *
+   * @return The names of the locations in this model.
+   */
+  public Set<String> getLocationNames() {
+    return Collections.unmodifiableSet(locationPoints.keySet());
+  }
+
+  /**
+   * Resolves a destination name as used in transport orders to point indices.
+   * The name may either be a point's name or a location's name, in which case all points linked to
+   * the location are returned.
+   *
+   * @param destination The destination's name.
+   * @return The indices of the points the destination can be reached at, which may be empty.
+   */
+  public int[] resolveDestination(String destination) {
+    int[] points = locationPoints.get(destination);
+    if (points != null) {
+      return points;
+    }
+    int pointIndex = getPointIndex(destination);
+    return pointIndex == UNKNOWN_POINT ? new int[0] : new int[]{pointIndex};
+  }
+
+  int edgesStart(int pointIndex) {
+    return edgeOffsets[pointIndex];
+  }
+
+  int edgesEnd(int pointIndex) {
+    return edgeOffsets[pointIndex + 1];
+  }
+
+  int edgeTarget(int edgeIndex) {
+    return edgeTargets[edgeIndex];
+  }
+
+  int edgeTravelTime(int edgeIndex) {
+    return edgeTravelTimes[edgeIndex];
+  }
+
+  int reverseEdgesStart(int pointIndex) {
+    return reverseEdgeOffsets[pointIndex];
+  }
+
+  int reverseEdgesEnd(int pointIndex) {
+    return reverseEdgeOffsets[pointIndex + 1];
+  }
+
+  int reverseEdgeSource(int edgeIndex) {
+    return reverseEdgeSources[edgeIndex];
+  }
+
+  int reverseEdgeTravelTime(int edgeIndex) {
+    return reverseEdgeTravelTimes[edgeIndex];
+  }
+
+  private static int travelTime(long length, int pathVelocity, int maxVehicleVelocity) {
+    long velocity = Math.min(pathVelocity, maxVehicleVelocity);
+    long millis = (length * 1000 + velocity - 1) / velocity;
+    return (int) Math.min(millis, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Collects the elements of a plant model given by name, e.g. read from a file.
+   */
+  public static class Builder {
+
+    private final List<String> pointNames = new ArrayList<>();
+    private final List<Triple> pointPositions = new ArrayList<>();
+    private final Map<String, List<String>> locationPoints = new HashMap<>();
+    private final List<PathEntry> paths = new ArrayList<>();
+
+    /**
+     * Creates a new instance.
+     */
+    public Builder() {
+    }
+
+    /**
+     * Adds a point.
+     *
+     * @param name The point's name.
+     * @param position The point's coordinates (in mm).
+     * @return This builder.
+     */
+    public Builder addPoint(String name, Triple position) {
+      pointNames.add(requireNonNull(name, "name"));
+      pointPositions.add(requireNonNull(position, "position"));
+      return this;
+    }
+
+    /**
+     * Adds a path.
+     *
+     * @param sourcePoint The name of the path's source point.
+     * @param destinationPoint The name of the path's destination point.
+     * @param length The path's length (in mm).
+     * @param maxVelocity The maximum velocity forward (in mm/s), 0 if not navigable forward.
+     * @param maxReverseVelocity The maximum velocity in reverse (in mm/s), 0 if not navigable in
+     * reverse.
+     * @return This builder.
+     */
+    public Builder addPath(String sourcePoint,
+                           String destinationPoint,
+                           long length,
+                           int maxVelocity,
+                           int maxReverseVelocity) {
+      checkArgument(maxVelocity >= 0, "maxVelocity < 0: %s", maxVelocity);
+      checkArgument(maxReverseVelocity >= 0, "maxReverseVelocity < 0: %s", maxReverseVelocity);
+      paths.add(new PathEntry(requireNonNull(sourcePoint, "sourcePoint"),
+                              requireNonNull(destinationPoint, "destinationPoint"),
+                              length,
+                              maxVelocity,
+                              maxReverseVelocity));
+      return this;
+    }
+
+    /**
+     * Adds a location.
+     *
+     * @param name The location's name.
+     * @param linkedPoints The names of the points linked to the location.
+     * @return This builder.
+     */
+    public Builder addLocation(String name, List<String> linkedPoints) {
+      locationPoints.put(requireNonNull(name, "name"),
+                         new ArrayList<>(requireNonNull(linkedPoints, "linkedPoints")));
+      return this;
+    }
+
+    /**
+     * Builds the plant model.
+     *
+     * @param maxVehicleVelocity The maximum velocity of vehicles (in mm/s).
+     * @return The plant model.
+     */
+    public PlantModel build(int maxVehicleVelocity) {
+      return new PlantModel(this, maxVehicleVelocity);
+    }
+  }
+
+  /**
+   * A path, by its points' names.
+   */
+  private static class PathEntry {
+
+    private final String sourcePoint;
+    private final String destinationPoint;
+    private final long length;
+    private final int maxVelocity;
+    private final int maxReverseVelocity;
+
+    PathEntry(String sourcePoint,
+              String destinationPoint,
+              long length,
+              int maxVelocity,
+              int maxReverseVelocity) {
+      this.sourcePoint = sourcePoint;
+      this.destinationPoint = destinationPoint;
+      this.length = length;
+      this.maxVelocity = maxVelocity;
+      this.maxReverseVelocity = maxReverseVelocity;
+    }
+  }
+}
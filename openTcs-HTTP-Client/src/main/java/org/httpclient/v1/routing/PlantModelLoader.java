@@ -0,0 +1,140 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.routing;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import static java.util.Objects.requireNonNull;
+import org.httpclient.v1.status.ResponseSource;
+import org.openTcs.data.model.Triple;
+import static org.openTcs.util.Assertions.checkInRange;
+
+/**
+ * Reads a {@link PlantModel} in the JSON format of the kernel's web API
+ * (<code>GET /plantModel</code>), either from the kernel or from a file.
+ * <p>
+ * Only the elements used for travel time estimation are read: points with their names and
+ * positions, paths with their points, lengths, maximum velocities and locked flags, and locations
+ * with the points they are linked to.
+ * All other elements and properties are ignored.
+ * </p>
+ *
+ * @author zzw
+ */
+public class PlantModelLoader {
+
+  /**
+   * The path of the plant model in the kernel's web API.
+   */
+  public static final String PLANT_MODEL_PATH = "/plantModel";
+  /**
+   * Parses the JSON documents.
+   */
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  /**
+   * The maximum velocity of vehicles (in mm/s).
+   */
+  private final int maxVehicleVelocity;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param maxVehicleVelocity The maximum velocity of vehicles (in mm/s).
+   */
+  public PlantModelLoader(int maxVehicleVelocity) {
+    this.maxVehicleVelocity = checkInRange(maxVehicleVelocity,
+                                           1,
+                                           Integer.MAX_VALUE,
+                                           "maxVehicleVelocity");
+  }
+
+  /**
+   * Reads the plant model from the given file.
+   *
+   * @param file The file.
+   * @return The plant model.
+   * @throws IOException If the file could not be read or does not contain a plant model.
+   */
+  public PlantModel load(java.nio.file.Path file)
+      throws IOException {
+    requireNonNull(file, "file");
+
+    try (InputStream input = Files.newInputStream(file)) {
+      return load(input);
+    }
+  }
+
+  /**
+   * Requests the plant model from the kernel.
+   *
+   * @param responseSource The source of the kernel's responses.
+   * @return The plant model.
+   * @throws IOException If the plant model could not be requested or read.
+   */
+  public PlantModel load(ResponseSource responseSource)
+      throws IOException {
+    requireNonNull(responseSource, "responseSource");
+
+    try (InputStream input = responseSource.open(PLANT_MODEL_PATH)) {
+      return load(input);
+    }
+  }
+
+  /**
+   * Reads the plant model from the given stream.
+   *
+   * @param input The stream, which is not closed.
+   * @return The plant model.
+   * @throws IOException If the stream could not be read or does not contain a plant model.
+   */
+  public PlantModel load(InputStream input)
+      throws IOException {
+    requireNonNull(input, "input");
+
+    JsonNode root = objectMapper.readTree(input);
+    if (root == null || !root.isObject()) {
+      throw new IOException("Not a plant model: expected a JSON object");
+    }
+    PlantModel.Builder builder = new PlantModel.Builder();
+    for (JsonNode point : root.path("points")) {
+      JsonNode position = point.path("position");
+      builder.addPoint(requiredText(point, "name"),
+                       new Triple(position.path("x").asLong(),
+                                  position.path("y").asLong(),
+                                  position.path("z").asLong()));
+    }
+    for (JsonNode path : root.path("paths")) {
+      boolean locked = path.path("locked").asBoolean(false);
+      builder.addPath(requiredText(path, "srcPointName"),
+                      requiredText(path, "destPointName"),
+                      path.path("length").asLong(1),
+                      locked ? 0 : Math.max(path.path("maxVelocity").asInt(0), 0),
+                      locked ? 0 : Math.max(path.path("maxReverseVelocity").asInt(0), 0));
+    }
+    for (JsonNode location : root.path("locations")) {
+      List<String> linkedPoints = new ArrayList<>();
+      for (JsonNode link : location.path("links")) {
+        linkedPoints.add(requiredText(link, "pointName"));
+      }
+      builder.addLocation(requiredText(location, "name"), linkedPoints);
+    }
+    return builder.build(maxVehicleVelocity);
+  }
+
+  private static String requiredText(JsonNode node, String fieldName)
+      throws IOException {
+    JsonNode field = node.get(fieldName);
+    if (field == null || !field.isTextual()) {
+      throw new IOException("Missing field '" + fieldName + "' in " + node);
+    }
+    return field.asText();
+  }
+}
@@ -0,0 +1,231 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.routing;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import static java.util.Objects.requireNonNull;
+import java.util.OptionalLong;
+import org.httpclient.v1.assignment.TravelTimeEstimator;
+import static org.openTcs.util.Assertions.checkArgument;
+
+/**
+ * Provides shortest travel times between points of a {@link PlantModel}.
+ * <p>
+ * The travel times from all points to a destination - a point or all points linked to a location -
+ * are computed once with Dijkstra's algorithm over the reversed paths and kept in a cache.
+ * Destinations are loading and unloading locations, which are few and do not change, while sources
+ * are vehicle positions, which change with every status update; one cached row thus answers the
+ * lookups of all vehicles, as plain array accesses.
+ * The cache is bounded by the memory its rows take, evicting the least recently used row first.
+ * </p>
+ *
+ * @author zzw
+ */
+public class RouteCostTable
+    implements TravelTimeEstimator {
+
+  /**
+   * The travel time value for unreachable points.
+   */
+  private static final int UNREACHABLE = Integer.MAX_VALUE;
+  /**
+   * The plant model.
+   */
+  private final PlantModel plantModel;
+  /**
+   * The maximum number of rows cached.
+   */
+  private final int maxCachedRows;
+  /**
+   * The computed travel time rows, by destination name, in least-recently-used order.
+   */
+  private final Map<String, int[]> rows;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param plantModel The plant model.
+   * @param maxCacheBytes The maximum memory to keep travel times in (in bytes). At least one row
+   * is kept, regardless.
+   */
+  public RouteCostTable(PlantModel plantModel, long maxCacheBytes) {
+    this.plantModel = requireNonNull(plantModel, "plantModel");
+    checkArgument(maxCacheBytes > 0, "maxCacheBytes <= 0: %s", maxCacheBytes);
+    long rowBytes = Math.max(1, (long) plantModel.getPointCount() * Integer.BYTES);
+    this.maxCachedRows = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxCacheBytes / rowBytes));
+    this.rows = new LinkedHashMap<String, int[]>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+        return size() > maxCachedRows;
+      }
+    };
+  }
+
+  /**
+   * Returns the plant model.
+   *
+   * @return The plant model.
+   */
+  public PlantModel getPlantModel() {
+    return plantModel;
+  }
+
+  /**
+   * Returns the maximum number of destinations travel times are cached for.
+   *
+   * @return The maximum number of destinations travel times are cached for.
+   */
+  public int getMaxCachedRows() {
+    return maxCachedRows;
+  }
+
+  @Override
+  public OptionalLong estimateTravelTime(String sourcePoint, String destination) {
+    requireNonNull(sourcePoint, "sourcePoint");
+    requireNonNull(destination, "destination");
+
+    int[] sourcePoints = plantModel.resolveDestination(sourcePoint);
+    if (sourcePoints.length == 0) {
+      return OptionalLong.empty();
+    }
+    int[] row = travelTimesTo(destination);
+    if (row == null) {
+      return OptionalLong.empty();
+    }
+    long best = UNREACHABLE;
+    for (int source : sourcePoints) {
+      best = Math.min(best, row[source]);
+    }
+    return best == UNREACHABLE ? OptionalLong.empty() : OptionalLong.of(best);
+  }
+
+  /**
+   * Computes the travel times to the given destinations, so later lookups do not have to.
+   * Destinations beyond the cache's capacity are skipped.
+   *
+   * @param destinations The names of the destination points or locations.
+   * @return The number of destinations travel times have been computed for.
+   */
+  public int precompute(Iterable<String> destinations) {
+    requireNonNull(destinations, "destinations");
+
+    int count = 0;
+    for (String destination : destinations) {
+      if (count == maxCachedRows) {
+        break;
+      }
+      if (travelTimesTo(destination) != null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the travel times from all points to the given destination.
+   *
+   * @param destination The name of the destination point or location.
+   * @return The travel times, by point index, or <code>null</code>, if the destination is unknown.
+   */
+  private int[] travelTimesTo(String destination) {
+    synchronized (rows) {
+      int[] row = rows.get(destination);
+      if (row != null) {
+        return row;
+      }
+    }
+    int[] destinationPoints = plantModel.resolveDestination(destination);
+    if (destinationPoints.length == 0) {
+      return null;
+    }
+    // Computed outside the lock - concurrent computations of the same row yield the same result.
+    int[] row = computeTravelTimes(destinationPoints);
+    synchronized (rows) {
+      rows.put(destination, row);
+    }
+    return row;
+  }
+
+  private int[] computeTravelTimes(int[] destinationPoints) {
+    int pointCount = plantModel.getPointCount();
+    int[] times = new int[pointCount];
+    Arrays.fill(times, UNREACHABLE);
+
+    // A binary min-heap of (time, point) pairs packed into longs; stale entries are skipped.
+    long[] heap = new long[Math.max(16, pointCount)];
+    int heapSize = 0;
+    for (int destinationPoint : destinationPoints) {
+      times[destinationPoint] = 0;
+      heap[heapSize] = pack(0, destinationPoint);
+      siftUp(heap, heapSize++);
+    }
+    while (heapSize > 0) {
+      long top = heap[0];
+      heap[0] = heap[--heapSize];
+      siftDown(heap, heapSize);
+      int time = (int) (top >>> 32);
+      int point = (int) top;
+      if (time > times[point]) {
+        continue;
+      }
+      // Follow the paths backwards, to the points they start at.
+      for (int edge = plantModel.reverseEdgesStart(point);
+           edge < plantModel.reverseEdgesEnd(point);
+           edge++) {
+        int predecessor = plantModel.reverseEdgeSource(edge);
+        long newTime = (long) time + plantModel.reverseEdgeTravelTime(edge);
+        if (newTime < times[predecessor]) {
+          times[predecessor] = (int) newTime;
+          if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heap.length * 2);
+          }
+          heap[heapSize] = pack((int) newTime, predecessor);
+          siftUp(heap, heapSize++);
+        }
+      }
+    }
+    return times;
+  }
+
+  private static long pack(int time, int point) {
+    return ((long) time << 32) | point;
+  }
+
+  private static void siftUp(long[] heap, int index) {
+    long value = heap[index];
+    while (index > 0) {
+      int parent = (index - 1) >>> 1;
+      if (heap[parent] <= value) {
+        break;
+      }
+      heap[index] = heap[parent];
+      index = parent;
+    }
+    heap[index] = value;
+  }
+
+  private static void siftDown(long[] heap, int size) {
+    if (size == 0) {
+      return;
+    }
+    long value = heap[0];
+    int index = 0;
+    int child;
+    while ((child = 2 * index + 1) < size) {
+      if (child + 1 < size && heap[child + 1] < heap[child]) {
+        child++;
+      }
+      if (value <= heap[child]) {
+        break;
+      }
+      heap[index] = heap[child];
+      index = child;
+    }
+    heap[index] = value;
+  }
+}
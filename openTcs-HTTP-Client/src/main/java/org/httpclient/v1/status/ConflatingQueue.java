@@ -0,0 +1,262 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.status;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import static java.util.Objects.requireNonNull;
+import javax.annotation.Nullable;
+import org.httpclient.v1.status.binding.OrderStatusMessage;
+import org.httpclient.v1.status.binding.StatusMessage;
+import org.httpclient.v1.status.binding.StatusMessageList;
+import org.httpclient.v1.status.binding.TransportOrderState;
+import org.httpclient.v1.status.binding.VehicleDeltaMessage;
+import org.httpclient.v1.status.binding.VehicleState;
+import org.httpclient.v1.status.binding.VehicleStatusMessage;
+
+/**
+ * Queues status data for a slow consumer, keeping only the latest update per vehicle and per
+ * transport order.
+ * <p>
+ * An update for a vehicle or transport order that is still queued replaces the queued update of
+ * the same type, keeping its position in the queue; status message lists are split into their
+ * messages.
+ * A {@link VehicleStatusMessage} is merged into a queued one for the same vehicle, so data the
+ * newer message omits, like the processing state, is kept.
+ * As status messages may carry only part of a vehicle's or transport order's data, a message
+ * never replaces a queued {@link VehicleState} or {@link TransportOrderState} snapshot; it is
+ * queued behind it instead.
+ * A snapshot, in turn, supersedes a queued message for the same vehicle or transport order, which
+ * is removed.
+ * A {@link VehicleDeltaMessage} does not replace a queued one for the same vehicle, but is merged
+ * into it, so no change is lost.
+ * Of other events, only the latest of each type is kept.
+ * The queue's size is thus bounded by the number of vehicles and transport orders, not by how far
+ * the consumer lags behind, and the consumer never processes outdated updates.
+ * </p>
+ * <p>
+ * The queue is filled as a {@link StatusEventConsumer}, which never blocks, and drained by the
+ * consumer at its own pace.
+ * </p>
+ *
+ * @author zzw
+ */
+public class ConflatingQueue
+    implements StatusEventConsumer {
+
+  /**
+   * The queued events, by key, in the order their keys were queued.
+   */
+  private final Map<Object, Object> events = new LinkedHashMap<>();
+  /**
+   * The number of events replaced by newer ones.
+   */
+  private long conflatedCount;
+
+  /**
+   * Creates a new instance.
+   */
+  public ConflatingQueue() {
+  }
+
+  @Override
+  public void onEvent(Object event, long sequence, boolean endOfBatch) {
+    offer(event);
+  }
+
+  /**
+   * Queues the given event, replacing or merging with a queued update for the same vehicle or
+   * transport order.
+   *
+   * @param event The event.
+   */
+  public synchronized void offer(Object event) {
+    requireNonNull(event, "event");
+
+    if (event instanceof StatusMessageList) {
+      for (StatusMessage message : ((StatusMessageList) event).getStatusMessages()) {
+        put(message);
+      }
+    }
+    else {
+      put(event);
+    }
+    notifyAll();
+  }
+
+  /**
+   * Removes and returns all queued events, waiting for events to become available if necessary.
+   *
+   * @param timeout The maximum time to wait.
+   * @return The queued events, in queue order; empty if none became available within the timeout.
+   * @throws InterruptedException If the current thread was interrupted while waiting.
+   */
+  public synchronized List<Object> drain(Duration timeout)
+      throws InterruptedException {
+    requireNonNull(timeout, "timeout");
+
+    long deadline = System.nanoTime() + timeout.toNanos();
+    while (events.isEmpty()) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return new ArrayList<>();
+      }
+      wait(Math.max(1, remaining / 1_000_000));
+    }
+    List<Object> result = new ArrayList<>(events.values());
+    events.clear();
+    return result;
+  }
+
+  /**
+   * Removes and returns all queued events without waiting.
+   *
+   * @return The queued events, in queue order; empty if there are none.
+   */
+  public synchronized List<Object> poll() {
+    List<Object> result = new ArrayList<>(events.values());
+    events.clear();
+    return result;
+  }
+
+  /**
+   * Returns the number of events queued.
+   *
+   * @return The number of events queued.
+   */
+  public synchronized int size() {
+    return events.size();
+  }
+
+  /**
+   * Returns the number of events that were replaced by newer ones before being drained.
+   *
+   * @return The number of events that were replaced by newer ones before being drained.
+   */
+  public synchronized long getConflatedCount() {
+    return conflatedCount;
+  }
+
+  private void put(Object event) {
+    Object key = keyOf(event);
+    Object supersededKey = supersededKeyOf(event);
+    if (supersededKey != null && events.remove(supersededKey) != null) {
+      conflatedCount++;
+    }
+    Object queued = events.get(key);
+    if (queued != null) {
+      events.put(key, merge(queued, event));
+      conflatedCount++;
+    }
+    else {
+      events.put(key, event);
+    }
+  }
+
+  /**
+   * Returns the update replacing the given queued one.
+   *
+   * @param queued The queued update.
+   * @param event The newer update for the same vehicle or transport order, of the same type.
+   * @return The update replacing the queued one.
+   */
+  private static Object merge(Object queued, Object event) {
+    if (event instanceof VehicleStatusMessage) {
+      return ((VehicleStatusMessage) queued).mergedWith((VehicleStatusMessage) event);
+    }
+    if (event instanceof VehicleDeltaMessage) {
+      return ((VehicleDeltaMessage) queued).mergedWith((VehicleDeltaMessage) event);
+    }
+    return event;
+  }
+
+  /**
+   * Returns the key of the given event; events with equal keys are merged or replace each other.
+   *
+   * @param event The event.
+   * @return The event's key.
+   */
+  private static Object keyOf(Object event) {
+    if (event instanceof VehicleStatusMessage) {
+      return new Key(Key.Kind.VEHICLE_MESSAGE, ((VehicleStatusMessage) event).getVehicleName());
+    }
+    if (event instanceof VehicleState) {
+      return new Key(Key.Kind.VEHICLE_STATE, ((VehicleState) event).getName());
+    }
+    if (event instanceof VehicleDeltaMessage) {
+      return new Key(Key.Kind.VEHICLE_DELTA, ((VehicleDeltaMessage) event).getVehicleName());
+    }
+    if (event instanceof OrderStatusMessage) {
+      return new Key(Key.Kind.ORDER_MESSAGE, ((OrderStatusMessage) event).getOrderName());
+    }
+    if (event instanceof TransportOrderState) {
+      return new Key(Key.Kind.ORDER_STATE, ((TransportOrderState) event).getName());
+    }
+    // The latest event of any other type replaces the queued one.
+    return event.getClass();
+  }
+
+  /**
+   * Returns the key of the status message superseded by the given snapshot.
+   *
+   * @param event The event.
+   * @return The key of the superseded status message, or <code>null</code>, if the event is not a
+   * snapshot.
+   */
+  @Nullable
+  private static Object supersededKeyOf(Object event) {
+    if (event instanceof VehicleState) {
+      return new Key(Key.Kind.VEHICLE_MESSAGE, ((VehicleState) event).getName());
+    }
+    if (event instanceof TransportOrderState) {
+      return new Key(Key.Kind.ORDER_MESSAGE, ((TransportOrderState) event).getName());
+    }
+    return null;
+  }
+
+  /**
+   * Identifies the vehicle or transport order an update is about, and the update's type.
+   */
+  private static class Key {
+
+    private final Kind kind;
+    private final String name;
+
+    Key(Kind kind, String name) {
+      this.kind = kind;
+      this.name = name;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return kind == other.kind && Objects.equals(name, other.name);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * kind.hashCode() + Objects.hashCode(name);
+    }
+
+    enum Kind {
+      VEHICLE_MESSAGE,
+      VEHICLE_STATE,
+      VEHICLE_DELTA,
+      ORDER_MESSAGE,
+      ORDER_STATE;
+    }
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.status;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import static java.util.Objects.requireNonNull;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.httpclient.v1.assignment.VehicleStateCache.CachedVehicle;
+import org.httpclient.v1.assignment.VehicleStateCache.CachedVehicle.EnergyBand;
+import org.httpclient.v1.status.filter.VehicleFilter;
+import org.openTcs.data.model.Vehicle;
+
+/**
+ * An immutable, consistent snapshot of the fleet's state, indexed by vehicle name, processing
+ * state, state, current position and energy band.
+ *
+ * @author zzw
+ */
+public class FleetSnapshot {
+
+  /**
+   * An empty snapshot.
+   */
+  static final FleetSnapshot EMPTY = new FleetSnapshot(-1,
+                                                       Collections.emptyMap(),
+                                                       Collections.emptyMap(),
+                                                       Collections.emptyMap(),
+                                                       Collections.emptyMap(),
+                                                       Collections.emptyMap());
+  /**
+   * The sequence of the last status event included.
+   */
+  private final long sequence;
+  /**
+   * The vehicles, by name.
+   */
+  private final Map<String, CachedVehicle> vehicles;
+  /**
+   * The vehicles' names, by processing state.
+   */
+  private final Map<Vehicle.ProcState, Set<String>> byProcState;
+  /**
+   * The vehicles' names, by state.
+   */
+  private final Map<Vehicle.State, Set<String>> byState;
+  /**
+   * The vehicles' names, by current position.
+   */
+  private final Map<String, Set<String>> byPosition;
+  /**
+   * The vehicles' names, by energy band.
+   */
+  private final Map<EnergyBand, Set<String>> byEnergyBand;
+
+  FleetSnapshot(long sequence,
+                Map<String, CachedVehicle> vehicles,
+                Map<Vehicle.ProcState, Set<String>> byProcState,
+                Map<Vehicle.State, Set<String>> byState,
+                Map<String, Set<String>> byPosition,
+                Map<EnergyBand, Set<String>> byEnergyBand) {
+    this.sequence = sequence;
+    this.vehicles = vehicles;
+    this.byProcState = byProcState;
+    this.byState = byState;
+    this.byPosition = byPosition;
+    this.byEnergyBand = byEnergyBand;
+  }
+
+  /**
+   * Returns the sequence of the last status event included in this snapshot.
+   *
+   * @return The sequence of the last status event included in this snapshot.
+   */
+  public long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * Returns the vehicle with the given name.
+   *
+   * @param vehicleName The vehicle's name.
+   * @return The vehicle, or <code>null</code>, if nothing is known about it.
+   */
+  @Nullable
+  public CachedVehicle getVehicle(String vehicleName) {
+    return vehicles.get(requireNonNull(vehicleName, "vehicleName"));
+  }
+
+  /**
+   * Returns all vehicles.
+   *
+   * @return All vehicles.
+   */
+  public Collection<CachedVehicle> getVehicles() {
+    return vehicles.values();
+  }
+
+  /**
+   * Returns the vehicles in the given processing state.
+   *
+   * @param procState The processing state.
+   * @return The vehicles in the given processing state.
+   */
+  public List<CachedVehicle> getVehiclesWithProcState(Vehicle.ProcState procState) {
+    return lookup(byProcState.get(requireNonNull(procState, "procState")));
+  }
+
+  /**
+   * Returns the vehicles in the given state.
+   *
+   * @param state The state.
+   * @return The vehicles in the given state.
+   */
+  public List<CachedVehicle> getVehiclesWithState(Vehicle.State state) {
+    return lookup(byState.get(requireNonNull(state, "state")));
+  }
+
+  /**
+   * Returns the vehicles at the given point.
+   *
+   * @param pointName The name of the point.
+   * @return The vehicles at the given point.
+   */
+  public List<CachedVehicle> getVehiclesAt(String pointName) {
+    return lookup(byPosition.get(requireNonNull(pointName, "pointName")));
+  }
+
+  /**
+   * Returns the vehicles whose energy level is in the given band.
+   * Energy levels are only updated by vehicle state snapshots, not by status messages, so the
+   * result may be stale (see {@link FleetView}).
+   *
+   * @param energyBand The energy band.
+   * @return The vehicles whose energy level is in the given band.
+   */
+  public List<CachedVehicle> getVehiclesWithEnergyBand(EnergyBand energyBand) {
+    return lookup(byEnergyBand.get(requireNonNull(energyBand, "energyBand")));
+  }
+
+  /**
+   * Returns the vehicles accepted by the given filter, using the processing state index.
+   *
+   * @param filter The filter.
+   * @return The vehicles accepted by the given filter.
+   */
+  public List<CachedVehicle> select(VehicleFilter filter) {
+    requireNonNull(filter, "filter");
+
+    if (filter.getProcState() == null) {
+      return new ArrayList<>(vehicles.values());
+    }
+    for (Vehicle.ProcState procState : Vehicle.ProcState.values()) {
+      if (procState.name().equals(filter.getProcState())) {
+        return getVehiclesWithProcState(procState);
+      }
+    }
+    return new ArrayList<>();
+  }
+
+  private List<CachedVehicle> lookup(@Nullable Set<String> vehicleNames) {
+    if (vehicleNames == null) {
+      return new ArrayList<>();
+    }
+    List<CachedVehicle> result = new ArrayList<>(vehicleNames.size());
+    for (String vehicleName : vehicleNames) {
+      result.add(vehicles.get(vehicleName));
+    }
+    return result;
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.status;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import org.httpclient.v1.assignment.VehicleStateCache.CachedVehicle;
+import org.httpclient.v1.assignment.VehicleStateCache.CachedVehicle.EnergyBand;
+import org.httpclient.v1.status.binding.StatusMessage;
+import org.httpclient.v1.status.binding.StatusMessageList;
+import org.httpclient.v1.status.binding.VehicleState;
+import org.httpclient.v1.status.binding.VehicleStatusMessage;
+import org.openTcs.data.model.Vehicle;
+
+/**
+ * A live, in-memory view of the fleet's state, fed by {@link VehicleStatusMessage}s and
+ * {@link VehicleState}s.
+ * <p>
+ * The view is a {@link StatusEventConsumer} and is updated by its consumer thread only, so updates
+ * need no locks.
+ * Secondary indexes (processing state, state, current position and energy band) are maintained
+ * incrementally.
+ * At the end of each batch that updated vehicles, a new immutable {@link FleetSnapshot} is
+ * published.
+ * The snapshot's map of vehicles is a copy of the whole map, i.e. proportional to the fleet's size,
+ * which is small; of the indexes, only the buckets changed within the batch are copied.
+ * Readers get the latest snapshot with a single volatile read and always see a consistent state.
+ * </p>
+ * <p>
+ * Status messages do not carry energy levels: a vehicle's energy level, and thus its energy band,
+ * is only updated by {@link VehicleState}s, which the kernel's status channel only delivers when
+ * resynchronizing after lost messages.
+ * Between those, the energy band index reflects the energy levels as of the last resynchronization
+ * and may be stale.
+ * </p>
+ *
+ * @author zzw
+ */
+public class FleetView
+    implements StatusEventConsumer {
+
+  /**
+   * The vehicles, by name.
+   */
+  private final Map<String, CachedVehicle> vehicles = new HashMap<>();
+  /**
+   * The processing state index.
+   */
+  private final Index<Vehicle.ProcState> procStateIndex = new Index<>(CachedVehicle::getProcState);
+  /**
+   * The state index.
+   */
+  private final Index<Vehicle.State> stateIndex = new Index<>(CachedVehicle::getState);
+  /**
+   * The current position index.
+   */
+  private final Index<String> positionIndex = new Index<>(CachedVehicle::getCurrentPosition);
+  /**
+   * The energy band index.
+   */
+  private final Index<EnergyBand> energyBandIndex = new Index<>(CachedVehicle::getEnergyBand);
+  /**
+   * Whether vehicles were updated since the last snapshot was published.
+   */
+  private boolean dirty;
+  /**
+   * The latest snapshot.
+   */
+  private volatile FleetSnapshot snapshot = FleetSnapshot.EMPTY;
+
+  /**
+   * Creates a new instance.
+   */
+  public FleetView() {
+  }
+
+  /**
+   * Returns the latest snapshot of the fleet's state.
+   *
+   * @return The latest snapshot of the fleet's state.
+   */
+  public FleetSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  @Override
+  public void onEvent(Object event, long sequence, boolean endOfBatch) {
+    if (event instanceof VehicleStatusMessage) {
+      VehicleStatusMessage message = (VehicleStatusMessage) event;
+      update(CachedVehicle.fromStatusMessage(message, vehicles.get(message.getVehicleName())));
+    }
+    else if (event instanceof VehicleState) {
+      update(CachedVehicle.fromVehicleState((VehicleState) event));
+    }
+    else if (event instanceof StatusMessageList) {
+      for (StatusMessage message : ((StatusMessageList) event).getStatusMessages()) {
+        if (message instanceof VehicleStatusMessage) {
+          VehicleStatusMessage vehicleMessage = (VehicleStatusMessage) message;
+          update(CachedVehicle.fromStatusMessage(vehicleMessage,
+                                                 vehicles.get(vehicleMessage.getVehicleName())));
+        }
+      }
+    }
+
+    if (endOfBatch && dirty) {
+      publish(sequence);
+    }
+  }
+
+  private void update(CachedVehicle vehicle) {
+    CachedVehicle previous = vehicles.put(vehicle.getName(), vehicle);
+    procStateIndex.update(previous, vehicle);
+    stateIndex.update(previous, vehicle);
+    positionIndex.update(previous, vehicle);
+    energyBandIndex.update(previous, vehicle);
+    dirty = true;
+  }
+
+  private void publish(long sequence) {
+    snapshot = new FleetSnapshot(sequence,
+                                 Collections.unmodifiableMap(new HashMap<>(vehicles)),
+                                 procStateIndex.publish(),
+                                 stateIndex.publish(),
+                                 positionIndex.publish(),
+                                 energyBandIndex.publish());
+    dirty = false;
+  }
+
+  /**
+   * A secondary index mapping a vehicle attribute to the names of the vehicles having it.
+   *
+   * @param <K> The attribute's type.
+   */
+  private static class Index<K> {
+
+    /**
+     * Extracts the attribute from a vehicle.
+     */
+    private final Function<CachedVehicle, K> attribute;
+    /**
+     * The current buckets.
+     */
+    private final Map<K, Set<String>> buckets = new HashMap<>();
+    /**
+     * The keys of the buckets changed since the last publication.
+     */
+    private final Set<K> dirtyKeys = new HashSet<>();
+    /**
+     * The buckets as of the last publication.
+     */
+    private Map<K, Set<String>> published = Collections.emptyMap();
+
+    Index(Function<CachedVehicle, K> attribute) {
+      this.attribute = attribute;
+    }
+
+    void update(@Nullable CachedVehicle previous, CachedVehicle current) {
+      K oldKey = previous == null ? null : attribute.apply(previous);
+      K newKey = attribute.apply(current);
+      if (previous != null && Objects.equals(oldKey, newKey)) {
+        return;
+      }
+      if (oldKey != null) {
+        Set<String> bucket = buckets.get(oldKey);
+        bucket.remove(previous.getName());
+        if (bucket.isEmpty()) {
+          buckets.remove(oldKey);
+        }
+        dirtyKeys.add(oldKey);
+      }
+      if (newKey != null) {
+        buckets.computeIfAbsent(newKey, key -> new HashSet<>()).add(current.getName());
+        dirtyKeys.add(newKey);
+      }
+    }
+
+    Map<K, Set<String>> publish() {
+      if (dirtyKeys.isEmpty()) {
+        return published;
+      }
+      Map<K, Set<String>> result = new HashMap<>(published);
+      for (K key : dirtyKeys) {
+        Set<String> bucket = buckets.get(key);
+        if (bucket == null) {
+          result.remove(key);
+        }
+        else {
+          result.put(key, Set.copyOf(bucket));
+        }
+      }
+      dirtyKeys.clear();
+      published = Collections.unmodifiableMap(result);
+      return published;
+    }
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.status;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import static java.util.Objects.requireNonNull;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Requests status data from the kernel's web API.
+ *
+ * @author zzw
+ */
+public class HttpResponseSource
+    implements ResponseSource {
+
+  /**
+   * The base URL of the kernel's web API, e.g. <code>http://127.0.0.1:55200/v1</code>.
+   */
+  private final String kernelBaseUrl;
+  /**
+   * The HTTP client, keeping connections to the kernel alive between requests.
+   */
+  private final CloseableHttpClient httpClient;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param kernelBaseUrl The base URL of the kernel's web API.
+   * @param pollTimeout The time the kernel may wait for new status messages before responding.
+   * @param timeout The connect and read timeout, in addition to the poll timeout.
+   */
+  public HttpResponseSource(String kernelBaseUrl, Duration pollTimeout, Duration timeout) {
+    this.kernelBaseUrl = requireNonNull(kernelBaseUrl, "kernelBaseUrl");
+    requireNonNull(pollTimeout, "pollTimeout");
+    requireNonNull(timeout, "timeout");
+
+    this.httpClient = HttpClients.custom()
+        .setDefaultRequestConfig(RequestConfig.custom()
+            .setConnectTimeout((int) timeout.toMillis())
+            .setConnectionRequestTimeout((int) timeout.toMillis())
+            .setSocketTimeout((int) (timeout.toMillis() + pollTimeout.toMillis()))
+            .build())
+        .build();
+  }
+
+  @Override
+  public InputStream open(String path)
+      throws IOException {
+    HttpGet httpGet = new HttpGet(kernelBaseUrl + path);
+    CloseableHttpResponse response = httpClient.execute(httpGet);
+    try {
+      HttpEntity entity = response.getEntity();
+      if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK || entity == null) {
+        EntityUtils.consume(entity);
+        throw new IOException("Request " + path + " failed: " + response.getStatusLine());
+      }
+      return new FilterInputStream(entity.getContent()) {
+        @Override
+        public void close()
+            throws IOException {
+          try {
+            super.close();
+          }
+          finally {
+            response.close();
+          }
+        }
+      };
+    }
+    catch (IOException | RuntimeException exc) {
+      response.close();
+      throw exc;
+    }
+  }
+}
@@ -5,10 +5,189 @@
  */
 package org.httpclient.v1.status;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+import static java.util.Objects.requireNonNull;
+import java.util.concurrent.atomic.LongAdder;
+import org.httpclient.v1.status.binding.TransportOrderState;
+import org.httpclient.v1.status.binding.VehicleState;
+
 /**
+ * Requests status data from the kernel's web API.
+ * <p>
+ * Responses are parsed directly from the response stream - status messages one by one, while they
+ * are being received - and the number of bytes received is recorded, so the cost of status polling
+ * can be monitored.
+ * The responses are provided by a {@link ResponseSource} - usually the kernel's web API, but e.g.
+ * also a recording of it.
+ * </p>
  *
  * @author zzw
  */
 public class RequestStatusHandler {
-    
+
+  /**
+   * Provides the responses.
+   */
+  private final ResponseSource responseSource;
+  /**
+   * The time the kernel may wait for new status messages before responding (in ms).
+   */
+  private final long pollTimeoutMillis;
+  /**
+   * Parses the responses.
+   */
+  private final ObjectMapper mapper = new ObjectMapper()
+      .registerModule(new JavaTimeModule())
+      .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+  /**
+   * Decodes status message lists.
+   */
+  private final StatusMessageDecoder decoder = new StatusMessageDecoder();
+  /**
+   * The number of bytes received.
+   */
+  private final LongAdder bytesReceived = new LongAdder();
+  /**
+   * The number of requests sent.
+   */
+  private final LongAdder requestCount = new LongAdder();
+
+  /**
+   * Creates a new instance requesting status data from the kernel's web API.
+   *
+   * @param kernelBaseUrl The base URL of the kernel's web API.
+   * @param pollTimeout The time the kernel may wait for new status messages before responding.
+   * @param timeout The connect and read timeout, in addition to the poll timeout.
+   */
+  public RequestStatusHandler(String kernelBaseUrl, Duration pollTimeout, Duration timeout) {
+    this(new HttpResponseSource(kernelBaseUrl, pollTimeout, timeout), pollTimeout);
+  }
+
+  /**
+   * Creates a new instance.
+   *
+   * @param responseSource Provides the responses.
+   * @param pollTimeout The time the kernel may wait for new status messages before responding.
+   */
+  public RequestStatusHandler(ResponseSource responseSource, Duration pollTimeout) {
+    this.responseSource = requireNonNull(responseSource, "responseSource");
+    this.pollTimeoutMillis = requireNonNull(pollTimeout, "pollTimeout").toMillis();
+  }
+
+  /**
+   * Requests the status messages with the given minimum sequence number and hands them to the
+   * given handler while they are being received.
+   *
+   * @param minSequenceNumber The minimum sequence number.
+   * @param handler The handler.
+   * @throws IOException If the request failed.
+   */
+  public void fetchStatusMessages(long minSequenceNumber, StatusMessageDecoder.MessageHandler handler)
+      throws IOException {
+    requireNonNull(handler, "handler");
+
+    get("/events?minSequenceNo=" + minSequenceNumber + "&timeout=" + pollTimeoutMillis,
+        in -> decoder.decode(in, handler));
+  }
+
+  /**
+   * Requests the states of all vehicles.
+   *
+   * @return The vehicle states.
+   * @throws IOException If the request failed.
+   */
+  public List<VehicleState> fetchVehicles()
+      throws IOException {
+    return get("/vehicles", in -> mapper.readValue(in, new TypeReference<List<VehicleState>>() {
+           }));
+  }
+
+  /**
+   * Requests the states of all transport orders.
+   *
+   * @return The transport order states.
+   * @throws IOException If the request failed.
+   */
+  public List<TransportOrderState> fetchTransportOrders()
+      throws IOException {
+    return get("/transportOrders",
+               in -> mapper.readValue(in, new TypeReference<List<TransportOrderState>>() {
+               }));
+  }
+
+  /**
+   * Returns the number of bytes received so far.
+   *
+   * @return The number of bytes received so far.
+   */
+  public long getBytesReceived() {
+    return bytesReceived.sum();
+  }
+
+  /**
+   * Returns the number of requests sent so far.
+   *
+   * @return The number of requests sent so far.
+   */
+  public long getRequestCount() {
+    return requestCount.sum();
+  }
+
+  private <T> T get(String path, ResponseReader<T> reader)
+      throws IOException {
+    requestCount.increment();
+    try (InputStream in = new CountingInputStream(responseSource.open(path))) {
+      return reader.read(in);
+    }
+  }
+
+  /**
+   * Reads a response body.
+   *
+   * @param <T> The type of the result.
+   */
+  private interface ResponseReader<T> {
+
+    T read(InputStream in)
+        throws IOException;
+  }
+
+  /**
+   * Counts the bytes read from a response.
+   */
+  private class CountingInputStream
+      extends FilterInputStream {
+
+    CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read()
+        throws IOException {
+      int result = super.read();
+      if (result >= 0) {
+        bytesReceived.increment();
+      }
+      return result;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length)
+        throws IOException {
+      int count = super.read(buffer, offset, length);
+      if (count > 0) {
+        bytesReceived.add(count);
+      }
+      return count;
+    }
+  }
 }
@@ -0,0 +1,27 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.status;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Provides the responses to status requests, usually from the kernel's web API.
+ *
+ * @author zzw
+ */
+public interface ResponseSource {
+
+  /**
+   * Requests the given resource and opens the response body.
+   *
+   * @param path The resource's path relative to the web API's base URL, including the query.
+   * @return The response body, to be closed by the caller.
+   * @throws IOException If the request failed.
+   */
+  InputStream open(String path)
+      throws IOException;
+}
@@ -0,0 +1,30 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.status;
+
+/**
+ * Consumes the status data dispatched by a {@link StatusEventDispatcher}.
+ * <p>
+ * Each consumer is called by its own thread and sees all events, in the order they were
+ * dispatched.
+ * Events that became available together are handed over as a batch, the last one flagged with
+ * <code>endOfBatch</code>, so consumers can defer expensive work (e.g. flushing to disk) to the end
+ * of a batch.
+ * </p>
+ *
+ * @author zzw
+ */
+public interface StatusEventConsumer {
+
+  /**
+   * Consumes an event.
+   *
+   * @param event The event.
+   * @param sequence The event's sequence in the dispatcher.
+   * @param endOfBatch Whether this is the last event of the current batch.
+   */
+  void onEvent(Object event, long sequence, boolean endOfBatch);
+}
@@ -5,10 +5,760 @@
  */
 package org.httpclient.v1.status;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static java.util.Objects.requireNonNull;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+import org.openTcs.util.event.BatchEventHandler;
+import org.openTcs.util.event.EventHandler;
+import static org.openTcs.util.Assertions.checkArgument;
+import static org.openTcs.util.Assertions.checkState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
+ * Hands status data received from the kernel to the bridge's components.
+ * <p>
+ * Events are passed through a preallocated ring buffer, in the style of the LMAX Disruptor:
+ * producers claim a slot by advancing a shared cursor with a CAS operation, store the event and
+ * mark the slot as published; each consumer runs in its own thread, tracks its own sequence and
+ * processes all events published since its last batch in one go.
+ * Producers wait for the slowest consumer when the buffer is full, until the dispatcher is
+ * terminated.
+ * Once all consumers have processed an event, its slot is cleared, so the buffer does not keep
+ * events reachable after they are processed.
+ * Dispatching neither allocates nor locks, except for signalling consumers blocked with the
+ * {@link WaitStrategy#BLOCKING} strategy.
+ * </p>
+ * <p>
+ * Consumers are added before the dispatcher is started.
+ * Slow consumers that only need the latest state of each vehicle and transport order can be added
+ * behind a {@link ConflatingQueue}, so they neither hold up producers nor fall behind.
+ * How idle consumers wait for new events is defined by the {@link WaitStrategy}.
+ * </p>
+ * <p>
+ * For measurements, e.g. when replaying recorded status data, the dispatcher can record the time
+ * from dispatching an event until each consumer has processed it.
+ * </p>
  *
  * @author zzw
  */
 public class StatusEventDispatcher {
 
+  /**
+   * This class's logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(StatusEventDispatcher.class);
+  /**
+   * The sequence preceding the first event.
+   */
+  private static final long INITIAL_SEQUENCE = -1;
+  /**
+   * The maximum time drainers of conflating queues wait for events before checking whether the
+   * dispatcher is still running.
+   */
+  private static final Duration DRAIN_TIMEOUT = Duration.ofMillis(100);
+  /**
+   * The time to park for while waiting for consumers to catch up (in ns).
+   */
+  private static final long AWAIT_PARK_NANOS = 1_000_000;
+  /**
+   * The maximum time consumers blocked with the {@link WaitStrategy#BLOCKING} strategy wait for a
+   * signal before checking for events again (in ms).
+   */
+  private static final long BLOCKING_TIMEOUT_MILLIS = 100;
+  /**
+   * The maximum number of events passed to a batch handler in one call.
+   */
+  public static final int MAX_HANDLER_BATCH_SIZE = 256;
+  /**
+   * The ring buffer's entries.
+   */
+  private final Object[] entries;
+  /**
+   * The mask mapping sequences to entry indices.
+   */
+  private final int indexMask;
+  /**
+   * The number of bits to shift a sequence by to get its round number.
+   */
+  private final int indexShift;
+  /**
+   * The round number of the event published in each slot.
+   */
+  private final AtomicIntegerArray published;
+  /**
+   * The number of consumers that have not processed the event in each slot, yet.
+   */
+  private final AtomicIntegerArray pendingConsumers;
+  /**
+   * The time each slot's event was dispatched at (as {@link System#nanoTime()}), or
+   * <code>null</code>, if latencies are not recorded.
+   */
+  private long[] dispatchNanos;
+  /**
+   * How idle consumers wait for events.
+   */
+  private final WaitStrategy waitStrategy;
+  /**
+   * The lock consumers blocked with the {@link WaitStrategy#BLOCKING} strategy wait on.
+   */
+  private final Object blockingLock = new Object();
+  /**
+   * The number of consumers blocked with the {@link WaitStrategy#BLOCKING} strategy.
+   */
+  private final AtomicInteger blockedConsumers = new AtomicInteger();
+  /**
+   * The highest sequence claimed by a producer.
+   */
+  private final Sequence cursor = new Sequence(INITIAL_SEQUENCE);
+  /**
+   * The minimum consumer sequence seen the last time the producers checked.
+   */
+  private final Sequence gatingSequenceCache = new Sequence(INITIAL_SEQUENCE);
+  /**
+   * The consumers.
+   */
+  private final List<ConsumerProcessor> consumers = new ArrayList<>();
+  /**
+   * The threads draining conflating queues.
+   */
+  private final List<Thread> drainers = new ArrayList<>();
+  /**
+   * The consumers' sequences.
+   */
+  private volatile Sequence[] gatingSequences = new Sequence[0];
+  /**
+   * Whether this dispatcher is running.
+   */
+  private volatile boolean running;
+  /**
+   * Whether this dispatcher has been terminated.
+   */
+  private volatile boolean terminated;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param bufferSize The number of slots in the ring buffer (a power of 2).
+   * @param waitStrategy How idle consumers wait for events.
+   */
+  public StatusEventDispatcher(int bufferSize, WaitStrategy waitStrategy) {
+    checkArgument(bufferSize > 0 && Integer.bitCount(bufferSize) == 1,
+                  "bufferSize not a power of 2: %s",
+                  bufferSize);
+    this.waitStrategy = requireNonNull(waitStrategy, "waitStrategy");
+    this.entries = new Object[bufferSize];
+    this.indexMask = bufferSize - 1;
+    this.indexShift = Integer.numberOfTrailingZeros(bufferSize);
+    this.published = new AtomicIntegerArray(bufferSize);
+    this.pendingConsumers = new AtomicIntegerArray(bufferSize);
+    for (int i = 0; i < bufferSize; i++) {
+      published.set(i, -1);
+    }
+  }
+
+  /**
+   * Adds a consumer.
+   *
+   * @param name The consumer's name, used for its thread.
+   * @param consumer The consumer.
+   */
+  public synchronized void addConsumer(String name, StatusEventConsumer consumer) {
+    requireNonNull(name, "name");
+    requireNonNull(consumer, "consumer");
+    checkState(!running, "Already started");
+
+    // The consumer starts after the events dispatched so far and holds up producers from now on.
+    ConsumerProcessor processor = new ConsumerProcessor(name, consumer, cursor.get());
+    consumers.add(processor);
+    Sequence[] sequences = new Sequence[consumers.size()];
+    for (int i = 0; i < sequences.length; i++) {
+      sequences[i] = consumers.get(i).sequence;
+    }
+    gatingSequences = sequences;
+  }
+
+  /**
+   * Adds a consumer forwarding all events to the given handler, e.g. an event bus.
+   * A {@link BatchEventHandler} receives all events processed by the consumer in one go, up to
+   * {@link #MAX_HANDLER_BATCH_SIZE}.
+   *
+   * @param name The consumer's name, used for its thread.
+   * @param handler The handler.
+   */
+  public void addConsumer(String name, EventHandler handler) {
+    requireNonNull(handler, "handler");
+
+    if (handler instanceof BatchEventHandler) {
+      addConsumer(name, new BatchingConsumer((BatchEventHandler) handler));
+    }
+    else {
+      addConsumer(name, (event, sequence, endOfBatch) -> handler.onEvent(event));
+    }
+  }
+
+  /**
+   * Adds a consumer forwarding events to the given handler through a {@link ConflatingQueue}.
+   * The handler is called by a separate thread and sees only the latest update for each vehicle
+   * and transport order queued since it was last called; a {@link BatchEventHandler} receives them
+   * in one go, up to {@link #MAX_HANDLER_BATCH_SIZE}.
+   *
+   * @param name The consumer's name, used for its threads.
+   * @param handler The handler.
+   * @return The consumer's queue.
+   */
+  public synchronized ConflatingQueue addConflatingConsumer(String name, EventHandler handler) {
+    requireNonNull(name, "name");
+    requireNonNull(handler, "handler");
+
+    ConflatingQueue queue = new ConflatingQueue();
+    addConsumer(name, queue);
+    Thread drainer = new Thread(() -> drain(name, queue, handler), "status-conflated-" + name);
+    drainer.setDaemon(true);
+    drainers.add(drainer);
+    return queue;
+  }
+
+  /**
+   * Makes consumers record the time from dispatching each event until they have processed it.
+   * Recording costs a call to {@link System#nanoTime()} per event and batch.
+   */
+  public synchronized void recordLatencies() {
+    checkState(!running, "Already started");
+
+    dispatchNanos = new long[entries.length];
+  }
+
+  /**
+   * Starts the consumers.
+   */
+  public synchronized void start() {
+    checkState(!terminated, "Already terminated");
+    checkState(!running, "Already started");
+
+    running = true;
+    for (ConsumerProcessor consumer : consumers) {
+      consumer.thread.start();
+    }
+    for (Thread drainer : drainers) {
+      drainer.start();
+    }
+  }
+
+  /**
+   * Stops the consumers.
+   * Events not consumed, yet, are discarded, and producers waiting for a full buffer give up.
+   */
+  public synchronized void terminate() {
+    terminated = true;
+    running = false;
+    for (ConsumerProcessor consumer : consumers) {
+      LockSupport.unpark(consumer.thread);
+    }
+    synchronized (blockingLock) {
+      blockingLock.notifyAll();
+    }
+  }
+
+  /**
+   * Dispatches the given status data to all consumers.
+   * Waits for the slowest consumer if the ring buffer is full.
+   *
+   * @param event The status data.
+   * @throws IllegalStateException If this dispatcher has been terminated, also while waiting.
+   */
+  public void dispatch(Object event)
+      throws IllegalStateException {
+    requireNonNull(event, "event");
+    checkState(!terminated, "Already terminated");
+
+    long sequence = claim();
+    int index = (int) sequence & indexMask;
+    entries[index] = event;
+    pendingConsumers.set(index, gatingSequences.length);
+    if (dispatchNanos != null) {
+      dispatchNanos[index] = System.nanoTime();
+    }
+    published.set(index, (int) (sequence >>> indexShift));
+    // The count is read after publishing, so a consumer counted as not blocked sees the event.
+    if (blockedConsumers.get() > 0) {
+      synchronized (blockingLock) {
+        blockingLock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of events dispatched so far.
+   *
+   * @return The number of events dispatched so far.
+   */
+  public long getDispatchedCount() {
+    return cursor.get() + 1;
+  }
+
+  /**
+   * Waits until all consumers have processed all events dispatched so far.
+   * Events handed to conflating consumers are considered processed once they have been queued.
+   *
+   * @param timeout The maximum time to wait.
+   * @return Whether the consumers caught up within the timeout.
+   * @throws InterruptedException If the thread was interrupted while waiting.
+   */
+  public boolean awaitConsumed(Duration timeout)
+      throws InterruptedException {
+    requireNonNull(timeout, "timeout");
+    checkState(running, "Not running");
+
+    long target = cursor.get();
+    long deadline = System.nanoTime() + timeout.toNanos();
+    while (minimumSequence(target) < target) {
+      if (System.nanoTime() - deadline >= 0) {
+        return false;
+      }
+      LockSupport.parkNanos(AWAIT_PARK_NANOS);
+      if (Thread.interrupted()) {
+        throw new InterruptedException("Interrupted while waiting for consumers");
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the maximum time from dispatching an event until each consumer had processed it.
+   *
+   * @return The maximum latency of each consumer (in ns), by consumer name, in the order the
+   * consumers were added.
+   * @see #recordLatencies()
+   */
+  public synchronized Map<String, Long> getMaxLatencyNanos() {
+    Map<String, Long> result = new LinkedHashMap<>();
+    for (ConsumerProcessor consumer : consumers) {
+      result.put(consumer.name, consumer.maxLatencyNanos);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the mean time from dispatching an event until each consumer had processed it.
+   *
+   * @return The mean latency of each consumer (in ns), by consumer name, in the order the
+   * consumers were added.
+   * @see #recordLatencies()
+   */
+  public synchronized Map<String, Long> getMeanLatencyNanos() {
+    Map<String, Long> result = new LinkedHashMap<>();
+    for (ConsumerProcessor consumer : consumers) {
+      long count = consumer.latencyCount;
+      result.put(consumer.name, count == 0 ? 0 : consumer.totalLatencyNanos / count);
+    }
+    return result;
+  }
+
+  private void drain(String name, ConflatingQueue queue, EventHandler handler) {
+    while (running) {
+      List<Object> events;
+      try {
+        events = queue.drain(DRAIN_TIMEOUT);
+      }
+      catch (InterruptedException exc) {
+        LOG.warn("Interrupted while draining conflating queue of {}", name);
+        return;
+      }
+      if (handler instanceof BatchEventHandler) {
+        for (int start = 0; start < events.size(); start += MAX_HANDLER_BATCH_SIZE) {
+          try {
+            ((BatchEventHandler) handler).onEvents(
+                events.subList(start, Math.min(start + MAX_HANDLER_BATCH_SIZE, events.size())));
+          }
+          catch (Exception exc) {
+            LOG.warn("Exception thrown by status consumer {}", name, exc);
+          }
+        }
+        continue;
+      }
+      for (Object event : events) {
+        try {
+          handler.onEvent(event);
+        }
+        catch (Exception exc) {
+          LOG.warn("Exception thrown by status consumer {}", name, exc);
+        }
+      }
+    }
+  }
+
+  private long claim() {
+    int bufferSize = entries.length;
+    while (true) {
+      long current = cursor.get();
+      long next = current + 1;
+      long wrapPoint = next - bufferSize;
+      long cachedGatingSequence = gatingSequenceCache.get();
+
+      if (wrapPoint > cachedGatingSequence || cachedGatingSequence > current) {
+        long gatingSequence = minimumSequence(current);
+        if (wrapPoint > gatingSequence) {
+          // The buffer is full, wait for the slowest consumer - which stops when terminated.
+          checkState(!terminated, "Terminated while waiting for consumers");
+          LockSupport.parkNanos(1);
+          continue;
+        }
+        gatingSequenceCache.set(gatingSequence);
+      }
+      else if (cursor.compareAndSet(current, next)) {
+        return next;
+      }
+    }
+  }
+
+  private long minimumSequence(long defaultSequence) {
+    long minimum = defaultSequence;
+    for (Sequence sequence : gatingSequences) {
+      minimum = Math.min(minimum, sequence.get());
+    }
+    return minimum;
+  }
+
+  private boolean isPublished(long sequence) {
+    return published.get((int) sequence & indexMask) == (int) (sequence >>> indexShift);
+  }
+
+  /**
+   * Returns the highest sequence up to which all events have been published.
+   *
+   * @param lowerBound The sequence to start checking at.
+   * @param upperBound The highest sequence claimed.
+   * @return The highest published sequence, or <code>lowerBound - 1</code>, if the event at
+   * <code>lowerBound</code> has not been published, yet.
+   */
+  private long highestPublished(long lowerBound, long upperBound) {
+    for (long sequence = lowerBound; sequence <= upperBound; sequence++) {
+      if (!isPublished(sequence)) {
+        return sequence - 1;
+      }
+    }
+    return upperBound;
+  }
+
+  /**
+   * Blocks the current consumer until a producer signals a new event, the dispatcher is stopped or
+   * a timeout elapses.
+   *
+   * @param sequence The sequence of the event the consumer waits for.
+   */
+  private void block(long sequence) {
+    synchronized (blockingLock) {
+      blockedConsumers.incrementAndGet();
+      try {
+        // Checked after counting this consumer as blocked, so a producer publishing the event
+        // after the check signals it.
+        if (running && !isPublished(sequence)) {
+          blockingLock.wait(BLOCKING_TIMEOUT_MILLIS);
+        }
+      }
+      catch (InterruptedException exc) {
+        Thread.currentThread().interrupt();
+      }
+      finally {
+        blockedConsumers.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Defines how consumers wait for new events.
+   */
+  public enum WaitStrategy {
+    /**
+     * Spins, for the lowest latency at the cost of a fully used CPU core per consumer.
+     */
+    BUSY_SPIN {
+      @Override
+      int idle(int counter) {
+        Thread.onSpinWait();
+        return counter;
+      }
+    },
+    /**
+     * Spins for a while, then yields the CPU to other threads.
+     */
+    YIELD {
+      @Override
+      int idle(int counter) {
+        if (counter < SPIN_TRIES) {
+          Thread.onSpinWait();
+          return counter + 1;
+        }
+        Thread.yield();
+        return counter;
+      }
+    },
+    /**
+     * Spins and yields for a while, then parks the thread for increasing periods, up to
+     * {@link #MAX_PARK_NANOS}, for low CPU usage when idle.
+     * Events arriving after a longer idle period may thus wait up to that long.
+     */
+    PARK {
+      @Override
+      int idle(int counter) {
+        if (counter < SPIN_TRIES) {
+          Thread.onSpinWait();
+        }
+        else if (counter < SPIN_TRIES + YIELD_TRIES) {
+          Thread.yield();
+        }
+        else {
+          int parks = counter - SPIN_TRIES - YIELD_TRIES;
+          LockSupport.parkNanos(Math.min(MIN_PARK_NANOS << parks, MAX_PARK_NANOS));
+          // Stop counting once parking for the maximum time, instead of overflowing.
+          return (MIN_PARK_NANOS << parks) >= MAX_PARK_NANOS ? counter : counter + 1;
+        }
+        return counter + 1;
+      }
+    },
+    /**
+     * Spins for a while, then blocks until a producer signals a new event, so idle consumers do
+     * not wake up at all.
+     * Producers signal only while consumers are blocked.
+     */
+    BLOCKING {
+      @Override
+      int idle(int counter) {
+        // Blocking is done by the dispatcher, which producers signal.
+        Thread.onSpinWait();
+        return counter < SPIN_TRIES ? counter + 1 : counter;
+      }
+
+      @Override
+      boolean blocks(int counter) {
+        return counter >= SPIN_TRIES;
+      }
+    };
+
+    /**
+     * The number of times to spin before yielding.
+     */
+    private static final int SPIN_TRIES = 100;
+    /**
+     * The number of times to yield before parking.
+     */
+    private static final int YIELD_TRIES = 100;
+    /**
+     * The time to park for the first time (in ns).
+     */
+    private static final long MIN_PARK_NANOS = 10_000;
+    /**
+     * The maximum time to park for (in ns).
+     */
+    private static final long MAX_PARK_NANOS = 10_000_000;
+
+    /**
+     * Waits once.
+     *
+     * @param counter The number of times waited for the current event so far, up to the point the
+     * strategy stops changing its behaviour.
+     * @return The new counter, which does not grow beyond that point.
+     */
+    abstract int idle(int counter);
+
+    /**
+     * Checks whether consumers should block until signalled by a producer.
+     *
+     * @param counter The number of times waited for the current event so far.
+     * @return Whether consumers should block.
+     */
+    boolean blocks(int counter) {
+      return false;
+    }
+  }
+
+  /**
+   * Runs a consumer.
+   */
+  private class ConsumerProcessor
+      implements Runnable {
+
+    private final String name;
+    private final StatusEventConsumer consumer;
+    private final Sequence sequence;
+    private final Thread thread;
+    /**
+     * The maximum latency of the events processed (in ns), written by the consumer's thread only.
+     */
+    private volatile long maxLatencyNanos;
+    /**
+     * The sum of the latencies of the events processed (in ns).
+     */
+    private volatile long totalLatencyNanos;
+    /**
+     * The number of latencies recorded.
+     */
+    private volatile long latencyCount;
+
+    ConsumerProcessor(String name, StatusEventConsumer consumer, long initialSequence) {
+      this.name = name;
+      this.consumer = consumer;
+      this.sequence = new Sequence(initialSequence);
+      this.thread = new Thread(this, "status-consumer-" + name);
+      this.thread.setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      long next = sequence.get() + 1;
+      int counter = 0;
+      while (running) {
+        long claimed = cursor.get();
+        long available = claimed < next ? next - 1 : highestPublished(next, claimed);
+        if (available < next) {
+          if (waitStrategy.blocks(counter)) {
+            block(next);
+          }
+          else {
+            counter = waitStrategy.idle(counter);
+          }
+          continue;
+        }
+        counter = 0;
+
+        for (long current = next; current <= available; current++) {
+          try {
+            consumer.onEvent(entries[(int) current & indexMask], current, current == available);
+          }
+          catch (Exception exc) {
+            LOG.warn("Exception thrown by status consumer {}", name, exc);
+          }
+        }
+        if (dispatchNanos != null) {
+          recordLatencies(next, available);
+        }
+        release(next, available);
+        sequence.set(available);
+        next = available + 1;
+      }
+    }
+
+    /**
+     * Clears the slots of the given events that all consumers have processed.
+     * Done before advancing this consumer's sequence, so producers do not reuse the slots before.
+     */
+    private void release(long first, long last) {
+      for (long current = first; current <= last; current++) {
+        int index = (int) current & indexMask;
+        if (pendingConsumers.decrementAndGet(index) == 0) {
+          entries[index] = null;
+        }
+      }
+    }
+
+    private void recordLatencies(long first, long last) {
+      // Batch handlers process the events at the end of the batch, so measure after all of them.
+      long now = System.nanoTime();
+      long max = maxLatencyNanos;
+      long total = totalLatencyNanos;
+      for (long current = first; current <= last; current++) {
+        long latency = now - dispatchNanos[(int) current & indexMask];
+        max = Math.max(max, latency);
+        total += latency;
+      }
+      maxLatencyNanos = max;
+      totalLatencyNanos = total;
+      latencyCount += last - first + 1;
+    }
+  }
+
+  /**
+   * A sequence padded to its own cache line, so updates by one thread do not slow down others
+   * reading neighbouring fields.
+   */
+  private static class Sequence
+      extends SequenceValue {
+
+    @SuppressWarnings("unused")
+    private long p9, p10, p11, p12, p13, p14, p15;
+
+    Sequence(long initialValue) {
+      set(initialValue);
+    }
+  }
+
+  /**
+   * The value of a {@link Sequence}.
+   */
+  private static class SequenceValue
+      extends SequencePadding {
+
+    /**
+     * Provides CAS access to {@link #value}.
+     */
+    private static final VarHandle VALUE;
+
+    static {
+      try {
+        VALUE = MethodHandles.lookup().findVarHandle(SequenceValue.class, "value", long.class);
+      }
+      catch (ReflectiveOperationException exc) {
+        throw new ExceptionInInitializerError(exc);
+      }
+    }
+
+    private volatile long value;
+
+    long get() {
+      return value;
+    }
+
+    void set(long newValue) {
+      value = newValue;
+    }
+
+    boolean compareAndSet(long expected, long newValue) {
+      return VALUE.compareAndSet(this, expected, newValue);
+    }
+  }
+
+  /**
+   * Padding preceding the value of a {@link Sequence}.
+   */
+  private static class SequencePadding {
+
+    @SuppressWarnings("unused")
+    private long p1, p2, p3, p4, p5, p6, p7;
+  }
+
+  /**
+   * Collects the events of a consumer's batch for a batch handler.
+   */
+  private static class BatchingConsumer
+      implements StatusEventConsumer {
+
+    private final BatchEventHandler handler;
+    private final List<Object> batch = new ArrayList<>();
+
+    BatchingConsumer(BatchEventHandler handler) {
+      this.handler = handler;
+    }
+
+    @Override
+    public void onEvent(Object event, long sequence, boolean endOfBatch) {
+      batch.add(event);
+      if (endOfBatch || batch.size() >= MAX_HANDLER_BATCH_SIZE) {
+        try {
+          handler.onEvents(batch);
+        }
+        finally {
+          batch.clear();
+        }
+      }
+    }
+  }
 }
@@ -0,0 +1,239 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.status;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.annotation.Nullable;
+import org.httpclient.v1.status.binding.OrderStatusMessage;
+import org.httpclient.v1.status.binding.StatusMessage;
+import org.httpclient.v1.status.binding.StatusMessageList;
+import org.httpclient.v1.status.binding.VehicleDeltaMessage;
+import org.httpclient.v1.status.binding.VehicleStatusMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decodes a {@link StatusMessageList} message by message, without materializing the list.
+ * <p>
+ * The <code>statusMessages</code> array is walked with a {@link JsonParser}, and each message is
+ * handed to a {@link MessageHandler} as soon as it has been parsed, so memory use does not depend
+ * on the number of messages.
+ * The <code>type</code> discriminator is resolved here instead of by Jackson's polymorphic type
+ * handling: if it is the message's first property (as written by the kernel), the message is
+ * deserialized directly from the stream; otherwise, only the message's properties preceding it are
+ * buffered.
+ * </p>
+ *
+ * @author zzw
+ */
+public class StatusMessageDecoder {
+
+  /**
+   * This class's logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(StatusMessageDecoder.class);
+  /**
+   * The name of the type discriminator property.
+   */
+  private static final String TYPE_PROPERTY = "type";
+  /**
+   * The type of order status messages.
+   */
+  private static final String TYPE_TRANSPORT_ORDER = "TransportOrder";
+  /**
+   * The type of vehicle status messages.
+   */
+  private static final String TYPE_VEHICLE = "Vehicle";
+  /**
+   * The type of vehicle delta messages.
+   */
+  private static final String TYPE_VEHICLE_DELTA = "VehicleDelta";
+  /**
+   * The name of the property holding the status messages.
+   */
+  private static final String STATUS_MESSAGES_PROPERTY = "statusMessages";
+  /**
+   * The mapper, with polymorphic type handling for status messages disabled.
+   */
+  private final ObjectMapper mapper = new ObjectMapper()
+      .registerModule(new JavaTimeModule())
+      .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+      .addMixIn(StatusMessage.class, UntypedStatusMessage.class);
+  /**
+   * Reads order status messages.
+   */
+  private final ObjectReader orderReader = mapper.readerFor(OrderStatusMessage.class);
+  /**
+   * Reads vehicle status messages.
+   */
+  private final ObjectReader vehicleReader = mapper.readerFor(VehicleStatusMessage.class);
+  /**
+   * Reads vehicle delta messages.
+   */
+  private final ObjectReader vehicleDeltaReader = mapper.readerFor(VehicleDeltaMessage.class);
+
+  /**
+   * Creates a new instance.
+   */
+  public StatusMessageDecoder() {
+  }
+
+  /**
+   * Decodes a status message list, handing each message to the given handler.
+   * Messages of unknown types are skipped.
+   *
+   * @param input The input to decode.
+   * @param handler The handler.
+   * @return <code>true</code> if all messages were handled, <code>false</code> if the handler
+   * stopped decoding.
+   * @throws IOException If the input could not be read or is malformed.
+   */
+  public boolean decode(InputStream input, MessageHandler handler)
+      throws IOException {
+    try (JsonParser parser = mapper.getFactory().createParser(input)) {
+      expect(parser.nextToken(), JsonToken.START_OBJECT, parser);
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        parser.nextToken();
+        if (STATUS_MESSAGES_PROPERTY.equals(field)) {
+          if (!decodeMessages(parser, handler)) {
+            return false;
+          }
+        }
+        else {
+          parser.skipChildren();
+        }
+      }
+      return true;
+    }
+  }
+
+  private boolean decodeMessages(JsonParser parser, MessageHandler handler)
+      throws IOException {
+    expect(parser.currentToken(), JsonToken.START_ARRAY, parser);
+    for (JsonToken token = parser.nextToken();
+         token != JsonToken.END_ARRAY;
+         token = parser.nextToken()) {
+      expect(token, JsonToken.START_OBJECT, parser);
+      StatusMessage message = decodeMessage(parser);
+      if (message != null && !handler.onMessage(message)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Nullable
+  private StatusMessage decodeMessage(JsonParser parser)
+      throws IOException {
+    String type = null;
+    TokenBuffer buffer = null;
+    for (JsonToken token = parser.nextToken();
+         token == JsonToken.FIELD_NAME;
+         token = parser.nextToken()) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if (TYPE_PROPERTY.equals(field)) {
+        type = parser.getValueAsString();
+        if (buffer == null) {
+          // Nothing buffered, continue reading directly from the stream.
+          parser.nextToken();
+          return read(type, parser);
+        }
+      }
+      else {
+        if (buffer == null) {
+          buffer = new TokenBuffer(parser);
+          buffer.writeStartObject();
+        }
+        buffer.writeFieldName(field);
+        buffer.copyCurrentStructure(parser);
+      }
+    }
+    if (buffer == null) {
+      LOG.debug("Skipping empty status message");
+      return null;
+    }
+
+    buffer.writeEndObject();
+    try (JsonParser bufferParser = buffer.asParser(parser)) {
+      bufferParser.nextToken();
+      return read(type, bufferParser);
+    }
+  }
+
+  /**
+   * Reads the rest of a message.
+   *
+   * @param type The message's type.
+   * @param parser The parser, positioned on the start of the object, a property name or the end of
+   * the object.
+   * @return The message, or <code>null</code>, if the type is unknown.
+   */
+  @Nullable
+  private StatusMessage read(@Nullable String type, JsonParser parser)
+      throws IOException {
+    if (TYPE_VEHICLE.equals(type)) {
+      return vehicleReader.readValue(parser);
+    }
+    if (TYPE_TRANSPORT_ORDER.equals(type)) {
+      return orderReader.readValue(parser);
+    }
+    if (TYPE_VEHICLE_DELTA.equals(type)) {
+      return vehicleDeltaReader.readValue(parser);
+    }
+
+    LOG.debug("Skipping status message of unknown type {}", type);
+    if (parser.currentToken() == JsonToken.START_OBJECT) {
+      parser.skipChildren();
+      return null;
+    }
+    while (parser.currentToken() == JsonToken.FIELD_NAME) {
+      parser.nextToken();
+      parser.skipChildren();
+      parser.nextToken();
+    }
+    return null;
+  }
+
+  private static void expect(JsonToken actual, JsonToken expected, JsonParser parser)
+      throws IOException {
+    if (actual != expected) {
+      throw new IOException("Expected " + expected + " but got " + actual + " at "
+          + parser.getCurrentLocation());
+    }
+  }
+
+  /**
+   * Handles decoded status messages.
+   */
+  public interface MessageHandler {
+
+    /**
+     * Handles a decoded status message.
+     *
+     * @param message The message.
+     * @return <code>true</code> to continue decoding, <code>false</code> to stop.
+     */
+    boolean onMessage(StatusMessage message);
+  }
+
+  /**
+   * Disables polymorphic type handling for status messages, the type is resolved by the decoder.
+   */
+  @JsonTypeInfo(use = JsonTypeInfo.Id.NONE)
+  private abstract static class UntypedStatusMessage {
+  }
+}
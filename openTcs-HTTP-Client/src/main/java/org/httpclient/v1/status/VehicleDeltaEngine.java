@@ -0,0 +1,202 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.status;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import static java.util.Objects.requireNonNull;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import org.httpclient.v1.status.binding.StatusMessage;
+import org.httpclient.v1.status.binding.StatusMessageList;
+import org.httpclient.v1.status.binding.VehicleDeltaMessage;
+import org.httpclient.v1.status.binding.VehicleState;
+import org.httpclient.v1.status.binding.VehicleStateDelta;
+import org.httpclient.v1.status.binding.VehicleStatusMessage;
+import org.openTcs.data.model.Vehicle;
+import org.openTcs.util.event.EventHandler;
+
+/**
+ * Turns successive vehicle states into {@link VehicleStateDelta}s.
+ * <p>
+ * Each {@link VehicleState} and {@link VehicleStatusMessage} received is merged into the vehicle's
+ * last known state and compared with it field by field.
+ * Only if something changed, a delta with the changed fields is passed to the handler as a
+ * {@link VehicleDeltaMessage}, e.g. to an event bus for internal subscribers or clients
+ * downstream.
+ * Deltas only ever contain fields actually known: until a vehicle's first {@link VehicleState}
+ * is received, only the fields carried by its status messages are known, and the first delta for a
+ * vehicle contains just those.
+ * A field becoming known is contained in the next delta, whether its value differs from the
+ * default or not.
+ * Applying each vehicle's deltas in order to <code>null</code> thus reconstructs its known fields.
+ * </p>
+ * <p>
+ * Deltas are computed by the consumer thread only.
+ * The last known states may be read from any thread.
+ * </p>
+ *
+ * @author zzw
+ */
+public class VehicleDeltaEngine
+    implements StatusEventConsumer {
+
+  /**
+   * Receives the deltas.
+   */
+  private final EventHandler handler;
+  /**
+   * All fields, as a bit mask.
+   */
+  private static final int ALL_FIELDS = (1 << VehicleStateDelta.Field.values().length) - 1;
+  /**
+   * The fields carried by status messages, as a bit mask.
+   */
+  private static final int MESSAGE_FIELDS = VehicleStateDelta.Field.CURRENT_POSITION.mask()
+      | VehicleStateDelta.Field.TRANSPORT_ORDER.mask();
+  /**
+   * The vehicles' last known states, by name.
+   */
+  private final Map<String, VehicleState> states = new ConcurrentHashMap<>();
+  /**
+   * The fields known for each vehicle, as bit masks, by vehicle name.
+   * Only accessed by the consumer thread.
+   */
+  private final Map<String, Integer> knownFields = new HashMap<>();
+  /**
+   * The number of deltas passed to the handler.
+   */
+  private volatile long deltaCount;
+  /**
+   * The number of updates that did not change anything.
+   */
+  private volatile long unchangedCount;
+  /**
+   * The number of fields in all deltas.
+   */
+  private volatile long changedFieldCount;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param handler Receives the deltas.
+   */
+  public VehicleDeltaEngine(EventHandler handler) {
+    this.handler = requireNonNull(handler, "handler");
+  }
+
+  @Override
+  public void onEvent(Object event, long sequence, boolean endOfBatch) {
+    if (event instanceof VehicleState) {
+      update((VehicleState) event, ALL_FIELDS, 0, Instant.now());
+    }
+    else if (event instanceof VehicleStatusMessage) {
+      onStatusMessage((VehicleStatusMessage) event);
+    }
+    else if (event instanceof StatusMessageList) {
+      for (StatusMessage message : ((StatusMessageList) event).getStatusMessages()) {
+        if (message instanceof VehicleStatusMessage) {
+          onStatusMessage((VehicleStatusMessage) message);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the last known state of the given vehicle.
+   * Fields not known, yet, have their default values.
+   * The state returned must not be modified.
+   *
+   * @param vehicleName The vehicle's name.
+   * @return The last known state, or <code>null</code>, if nothing is known about the vehicle.
+   */
+  @Nullable
+  public VehicleState getVehicleState(String vehicleName) {
+    return states.get(requireNonNull(vehicleName, "vehicleName"));
+  }
+
+  /**
+   * Returns the number of deltas passed to the handler so far.
+   *
+   * @return The number of deltas passed to the handler so far.
+   */
+  public long getDeltaCount() {
+    return deltaCount;
+  }
+
+  /**
+   * Returns the number of updates that did not change anything and were dropped.
+   *
+   * @return The number of updates that did not change anything.
+   */
+  public long getUnchangedCount() {
+    return unchangedCount;
+  }
+
+  /**
+   * Returns the number of fields in all deltas passed to the handler so far.
+   *
+   * @return The number of fields in all deltas passed to the handler so far.
+   */
+  public long getChangedFieldCount() {
+    return changedFieldCount;
+  }
+
+  private void onStatusMessage(VehicleStatusMessage message) {
+    VehicleState previous = states.get(message.getVehicleName());
+    VehicleState current = previous == null
+        ? VehicleState.fromVehicle(new Vehicle(message.getVehicleName()))
+        : VehicleState.copyOf(previous);
+    int fields = MESSAGE_FIELDS;
+    current.setCurrentPosition(message.getPosition());
+    current.setTransportOrder(message.getTransportOrderName());
+    if (message.getState() != null) {
+      current.setState(message.getState());
+      fields |= VehicleStateDelta.Field.STATE.mask();
+    }
+    if (message.getProcState() != null) {
+      current.setProcState(message.getProcState());
+      fields |= VehicleStateDelta.Field.PROC_STATE.mask();
+    }
+    update(current, fields, message.getSequenceNumber(), message.getCreationTimeStamp());
+  }
+
+  /**
+   * Passes the delta between the vehicle's last known state and the given one to the handler.
+   *
+   * @param current The vehicle's current state.
+   * @param fields The fields of the current state actually known, as a bit mask.
+   * @param sequenceNumber The sequence number of the status message the state stems from.
+   * @param timeStamp The creation time stamp of the status message the state stems from.
+   */
+  private void update(VehicleState current, int fields, long sequenceNumber, Instant timeStamp) {
+    VehicleState previous = states.get(current.getName());
+    int previouslyKnown = knownFields.getOrDefault(current.getName(), 0);
+    int known = previouslyKnown | fields;
+    VehicleStateDelta delta = VehicleStateDelta.between(previous, current);
+    int newlyKnown = known & ~previouslyKnown;
+    if (newlyKnown != 0 && previous != null) {
+      // Report fields becoming known even if they happen to equal the defaults assumed so far.
+      delta = VehicleStateDelta.between(null, current)
+          .retain(delta.getChangedFields() | newlyKnown);
+    }
+    delta.retain(known);
+    states.put(current.getName(), current);
+    knownFields.put(current.getName(), known);
+    if (delta.isEmpty()) {
+      unchangedCount++;
+      return;
+    }
+    deltaCount++;
+    changedFieldCount += Integer.bitCount(delta.getChangedFields());
+    VehicleDeltaMessage message = new VehicleDeltaMessage();
+    message.setSequenceNumber(sequenceNumber);
+    message.setCreationTimeStamp(timeStamp);
+    message.setDelta(delta);
+    handler.onEvent(message);
+  }
+}
@@ -9,9 +9,8 @@ package org.httpclient.v1.status.binding;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyDescription;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import static java.util.Objects.requireNonNull;
 import javax.validation.constraints.Size;
 
@@ -37,7 +36,7 @@ public class Destination {
 
   @JsonPropertyDescription("The drive order's properties")
   @Size(min = 0)
-  private List<Property> properties = new LinkedList<>();
+  private List<Property> properties = new ArrayList<>();
 
   /**
    * Creates a new instance.
@@ -85,18 +84,11 @@ public class Destination {
     destination.setLocationName(driveOrder.getDestination().getDestination().getName());
     destination.setOperation(driveOrder.getDestination().getOperation());
     destination.setState(mapDriveOrderState(driveOrder.getState()));
-
-    for (Map.Entry<String, String> mapEntry
-             : driveOrder.getDestination().getProperties().entrySet()) {
-      Property prop = new Property();
-      prop.setKey(mapEntry.getKey());
-      prop.setValue(mapEntry.getValue());
-      destination.getProperties().add(prop);
-    }
+    destination.setProperties(Property.fromMap(driveOrder.getDestination().getProperties()));
     return destination;
   }
 
-  private static Destination.State mapDriveOrderState(DriveOrder.State driveOrderState) {
+  static Destination.State mapDriveOrderState(DriveOrder.State driveOrderState) {
     switch (driveOrderState) {
       case PRISTINE:
         return Destination.State.PRISTINE;
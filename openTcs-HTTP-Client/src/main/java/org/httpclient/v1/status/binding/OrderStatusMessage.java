@@ -9,9 +9,8 @@ package org.httpclient.v1.status.binding;
 
 import com.fasterxml.jackson.annotation.JsonPropertyDescription;
 import java.time.Instant;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import javax.validation.constraints.Size;
 import org.openTcs.data.order.DriveOrder;
 import org.openTcs.data.order.TransportOrder;
@@ -35,10 +34,10 @@ public class OrderStatusMessage
 
   @JsonPropertyDescription("The transport order's destinations")
   @Size(min = 1)
-  private List<Destination> destinations = new LinkedList<>();
+  private List<Destination> destinations = new ArrayList<>();
 
   @JsonPropertyDescription("The transport order's properties")
-  private List<Property> properties = new LinkedList<>();
+  private List<Property> properties = new ArrayList<>();
 
   /**
    * Creates a new instance.
@@ -101,15 +100,13 @@ public class OrderStatusMessage
     orderMessage.setProcessingVehicleName(
         order.getProcessingVehicle() == null ? null : order.getProcessingVehicle().getName());
     orderMessage.setOrderState(OrderState.fromTransportOrderState(order.getState()));
-    for (DriveOrder curDriveOrder : order.getAllDriveOrders()) {
-      orderMessage.getDestinations().add(Destination.fromDriveOrder(curDriveOrder));
-    }
-    for (Map.Entry<String, String> mapEntry : order.getProperties().entrySet()) {
-      Property prop = new Property();
-      prop.setKey(mapEntry.getKey());
-      prop.setValue(mapEntry.getValue());
-      orderMessage.getProperties().add(prop);
+    List<DriveOrder> driveOrders = order.getAllDriveOrders();
+    List<Destination> destinations = new ArrayList<>(driveOrders.size());
+    for (DriveOrder curDriveOrder : driveOrders) {
+      destinations.add(Destination.fromDriveOrder(curDriveOrder));
     }
+    orderMessage.setDestinations(destinations);
+    orderMessage.setProperties(Property.fromMap(order.getProperties()));
     return orderMessage;
   }
 
@@ -181,5 +178,33 @@ public class OrderStatusMessage
           throw new IllegalArgumentException("Unknown transport order state.");
       }
     }
+
+    /**
+     * Returns the transport order state corresponding to this one.
+     *
+     * @return The transport order state corresponding to this one.
+     */
+    public TransportOrder.State toTransportOrderState() {
+      switch (this) {
+        case RAW:
+          return TransportOrder.State.RAW;
+        case ACTIVE:
+          return TransportOrder.State.ACTIVE;
+        case DISPATCHABLE:
+          return TransportOrder.State.DISPATCHABLE;
+        case BEING_PROCESSED:
+          return TransportOrder.State.BEING_PROCESSED;
+        case WITHDRAWN:
+          return TransportOrder.State.WITHDRAWN;
+        case FINISHED:
+          return TransportOrder.State.FINISHED;
+        case FAILED:
+          return TransportOrder.State.FAILED;
+        case UNROUTABLE:
+          return TransportOrder.State.UNROUTABLE;
+        default:
+          throw new IllegalArgumentException("Unknown transport order state.");
+      }
+    }
   }
 }
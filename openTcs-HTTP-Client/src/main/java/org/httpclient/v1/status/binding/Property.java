@@ -9,6 +9,9 @@ package org.httpclient.v1.status.binding;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyDescription;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 /**
  * A property of a Destination or a TransportOrder
@@ -43,4 +46,21 @@ public class Property {
   public void setValue(String value) {
     this.value = value;
   }
+
+  /**
+   * Creates properties from the given key-value pairs.
+   *
+   * @param map The key-value pairs.
+   * @return The properties, in the map's iteration order.
+   */
+  public static List<Property> fromMap(Map<String, String> map) {
+    List<Property> properties = new ArrayList<>(map.size());
+    for (Map.Entry<String, String> mapEntry : map.entrySet()) {
+      Property prop = new Property();
+      prop.setKey(mapEntry.getKey());
+      prop.setValue(mapEntry.getValue());
+      properties.add(prop);
+    }
+    return properties;
+  }
 }
@@ -0,0 +1,318 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.status.binding;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static java.util.Objects.requireNonNull;
+import org.openTcs.data.order.DriveOrder;
+import org.openTcs.data.order.TransportOrder;
+import static org.openTcs.util.Assertions.checkInRange;
+
+/**
+ * Converts transport orders to status bindings, reusing the results of earlier conversions.
+ * <p>
+ * The conversion of each transport order is cached by the order's name until the order reaches a
+ * final state; at most a maximum number of orders are cached, the least recently converted ones
+ * being evicted first, so orders removed by the kernel before reaching a final state do not stay
+ * cached.
+ * Drive orders are immutable - a drive order whose state changes is replaced by a new instance -
+ * so when an order is converted again, the {@link Destination}s of drive orders still referenced
+ * are reused and only those of replaced drive orders are converted; the properties of a
+ * destination or order are reused as long as they are the same.
+ * Entries are immutable, so the converter may be used by multiple threads.
+ * </p>
+ * <p>
+ * The results share the cached destinations and properties, so they are immutable: the lists are
+ * unmodifiable and the setters of their elements throw an {@link UnsupportedOperationException}.
+ * Callers that need to modify a result's destinations or properties have to copy them.
+ * </p>
+ *
+ * @author zzw
+ */
+public class StatusBindingConverter {
+
+  /**
+   * The default number of transport orders cached.
+   */
+  public static final int DEFAULT_CACHE_SIZE = 16384;
+  /**
+   * The converted orders, by order name, in least-recently-used order.
+   */
+  private final Map<String, ConvertedOrder> convertedOrders;
+
+  /**
+   * Creates a new instance with the default cache size.
+   */
+  public StatusBindingConverter() {
+    this(DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * Creates a new instance.
+   *
+   * @param cacheSize The maximum number of transport orders cached.
+   */
+  public StatusBindingConverter(int cacheSize) {
+    checkInRange(cacheSize, 0, Integer.MAX_VALUE, "cacheSize");
+    this.convertedOrders = new LinkedHashMap<String, ConvertedOrder>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, ConvertedOrder> eldest) {
+        return size() > cacheSize;
+      }
+    };
+  }
+
+  /**
+   * Returns the number of transport orders currently cached.
+   *
+   * @return The number of transport orders currently cached.
+   */
+  public int getCachedCount() {
+    synchronized (convertedOrders) {
+      return convertedOrders.size();
+    }
+  }
+
+  /**
+   * Converts the given transport order to a status message.
+   * The result is the same as {@link OrderStatusMessage#fromTransportOrder(
+   * TransportOrder, long, Instant)}'s.
+   *
+   * @param order The transport order.
+   * @param sequenceNumber The message's sequence number.
+   * @param creationTimeStamp The message's creation time stamp.
+   * @return The status message.
+   */
+  public OrderStatusMessage toOrderStatusMessage(TransportOrder order,
+                                                 long sequenceNumber,
+                                                 Instant creationTimeStamp) {
+    requireNonNull(order, "order");
+    requireNonNull(creationTimeStamp, "creationTimeStamp");
+
+    ConvertedOrder converted = convert(order);
+    OrderStatusMessage orderMessage = new OrderStatusMessage();
+    orderMessage.setSequenceNumber(sequenceNumber);
+    orderMessage.setCreationTimeStamp(creationTimeStamp);
+    orderMessage.setOrderName(order.getName());
+    orderMessage.setProcessingVehicleName(
+        order.getProcessingVehicle() == null ? null : order.getProcessingVehicle().getName());
+    orderMessage.setOrderState(
+        OrderStatusMessage.OrderState.fromTransportOrderState(order.getState()));
+    orderMessage.setDestinations(converted.destinationList);
+    orderMessage.setProperties(converted.propertyList);
+    return orderMessage;
+  }
+
+  /**
+   * Converts the given transport order to its state.
+   * The result is the same as {@link TransportOrderState#fromTransportOrder(TransportOrder)}'s.
+   *
+   * @param order The transport order.
+   * @return The transport order's state.
+   */
+  public TransportOrderState toTransportOrderState(TransportOrder order) {
+    requireNonNull(order, "order");
+
+    TransportOrderState transportOrderState = new TransportOrderState();
+    transportOrderState.setName(order.getName());
+    transportOrderState.setType(order.getType());
+    transportOrderState.setDestinations(convert(order).destinationList);
+    transportOrderState.setIntendedVehicle(
+        order.getIntendedVehicle() == null ? null : order.getIntendedVehicle().getName());
+    transportOrderState.setProcessingVehicle(
+        order.getProcessingVehicle() == null ? null : order.getProcessingVehicle().getName());
+    transportOrderState.setState(order.getState());
+    return transportOrderState;
+  }
+
+  private ConvertedOrder convert(TransportOrder order) {
+    List<DriveOrder> driveOrders = order.getAllDriveOrders();
+    Map<String, String> properties = order.getProperties();
+    ConvertedOrder previous;
+    synchronized (convertedOrders) {
+      previous = convertedOrders.get(order.getName());
+    }
+    if (previous != null
+        && previous.properties == properties
+        && previous.isConversionOf(driveOrders)) {
+      return previous;
+    }
+
+    DriveOrder[] driveOrderArray = driveOrders.toArray(new DriveOrder[driveOrders.size()]);
+    Destination[] destinations = new Destination[driveOrderArray.length];
+    for (int i = 0; i < driveOrderArray.length; i++) {
+      destinations[i] = previous == null
+          ? toDestination(driveOrderArray[i], null, null)
+          : previous.toDestination(driveOrderArray[i], i);
+    }
+    List<Property> propertyList = previous == null || !previous.properties.equals(properties)
+        ? toProperties(properties)
+        : previous.propertyList;
+    ConvertedOrder converted = new ConvertedOrder(driveOrderArray,
+                                                  destinations,
+                                                  properties,
+                                                  propertyList);
+    synchronized (convertedOrders) {
+      if (order.getState().isFinalState()) {
+        // Orders in a final state do not change anymore and are eventually removed by the kernel.
+        convertedOrders.remove(order.getName());
+      }
+      else {
+        convertedOrders.put(order.getName(), converted);
+      }
+    }
+    return converted;
+  }
+
+  /**
+   * Converts the given drive order to a destination.
+   *
+   * @param driveOrder The drive order.
+   * @param previousDriveOrder A drive order converted before, or <code>null</code>.
+   * @param previous The destination converted from the previous drive order, or
+   * <code>null</code>.
+   * @return The destination.
+   */
+  private static Destination toDestination(DriveOrder driveOrder,
+                                           DriveOrder previousDriveOrder,
+                                           Destination previous) {
+    // Drive orders replaced by a state change share their destination - and its properties.
+    return new ImmutableDestination(
+        driveOrder.getDestination().getDestination().getName(),
+        driveOrder.getDestination().getOperation(),
+        Destination.mapDriveOrderState(driveOrder.getState()),
+        previous != null && previousDriveOrder.getDestination() == driveOrder.getDestination()
+        ? previous.getProperties()
+        : toProperties(driveOrder.getDestination().getProperties()));
+  }
+
+  private static List<Property> toProperties(Map<String, String> map) {
+    if (map.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<Property> properties = new ArrayList<>(map.size());
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      properties.add(new ImmutableProperty(entry.getKey(), entry.getValue()));
+    }
+    return Collections.unmodifiableList(properties);
+  }
+
+  /**
+   * A transport order converted.
+   */
+  private static class ConvertedOrder {
+
+    private final DriveOrder[] driveOrders;
+    private final Destination[] destinations;
+    private final List<Destination> destinationList;
+    private final Map<String, String> properties;
+    private final List<Property> propertyList;
+
+    ConvertedOrder(DriveOrder[] driveOrders,
+                   Destination[] destinations,
+                   Map<String, String> properties,
+                   List<Property> propertyList) {
+      this.driveOrders = driveOrders;
+      this.destinations = destinations;
+      this.destinationList = Collections.unmodifiableList(Arrays.asList(destinations));
+      this.properties = properties;
+      this.propertyList = propertyList;
+    }
+
+    boolean isConversionOf(List<DriveOrder> otherDriveOrders) {
+      if (otherDriveOrders.size() != driveOrders.length) {
+        return false;
+      }
+      for (int i = 0; i < driveOrders.length; i++) {
+        if (otherDriveOrders.get(i) != driveOrders[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Returns the destination of the given drive order, reusing this conversion's if the drive
+     * order at the same index is the same.
+     */
+    Destination toDestination(DriveOrder driveOrder, int index) {
+      if (index >= driveOrders.length) {
+        return StatusBindingConverter.toDestination(driveOrder, null, null);
+      }
+      if (driveOrders[index] == driveOrder) {
+        return destinations[index];
+      }
+      return StatusBindingConverter.toDestination(driveOrder,
+                                                  driveOrders[index],
+                                                  destinations[index]);
+    }
+  }
+
+  /**
+   * A destination shared by the results of multiple conversions, which must not be modified.
+   */
+  private static final class ImmutableDestination
+      extends Destination {
+
+    ImmutableDestination(String locationName,
+                         String operation,
+                         State state,
+                         List<Property> properties) {
+      super.setLocationName(locationName);
+      super.setOperation(operation);
+      super.setState(state);
+      super.setProperties(properties);
+    }
+
+    @Override
+    public void setLocationName(String name) {
+      throw new UnsupportedOperationException("Shared destination, copy it to modify it");
+    }
+
+    @Override
+    public void setOperation(String operation) {
+      throw new UnsupportedOperationException("Shared destination, copy it to modify it");
+    }
+
+    @Override
+    public void setState(State state) {
+      throw new UnsupportedOperationException("Shared destination, copy it to modify it");
+    }
+
+    @Override
+    public void setProperties(List<Property> properties) {
+      throw new UnsupportedOperationException("Shared destination, copy it to modify it");
+    }
+  }
+
+  /**
+   * A property shared by the results of multiple conversions, which must not be modified.
+   */
+  private static final class ImmutableProperty
+      extends Property {
+
+    ImmutableProperty(String key, String value) {
+      super.setKey(key);
+      super.setValue(value);
+    }
+
+    @Override
+    public void setKey(String key) {
+      throw new UnsupportedOperationException("Shared property, copy it to modify it");
+    }
+
+    @Override
+    public void setValue(String value) {
+      throw new UnsupportedOperationException("Shared property, copy it to modify it");
+    }
+  }
+}
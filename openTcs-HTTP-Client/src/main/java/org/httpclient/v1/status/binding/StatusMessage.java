@@ -26,6 +26,8 @@ import java.time.Instant;
   @JsonSubTypes.Type(value = OrderStatusMessage.class, name = "TransportOrder")
   ,
   @JsonSubTypes.Type(value = VehicleStatusMessage.class, name = "Vehicle")
+  ,
+  @JsonSubTypes.Type(value = VehicleDeltaMessage.class, name = "VehicleDelta")
 })
 public abstract class StatusMessage {
 
@@ -11,9 +11,9 @@ import com.fasterxml.jackson.annotation.JsonPropertyDescription;
 import java.util.ArrayList;
 import java.util.List;
 import static java.util.Objects.requireNonNull;
-import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import org.openTcs.data.TCSObjectReference;
+import org.openTcs.data.order.DriveOrder;
 import org.openTcs.data.order.TransportOrder;
 
 /**
@@ -42,7 +42,7 @@ public class TransportOrderState {
   @JsonPropertyDescription("The sequence of destinations of the transport order.")
   private List<Destination> destinations = new ArrayList<>();
 
-  private TransportOrderState() {
+  TransportOrderState() {
   }
 
   public String getName() {
@@ -108,11 +108,12 @@ public class TransportOrderState {
     TransportOrderState transportOrderState = new TransportOrderState();
     transportOrderState.setName(transportOrder.getName());
     transportOrderState.setType(transportOrder.getType());
-    transportOrderState.setDestinations(
-        transportOrder.getAllDriveOrders()
-            .stream()
-            .map(driveOrder -> Destination.fromDriveOrder(driveOrder))
-            .collect(Collectors.toList()));
+    List<DriveOrder> driveOrders = transportOrder.getAllDriveOrders();
+    List<Destination> destinations = new ArrayList<>(driveOrders.size());
+    for (DriveOrder driveOrder : driveOrders) {
+      destinations.add(Destination.fromDriveOrder(driveOrder));
+    }
+    transportOrderState.setDestinations(destinations);
     transportOrderState.setIntendedVehicle(
         nameOfNullableReference(transportOrder.getIntendedVehicle()));
     transportOrderState.setProcessingVehicle(
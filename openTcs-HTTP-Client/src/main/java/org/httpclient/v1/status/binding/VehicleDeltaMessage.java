@@ -0,0 +1,68 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.status.binding;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyDescription;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A status message containing the changes of a vehicle's state.
+ * <p>
+ * The sequence number and creation time stamp are those of the status message the changes stem
+ * from, or 0 and the time the changes were computed, if they stem from a {@link VehicleState}.
+ * </p>
+ *
+ * @author zzw
+ */
+public class VehicleDeltaMessage
+    extends StatusMessage {
+
+  @JsonProperty(required = true)
+  @JsonPropertyDescription("The changes of the vehicle's state")
+  private VehicleStateDelta delta = new VehicleStateDelta();
+
+  /**
+   * Creates a new instance.
+   */
+  public VehicleDeltaMessage() {
+  }
+
+  public VehicleStateDelta getDelta() {
+    return delta;
+  }
+
+  public void setDelta(VehicleStateDelta delta) {
+    this.delta = requireNonNull(delta, "delta");
+  }
+
+  /**
+   * Returns the name of the vehicle the changes are about.
+   *
+   * @return The name of the vehicle.
+   */
+  @JsonIgnore
+  public String getVehicleName() {
+    return delta.getName();
+  }
+
+  /**
+   * Returns a message containing the changes of this message followed by those of the given one.
+   *
+   * @param later A later message for the same vehicle.
+   * @return The merged message, with the later message's sequence number and time stamp.
+   */
+  public VehicleDeltaMessage mergedWith(VehicleDeltaMessage later) {
+    requireNonNull(later, "later");
+
+    VehicleDeltaMessage merged = new VehicleDeltaMessage();
+    merged.setSequenceNumber(later.getSequenceNumber());
+    merged.setCreationTimeStamp(later.getCreationTimeStamp());
+    merged.setDelta(delta.mergedWith(later.getDelta()));
+    return merged;
+  }
+}
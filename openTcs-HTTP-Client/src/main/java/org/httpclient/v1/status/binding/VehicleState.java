@@ -176,6 +176,30 @@ public class VehicleState {
     return vehicleState;
   }
 
+  /**
+   * Creates a copy of the given <Code>VehicleState</Code> instance.
+   *
+   * @param vehicleState The instance to copy.
+   * @return A new <Code>VehicleState</Code> instance with the same data as the given one.
+   */
+  public static VehicleState copyOf(VehicleState vehicleState) {
+    requireNonNull(vehicleState, "vehicleState");
+
+    VehicleState copy = new VehicleState();
+    copy.setName(vehicleState.getName());
+    copy.setProperties(new HashMap<>(vehicleState.getProperties()));
+    copy.setLength(vehicleState.getLength());
+    copy.setEnergyLevelGood(vehicleState.getEnergyLevelGood());
+    copy.setEnergyLevelCritical(vehicleState.getEnergyLevelCritical());
+    copy.setEnergyLevel(vehicleState.getEnergyLevel());
+    copy.setIntegrationLevel(vehicleState.getIntegrationLevel());
+    copy.setProcState(vehicleState.getProcState());
+    copy.setTransportOrder(vehicleState.getTransportOrder());
+    copy.setCurrentPosition(vehicleState.getCurrentPosition());
+    copy.setState(vehicleState.getState());
+    return copy;
+  }
+
   private static String nameOfNullableReference(@Nullable TCSObjectReference<?> reference) {
     return reference == null ? null : reference.getName();
   }
@@ -0,0 +1,395 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.status.binding;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyDescription;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import static java.util.Objects.requireNonNull;
+import javax.annotation.Nullable;
+import org.openTcs.data.model.Vehicle;
+import org.openTcs.data.model.Vehicle.IntegrationLevel;
+import org.openTcs.data.model.Vehicle.ProcState;
+import org.openTcs.data.model.Vehicle.State;
+
+/**
+ * The changes between two successive {@link VehicleState}s of a vehicle.
+ * <p>
+ * Only the fields flagged in <code>changedFields</code> carry values; all others are omitted when
+ * serialized.
+ * Applying a delta to the state it was computed against yields the newer state.
+ * </p>
+ *
+ * @author zzw
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class VehicleStateDelta {
+
+  @JsonProperty(required = true)
+  @JsonPropertyDescription("The name of the vehicle")
+  private String name = "";
+
+  @JsonProperty(required = true)
+  @JsonPropertyDescription("The fields that changed, as a bit mask")
+  private int changedFields;
+
+  @JsonPropertyDescription("The vehicle's properties, if changed")
+  private Map<String, String> properties;
+
+  @JsonPropertyDescription("The vehicle's length (in mm), if changed")
+  private Integer length;
+
+  @JsonPropertyDescription("The vehicle's energy level for being good, if changed")
+  private Integer energyLevelGood;
+
+  @JsonPropertyDescription("The vehicle's critical energy level, if changed")
+  private Integer energyLevelCritical;
+
+  @JsonPropertyDescription("The vehicle's remaining energy (in percent), if changed")
+  private Integer energyLevel;
+
+  @JsonPropertyDescription("The vehicle's integration level, if changed")
+  private IntegrationLevel integrationLevel;
+
+  @JsonPropertyDescription("The vehicle's processing state, if changed")
+  private ProcState procState;
+
+  @JsonPropertyDescription("The name of the transport order being processed, if changed")
+  private String transportOrder;
+
+  @JsonPropertyDescription("The name of the point the vehicle occupies, if changed")
+  private String currentPosition;
+
+  @JsonPropertyDescription("The vehicle's state, if changed")
+  private State state;
+
+  public VehicleStateDelta() {
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = requireNonNull(name, "name");
+  }
+
+  public int getChangedFields() {
+    return changedFields;
+  }
+
+  public void setChangedFields(int changedFields) {
+    this.changedFields = changedFields;
+  }
+
+  public Map<String, String> getProperties() {
+    return properties;
+  }
+
+  public void setProperties(Map<String, String> properties) {
+    this.properties = properties;
+  }
+
+  public Integer getLength() {
+    return length;
+  }
+
+  public void setLength(Integer length) {
+    this.length = length;
+  }
+
+  public Integer getEnergyLevelGood() {
+    return energyLevelGood;
+  }
+
+  public void setEnergyLevelGood(Integer energyLevelGood) {
+    this.energyLevelGood = energyLevelGood;
+  }
+
+  public Integer getEnergyLevelCritical() {
+    return energyLevelCritical;
+  }
+
+  public void setEnergyLevelCritical(Integer energyLevelCritical) {
+    this.energyLevelCritical = energyLevelCritical;
+  }
+
+  public Integer getEnergyLevel() {
+    return energyLevel;
+  }
+
+  public void setEnergyLevel(Integer energyLevel) {
+    this.energyLevel = energyLevel;
+  }
+
+  public IntegrationLevel getIntegrationLevel() {
+    return integrationLevel;
+  }
+
+  public void setIntegrationLevel(IntegrationLevel integrationLevel) {
+    this.integrationLevel = integrationLevel;
+  }
+
+  public ProcState getProcState() {
+    return procState;
+  }
+
+  public void setProcState(ProcState procState) {
+    this.procState = procState;
+  }
+
+  public String getTransportOrder() {
+    return transportOrder;
+  }
+
+  public void setTransportOrder(String transportOrder) {
+    this.transportOrder = transportOrder;
+  }
+
+  public String getCurrentPosition() {
+    return currentPosition;
+  }
+
+  public void setCurrentPosition(String currentPosition) {
+    this.currentPosition = currentPosition;
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  public void setState(State state) {
+    this.state = state;
+  }
+
+  /**
+   * Checks whether the given field changed.
+   *
+   * @param field The field.
+   * @return <code>true</code> if the given field changed.
+   */
+  public boolean isChanged(Field field) {
+    return (changedFields & field.mask()) != 0;
+  }
+
+  /**
+   * Checks whether no field changed.
+   *
+   * @return <code>true</code> if no field changed.
+   */
+  @JsonIgnore
+  public boolean isEmpty() {
+    return changedFields == 0;
+  }
+
+  /**
+   * Removes all but the given fields from this delta.
+   *
+   * @param fields The fields to keep, as a bit mask.
+   * @return This delta.
+   */
+  public VehicleStateDelta retain(int fields) {
+    changedFields &= fields;
+    if (!isChanged(Field.PROPERTIES)) {
+      properties = null;
+    }
+    if (!isChanged(Field.LENGTH)) {
+      length = null;
+    }
+    if (!isChanged(Field.ENERGY_LEVEL_GOOD)) {
+      energyLevelGood = null;
+    }
+    if (!isChanged(Field.ENERGY_LEVEL_CRITICAL)) {
+      energyLevelCritical = null;
+    }
+    if (!isChanged(Field.ENERGY_LEVEL)) {
+      energyLevel = null;
+    }
+    if (!isChanged(Field.INTEGRATION_LEVEL)) {
+      integrationLevel = null;
+    }
+    if (!isChanged(Field.PROC_STATE)) {
+      procState = null;
+    }
+    if (!isChanged(Field.TRANSPORT_ORDER)) {
+      transportOrder = null;
+    }
+    if (!isChanged(Field.CURRENT_POSITION)) {
+      currentPosition = null;
+    }
+    if (!isChanged(Field.STATE)) {
+      state = null;
+    }
+    return this;
+  }
+
+  /**
+   * Applies this delta to the given state.
+   *
+   * @param base The state this delta was computed against, or <code>null</code>, if this delta
+   * contains all fields.
+   * @return A new state with this delta's changes applied; the given state is not modified.
+   */
+  public VehicleState applyTo(@Nullable VehicleState base) {
+    VehicleState result = base == null
+        ? VehicleState.fromVehicle(new Vehicle(name))
+        : VehicleState.copyOf(base);
+    if (isChanged(Field.PROPERTIES)) {
+      result.setProperties(new HashMap<>(properties));
+    }
+    if (isChanged(Field.LENGTH)) {
+      result.setLength(length);
+    }
+    if (isChanged(Field.ENERGY_LEVEL_GOOD)) {
+      result.setEnergyLevelGood(energyLevelGood);
+    }
+    if (isChanged(Field.ENERGY_LEVEL_CRITICAL)) {
+      result.setEnergyLevelCritical(energyLevelCritical);
+    }
+    if (isChanged(Field.ENERGY_LEVEL)) {
+      result.setEnergyLevel(energyLevel);
+    }
+    if (isChanged(Field.INTEGRATION_LEVEL)) {
+      result.setIntegrationLevel(integrationLevel);
+    }
+    if (isChanged(Field.PROC_STATE)) {
+      result.setProcState(procState);
+    }
+    if (isChanged(Field.TRANSPORT_ORDER)) {
+      result.setTransportOrder(transportOrder);
+    }
+    if (isChanged(Field.CURRENT_POSITION)) {
+      result.setCurrentPosition(currentPosition);
+    }
+    if (isChanged(Field.STATE)) {
+      result.setState(state);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the changes of this delta followed by those of the given one.
+   * Applying the result to a state is the same as applying this delta and then the given one.
+   *
+   * @param later A later delta for the same vehicle.
+   * @return A new delta; neither this nor the given delta is modified.
+   */
+  public VehicleStateDelta mergedWith(VehicleStateDelta later) {
+    requireNonNull(later, "later");
+
+    VehicleStateDelta merged = new VehicleStateDelta();
+    merged.setName(later.getName());
+    merged.setChangedFields(changedFields | later.getChangedFields());
+    merged.setProperties(later.isChanged(Field.PROPERTIES) ? later.getProperties() : properties);
+    merged.setLength(later.isChanged(Field.LENGTH) ? later.getLength() : length);
+    merged.setEnergyLevelGood(
+        later.isChanged(Field.ENERGY_LEVEL_GOOD) ? later.getEnergyLevelGood() : energyLevelGood);
+    merged.setEnergyLevelCritical(later.isChanged(Field.ENERGY_LEVEL_CRITICAL)
+        ? later.getEnergyLevelCritical()
+        : energyLevelCritical);
+    merged.setEnergyLevel(
+        later.isChanged(Field.ENERGY_LEVEL) ? later.getEnergyLevel() : energyLevel);
+    merged.setIntegrationLevel(
+        later.isChanged(Field.INTEGRATION_LEVEL) ? later.getIntegrationLevel() : integrationLevel);
+    merged.setProcState(later.isChanged(Field.PROC_STATE) ? later.getProcState() : procState);
+    merged.setTransportOrder(
+        later.isChanged(Field.TRANSPORT_ORDER) ? later.getTransportOrder() : transportOrder);
+    merged.setCurrentPosition(
+        later.isChanged(Field.CURRENT_POSITION) ? later.getCurrentPosition() : currentPosition);
+    merged.setState(later.isChanged(Field.STATE) ? later.getState() : state);
+    return merged;
+  }
+
+  /**
+   * Computes the changes between two states of the same vehicle.
+   *
+   * @param previous The previous state, or <code>null</code>, if there is none, in which case all
+   * fields are considered changed.
+   * @param current The current state.
+   * @return The changes.
+   */
+  public static VehicleStateDelta between(@Nullable VehicleState previous, VehicleState current) {
+    requireNonNull(current, "current");
+
+    VehicleStateDelta delta = new VehicleStateDelta();
+    delta.setName(current.getName());
+    int changed = 0;
+    if (previous == null || !Objects.equals(previous.getProperties(), current.getProperties())) {
+      delta.setProperties(new HashMap<>(current.getProperties()));
+      changed |= Field.PROPERTIES.mask();
+    }
+    if (previous == null || previous.getLength() != current.getLength()) {
+      delta.setLength(current.getLength());
+      changed |= Field.LENGTH.mask();
+    }
+    if (previous == null || previous.getEnergyLevelGood() != current.getEnergyLevelGood()) {
+      delta.setEnergyLevelGood(current.getEnergyLevelGood());
+      changed |= Field.ENERGY_LEVEL_GOOD.mask();
+    }
+    if (previous == null
+        || previous.getEnergyLevelCritical() != current.getEnergyLevelCritical()) {
+      delta.setEnergyLevelCritical(current.getEnergyLevelCritical());
+      changed |= Field.ENERGY_LEVEL_CRITICAL.mask();
+    }
+    if (previous == null || previous.getEnergyLevel() != current.getEnergyLevel()) {
+      delta.setEnergyLevel(current.getEnergyLevel());
+      changed |= Field.ENERGY_LEVEL.mask();
+    }
+    if (previous == null || previous.getIntegrationLevel() != current.getIntegrationLevel()) {
+      delta.setIntegrationLevel(current.getIntegrationLevel());
+      changed |= Field.INTEGRATION_LEVEL.mask();
+    }
+    if (previous == null || previous.getProcState() != current.getProcState()) {
+      delta.setProcState(current.getProcState());
+      changed |= Field.PROC_STATE.mask();
+    }
+    if (previous == null
+        || !Objects.equals(previous.getTransportOrder(), current.getTransportOrder())) {
+      delta.setTransportOrder(current.getTransportOrder());
+      changed |= Field.TRANSPORT_ORDER.mask();
+    }
+    if (previous == null
+        || !Objects.equals(previous.getCurrentPosition(), current.getCurrentPosition())) {
+      delta.setCurrentPosition(current.getCurrentPosition());
+      changed |= Field.CURRENT_POSITION.mask();
+    }
+    if (previous == null || previous.getState() != current.getState()) {
+      delta.setState(current.getState());
+      changed |= Field.STATE.mask();
+    }
+    delta.setChangedFields(changed);
+    return delta;
+  }
+
+  /**
+   * The fields of a vehicle state that may change.
+   */
+  public enum Field {
+    PROPERTIES,
+    LENGTH,
+    ENERGY_LEVEL_GOOD,
+    ENERGY_LEVEL_CRITICAL,
+    ENERGY_LEVEL,
+    INTEGRATION_LEVEL,
+    PROC_STATE,
+    TRANSPORT_ORDER,
+    CURRENT_POSITION,
+    STATE;
+
+    /**
+     * Returns this field's bit in <code>changedFields</code>.
+     *
+     * @return This field's bit in <code>changedFields</code>.
+     */
+    public int mask() {
+      return 1 << ordinal();
+    }
+  }
+}
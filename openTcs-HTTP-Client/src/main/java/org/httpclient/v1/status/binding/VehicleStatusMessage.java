@@ -10,6 +10,7 @@ package org.httpclient.v1.status.binding;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyDescription;
 import java.time.Instant;
+import static java.util.Objects.requireNonNull;
 import org.openTcs.data.model.Triple;
 import org.openTcs.data.model.Vehicle;
 
@@ -34,6 +35,9 @@ public class VehicleStatusMessage
   @JsonPropertyDescription("The precise position of the vehicle")
   private PrecisePosition precisePosition;
 
+  @JsonPropertyDescription("The vehicle's current orientation angle (-360..360), NaN if unknown")
+  private double orientationAngle = Double.NaN;
+
   @JsonProperty(required = true)
   @JsonPropertyDescription("The vehicle's current state")
   private Vehicle.State state;
@@ -80,6 +84,14 @@ public class VehicleStatusMessage
     this.precisePosition = precisePosition;
   }
 
+  public double getOrientationAngle() {
+    return orientationAngle;
+  }
+
+  public void setOrientationAngle(double orientationAngle) {
+    this.orientationAngle = orientationAngle;
+  }
+
   public Vehicle.State getState() {
     return state;
   }
@@ -95,6 +107,34 @@ public class VehicleStatusMessage
   public void setProcState(Vehicle.ProcState procState) {
     this.procState = procState;
   }
+
+  /**
+   * Returns a message containing the data of the given later message, completed with the data
+   * of this message the later one does not carry.
+   * A message may omit the vehicle's state, processing state, precise position and orientation
+   * angle, which then remain unchanged; the position and transport order are always carried, as
+   * <code>null</code> means the vehicle has none.
+   *
+   * @param later A later message for the same vehicle.
+   * @return The merged message, with the later message's sequence number and time stamp.
+   */
+  public VehicleStatusMessage mergedWith(VehicleStatusMessage later) {
+    requireNonNull(later, "later");
+
+    VehicleStatusMessage merged = new VehicleStatusMessage();
+    merged.setSequenceNumber(later.getSequenceNumber());
+    merged.setCreationTimeStamp(later.getCreationTimeStamp());
+    merged.setVehicleName(later.getVehicleName());
+    merged.setTransportOrderName(later.getTransportOrderName());
+    merged.setPosition(later.getPosition());
+    merged.setPrecisePosition(
+        later.getPrecisePosition() != null ? later.getPrecisePosition() : precisePosition);
+    merged.setOrientationAngle(
+        Double.isNaN(later.getOrientationAngle()) ? orientationAngle : later.getOrientationAngle());
+    merged.setState(later.getState() != null ? later.getState() : state);
+    merged.setProcState(later.getProcState() != null ? later.getProcState() : procState);
+    return merged;
+  }
   
   public static VehicleStatusMessage fromVehicle(Vehicle vehicle, 
                                                  long sequenceNumber) {
@@ -121,6 +161,7 @@ public class VehicleStatusMessage
           precisePos.getX(), precisePos.getY(), precisePos.getZ());
       vehicleMessage.setPrecisePosition(precisePosElement);
     }
+    vehicleMessage.setOrientationAngle(vehicle.getOrientationAngle());
     return vehicleMessage;
   }
 
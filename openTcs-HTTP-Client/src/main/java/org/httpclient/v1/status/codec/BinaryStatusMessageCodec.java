@@ -0,0 +1,599 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.status.codec;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.httpclient.v1.status.binding.Destination;
+import org.httpclient.v1.status.binding.OrderStatusMessage;
+import org.httpclient.v1.status.binding.Property;
+import org.httpclient.v1.status.binding.StatusMessage;
+import org.httpclient.v1.status.binding.StatusMessageList;
+import org.httpclient.v1.status.binding.VehicleDeltaMessage;
+import org.httpclient.v1.status.binding.VehicleStateDelta;
+import org.httpclient.v1.status.binding.VehicleStatusMessage;
+import org.openTcs.data.model.Vehicle;
+
+/**
+ * Encodes status messages in a compact binary format.
+ * <p>
+ * The format is defined by the binding classes instead of being self-describing:
+ * </p>
+ * <ul>
+ * <li>The data starts with a magic byte and a format version byte; data of another version is
+ * rejected.</li>
+ * <li>Integers are written as variable length integers (7 bits per byte), signed ones zigzag
+ * encoded; sequence numbers as the difference to the previous message's, time stamps as the
+ * difference to the list's (in seconds, plus nanoseconds).</li>
+ * <li>Each string (vehicle and order names, positions, property keys, ...) is written once per
+ * list; repeated occurrences refer to the first one by index.</li>
+ * <li>Enum values are written as their names, like strings, so adding or reordering enum
+ * values does not break the format; a name unknown to the reading side is rejected.</li>
+ * <li>Vehicle delta messages write their bit mask of changed fields, followed by the values of
+ * these fields only.</li>
+ * </ul>
+ *
+ * @author zzw
+ */
+public class BinaryStatusMessageCodec
+    implements StatusMessageCodec {
+
+  /**
+   * The content type of the format.
+   */
+  public static final String CONTENT_TYPE = "application/x-opentcs-status";
+  /**
+   * Identifies the format.
+   */
+  private static final int MAGIC = 0x53;
+  /**
+   * The format's version, incremented with every incompatible change.
+   */
+  private static final int FORMAT_VERSION = 2;
+  /**
+   * Marks a vehicle status message.
+   */
+  private static final int TYPE_VEHICLE = 1;
+  /**
+   * Marks a transport order status message.
+   */
+  private static final int TYPE_ORDER = 2;
+  /**
+   * Marks a vehicle delta message.
+   */
+  private static final int TYPE_VEHICLE_DELTA = 3;
+  /**
+   * Flags a vehicle message with a precise position.
+   */
+  private static final int FLAG_PRECISE_POSITION = 1;
+  /**
+   * Flags a vehicle message with an orientation angle.
+   */
+  private static final int FLAG_ORIENTATION_ANGLE = 2;
+  /**
+   * Refers to a <code>null</code> string.
+   */
+  private static final int STRING_NULL = 0;
+  /**
+   * Precedes a string written for the first time.
+   */
+  private static final int STRING_NEW = 1;
+
+  /**
+   * Creates a new instance.
+   */
+  public BinaryStatusMessageCodec() {
+  }
+
+  @Override
+  public String getContentType() {
+    return CONTENT_TYPE;
+  }
+
+  @Override
+  public boolean isBinary() {
+    return true;
+  }
+
+  @Override
+  public byte[] encode(StatusMessageList messageList) {
+    Writer writer = new Writer();
+    writer.writeByte(MAGIC);
+    writer.writeByte(FORMAT_VERSION);
+    Instant timeStamp = messageList.getTimeStamp();
+    writer.writeSignedVarLong(timeStamp.getEpochSecond());
+    writer.writeVarLong(timeStamp.getNano());
+    writer.writeVarLong(messageList.getStatusMessages().size());
+    long previousSequenceNumber = 0;
+    for (StatusMessage message : messageList.getStatusMessages()) {
+      if (message instanceof VehicleStatusMessage) {
+        writer.writeVarLong(TYPE_VEHICLE);
+      }
+      else if (message instanceof OrderStatusMessage) {
+        writer.writeVarLong(TYPE_ORDER);
+      }
+      else if (message instanceof VehicleDeltaMessage) {
+        writer.writeVarLong(TYPE_VEHICLE_DELTA);
+      }
+      else {
+        throw new IllegalArgumentException("Unsupported status message: " + message.getClass());
+      }
+      writer.writeSignedVarLong(message.getSequenceNumber() - previousSequenceNumber);
+      previousSequenceNumber = message.getSequenceNumber();
+      Instant creationTimeStamp = message.getCreationTimeStamp();
+      writer.writeSignedVarLong(creationTimeStamp.getEpochSecond() - timeStamp.getEpochSecond());
+      writer.writeVarLong(creationTimeStamp.getNano());
+      if (message instanceof VehicleStatusMessage) {
+        writeVehicleMessage(writer, (VehicleStatusMessage) message);
+      }
+      else if (message instanceof OrderStatusMessage) {
+        writeOrderMessage(writer, (OrderStatusMessage) message);
+      }
+      else {
+        writeVehicleDelta(writer, ((VehicleDeltaMessage) message).getDelta());
+      }
+    }
+    return writer.toByteArray();
+  }
+
+  @Override
+  public StatusMessageList decode(byte[] data)
+      throws IOException {
+    Reader reader = new Reader(data);
+    if (reader.readByte() != MAGIC) {
+      throw new IOException("Not a status message list");
+    }
+    int version = reader.readByte();
+    if (version != FORMAT_VERSION) {
+      throw new IOException("Unsupported format version: " + version);
+    }
+    StatusMessageList messageList = new StatusMessageList();
+    Instant timeStamp = reader.readInstant(0);
+    messageList.setTimeStamp(timeStamp);
+    int count = reader.readLength();
+    List<StatusMessage> messages = new ArrayList<>(count);
+    long sequenceNumber = 0;
+    for (int i = 0; i < count; i++) {
+      int type = (int) reader.readVarLong();
+      StatusMessage message;
+      if (type == TYPE_VEHICLE) {
+        message = new VehicleStatusMessage();
+      }
+      else if (type == TYPE_ORDER) {
+        message = new OrderStatusMessage();
+      }
+      else if (type == TYPE_VEHICLE_DELTA) {
+        message = new VehicleDeltaMessage();
+      }
+      else {
+        throw new IOException("Unknown status message type: " + type);
+      }
+      sequenceNumber += reader.readSignedVarLong();
+      message.setSequenceNumber(sequenceNumber);
+      message.setCreationTimeStamp(reader.readInstant(timeStamp.getEpochSecond()));
+      if (type == TYPE_VEHICLE) {
+        readVehicleMessage(reader, (VehicleStatusMessage) message);
+      }
+      else if (type == TYPE_ORDER) {
+        readOrderMessage(reader, (OrderStatusMessage) message);
+      }
+      else {
+        ((VehicleDeltaMessage) message).setDelta(readVehicleDelta(reader));
+      }
+      messages.add(message);
+    }
+    if (reader.remaining() != 0) {
+      throw new IOException("Trailing data after status messages: " + reader.remaining());
+    }
+    messageList.setStatusMessages(messages);
+    return messageList;
+  }
+
+  private void writeVehicleMessage(Writer writer, VehicleStatusMessage message) {
+    writer.writeString(message.getVehicleName());
+    writer.writeString(message.getTransportOrderName());
+    writer.writeString(message.getPosition());
+    writer.writeEnum(message.getState());
+    writer.writeEnum(message.getProcState());
+    VehicleStatusMessage.PrecisePosition precisePosition = message.getPrecisePosition();
+    boolean hasAngle = !Double.isNaN(message.getOrientationAngle());
+    writer.writeVarLong((precisePosition != null ? FLAG_PRECISE_POSITION : 0)
+        | (hasAngle ? FLAG_ORIENTATION_ANGLE : 0));
+    if (precisePosition != null) {
+      writer.writeSignedVarLong(precisePosition.getX());
+      writer.writeSignedVarLong(precisePosition.getY());
+      writer.writeSignedVarLong(precisePosition.getZ());
+    }
+    if (hasAngle) {
+      writer.writeDouble(message.getOrientationAngle());
+    }
+  }
+
+  private void readVehicleMessage(Reader reader, VehicleStatusMessage message)
+      throws IOException {
+    message.setVehicleName(reader.readString());
+    message.setTransportOrderName(reader.readString());
+    message.setPosition(reader.readString());
+    message.setState(reader.readEnum(Vehicle.State.class));
+    message.setProcState(reader.readEnum(Vehicle.ProcState.class));
+    long flags = reader.readVarLong();
+    if ((flags & FLAG_PRECISE_POSITION) != 0) {
+      message.setPrecisePosition(
+          new VehicleStatusMessage.PrecisePosition(reader.readSignedVarLong(),
+                                                   reader.readSignedVarLong(),
+                                                   reader.readSignedVarLong()));
+    }
+    if ((flags & FLAG_ORIENTATION_ANGLE) != 0) {
+      message.setOrientationAngle(reader.readDouble());
+    }
+  }
+
+  private void writeVehicleDelta(Writer writer, VehicleStateDelta delta) {
+    writer.writeString(delta.getName());
+    writer.writeVarLong(delta.getChangedFields());
+    if (delta.isChanged(VehicleStateDelta.Field.PROPERTIES)) {
+      Map<String, String> properties = delta.getProperties();
+      writer.writeVarLong(properties == null ? 0 : properties.size());
+      if (properties != null) {
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+          writer.writeString(entry.getKey());
+          writer.writeString(entry.getValue());
+        }
+      }
+    }
+    if (delta.isChanged(VehicleStateDelta.Field.LENGTH)) {
+      writer.writeSignedVarLong(delta.getLength());
+    }
+    if (delta.isChanged(VehicleStateDelta.Field.ENERGY_LEVEL_GOOD)) {
+      writer.writeSignedVarLong(delta.getEnergyLevelGood());
+    }
+    if (delta.isChanged(VehicleStateDelta.Field.ENERGY_LEVEL_CRITICAL)) {
+      writer.writeSignedVarLong(delta.getEnergyLevelCritical());
+    }
+    if (delta.isChanged(VehicleStateDelta.Field.ENERGY_LEVEL)) {
+      writer.writeSignedVarLong(delta.getEnergyLevel());
+    }
+    if (delta.isChanged(VehicleStateDelta.Field.INTEGRATION_LEVEL)) {
+      writer.writeEnum(delta.getIntegrationLevel());
+    }
+    if (delta.isChanged(VehicleStateDelta.Field.PROC_STATE)) {
+      writer.writeEnum(delta.getProcState());
+    }
+    if (delta.isChanged(VehicleStateDelta.Field.TRANSPORT_ORDER)) {
+      writer.writeString(delta.getTransportOrder());
+    }
+    if (delta.isChanged(VehicleStateDelta.Field.CURRENT_POSITION)) {
+      writer.writeString(delta.getCurrentPosition());
+    }
+    if (delta.isChanged(VehicleStateDelta.Field.STATE)) {
+      writer.writeEnum(delta.getState());
+    }
+  }
+
+  private VehicleStateDelta readVehicleDelta(Reader reader)
+      throws IOException {
+    VehicleStateDelta delta = new VehicleStateDelta();
+    delta.setName(requireString(reader.readString(), "vehicle name"));
+    long changedFields = reader.readVarLong();
+    if ((changedFields & ~((1L << VehicleStateDelta.Field.values().length) - 1)) != 0) {
+      throw new IOException("Unknown changed fields: " + Long.toBinaryString(changedFields));
+    }
+    delta.setChangedFields((int) changedFields);
+    if (delta.isChanged(VehicleStateDelta.Field.PROPERTIES)) {
+      int count = reader.readLength();
+      Map<String, String> properties = new LinkedHashMap<>();
+      for (int i = 0; i < count; i++) {
+        properties.put(reader.readString(), reader.readString());
+      }
+      delta.setProperties(properties);
+    }
+    if (delta.isChanged(VehicleStateDelta.Field.LENGTH)) {
+      delta.setLength(reader.readInt());
+    }
+    if (delta.isChanged(VehicleStateDelta.Field.ENERGY_LEVEL_GOOD)) {
+      delta.setEnergyLevelGood(reader.readInt());
+    }
+    if (delta.isChanged(VehicleStateDelta.Field.ENERGY_LEVEL_CRITICAL)) {
+      delta.setEnergyLevelCritical(reader.readInt());
+    }
+    if (delta.isChanged(VehicleStateDelta.Field.ENERGY_LEVEL)) {
+      delta.setEnergyLevel(reader.readInt());
+    }
+    if (delta.isChanged(VehicleStateDelta.Field.INTEGRATION_LEVEL)) {
+      delta.setIntegrationLevel(reader.readEnum(Vehicle.IntegrationLevel.class));
+    }
+    if (delta.isChanged(VehicleStateDelta.Field.PROC_STATE)) {
+      delta.setProcState(reader.readEnum(Vehicle.ProcState.class));
+    }
+    if (delta.isChanged(VehicleStateDelta.Field.TRANSPORT_ORDER)) {
+      delta.setTransportOrder(reader.readString());
+    }
+    if (delta.isChanged(VehicleStateDelta.Field.CURRENT_POSITION)) {
+      delta.setCurrentPosition(reader.readString());
+    }
+    if (delta.isChanged(VehicleStateDelta.Field.STATE)) {
+      delta.setState(reader.readEnum(Vehicle.State.class));
+    }
+    return delta;
+  }
+
+  private static String requireString(@Nullable String value, String description)
+      throws IOException {
+    if (value == null) {
+      throw new IOException("Missing " + description);
+    }
+    return value;
+  }
+
+  private void writeOrderMessage(Writer writer, OrderStatusMessage message) {
+    writer.writeString(message.getOrderName());
+    writer.writeString(message.getProcessingVehicleName());
+    writer.writeEnum(message.getOrderState());
+    writer.writeVarLong(message.getDestinations().size());
+    for (Destination destination : message.getDestinations()) {
+      writer.writeString(destination.getLocationName());
+      writer.writeString(destination.getOperation());
+      writer.writeEnum(destination.getState());
+      writeProperties(writer, destination.getProperties());
+    }
+    writeProperties(writer, message.getProperties());
+  }
+
+  private void readOrderMessage(Reader reader, OrderStatusMessage message)
+      throws IOException {
+    message.setOrderName(reader.readString());
+    message.setProcessingVehicleName(reader.readString());
+    message.setOrderState(reader.readEnum(OrderStatusMessage.OrderState.class));
+    int count = reader.readLength();
+    List<Destination> destinations = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      Destination destination = new Destination();
+      destination.setLocationName(reader.readString());
+      destination.setOperation(reader.readString());
+      Destination.State state = reader.readEnum(Destination.State.class);
+      if (state != null) {
+        destination.setState(state);
+      }
+      destination.setProperties(readProperties(reader));
+      destinations.add(destination);
+    }
+    message.setDestinations(destinations);
+    message.setProperties(readProperties(reader));
+  }
+
+  private void writeProperties(Writer writer, List<Property> properties) {
+    writer.writeVarLong(properties.size());
+    for (Property property : properties) {
+      writer.writeString(property.getKey());
+      writer.writeString(property.getValue());
+    }
+  }
+
+  private List<Property> readProperties(Reader reader)
+      throws IOException {
+    int count = reader.readLength();
+    List<Property> properties = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      Property property = new Property();
+      property.setKey(reader.readString());
+      property.setValue(reader.readString());
+      properties.add(property);
+    }
+    return properties;
+  }
+
+  /**
+   * Writes the encoded data to a growing buffer.
+   */
+  private static class Writer {
+
+    /**
+     * The strings written so far, with their indexes.
+     */
+    private final Map<String, Integer> strings = new HashMap<>();
+    /**
+     * The buffer.
+     */
+    private byte[] buffer = new byte[256];
+    /**
+     * The number of bytes written.
+     */
+    private int position;
+
+    void writeByte(int value) {
+      if (position == buffer.length) {
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      }
+      buffer[position++] = (byte) value;
+    }
+
+    void writeVarLong(long value) {
+      while ((value & ~0x7FL) != 0) {
+        writeByte((int) (value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      writeByte((int) value);
+    }
+
+    void writeSignedVarLong(long value) {
+      writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    void writeDouble(double value) {
+      long bits = Double.doubleToRawLongBits(value);
+      for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+        writeByte((int) (bits >>> shift));
+      }
+    }
+
+    void writeEnum(@Nullable Enum<?> value) {
+      writeString(value == null ? null : value.name());
+    }
+
+    void writeString(@Nullable String value) {
+      if (value == null) {
+        writeVarLong(STRING_NULL);
+        return;
+      }
+      Integer index = strings.get(value);
+      if (index != null) {
+        writeVarLong(index + 2);
+        return;
+      }
+      strings.put(value, strings.size());
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      writeVarLong(STRING_NEW);
+      writeVarLong(bytes.length);
+      if (buffer.length - position < bytes.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes.length));
+      }
+      System.arraycopy(bytes, 0, buffer, position, bytes.length);
+      position += bytes.length;
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, position);
+    }
+  }
+
+  /**
+   * Reads encoded data.
+   */
+  private static class Reader {
+
+    /**
+     * The strings read so far, by index.
+     */
+    private final List<String> strings = new ArrayList<>();
+    /**
+     * The data.
+     */
+    private final byte[] data;
+    /**
+     * The number of bytes read.
+     */
+    private int position;
+
+    Reader(byte[] data) {
+      this.data = data;
+    }
+
+    int remaining() {
+      return data.length - position;
+    }
+
+    int readByte()
+        throws IOException {
+      if (position == data.length) {
+        throw new EOFException("Unexpected end of status messages");
+      }
+      return data[position++] & 0xFF;
+    }
+
+    long readVarLong()
+        throws IOException {
+      long value = 0;
+      for (int shift = 0; shift < Long.SIZE; shift += 7) {
+        int b = readByte();
+        value |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new IOException("Malformed variable length integer");
+    }
+
+    long readSignedVarLong()
+        throws IOException {
+      long value = readVarLong();
+      return (value >>> 1) ^ -(value & 1);
+    }
+
+    int readInt()
+        throws IOException {
+      long value = readSignedVarLong();
+      if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+        throw new IOException("Integer out of range: " + value);
+      }
+      return (int) value;
+    }
+
+    int readLength()
+        throws IOException {
+      long length = readVarLong();
+      if (length < 0 || length > remaining()) {
+        throw new IOException("Invalid length: " + length);
+      }
+      return (int) length;
+    }
+
+    Instant readInstant(long baseEpochSecond)
+        throws IOException {
+      long epochSecond = readSignedVarLong();
+      long nano = readVarLong();
+      try {
+        return Instant.ofEpochSecond(Math.addExact(baseEpochSecond, epochSecond), nano);
+      }
+      catch (DateTimeException | ArithmeticException exc) {
+        throw new IOException("Invalid time stamp", exc);
+      }
+    }
+
+    double readDouble()
+        throws IOException {
+      long bits = 0;
+      for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+        bits |= (long) readByte() << shift;
+      }
+      return Double.longBitsToDouble(bits);
+    }
+
+    @Nullable
+    <E extends Enum<E>> E readEnum(Class<E> type)
+        throws IOException {
+      String name = readString();
+      if (name == null) {
+        return null;
+      }
+      try {
+        return Enum.valueOf(type, name);
+      }
+      catch (IllegalArgumentException exc) {
+        throw new IOException("Unknown " + type.getSimpleName() + " value: " + name, exc);
+      }
+    }
+
+    @Nullable
+    String readString()
+        throws IOException {
+      long reference = readVarLong();
+      if (reference == STRING_NULL) {
+        return null;
+      }
+      if (reference == STRING_NEW) {
+        int length = readLength();
+        String value = new String(data, position, length, StandardCharsets.UTF_8);
+        position += length;
+        strings.add(value);
+        return value;
+      }
+      if (reference < 0 || reference - 2 >= strings.size()) {
+        throw new IOException("Invalid string reference: " + reference);
+      }
+      return strings.get((int) reference - 2);
+    }
+  }
+}
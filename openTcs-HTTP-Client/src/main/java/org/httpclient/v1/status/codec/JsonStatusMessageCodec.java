@@ -0,0 +1,177 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.status.codec;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.httpclient.v1.status.binding.StatusMessage;
+import org.httpclient.v1.status.binding.StatusMessageList;
+import static org.openTcs.util.Assertions.checkArgument;
+
+/**
+ * Encodes status messages as JSON, in the same format the kernel uses.
+ * <p>
+ * The encoded fragment of each status message is memoized by the message's identity and spliced
+ * into the output whenever the same message instance is encoded again, e.g. for every client of a
+ * status stream, so each message is serialized once.
+ * Messages must therefore not be modified once encoded.
+ * The output is the same as serializing the message list as a whole.
+ * </p>
+ *
+ * @author zzw
+ */
+public class JsonStatusMessageCodec
+    implements StatusMessageCodec {
+
+  /**
+   * The content type of JSON.
+   */
+  public static final String CONTENT_TYPE = "application/json";
+  /**
+   * The default number of message fragments cached.
+   */
+  public static final int DEFAULT_CACHE_SIZE = 4096;
+  /**
+   * Starts an encoded message list, up to its time stamp.
+   */
+  private static final byte[] LIST_START = "{\"timeStamp\":".getBytes(StandardCharsets.UTF_8);
+  /**
+   * Follows the time stamp of an encoded message list, up to its messages.
+   */
+  private static final byte[] MESSAGES_START
+      = ",\"statusMessages\":[".getBytes(StandardCharsets.UTF_8);
+  /**
+   * Ends an encoded message list.
+   */
+  private static final byte[] LIST_END = "]}".getBytes(StandardCharsets.UTF_8);
+  /**
+   * Maps the status messages to JSON and back.
+   */
+  private final ObjectMapper mapper = new ObjectMapper()
+      .registerModule(new JavaTimeModule())
+      .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+      .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+  /**
+   * Encodes single status messages, including their type.
+   */
+  private final ObjectWriter messageWriter = mapper.writerFor(StatusMessage.class);
+  /**
+   * The encoded messages, by the messages' identity hash codes (direct-mapped).
+   * Entries are immutable, so they may be replaced and read without synchronization.
+   */
+  private final MessageFragment[] messageFragments;
+
+  /**
+   * Creates a new instance with the default cache size.
+   */
+  public JsonStatusMessageCodec() {
+    this(DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * Creates a new instance.
+   *
+   * @param cacheSize The number of message fragments cached; must be a power of two.
+   */
+  public JsonStatusMessageCodec(int cacheSize) {
+    checkArgument(cacheSize > 0 && Integer.bitCount(cacheSize) == 1,
+                  "cacheSize not a power of two: %s",
+                  cacheSize);
+    this.messageFragments = new MessageFragment[cacheSize];
+  }
+
+  @Override
+  public String getContentType() {
+    return CONTENT_TYPE;
+  }
+
+  @Override
+  public boolean isBinary() {
+    return false;
+  }
+
+  @Override
+  public byte[] encode(StatusMessageList messageList)
+      throws IOException {
+    Output out = new Output();
+    out.write(LIST_START);
+    out.write(mapper.writeValueAsBytes(messageList.getTimeStamp()));
+    out.write(MESSAGES_START);
+    // Messages not cached are serialized with a single generator, directly into the output.
+    try (JsonGenerator gen = mapper.getFactory().createGenerator(out)) {
+      // Messages are separated explicitly, not as root values.
+      gen.setRootValueSeparator(null);
+      boolean first = true;
+      for (StatusMessage message : messageList.getStatusMessages()) {
+        if (!first) {
+          out.write(',');
+        }
+        first = false;
+        int slot = System.identityHashCode(message) & (messageFragments.length - 1);
+        MessageFragment cached = messageFragments[slot];
+        if (cached != null && cached.message == message) {
+          out.write(cached.json);
+        }
+        else {
+          int start = out.size();
+          messageWriter.writeValue(gen, message);
+          messageFragments[slot] = new MessageFragment(message, out.copyFrom(start));
+        }
+      }
+    }
+    out.write(LIST_END);
+    return out.toByteArray();
+  }
+
+  @Override
+  public StatusMessageList decode(byte[] data)
+      throws IOException {
+    return mapper.readValue(data, StatusMessageList.class);
+  }
+
+  /**
+   * An encoded status message.
+   */
+  private static class MessageFragment {
+
+    private final StatusMessage message;
+    private final byte[] json;
+
+    MessageFragment(StatusMessage message, byte[] json) {
+      this.message = message;
+      this.json = json;
+    }
+  }
+
+  /**
+   * Collects the output, giving access to parts of it.
+   */
+  private static class Output
+      extends ByteArrayOutputStream {
+
+    Output() {
+      super(1024);
+    }
+
+    /**
+     * Returns a copy of the output from the given position on.
+     *
+     * @param start The position.
+     * @return A copy of the output from the given position on.
+     */
+    byte[] copyFrom(int start) {
+      return Arrays.copyOfRange(buf, start, count);
+    }
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.status.codec;
+
+import java.io.IOException;
+import org.httpclient.v1.status.binding.StatusMessageList;
+
+/**
+ * Encodes and decodes {@link StatusMessageList}s in a specific format.
+ *
+ * @author zzw
+ */
+public interface StatusMessageCodec {
+
+  /**
+   * Returns the content type of the format, used to negotiate it with clients.
+   *
+   * @return The content type.
+   */
+  String getContentType();
+
+  /**
+   * Checks whether the format is binary, i.e. not text.
+   *
+   * @return <code>true</code> if the format is binary.
+   */
+  boolean isBinary();
+
+  /**
+   * Encodes the given status messages.
+   *
+   * @param messageList The status messages.
+   * @return The encoded status messages.
+   * @throws IOException If the status messages could not be encoded.
+   */
+  byte[] encode(StatusMessageList messageList)
+      throws IOException;
+
+  /**
+   * Decodes status messages.
+   *
+   * @param data The encoded status messages.
+   * @return The status messages.
+   * @throws IOException If the data could not be decoded.
+   */
+  StatusMessageList decode(byte[] data)
+      throws IOException;
+}
@@ -30,6 +30,17 @@ public class TransportOrderFilter
     this.intendedVehicle = intendedVehicle;
   }
 
+  /**
+   * Returns the name of the intended vehicle of the requested transport orders.
+   *
+   * @return The name of the intended vehicle, or <code>null</code>, if transport orders for any
+   * vehicle are requested.
+   */
+  @Nullable
+  public String getIntendedVehicle() {
+    return intendedVehicle;
+  }
+
   @Override
   public boolean test(TransportOrder transportOrder) {
     boolean accept = true;
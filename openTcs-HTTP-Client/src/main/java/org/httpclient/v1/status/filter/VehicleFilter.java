@@ -28,6 +28,17 @@ public class VehicleFilter
     this.procState = procState;
   }
 
+  /**
+   * Returns the processing state of the requested vehicles.
+   *
+   * @return The processing state of the requested vehicles, or <code>null</code>, if vehicles in
+   * any processing state are requested.
+   */
+  @Nullable
+  public String getProcState() {
+    return procState;
+  }
+
   @Override
   public boolean test(Vehicle vehicle) {
     boolean accept = true;
@@ -0,0 +1,554 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.stream;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static java.util.Objects.requireNonNull;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.annotation.Nullable;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketConnect;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketError;
+import org.eclipse.jetty.websocket.api.annotations.WebSocket;
+import org.httpclient.v1.order.OrderStore;
+import org.httpclient.v1.status.StatusEventConsumer;
+import org.httpclient.v1.status.StatusEventDispatcher;
+import org.httpclient.v1.status.VehicleDeltaEngine;
+import org.httpclient.v1.status.binding.OrderStatusMessage;
+import org.httpclient.v1.status.binding.StatusMessage;
+import org.httpclient.v1.status.binding.StatusMessageList;
+import org.httpclient.v1.status.binding.TransportOrderState;
+import org.httpclient.v1.status.binding.VehicleDeltaMessage;
+import org.httpclient.v1.status.binding.VehicleState;
+import org.httpclient.v1.status.binding.VehicleStatusMessage;
+import org.httpclient.v1.status.codec.BinaryStatusMessageCodec;
+import org.httpclient.v1.status.codec.JsonStatusMessageCodec;
+import org.httpclient.v1.status.codec.StatusMessageCodec;
+import org.httpclient.v1.status.filter.TransportOrderFilter;
+import org.httpclient.v1.status.filter.VehicleFilter;
+import org.openTcs.data.model.Vehicle;
+import static org.openTcs.util.Assertions.checkInRange;
+import static org.openTcs.util.Assertions.checkState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Service;
+
+/**
+ * Pushes the status messages received from the kernel to any number of WebSocket clients, so the
+ * kernel is polled once, regardless of how many clients are interested in its status.
+ * <p>
+ * Clients connect to the stream's path and may select what they receive with query parameters:
+ * <code>procState</code> selects vehicles as a {@link VehicleFilter} does, and
+ * <code>intendedVehicle</code> selects transport orders as a {@link TransportOrderFilter} does.
+ * Each message sent is a {@link StatusMessageList}, encoded with the first codec whose content type
+ * the client accepts, as given by the upgrade request's <code>Accept</code> header or an
+ * <code>accept</code> query parameter: JSON (the kernel's format, as text messages) by default, or
+ * {@link BinaryStatusMessageCodec#CONTENT_TYPE} (as binary messages).
+ * Clients passing <code>vehicleDeltas=true</code> receive {@link VehicleDeltaMessage}s - only the
+ * fields of a vehicle's state that changed - instead of vehicle status messages; the deltas are
+ * computed by a {@link VehicleDeltaEngine} passing them to {@link #onVehicleDelta(
+ * VehicleDeltaMessage)}.
+ * </p>
+ * <p>
+ * The messages are distributed to the clients by the consumer thread, which never blocks: each
+ * client has its own queue, which is sent asynchronously and conflated while the client is busy,
+ * so a slow client only receives fewer updates and does not delay others (see
+ * {@link StatusSubscriber}).
+ * The stream keeps the current state of the vehicles and of the transport orders not in a final
+ * state, as of the last event it consumed.
+ * A connecting client is handed to the consumer thread, which queues this state for it, selected
+ * by its filters, before the next event - so the client receives the updates following exactly the
+ * state it started with.
+ * To have new clients handed over while no status data arrives, the stream dispatches a marker
+ * event of its own.
+ * Vehicle and transport order snapshots taken after lost messages are forwarded as status messages
+ * as well, so clients catch up with changes that were lost.
+ * Status messages made up from such states have the sequence number 0, as they do not stem from the
+ * kernel's status channel, and carry only what the states contain - e.g. no precise positions.
+ * </p>
+ *
+ * @author zzw
+ */
+public class StatusStream
+    implements StatusEventConsumer {
+
+  /**
+   * This class's logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(StatusStream.class);
+  /**
+   * The query parameter selecting vehicles by processing state.
+   */
+  private static final String PARAM_PROC_STATE = "procState";
+  /**
+   * The query parameter selecting transport orders by intended vehicle.
+   */
+  private static final String PARAM_INTENDED_VEHICLE = "intendedVehicle";
+  /**
+   * The query parameter listing the accepted content types, for clients unable to set headers.
+   */
+  private static final String PARAM_ACCEPT = "accept";
+  /**
+   * The query parameter selecting vehicle delta messages instead of vehicle status messages.
+   */
+  private static final String PARAM_VEHICLE_DELTAS = "vehicleDeltas";
+  /**
+   * The port to listen on.
+   */
+  private final int port;
+  /**
+   * The path clients connect to.
+   */
+  private final String path;
+  /**
+   * The marker event handing new clients to the consumer thread.
+   */
+  private static final Object NEW_SUBSCRIBERS = new Object();
+  /**
+   * Provides the intended vehicles of transport orders, which status messages do not contain.
+   */
+  private final OrderStore orderStore;
+  /**
+   * Dispatches the marker event handing new clients to the consumer thread.
+   */
+  private final StatusEventDispatcher dispatcher;
+  /**
+   * The codecs available to clients, the first one being the default.
+   */
+  private final List<StatusMessageCodec> codecs
+      = new CopyOnWriteArrayList<>(List.of(new JsonStatusMessageCodec(),
+                                           new BinaryStatusMessageCodec()));
+  /**
+   * The connected clients, by session.
+   */
+  private final Map<Session, StatusSubscriber> subscribers = new ConcurrentHashMap<>();
+  /**
+   * The clients connected, but not handed to the consumer thread, yet.
+   */
+  private final Queue<StatusSubscriber> newSubscribers = new ConcurrentLinkedQueue<>();
+  /**
+   * The vehicles' current state, by vehicle name, made up from all messages consumed.
+   * Only accessed by the consumer thread.
+   */
+  private final Map<String, VehicleStatusMessage> vehicles = new HashMap<>();
+  /**
+   * The current state of the transport orders not in a final state, by order name.
+   * Only accessed by the consumer thread.
+   */
+  private final Map<String, OrderEntry> orders = new HashMap<>();
+  /**
+   * All changes of the vehicles' states, merged, by vehicle name.
+   * Only accessed by the consumer thread.
+   */
+  private final Map<String, VehicleDeltaMessage> vehicleDeltas = new HashMap<>();
+  /**
+   * The embedded HTTP server, while started.
+   */
+  private Service service;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param port The port to listen on.
+   * @param path The path clients connect to.
+   * @param orderStore Provides the intended vehicles of transport orders.
+   * @param dispatcher The dispatcher this stream consumes the events of.
+   */
+  public StatusStream(int port,
+                      String path,
+                      OrderStore orderStore,
+                      StatusEventDispatcher dispatcher) {
+    this.port = checkInRange(port, 0, 65535, "port");
+    this.path = requireNonNull(path, "path");
+    this.orderStore = requireNonNull(orderStore, "orderStore");
+    this.dispatcher = requireNonNull(dispatcher, "dispatcher");
+  }
+
+  /**
+   * Makes the given codec available to clients connecting afterwards.
+   * A codec for a content type already available replaces the existing one.
+   *
+   * @param codec The codec.
+   */
+  public void addCodec(StatusMessageCodec codec) {
+    requireNonNull(codec, "codec");
+
+    codecs.removeIf(existing -> existing.getContentType().equals(codec.getContentType()));
+    codecs.add(codec);
+  }
+
+  /**
+   * Starts accepting clients.
+   */
+  public synchronized void start() {
+    checkState(service == null, "Already started");
+
+    service = Service.ignite().port(port);
+    service.webSocket(path, new Endpoint());
+    service.init();
+    service.awaitInitialization();
+    LOG.info("Streaming status messages on port {}, path {}", service.port(), path);
+  }
+
+  /**
+   * Disconnects all clients and stops accepting new ones.
+   */
+  public synchronized void stop() {
+    if (service == null) {
+      return;
+    }
+    for (StatusSubscriber subscriber : subscribers.values()) {
+      subscriber.close();
+    }
+    subscribers.clear();
+    StatusSubscriber subscriber;
+    while ((subscriber = newSubscribers.poll()) != null) {
+      subscriber.close();
+    }
+    service.stop();
+    service = null;
+  }
+
+  /**
+   * Returns the port this stream listens on.
+   *
+   * @return The port this stream listens on.
+   */
+  public synchronized int getPort() {
+    checkState(service != null, "Not started");
+    return service.port();
+  }
+
+  @Override
+  public void onEvent(Object event, long sequence, boolean endOfBatch) {
+    // New clients start with the state as of the previous event.
+    if (!newSubscribers.isEmpty()) {
+      addNewSubscribers();
+    }
+
+    if (event instanceof StatusMessage) {
+      onStatusMessage((StatusMessage) event);
+    }
+    else if (event instanceof StatusMessageList) {
+      for (StatusMessage message : ((StatusMessageList) event).getStatusMessages()) {
+        onStatusMessage(message);
+      }
+    }
+    else if (event instanceof VehicleState) {
+      // A snapshot taken after lost messages.
+      onStatusMessage(toStatusMessage((VehicleState) event));
+    }
+    else if (event instanceof TransportOrderState) {
+      // A snapshot taken after lost messages.
+      TransportOrderState order = (TransportOrderState) event;
+      onOrderMessage(toStatusMessage(order), order.getIntendedVehicle());
+    }
+
+    if (endOfBatch) {
+      for (StatusSubscriber subscriber : subscribers.values()) {
+        subscriber.flush();
+      }
+    }
+  }
+
+  /**
+   * Sends the given changes of a vehicle's state to the clients receiving vehicle deltas.
+   * Must be called by the thread consuming this stream's events, before the event the changes stem
+   * from is passed to {@link #onEvent(Object, long, boolean)} - e.g. by a
+   * {@link VehicleDeltaEngine} consuming the events on the same thread, just before this stream.
+   *
+   * @param message The changes.
+   */
+  public void onVehicleDelta(VehicleDeltaMessage message) {
+    requireNonNull(message, "message");
+
+    // New clients start with the state as of the previous event.
+    if (!newSubscribers.isEmpty()) {
+      addNewSubscribers();
+    }
+
+    VehicleDeltaMessage previous = vehicleDeltas.get(message.getVehicleName());
+    VehicleDeltaMessage current = previous == null ? message : previous.mergedWith(message);
+    vehicleDeltas.put(message.getVehicleName(), current);
+    Vehicle.ProcState previousProcState
+        = previous == null ? null : previous.getDelta().getProcState();
+    Vehicle.ProcState procState = current.getDelta().getProcState();
+    for (StatusSubscriber subscriber : subscribers.values()) {
+      if (subscriber.accepts(message, previousProcState, procState)) {
+        subscriber.offer(message);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of connected clients.
+   *
+   * @return The number of connected clients.
+   */
+  public int getSubscriberCount() {
+    return subscribers.size();
+  }
+
+  /**
+   * Returns the number of messages sent to the clients currently connected.
+   *
+   * @return The number of messages sent to the clients currently connected.
+   */
+  public long getSentCount() {
+    long sentCount = 0;
+    for (StatusSubscriber subscriber : subscribers.values()) {
+      sentCount += subscriber.getSentCount();
+    }
+    return sentCount;
+  }
+
+  /**
+   * Returns the number of messages not sent to the clients currently connected, because they were
+   * replaced by newer ones while the clients were busy.
+   *
+   * @return The number of messages replaced by newer ones.
+   */
+  public long getConflatedCount() {
+    long conflatedCount = 0;
+    for (StatusSubscriber subscriber : subscribers.values()) {
+      conflatedCount += subscriber.getConflatedCount();
+    }
+    return conflatedCount;
+  }
+
+  private void onStatusMessage(StatusMessage message) {
+    if (message instanceof VehicleStatusMessage) {
+      VehicleStatusMessage vehicleMessage = (VehicleStatusMessage) message;
+      VehicleStatusMessage previous = vehicles.get(vehicleMessage.getVehicleName());
+      Vehicle.ProcState previousProcState = previous == null ? null : previous.getProcState();
+      VehicleStatusMessage current = merge(previous, vehicleMessage);
+      vehicles.put(vehicleMessage.getVehicleName(), current);
+      Vehicle.ProcState procState = current.getProcState();
+      for (StatusSubscriber subscriber : subscribers.values()) {
+        if (subscriber.accepts(vehicleMessage, previousProcState, procState)) {
+          subscriber.offer(vehicleMessage);
+        }
+      }
+    }
+    else if (message instanceof OrderStatusMessage) {
+      OrderStatusMessage orderMessage = (OrderStatusMessage) message;
+      OrderEntry previous = orders.get(orderMessage.getOrderName());
+      String intendedVehicle = previous == null ? null : previous.intendedVehicle;
+      if (intendedVehicle == null) {
+        OrderStore.StoredOrder order = orderStore.getOrder(orderMessage.getOrderName());
+        intendedVehicle = order == null ? null : order.getIntendedVehicle();
+      }
+      onOrderMessage(orderMessage, intendedVehicle);
+    }
+  }
+
+  private void onOrderMessage(OrderStatusMessage orderMessage, @Nullable String intendedVehicle) {
+    if (orderMessage.getOrderName() != null) {
+      if (orderMessage.getOrderState() != null
+          && orderMessage.getOrderState().toTransportOrderState().isFinalState()) {
+        orders.remove(orderMessage.getOrderName());
+      }
+      else {
+        orders.put(orderMessage.getOrderName(), new OrderEntry(orderMessage, intendedVehicle));
+      }
+    }
+    for (StatusSubscriber subscriber : subscribers.values()) {
+      if (subscriber.accepts(orderMessage, intendedVehicle)) {
+        subscriber.offer(orderMessage);
+      }
+    }
+  }
+
+  /**
+   * Hands the new clients to the consumer thread: queues the current state of the vehicles and
+   * transport orders selected by their filters and adds them to the clients receiving updates.
+   */
+  private void addNewSubscribers() {
+    StatusSubscriber subscriber;
+    while ((subscriber = newSubscribers.poll()) != null) {
+      if (!subscriber.getSession().isOpen()) {
+        continue;
+      }
+      for (VehicleStatusMessage message : vehicles.values()) {
+        if (subscriber.accepts(message, message.getProcState(), message.getProcState())) {
+          subscriber.offer(message);
+        }
+      }
+      for (VehicleDeltaMessage message : vehicleDeltas.values()) {
+        Vehicle.ProcState procState = message.getDelta().getProcState();
+        if (subscriber.accepts(message, procState, procState)) {
+          subscriber.offer(message);
+        }
+      }
+      for (OrderEntry order : orders.values()) {
+        if (subscriber.accepts(order.message, order.intendedVehicle)) {
+          subscriber.offer(order.message);
+        }
+      }
+      subscribers.put(subscriber.getSession(), subscriber);
+      subscriber.flush();
+    }
+  }
+
+  /**
+   * Returns a vehicle's state after the given message.
+   * A message's missing state and processing state mean they are unchanged.
+   *
+   * @param previous The vehicle's state before the message, if known.
+   * @param message The message.
+   * @return The vehicle's state after the message.
+   */
+  private static VehicleStatusMessage merge(@Nullable VehicleStatusMessage previous,
+                                            VehicleStatusMessage message) {
+    if (previous == null || (message.getState() != null && message.getProcState() != null)) {
+      return message;
+    }
+    // Messages are shared with other consumers - merge into a copy.
+    VehicleStatusMessage merged = new VehicleStatusMessage();
+    merged.setSequenceNumber(message.getSequenceNumber());
+    merged.setCreationTimeStamp(message.getCreationTimeStamp());
+    merged.setVehicleName(message.getVehicleName());
+    merged.setTransportOrderName(message.getTransportOrderName());
+    merged.setPosition(message.getPosition());
+    merged.setPrecisePosition(message.getPrecisePosition());
+    merged.setOrientationAngle(message.getOrientationAngle());
+    merged.setState(message.getState() != null ? message.getState() : previous.getState());
+    merged.setProcState(message.getProcState() != null
+        ? message.getProcState()
+        : previous.getProcState());
+    return merged;
+  }
+
+  private static VehicleStatusMessage toStatusMessage(VehicleState vehicle) {
+    VehicleStatusMessage message = new VehicleStatusMessage();
+    message.setSequenceNumber(0);
+    message.setVehicleName(vehicle.getName());
+    message.setTransportOrderName(vehicle.getTransportOrder());
+    message.setPosition(vehicle.getCurrentPosition());
+    message.setState(vehicle.getState());
+    message.setProcState(vehicle.getProcState());
+    return message;
+  }
+
+  private static OrderStatusMessage toStatusMessage(TransportOrderState order) {
+    OrderStatusMessage message = new OrderStatusMessage();
+    message.setSequenceNumber(0);
+    message.setOrderName(order.getName());
+    message.setProcessingVehicleName(order.getProcessingVehicle());
+    if (order.getState() != null) {
+      message.setOrderState(OrderStatusMessage.OrderState.fromTransportOrderState(order.getState()));
+    }
+    if (order.getDestinations() != null) {
+      message.setDestinations(order.getDestinations());
+    }
+    return message;
+  }
+
+  /**
+   * Selects the codec for the first of the given content types available.
+   *
+   * @param accept The accepted content types, as in an <code>Accept</code> header, or
+   * <code>null</code>.
+   * @return The codec, the default one if none of the content types is available.
+   */
+  private StatusMessageCodec negotiateCodec(@Nullable String accept) {
+    if (accept != null) {
+      for (String mediaRange : accept.split(",")) {
+        int parameters = mediaRange.indexOf(';');
+        String contentType = (parameters < 0 ? mediaRange : mediaRange.substring(0, parameters))
+            .trim();
+        for (StatusMessageCodec codec : codecs) {
+          if (codec.getContentType().equalsIgnoreCase(contentType)) {
+            return codec;
+          }
+        }
+      }
+    }
+    return codecs.get(0);
+  }
+
+  @Nullable
+  private static String parameter(Session session, String name) {
+    List<String> values = session.getUpgradeRequest().getParameterMap().get(name);
+    return values == null || values.isEmpty() ? null : values.get(0);
+  }
+
+  /**
+   * Accepts the clients' WebSocket connections.
+   * Public only so Jetty can call its annotated methods.
+   */
+  @WebSocket
+  public class Endpoint {
+
+    @OnWebSocketConnect
+    public void onConnect(Session session) {
+      String accept = parameter(session, PARAM_ACCEPT);
+      if (accept == null) {
+        accept = session.getUpgradeRequest().getHeader("Accept");
+      }
+      StatusMessageCodec codec = negotiateCodec(accept);
+      VehicleFilter vehicleFilter = new VehicleFilter(parameter(session, PARAM_PROC_STATE));
+      TransportOrderFilter transportOrderFilter
+          = new TransportOrderFilter(parameter(session, PARAM_INTENDED_VEHICLE));
+      StatusSubscriber subscriber
+          = new StatusSubscriber(session,
+                                 vehicleFilter,
+                                 transportOrderFilter,
+                                 Boolean.parseBoolean(parameter(session, PARAM_VEHICLE_DELTAS)),
+                                 codec);
+      // The consumer thread sends the current state and the updates following it.
+      newSubscribers.add(subscriber);
+      try {
+        dispatcher.dispatch(NEW_SUBSCRIBERS);
+      }
+      catch (IllegalStateException exc) {
+        LOG.debug("Dispatcher terminated, closing status stream client", exc);
+        newSubscribers.remove(subscriber);
+        subscriber.close();
+        return;
+      }
+      LOG.info("Status stream client {} connected, sending {}",
+               session.getRemoteAddress(),
+               codec.getContentType());
+    }
+
+    @OnWebSocketClose
+    public void onClose(Session session, int statusCode, String reason) {
+      subscribers.remove(session);
+      newSubscribers.removeIf(subscriber -> subscriber.getSession() == session);
+      LOG.info("Status stream client {} disconnected: {} {}",
+               session.getRemoteAddress(),
+               statusCode,
+               reason);
+    }
+
+    @OnWebSocketError
+    public void onError(Session session, Throwable cause) {
+      LOG.debug("Status stream client {} failed", session.getRemoteAddress(), cause);
+    }
+  }
+
+  /**
+   * A transport order's current state.
+   */
+  private static class OrderEntry {
+
+    private final OrderStatusMessage message;
+    @Nullable
+    private final String intendedVehicle;
+
+    OrderEntry(OrderStatusMessage message, @Nullable String intendedVehicle) {
+      this.message = message;
+      this.intendedVehicle = intendedVehicle;
+    }
+  }
+}
@@ -0,0 +1,275 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.stream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.httpclient.v1.status.ConflatingQueue;
+import org.httpclient.v1.status.binding.OrderStatusMessage;
+import org.httpclient.v1.status.binding.StatusMessage;
+import org.httpclient.v1.status.binding.StatusMessageList;
+import org.httpclient.v1.status.binding.VehicleDeltaMessage;
+import org.httpclient.v1.status.binding.VehicleStatusMessage;
+import org.httpclient.v1.status.codec.StatusMessageCodec;
+import org.httpclient.v1.status.filter.TransportOrderFilter;
+import org.httpclient.v1.status.filter.VehicleFilter;
+import org.openTcs.data.model.Vehicle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A client connected to a {@link StatusStream}.
+ * <p>
+ * Status messages accepted by the client's filters are queued in a {@link ConflatingQueue} and
+ * sent asynchronously, all queued messages in one {@link StatusMessageList} encoded with the codec
+ * negotiated with the client; at most one send is in flight at a time.
+ * While a send is in flight, newer messages for the same vehicle or transport order replace queued
+ * ones, so a slow client receives fewer, but always the latest updates.
+ * </p>
+ *
+ * @author zzw
+ */
+class StatusSubscriber
+    implements WriteCallback {
+
+  /**
+   * This class's logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(StatusSubscriber.class);
+  /**
+   * The client's WebSocket session.
+   */
+  private final Session session;
+  /**
+   * Selects the vehicles the client is interested in.
+   */
+  private final VehicleFilter vehicleFilter;
+  /**
+   * Selects the transport orders the client is interested in.
+   */
+  private final TransportOrderFilter transportOrderFilter;
+  /**
+   * Whether the client receives vehicle delta messages instead of vehicle status messages.
+   */
+  private final boolean vehicleDeltas;
+  /**
+   * Encodes the status messages.
+   */
+  private final StatusMessageCodec codec;
+  /**
+   * The messages not sent, yet.
+   */
+  private final ConflatingQueue queue = new ConflatingQueue();
+  /**
+   * Whether a send is in flight.
+   */
+  private final AtomicBoolean sending = new AtomicBoolean();
+  /**
+   * The number of messages in the send in flight.
+   */
+  private volatile int sendingCount;
+  /**
+   * The number of messages sent.
+   */
+  private volatile long sentCount;
+  /**
+   * Whether the client has been closed.
+   */
+  private volatile boolean closed;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param session The client's WebSocket session.
+   * @param vehicleFilter Selects the vehicles the client is interested in.
+   * @param transportOrderFilter Selects the transport orders the client is interested in.
+   * @param vehicleDeltas Whether the client receives vehicle delta messages instead of vehicle
+   * status messages.
+   * @param codec Encodes the status messages.
+   */
+  StatusSubscriber(Session session,
+                   VehicleFilter vehicleFilter,
+                   TransportOrderFilter transportOrderFilter,
+                   boolean vehicleDeltas,
+                   StatusMessageCodec codec) {
+    this.session = session;
+    this.vehicleFilter = vehicleFilter;
+    this.transportOrderFilter = transportOrderFilter;
+    this.vehicleDeltas = vehicleDeltas;
+    this.codec = codec;
+  }
+
+  /**
+   * Checks whether the client receives vehicle delta messages instead of vehicle status messages.
+   *
+   * @return <code>true</code> if the client receives vehicle delta messages.
+   */
+  boolean receivesVehicleDeltas() {
+    return vehicleDeltas;
+  }
+
+  /**
+   * Checks whether the client is interested in the given vehicle message.
+   * A vehicle is accepted if its processing state matched the filter before or after the message,
+   * so the client also learns about a vehicle leaving the selected state.
+   *
+   * @param message The message.
+   * @param previousProcState The vehicle's processing state before the message, if known.
+   * @param procState The vehicle's processing state after the message, if known.
+   * @return <code>true</code> if the client is interested in the message.
+   */
+  boolean accepts(VehicleStatusMessage message,
+                  @Nullable Vehicle.ProcState previousProcState,
+                  @Nullable Vehicle.ProcState procState) {
+    return !vehicleDeltas && acceptsVehicle(previousProcState, procState);
+  }
+
+  /**
+   * Checks whether the client is interested in the given vehicle delta message.
+   * A vehicle is accepted as by {@link #accepts(VehicleStatusMessage, Vehicle.ProcState,
+   * Vehicle.ProcState)}.
+   *
+   * @param message The message.
+   * @param previousProcState The vehicle's processing state before the message, if known.
+   * @param procState The vehicle's processing state after the message, if known.
+   * @return <code>true</code> if the client is interested in the message.
+   */
+  boolean accepts(VehicleDeltaMessage message,
+                  @Nullable Vehicle.ProcState previousProcState,
+                  @Nullable Vehicle.ProcState procState) {
+    return vehicleDeltas && acceptsVehicle(previousProcState, procState);
+  }
+
+  private boolean acceptsVehicle(@Nullable Vehicle.ProcState previousProcState,
+                                 @Nullable Vehicle.ProcState procState) {
+    String selected = vehicleFilter.getProcState();
+    return selected == null
+        || (previousProcState != null && selected.equals(previousProcState.name()))
+        || (procState != null && selected.equals(procState.name()));
+  }
+
+  /**
+   * Checks whether the client is interested in the given transport order message.
+   *
+   * @param message The message.
+   * @param intendedVehicle The name of the vehicle intended for the transport order, if known.
+   * @return <code>true</code> if the client is interested in the message.
+   */
+  boolean accepts(OrderStatusMessage message, @Nullable String intendedVehicle) {
+    String selected = transportOrderFilter.getIntendedVehicle();
+    return selected == null || selected.equals(intendedVehicle);
+  }
+
+  /**
+   * Queues the given message for sending, replacing a queued one for the same vehicle or transport
+   * order.
+   *
+   * @param message The message.
+   */
+  void offer(StatusMessage message) {
+    queue.offer(message);
+  }
+
+  /**
+   * Sends the queued messages, unless a send is already in flight.
+   * Never blocks.
+   */
+  void flush() {
+    while (!closed && sending.compareAndSet(false, true)) {
+      List<Object> events = queue.poll();
+      if (!events.isEmpty()) {
+        send(events);
+        return;
+      }
+      sending.set(false);
+      // A message may have been queued after polling, while the send flag was still set.
+      if (queue.size() == 0) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Returns the client's WebSocket session.
+   *
+   * @return The client's WebSocket session.
+   */
+  Session getSession() {
+    return session;
+  }
+
+  /**
+   * Closes the client's session; queued messages are discarded.
+   */
+  void close() {
+    closed = true;
+    session.close();
+  }
+
+  /**
+   * Returns the number of messages sent to the client.
+   *
+   * @return The number of messages sent to the client.
+   */
+  long getSentCount() {
+    return sentCount;
+  }
+
+  /**
+   * Returns the number of messages replaced by newer ones before they could be sent.
+   *
+   * @return The number of messages replaced by newer ones.
+   */
+  long getConflatedCount() {
+    return queue.getConflatedCount();
+  }
+
+  @Override
+  public void writeSuccess() {
+    sentCount += sendingCount;
+    sending.set(false);
+    flush();
+  }
+
+  @Override
+  public void writeFailed(Throwable cause) {
+    LOG.debug("Could not send status messages to {}, closing", session.getRemoteAddress(), cause);
+    sending.set(false);
+    close();
+  }
+
+  private void send(List<Object> events) {
+    List<StatusMessage> messages = new ArrayList<>(events.size());
+    for (Object event : events) {
+      messages.add((StatusMessage) event);
+    }
+    StatusMessageList messageList = new StatusMessageList();
+    messageList.setStatusMessages(messages);
+    byte[] data;
+    try {
+      data = codec.encode(messageList);
+    }
+    catch (IOException exc) {
+      LOG.warn("Could not encode status messages", exc);
+      sending.set(false);
+      return;
+    }
+    sendingCount = messages.size();
+    if (codec.isBinary()) {
+      session.getRemote().sendBytes(ByteBuffer.wrap(data), this);
+    }
+    else {
+      session.getRemote().sendString(new String(data, StandardCharsets.UTF_8), this);
+    }
+  }
+}
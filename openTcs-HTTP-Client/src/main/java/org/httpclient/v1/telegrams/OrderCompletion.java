@@ -0,0 +1,70 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.telegrams;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyDescription;
+import java.time.Instant;
+
+/**
+ * The outcome of a single transport order.
+ *
+ * @author zzw
+ */
+public class OrderCompletion {
+    @JsonPropertyDescription("The serial number of the transport order")
+    @JsonProperty(required = true)
+    private String orderNum;
+    
+    @JsonPropertyDescription("The transport order's final state (FINISHED, FAILED or UNROUTABLE)")
+    @JsonProperty(required = true)
+    private String state;
+    
+    @JsonPropertyDescription("The vehicle that processed the transport order")
+    private String processingVehicle;
+    
+    @JsonPropertyDescription("The time the final state was observed")
+    @JsonProperty(required = true)
+    private Instant completionTime;
+    
+    /**
+     * Creates a new instance.
+     */
+    public OrderCompletion() {
+    }
+    
+    public void setOrderNum(String orderNum){
+        this.orderNum = orderNum;
+    }
+    
+    public String getOrderNum(){
+        return this.orderNum;
+    }
+    
+    public void setState(String state){
+        this.state = state;
+    }
+    
+    public String getState(){
+        return this.state;
+    }
+    
+    public void setProcessingVehicle(String processingVehicle){
+        this.processingVehicle = processingVehicle;
+    }
+    
+    public String getProcessingVehicle(){
+        return this.processingVehicle;
+    }
+    
+    public void setCompletionTime(Instant completionTime){
+        this.completionTime = completionTime;
+    }
+    
+    public Instant getCompletionTime(){
+        return this.completionTime;
+    }
+}
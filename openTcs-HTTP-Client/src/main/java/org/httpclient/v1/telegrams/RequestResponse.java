@@ -5,6 +5,7 @@
  */
 package org.httpclient.v1.telegrams;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyDescription;
 import java.time.Instant;
@@ -17,6 +18,7 @@ import javax.validation.constraints.Size;
  *
  * @author zzw
  */
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class RequestResponse {
     @JsonPropertyDescription("The serial number of the transport order")
     @JsonProperty(required = true)
@@ -5,10 +5,45 @@
  */
 package org.httpclient.v1.telegrams;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyDescription;
+import java.time.Instant;
+import java.util.LinkedList;
+import java.util.List;
+
 /**
+ * Reports the outcome of transport orders back to the upstream system.
  *
  * @author zzw
  */
 public class ResponseRequest {
+    @JsonPropertyDescription("The time this report was created")
+    @JsonProperty(required = true)
+    private Instant creationTime;
+    
+    @JsonPropertyDescription("The completed transport orders, in the order of their completion")
+    @JsonProperty(required = true)
+    private List<OrderCompletion> completions = new LinkedList<>();
+    
+    /**
+     * Creates a new instance.
+     */
+    public ResponseRequest() {
+    }
+    
+    public void setCreationTime(Instant creationTime){
+        this.creationTime = creationTime;
+    }
+    
+    public Instant getCreationTime(){
+        return this.creationTime;
+    }
+    
+    public void setCompletions(List<OrderCompletion> completions){
+        this.completions = completions;
+    }
     
+    public List<OrderCompletion> getCompletions(){
+        return this.completions;
+    }
 }
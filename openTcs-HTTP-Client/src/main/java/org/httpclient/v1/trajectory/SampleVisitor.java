@@ -0,0 +1,25 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.trajectory;
+
+/**
+ * Receives the position samples found by a scan of a {@link TrajectoryStore}.
+ *
+ * @author zzw
+ */
+public interface SampleVisitor {
+
+  /**
+   * Receives a position sample.
+   *
+   * @param time The sample's time (in ms since the epoch).
+   * @param x The x coordinate (in mm).
+   * @param y The y coordinate (in mm).
+   * @param z The z coordinate (in mm).
+   * @param angle The orientation angle (in degrees), or NaN, if unknown.
+   */
+  void onSample(long time, long x, long y, long z, double angle);
+}
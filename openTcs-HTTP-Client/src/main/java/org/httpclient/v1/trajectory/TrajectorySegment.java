@@ -0,0 +1,316 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.trajectory;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A memory-mapped file holding a vehicle's position samples in columns.
+ * <p>
+ * The file starts with a header, followed by one column per sample attribute, each sized for the
+ * segment's capacity: the time since the previous sample (in ms, as an int), x, y, z (as longs) and
+ * the orientation angle (as a double).
+ * The absolute time of every {@link #INDEX_INTERVAL}th sample is kept in a sparse in-memory index,
+ * so range scans only need to decode the timestamps of a single index interval before the range.
+ * </p>
+ * <p>
+ * Samples are appended by a single writer and become visible to readers, and persistent in the
+ * header, with the next {@link #commit()}.
+ * </p>
+ *
+ * @author zzw
+ */
+class TrajectorySegment {
+
+  /**
+   * The number of samples per sparse index entry.
+   */
+  static final int INDEX_INTERVAL = 256;
+  /**
+   * The bytes per sample, over all columns.
+   */
+  static final int SAMPLE_SIZE = Integer.BYTES + 3 * Long.BYTES + Double.BYTES;
+  /**
+   * The header's size.
+   */
+  static final int HEADER_SIZE = 32;
+  /**
+   * Identifies segment files.
+   */
+  private static final int MAGIC = 0x5452_4A31;
+  /**
+   * The offset of the capacity in the header.
+   */
+  private static final int CAPACITY_OFFSET = 4;
+  /**
+   * The offset of the committed sample count in the header.
+   */
+  private static final int COUNT_OFFSET = 8;
+  /**
+   * The offset of the first sample's time in the header.
+   */
+  private static final int BASE_TIME_OFFSET = 16;
+  /**
+   * The offset of the last committed sample's time in the header.
+   */
+  private static final int LAST_TIME_OFFSET = 24;
+  /**
+   * The segment's file.
+   */
+  private final Path file;
+  /**
+   * The mapped file.
+   */
+  private final MappedByteBuffer buffer;
+  /**
+   * The maximum number of samples.
+   */
+  private final int capacity;
+  /**
+   * The offset of the time difference column.
+   */
+  private final int deltaOffset;
+  /**
+   * The offset of the x coordinate column.
+   */
+  private final int xOffset;
+  /**
+   * The offset of the y coordinate column.
+   */
+  private final int yOffset;
+  /**
+   * The offset of the z coordinate column.
+   */
+  private final int zOffset;
+  /**
+   * The offset of the orientation angle column.
+   */
+  private final int angleOffset;
+  /**
+   * The absolute times of every {@link #INDEX_INTERVAL}th sample.
+   */
+  private final long[] index;
+  /**
+   * The time of the first sample.
+   */
+  private final long baseTime;
+  /**
+   * The number of samples appended.
+   */
+  private int appendedCount;
+  /**
+   * The time of the last sample appended.
+   */
+  private long appendedLastTime;
+  /**
+   * The number of samples visible to readers.
+   */
+  private volatile int committedCount;
+  /**
+   * The time of the last sample visible to readers.
+   */
+  private volatile long committedLastTime;
+
+  private TrajectorySegment(Path file, MappedByteBuffer buffer, int capacity, long baseTime) {
+    this.file = file;
+    this.buffer = buffer;
+    this.capacity = capacity;
+    this.baseTime = baseTime;
+    this.deltaOffset = HEADER_SIZE;
+    this.xOffset = deltaOffset + capacity * Integer.BYTES;
+    this.yOffset = xOffset + capacity * Long.BYTES;
+    this.zOffset = yOffset + capacity * Long.BYTES;
+    this.angleOffset = zOffset + capacity * Long.BYTES;
+    this.index = new long[(capacity + INDEX_INTERVAL - 1) / INDEX_INTERVAL];
+    this.appendedLastTime = baseTime;
+    this.committedLastTime = baseTime;
+  }
+
+  /**
+   * Creates a new, empty segment file.
+   *
+   * @param file The file.
+   * @param capacity The maximum number of samples.
+   * @param baseTime The time of the first sample to be appended.
+   * @return The segment.
+   * @throws IOException If the file could not be created.
+   */
+  static TrajectorySegment create(Path file, int capacity, long baseTime)
+      throws IOException {
+    TrajectorySegment segment
+        = new TrajectorySegment(file, map(file, capacity), capacity, baseTime);
+    segment.buffer.putInt(0, MAGIC);
+    segment.buffer.putInt(CAPACITY_OFFSET, capacity);
+    segment.buffer.putInt(COUNT_OFFSET, 0);
+    segment.buffer.putLong(BASE_TIME_OFFSET, baseTime);
+    segment.buffer.putLong(LAST_TIME_OFFSET, baseTime);
+    return segment;
+  }
+
+  /**
+   * Opens an existing segment file and rebuilds its index.
+   *
+   * @param file The file.
+   * @return The segment.
+   * @throws IOException If the file could not be read or is not a segment file.
+   */
+  static TrajectorySegment open(Path file)
+      throws IOException {
+    int capacity;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+      if (header.getInt(0) != MAGIC) {
+        throw new IOException("Not a trajectory segment: " + file);
+      }
+      capacity = header.getInt(CAPACITY_OFFSET);
+    }
+    MappedByteBuffer buffer = map(file, capacity);
+    TrajectorySegment segment
+        = new TrajectorySegment(file, buffer, capacity, buffer.getLong(BASE_TIME_OFFSET));
+    int count = buffer.getInt(COUNT_OFFSET);
+    long time = segment.baseTime;
+    for (int i = 0; i < count; i++) {
+      time += buffer.getInt(segment.deltaOffset + i * Integer.BYTES);
+      if (i % INDEX_INTERVAL == 0) {
+        segment.index[i / INDEX_INTERVAL] = time;
+      }
+    }
+    segment.appendedCount = count;
+    segment.appendedLastTime = time;
+    segment.committedCount = count;
+    segment.committedLastTime = time;
+    return segment;
+  }
+
+  private static MappedByteBuffer map(Path file, int capacity)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(file,
+                                                StandardOpenOption.CREATE,
+                                                StandardOpenOption.READ,
+                                                StandardOpenOption.WRITE)) {
+      return channel.map(FileChannel.MapMode.READ_WRITE,
+                         0,
+                         HEADER_SIZE + (long) capacity * SAMPLE_SIZE);
+    }
+  }
+
+  Path getFile() {
+    return file;
+  }
+
+  long getBaseTime() {
+    return baseTime;
+  }
+
+  long getLastTime() {
+    return appendedLastTime;
+  }
+
+  int getCommittedCount() {
+    return committedCount;
+  }
+
+  /**
+   * Checks whether a sample with the given time can be appended.
+   *
+   * @param time The sample's time, not before the last sample's.
+   * @return <code>true</code> if the segment has room left and the time difference fits.
+   */
+  boolean canAppend(long time) {
+    return appendedCount < capacity && time - appendedLastTime <= Integer.MAX_VALUE;
+  }
+
+  /**
+   * Appends a sample; it becomes visible with the next commit.
+   */
+  void append(long time, long x, long y, long z, double angle) {
+    int i = appendedCount;
+    buffer.putInt(deltaOffset + i * Integer.BYTES, (int) (time - appendedLastTime));
+    buffer.putLong(xOffset + i * Long.BYTES, x);
+    buffer.putLong(yOffset + i * Long.BYTES, y);
+    buffer.putLong(zOffset + i * Long.BYTES, z);
+    buffer.putDouble(angleOffset + i * Double.BYTES, angle);
+    if (i % INDEX_INTERVAL == 0) {
+      index[i / INDEX_INTERVAL] = time;
+    }
+    appendedCount = i + 1;
+    appendedLastTime = time;
+  }
+
+  /**
+   * Makes the samples appended visible to readers and records their number in the header.
+   */
+  void commit() {
+    buffer.putInt(COUNT_OFFSET, appendedCount);
+    buffer.putLong(LAST_TIME_OFFSET, appendedLastTime);
+    committedLastTime = appendedLastTime;
+    committedCount = appendedCount;
+  }
+
+  /**
+   * Writes changes to the file.
+   */
+  void force() {
+    buffer.force();
+  }
+
+  /**
+   * Passes the committed samples with times in the given range to the visitor.
+   *
+   * @param from The start of the range (inclusive, in ms since the epoch).
+   * @param to The end of the range (exclusive, in ms since the epoch).
+   * @param visitor The visitor.
+   * @return The number of samples passed to the visitor.
+   */
+  int scan(long from, long to, SampleVisitor visitor) {
+    int count = committedCount;
+    if (count == 0 || to <= baseTime || from > committedLastTime) {
+      return 0;
+    }
+
+    // Start at the last index entry before the range, as following samples may share its time.
+    int entry = 0;
+    int low = 0;
+    int high = (count - 1) / INDEX_INTERVAL;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (index[middle] < from) {
+        entry = middle;
+        low = middle + 1;
+      }
+      else {
+        high = middle - 1;
+      }
+    }
+
+    int visited = 0;
+    int i = entry * INDEX_INTERVAL;
+    long time = index[entry];
+    while (true) {
+      if (time >= to) {
+        break;
+      }
+      if (time >= from) {
+        visitor.onSample(time,
+                         buffer.getLong(xOffset + i * Long.BYTES),
+                         buffer.getLong(yOffset + i * Long.BYTES),
+                         buffer.getLong(zOffset + i * Long.BYTES),
+                         buffer.getDouble(angleOffset + i * Double.BYTES));
+        visited++;
+      }
+      i++;
+      if (i >= count) {
+        break;
+      }
+      time += buffer.getInt(deltaOffset + i * Integer.BYTES);
+    }
+    return visited;
+  }
+}
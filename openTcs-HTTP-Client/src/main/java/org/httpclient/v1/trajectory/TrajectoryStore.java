@@ -0,0 +1,413 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.trajectory;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import static java.util.Objects.requireNonNull;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.httpclient.v1.status.StatusEventConsumer;
+import org.httpclient.v1.status.binding.StatusMessage;
+import org.httpclient.v1.status.binding.StatusMessageList;
+import org.httpclient.v1.status.binding.VehicleStatusMessage;
+import static org.openTcs.util.Assertions.checkArgument;
+import static org.openTcs.util.Assertions.checkInRange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the trajectories of vehicles - their precise positions and orientation angles over time -
+ * in memory-mapped, columnar files.
+ * <p>
+ * Each vehicle's samples are stored in a directory of its own, in segments of a fixed capacity
+ * (see {@link TrajectorySegment}); when a segment is full, a new one is started and segments older
+ * than the retention period are deleted.
+ * Segments are also deleted periodically once they are older than the retention period, so the
+ * trajectories of vehicles no longer reporting do not stay forever.
+ * Samples are appended by the consumer thread without allocating objects and committed at the end
+ * of each batch, after which they are visible to range scans from any thread.
+ * Samples older than a vehicle's last one are dropped.
+ * </p>
+ *
+ * @author zzw
+ */
+public class TrajectoryStore
+    implements StatusEventConsumer {
+
+  /**
+   * This class's logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(TrajectoryStore.class);
+  /**
+   * The prefix of segment file names.
+   */
+  private static final String SEGMENT_PREFIX = "segment-";
+  /**
+   * The suffix of segment file names.
+   */
+  private static final String SEGMENT_SUFFIX = ".trj";
+  /**
+   * The directory holding the vehicles' directories.
+   */
+  private final Path directory;
+  /**
+   * The maximum number of samples per segment.
+   */
+  private final int segmentCapacity;
+  /**
+   * The time samples are kept for (in ms).
+   */
+  private final long retentionMillis;
+  /**
+   * The interval in which expired segments are deleted (in ms).
+   */
+  private final long evictionIntervalMillis;
+  /**
+   * Deletes expired segments periodically.
+   */
+  private final ScheduledExecutorService executor;
+  /**
+   * The vehicles' tracks, by vehicle name.
+   */
+  private final Map<String, Track> tracks = new ConcurrentHashMap<>();
+  /**
+   * The tracks appended to since the last commit.
+   */
+  private final List<Track> dirtyTracks = new ArrayList<>();
+  /**
+   * The number of samples appended.
+   */
+  private volatile long sampleCount;
+  /**
+   * The number of samples dropped.
+   */
+  private volatile long droppedCount;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param directory The directory holding the trajectory files.
+   * @param segmentCapacity The maximum number of samples per segment file.
+   * @param retention The time samples are kept for.
+   * @param evictionInterval The interval in which segments older than the retention period are
+   * deleted, in addition to whenever a new segment is started.
+   */
+  public TrajectoryStore(Path directory,
+                         int segmentCapacity,
+                         Duration retention,
+                         Duration evictionInterval) {
+    this.directory = requireNonNull(directory, "directory");
+    this.segmentCapacity = checkInRange(segmentCapacity,
+                                        TrajectorySegment.INDEX_INTERVAL,
+                                        (Integer.MAX_VALUE - TrajectorySegment.HEADER_SIZE)
+                                        / TrajectorySegment.SAMPLE_SIZE,
+                                        "segmentCapacity");
+    this.retentionMillis = requireNonNull(retention, "retention").toMillis();
+    this.evictionIntervalMillis = requireNonNull(evictionInterval, "evictionInterval").toMillis();
+    checkArgument(evictionIntervalMillis > 0, "evictionInterval <= 0: %s", evictionInterval);
+    this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "trajectory-eviction");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Opens the trajectory files already present in the directory and starts deleting expired
+   * segments periodically.
+   *
+   * @throws IOException If the directory or a trajectory file could not be read.
+   */
+  public void open()
+      throws IOException {
+    Files.createDirectories(directory);
+    try (DirectoryStream<Path> vehicleDirectories = Files.newDirectoryStream(directory,
+                                                                             Files::isDirectory)) {
+      for (Path vehicleDirectory : vehicleDirectories) {
+        String vehicleName = URLDecoder.decode(vehicleDirectory.getFileName().toString(),
+                                               StandardCharsets.UTF_8);
+        Track track = new Track(vehicleDirectory);
+        track.load();
+        tracks.put(vehicleName, track);
+      }
+    }
+    LOG.info("Opened trajectories of {} vehicles in {}", tracks.size(), directory);
+    executor.scheduleWithFixedDelay(this::evictExpired,
+                                    evictionIntervalMillis,
+                                    evictionIntervalMillis,
+                                    TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops deleting expired segments, commits all samples appended and writes them to the files.
+   * Must only be called after samples are no longer appended, e.g. after the dispatcher has been
+   * terminated.
+   */
+  public void close() {
+    executor.shutdown();
+    try {
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+    catch (InterruptedException exc) {
+      Thread.currentThread().interrupt();
+    }
+    commit();
+    for (Track track : tracks.values()) {
+      if (track.current != null) {
+        track.current.force();
+      }
+    }
+  }
+
+  @Override
+  public void onEvent(Object event, long sequence, boolean endOfBatch) {
+    if (event instanceof VehicleStatusMessage) {
+      onStatusMessage((VehicleStatusMessage) event);
+    }
+    else if (event instanceof StatusMessageList) {
+      for (StatusMessage message : ((StatusMessageList) event).getStatusMessages()) {
+        if (message instanceof VehicleStatusMessage) {
+          onStatusMessage((VehicleStatusMessage) message);
+        }
+      }
+    }
+
+    if (endOfBatch) {
+      commit();
+    }
+  }
+
+  /**
+   * Appends a sample to the given vehicle's trajectory.
+   * The sample becomes visible with the next {@link #commit()}.
+   * Must only be called by a single thread.
+   *
+   * @param vehicleName The vehicle's name.
+   * @param time The sample's time (in ms since the epoch).
+   * @param x The x coordinate (in mm).
+   * @param y The y coordinate (in mm).
+   * @param z The z coordinate (in mm).
+   * @param angle The orientation angle (in degrees), or NaN, if unknown.
+   */
+  public void append(String vehicleName, long time, long x, long y, long z, double angle) {
+    try {
+      Track track = tracks.get(vehicleName);
+      if (track == null) {
+        track = new Track(directory.resolve(URLEncoder.encode(vehicleName,
+                                                              StandardCharsets.UTF_8)));
+        Files.createDirectories(track.directory);
+        tracks.put(vehicleName, track);
+      }
+      if (track.current != null && time < track.current.getLastTime()) {
+        droppedCount++;
+        return;
+      }
+      if (track.current == null || !track.current.canAppend(time)) {
+        track.roll(time);
+      }
+      track.current.append(time, x, y, z, angle);
+      if (!track.dirty) {
+        track.dirty = true;
+        dirtyTracks.add(track);
+      }
+      sampleCount++;
+    }
+    catch (IOException exc) {
+      LOG.warn("Could not store trajectory sample of {}", vehicleName, exc);
+      droppedCount++;
+    }
+  }
+
+  /**
+   * Makes all samples appended visible to scans.
+   * Must only be called by the thread appending samples.
+   */
+  public void commit() {
+    for (Track track : dirtyTracks) {
+      track.current.commit();
+      track.dirty = false;
+    }
+    dirtyTracks.clear();
+  }
+
+  /**
+   * Deletes the segments whose samples are all older than the retention period, except for the
+   * segments samples are appended to.
+   * May be called by any thread.
+   */
+  public void evictExpired() {
+    long oldestTime = System.currentTimeMillis() - retentionMillis;
+    for (Track track : tracks.values()) {
+      track.evict(oldestTime);
+    }
+  }
+
+  /**
+   * Passes the given vehicle's samples with times in the given range to the visitor, in time order.
+   *
+   * @param vehicleName The vehicle's name.
+   * @param from The start of the range (inclusive).
+   * @param to The end of the range (exclusive).
+   * @param visitor The visitor.
+   * @return The number of samples passed to the visitor.
+   */
+  public long scan(String vehicleName, Instant from, Instant to, SampleVisitor visitor) {
+    requireNonNull(vehicleName, "vehicleName");
+    requireNonNull(from, "from");
+    requireNonNull(to, "to");
+    requireNonNull(visitor, "visitor");
+
+    Track track = tracks.get(vehicleName);
+    if (track == null) {
+      return 0;
+    }
+    long visited = 0;
+    for (TrajectorySegment segment : track.segments) {
+      visited += segment.scan(from.toEpochMilli(), to.toEpochMilli(), visitor);
+    }
+    return visited;
+  }
+
+  /**
+   * Returns the names of the vehicles with trajectories.
+   *
+   * @return The names of the vehicles with trajectories.
+   */
+  public Set<String> getVehicleNames() {
+    return Set.copyOf(tracks.keySet());
+  }
+
+  /**
+   * Returns the number of samples appended so far.
+   *
+   * @return The number of samples appended so far.
+   */
+  public long getSampleCount() {
+    return sampleCount;
+  }
+
+  /**
+   * Returns the number of samples dropped so far, because they were out of order or could not be
+   * written.
+   *
+   * @return The number of samples dropped so far.
+   */
+  public long getDroppedCount() {
+    return droppedCount;
+  }
+
+  private void onStatusMessage(VehicleStatusMessage message) {
+    VehicleStatusMessage.PrecisePosition position = message.getPrecisePosition();
+    if (position == null) {
+      return;
+    }
+    append(message.getVehicleName(),
+           message.getCreationTimeStamp().toEpochMilli(),
+           position.getX(),
+           position.getY(),
+           position.getZ(),
+           message.getOrientationAngle());
+  }
+
+  /**
+   * A vehicle's trajectory.
+   */
+  private class Track {
+
+    /**
+     * The directory holding the vehicle's segments.
+     */
+    private final Path directory;
+    /**
+     * The segments, in time order.
+     */
+    private final List<TrajectorySegment> segments = new CopyOnWriteArrayList<>();
+    /**
+     * The segment samples are appended to.
+     */
+    private volatile TrajectorySegment current;
+    /**
+     * The number of the next segment file.
+     */
+    private long nextSegmentNumber;
+    /**
+     * Whether samples were appended since the last commit.
+     */
+    private boolean dirty;
+
+    Track(Path directory) {
+      this.directory = directory;
+    }
+
+    void load()
+        throws IOException {
+      Map<Long, Path> files = new TreeMap<>();
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                                                                   SEGMENT_PREFIX + "*"
+                                                                   + SEGMENT_SUFFIX)) {
+        for (Path file : stream) {
+          String fileName = file.getFileName().toString();
+          files.put(Long.parseLong(fileName.substring(SEGMENT_PREFIX.length(),
+                                                      fileName.length()
+                                                      - SEGMENT_SUFFIX.length())),
+                    file);
+        }
+      }
+      for (Map.Entry<Long, Path> entry : files.entrySet()) {
+        current = TrajectorySegment.open(entry.getValue());
+        segments.add(current);
+        nextSegmentNumber = entry.getKey() + 1;
+      }
+    }
+
+    void roll(long time)
+        throws IOException {
+      if (current != null) {
+        current.commit();
+        current.force();
+      }
+      Path file = directory.resolve(String.format("%s%010d%s",
+                                                  SEGMENT_PREFIX,
+                                                  nextSegmentNumber,
+                                                  SEGMENT_SUFFIX));
+      current = TrajectorySegment.create(file, segmentCapacity, time);
+      nextSegmentNumber++;
+      segments.add(current);
+      evict(time - retentionMillis);
+    }
+
+    synchronized void evict(long oldestTime) {
+      for (TrajectorySegment segment : segments) {
+        if (segment == current || segment.getLastTime() >= oldestTime) {
+          break;
+        }
+        segments.remove(segment);
+        try {
+          Files.deleteIfExists(segment.getFile());
+        }
+        catch (IOException exc) {
+          LOG.warn("Could not delete trajectory segment {}", segment.getFile(), exc);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,282 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.kernel;
+
+import java.io.IOException;
+import static java.util.Objects.requireNonNull;
+import java.nio.file.Paths;
+import java.time.Duration;
+import javax.annotation.Nullable;
+
+import org.httpclient.OrderPollingJob;
+import org.httpclient.v1.assignment.VehicleAssigner;
+import org.httpclient.v1.assignment.VehicleStateCache;
+import org.httpclient.v1.order.DeadlineEstimator;
+import org.httpclient.v1.order.OrderBundler;
+import org.httpclient.v1.order.OrderFanIn;
+import org.httpclient.v1.order.OrderSource;
+import org.httpclient.v1.order.OrderStore;
+import org.httpclient.v1.order.SubmissionListener;
+import org.httpclient.v1.order.TransportSink;
+import org.httpclient.v1.order.VehicleWorkload;
+import org.httpclient.v1.routing.PlantModel;
+import org.httpclient.v1.routing.PlantModelLoader;
+import org.httpclient.v1.routing.RouteCostTable;
+import org.httpclient.v1.status.FleetView;
+import org.httpclient.v1.status.HttpResponseSource;
+import org.httpclient.v1.status.StatusEventDispatcher;
+import org.httpclient.v1.status.VehicleDeltaEngine;
+import org.httpclient.v1.status.binding.OrderStatusMessage;
+import org.httpclient.v1.status.binding.StatusMessageList;
+import org.httpclient.v1.status.binding.TransportOrderState;
+import org.httpclient.v1.status.binding.VehicleDeltaMessage;
+import org.httpclient.v1.status.binding.VehicleState;
+import org.httpclient.v1.status.binding.VehicleStatusMessage;
+import org.httpclient.v1.stream.StatusStream;
+import org.openTcs.util.event.SimpleEventBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The bridge's order and status pipeline, shared by {@link KernelStart} and {@link ReplayStart}:
+ * the order bundler, vehicle assigner and deadline estimator in front of the submission of orders,
+ * and the consumers of the status data received from the kernel.
+ * <p>
+ * Orders leaving the pipeline are passed to the given sink; the pipeline is a
+ * {@link SubmissionListener} to be notified once they have been submitted.
+ * Further status consumers can be added to the {@link #getStatusEventDispatcher() dispatcher}
+ * before the pipeline is started.
+ * </p>
+ *
+ * @author zzw
+ */
+public class BridgePipeline
+    implements SubmissionListener {
+
+    /**
+     * The maximum velocity of vehicles (in mm/s) assumed for travel time estimation.
+     */
+    public static final int MAX_VEHICLE_VELOCITY = 1000;
+    /**
+     * The maximum memory travel times are cached in (in bytes).
+     */
+    private static final long ROUTE_COST_CACHE_BYTES = 64L * 1024 * 1024;
+    /**
+     * This class's logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(BridgePipeline.class);
+    /**
+     * The event bus status data received from the kernel is published on.
+     */
+    private final SimpleEventBus statusEventBus = new SimpleEventBus();
+    /**
+     * The event bus the changes of vehicle states are published on, as {@link VehicleDeltaMessage}s.
+     */
+    private final SimpleEventBus vehicleDeltaBus = new SimpleEventBus();
+    /**
+     * The vehicle states, updated from status data.
+     */
+    private final VehicleStateCache vehicleStateCache = new VehicleStateCache();
+    /**
+     * The vehicles' outstanding work.
+     */
+    private final VehicleWorkload vehicleWorkload = new VehicleWorkload();
+    /**
+     * The travel time estimates.
+     */
+    private final RouteCostTable routeCostTable;
+    /**
+     * Selects vehicles for orders.
+     */
+    private final VehicleAssigner vehicleAssigner;
+    /**
+     * Estimates the orders' deadlines.
+     */
+    private final DeadlineEstimator deadlineEstimator;
+    /**
+     * Keeps the orders and their states.
+     */
+    private final OrderStore orderStore;
+    /**
+     * Chains orders with close loading locations.
+     */
+    private final OrderBundler orderBundler;
+    /**
+     * Interleaves the orders of the order sources.
+     */
+    private final OrderFanIn orderFanIn;
+    /**
+     * Hands status data to the consumers.
+     */
+    private final StatusEventDispatcher statusEventDispatcher
+        = new StatusEventDispatcher(1 << 14, StatusEventDispatcher.WaitStrategy.BLOCKING);
+    /**
+     * The fleet's state, queryable by processing state, state, position and energy level.
+     */
+    private final FleetView fleetView = new FleetView();
+    /**
+     * Computes the changes of vehicle states.
+     */
+    private final VehicleDeltaEngine vehicleDeltaEngine = new VehicleDeltaEngine(vehicleDeltaBus);
+
+    /**
+     * Creates a new instance.
+     *
+     * @param plantModel The plant model travel times are estimated with.
+     * @param submissionSink Submits the orders leaving the pipeline.
+     */
+    public BridgePipeline(PlantModel plantModel, TransportSink submissionSink) {
+        requireNonNull(plantModel, "plantModel");
+        requireNonNull(submissionSink, "submissionSink");
+        //按事件类型订阅, 只收到关心的状态数据
+        statusEventBus.subscribe(VehicleStatusMessage.class, vehicleStateCache);
+        statusEventBus.subscribe(VehicleState.class, vehicleStateCache);
+        statusEventBus.subscribe(StatusMessageList.class, vehicleStateCache);
+        //车辆预留到订单被拒绝/车辆开始执行/订单结束为止
+        statusEventBus.subscribe(OrderStatusMessage.class, vehicleStateCache);
+        statusEventBus.subscribe(TransportOrderState.class, vehicleStateCache);
+        //行驶时间由地图模型的最短路径估计, 无法估计时由openTCS调度器选择车辆
+        routeCostTable = new RouteCostTable(plantModel, ROUTE_COST_CACHE_BYTES);
+        //后台预先计算到各个装卸货点的行驶时间, 之后每次估计只需查表
+        Thread routeCostWarmUp = new Thread(() -> {
+            int count = routeCostTable.precompute(plantModel.getLocationNames());
+            LOG.info("Precomputed travel times to {} of {} locations",
+                     count,
+                     plantModel.getLocationNames().size());
+        }, "route-cost-warm-up");
+        routeCostWarmUp.setDaemon(true);
+        routeCostWarmUp.start();
+        vehicleAssigner = new VehicleAssigner(vehicleStateCache, routeCostTable);
+        //订单截止时间 = 车辆已有任务 + 路径行驶时间, 再加上余量
+        statusEventBus.subscribe(OrderStatusMessage.class, vehicleWorkload);
+        statusEventBus.subscribe(TransportOrderState.class, vehicleWorkload);
+        statusEventBus.subscribe(StatusMessageList.class, vehicleWorkload);
+        deadlineEstimator = new DeadlineEstimator(routeCostTable,
+                                                  vehicleStateCache,
+                                                  vehicleWorkload,
+                                                  1.5,
+                                                  Duration.ofMinutes(5),
+                                                  Duration.ofHours(2));
+        //订单存储, 按状态/指定车辆/执行车辆/类型/截止时间索引, 最多保留10万条已结束订单
+        orderStore = new OrderStore(submissionSink, 100_000);
+        //500毫秒内装货点相近的订单合并成同一车辆依次执行的订单链
+        orderBundler = new OrderBundler(orderStore,
+                                        routeCostTable,
+                                        vehicleStateCache,
+                                        deadlineEstimator,
+                                        Duration.ofMillis(500),
+                                        Duration.ofSeconds(30),
+                                        4);
+        //多个订单来源的订单轮流进入提交队列, 提交完成后再放行下一个
+        orderFanIn = new OrderFanIn(orderBundler, 8, 100);
+        //状态数据经环形缓冲区分发给各消费者线程, 空闲时线程阻塞, 由生产者唤醒
+        statusEventDispatcher.addConsumer("statusEventBus", statusEventBus);
+        //车队状态视图, 可按处理状态/状态/位置/电量区间查询车辆
+        statusEventDispatcher.addConsumer("fleetView", fleetView);
+        statusEventDispatcher.addConsumer("orderStore", orderStore);
+    }
+
+    @Override
+    public void onSubmitted(String orderName, boolean accepted) {
+        orderStore.onSubmitted(orderName, accepted);
+        vehicleStateCache.onSubmitted(orderName, accepted);
+        vehicleWorkload.onSubmitted(orderName, accepted);
+        orderBundler.onSubmitted(orderName, accepted);
+        orderFanIn.onSubmitted(orderName, accepted);
+    }
+
+    /**
+     * Creates a job polling the given order source, passing its orders into the pipeline.
+     *
+     * @param orderSource The order source.
+     * @return The job.
+     */
+    public OrderPollingJob createOrderPollingJob(OrderSource orderSource) {
+        OrderPollingJob orderPollingJob = new OrderPollingJob(orderSource, orderFanIn);
+        orderPollingJob.setVehicleAssigner(vehicleAssigner);
+        orderPollingJob.setDeadlineEstimator(deadlineEstimator);
+        return orderPollingJob;
+    }
+
+    /**
+     * Starts the status consumers.
+     *
+     * @param statusStream The stream status messages are pushed to clients with, or
+     * <code>null</code>.
+     * It runs on the vehicle delta engine's thread, after the engine, so clients receive vehicle
+     * deltas and status messages in the same order.
+     */
+    public void start(@Nullable StatusStream statusStream) {
+        //车辆状态与上次相比变化的字段发布到vehicleDeltaBus, 供内部订阅者和推送客户端使用
+        if (statusStream != null) {
+            //vehicleDeltas=true的客户端收到车辆状态增量; 增量在同一线程上先于推送计算, 保证顺序一致
+            vehicleDeltaBus.subscribe(VehicleDeltaMessage.class,
+                                      event -> statusStream.onVehicleDelta((VehicleDeltaMessage) event));
+            statusEventDispatcher.addConsumer("statusStream", (event, sequence, endOfBatch) -> {
+                vehicleDeltaEngine.onEvent(event, sequence, endOfBatch);
+                statusStream.onEvent(event, sequence, endOfBatch);
+            });
+        }
+        else {
+            statusEventDispatcher.addConsumer("vehicleDeltas", vehicleDeltaEngine);
+        }
+        statusEventDispatcher.start();
+    }
+
+    public SimpleEventBus getStatusEventBus() {
+        return statusEventBus;
+    }
+
+    public OrderStore getOrderStore() {
+        return orderStore;
+    }
+
+    public StatusEventDispatcher getStatusEventDispatcher() {
+        return statusEventDispatcher;
+    }
+
+    /**
+     * Loads the plant model from the given file or, if none is given, from the kernel.
+     * If it cannot be loaded, an empty plant model is returned, with which vehicle assignment,
+     * deadline estimation and order bundling are inactive.
+     *
+     * @param plantModelFile The file, or <code>null</code>.
+     * @param kernelBaseUrl The base URL of the kernel's web API, or <code>null</code>, if there is
+     * no kernel to request the plant model from.
+     * @return The plant model.
+     */
+    public static PlantModel loadPlantModel(@Nullable String plantModelFile,
+                                            @Nullable String kernelBaseUrl) {
+        PlantModelLoader loader = new PlantModelLoader(MAX_VEHICLE_VELOCITY);
+        PlantModel plantModel;
+        try {
+            if (plantModelFile != null) {
+                plantModel = loader.load(Paths.get(plantModelFile));
+            }
+            else if (kernelBaseUrl != null) {
+                plantModel = loader.load(new HttpResponseSource(kernelBaseUrl, Duration.ZERO, Duration.ofSeconds(5)));
+            }
+            else {
+                LOG.warn("No plant model given, vehicle assignment, deadline estimation and order bundling are inactive");
+                return new PlantModel.Builder().build(MAX_VEHICLE_VELOCITY);
+            }
+        }
+        catch (IOException | RuntimeException exc) {
+            LOG.warn("Could not load plant model from {}, vehicle assignment, deadline estimation and order bundling are inactive",
+                     plantModelFile != null ? plantModelFile : kernelBaseUrl + PlantModelLoader.PLANT_MODEL_PATH,
+                     exc);
+            return new PlantModel.Builder().build(MAX_VEHICLE_VELOCITY);
+        }
+        if (plantModel.getPointCount() == 0) {
+            LOG.warn("Plant model contains no points, vehicle assignment, deadline estimation and order bundling are inactive");
+        }
+        else {
+            LOG.info("Loaded plant model with {} points", plantModel.getPointCount());
+        }
+        return plantModel;
+    }
+
+}
@@ -6,24 +6,40 @@
 package org.kernel;
 
 import java.io.IOException;
-import static java.util.Objects.requireNonNull;
-import java.util.Set;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
 
 import org.kernel.Communication;
 import org.kernel.Request;
 import org.kernel.Response;
 
 import org.httpclient.OrderPollingJob;
+import org.httpclient.StatusPollingJob;
+import org.httpclient.v1.order.CompletionNotifier;
+import org.httpclient.v1.order.OrderSource;
+import org.httpclient.v1.order.SubmissionQueue;
+import org.httpclient.v1.replay.PayloadRecorder;
+import org.httpclient.v1.replay.RecordingResponseSource;
+import org.httpclient.v1.status.HttpResponseSource;
+import org.httpclient.v1.status.RequestStatusHandler;
+import org.httpclient.v1.status.ResponseSource;
+import org.httpclient.v1.status.StatusEventDispatcher;
+import org.httpclient.v1.status.binding.OrderStatusMessage;
+import org.httpclient.v1.status.binding.StatusMessageList;
+import org.httpclient.v1.status.binding.TransportOrderState;
+import org.httpclient.v1.stream.StatusStream;
+import org.httpclient.v1.trajectory.TrajectoryStore;
+import org.openTcs.util.event.SimpleEventBus;
 
-import org.quartz.JobBuilder;
-import org.quartz.JobDetail;
-import org.quartz.Scheduler;
-import org.quartz.SchedulerException;
-import org.quartz.SchedulerFactory;
-import org.quartz.SimpleScheduleBuilder;
-import org.quartz.Trigger;
-import org.quartz.TriggerBuilder;
-import org.quartz.impl.StdSchedulerFactory;
+import org.httpclient.scheduler.ExecutorJobScheduler;
+import org.httpclient.scheduler.JobSchedule;
+import org.httpclient.scheduler.JobScheduler;
+import org.httpclient.scheduler.QuartzJobScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  *
@@ -31,6 +47,55 @@ import org.quartz.impl.StdSchedulerFactory;
  */
 
 public class KernelStart {
+    
+    /**
+     * This class's logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(KernelStart.class);
+    /**
+     * The base URL of the openTCS kernel's web API.
+     */
+    private static final String KERNEL_BASE_URL = "http://127.0.0.1:55200/v1";
+    /**
+     * The system property selecting the job scheduler implementation.
+     */
+    private static final String PROP_SCHEDULER = "bridge.scheduler";
+    /**
+     * The value of {@link #PROP_SCHEDULER} selecting the executor based scheduler (default).
+     */
+    private static final String SCHEDULER_EXECUTOR = "executor";
+    /**
+     * The value of {@link #PROP_SCHEDULER} selecting the Quartz based scheduler.
+     */
+    private static final String SCHEDULER_QUARTZ = "quartz";
+    /**
+     * The system property listing the order sources, as comma separated <code>name=url</code> pairs.
+     */
+    private static final String PROP_ORDER_SOURCES = "bridge.orderSources";
+    /**
+     * The order sources used if {@link #PROP_ORDER_SOURCES} is not set.
+     */
+    private static final String DEFAULT_ORDER_SOURCES = "default=http://127.0.0.1:55200/v1/hello";
+    /**
+     * The system property holding the URL order completions are reported to (not reported if unset).
+     */
+    private static final String PROP_COMPLETION_CALLBACK_URL = "bridge.completionCallbackUrl";
+    /**
+     * The system property holding the directory vehicle trajectories are stored in (not stored if unset).
+     */
+    private static final String PROP_TRAJECTORY_DIRECTORY = "bridge.trajectoryDirectory";
+    /**
+     * The system property holding the file status and order payloads are recorded to (not recorded if unset).
+     */
+    private static final String PROP_RECORD_FILE = "bridge.recordFile";
+    /**
+     * The system property holding the port status messages are streamed to WebSocket clients on (not streamed if unset).
+     */
+    private static final String PROP_STATUS_STREAM_PORT = "bridge.statusStreamPort";
+    /**
+     * The system property holding the file the plant model is read from (requested from the kernel if unset).
+     */
+    private static final String PROP_PLANT_MODEL_FILE = "bridge.plantModelFile";
 
 //    public static void main(String args[]){
 //        Request request = new Request("Order and State Request Thread");
@@ -43,20 +108,151 @@ public class KernelStart {
 //        rest.start();
 //    }
     
-     public static void main(String[] args) throws SchedulerException {
-        //创建任务
-        JobDetail jobDetail = JobBuilder.newJob(OrderPollingJob.class).withIdentity("job1", "group1").build();
-        //创建触发器 每10秒钟执行一次
-        Trigger trigger = TriggerBuilder.newTrigger().withIdentity("trigger1", "group3")
-                        .withSchedule(SimpleScheduleBuilder.simpleSchedule().withIntervalInSeconds(10).repeatForever())
-                        .build();
-        //创建调度器
-        SchedulerFactory schedulerFactory = new StdSchedulerFactory();
-        Scheduler scheduler = schedulerFactory.getScheduler();
-        //将任务及其触发器放入调度器
-        scheduler.scheduleJob(jobDetail, trigger);
+     public static void main(String[] args)
+         throws IOException {
+        //订单按截止时间优先提交, 限制提交速率和并发请求数
+        SubmissionQueue submissionQueue = new SubmissionQueue(KERNEL_BASE_URL,
+                                                              20.0,
+                                                              10,
+                                                              4,
+                                                              Duration.ofMinutes(15),
+                                                              Duration.ofHours(1));
+        //订单合并/车辆选择/截止时间估计和状态数据消费者, 与ReplayStart共用
+        BridgePipeline pipeline = new BridgePipeline(BridgePipeline.loadPlantModel(System.getProperty(PROP_PLANT_MODEL_FILE),
+                                                                                   KERNEL_BASE_URL),
+                                                     submissionQueue);
+        submissionQueue.addSubmissionListener(pipeline);
+        SimpleEventBus statusEventBus = pipeline.getStatusEventBus();
+        //订单完成(FINISHED/FAILED)后批量压缩回调上游系统, 最多100条或等待2秒
+        String completionCallbackUrl = System.getProperty(PROP_COMPLETION_CALLBACK_URL);
+        if (completionCallbackUrl != null) {
+            CompletionNotifier completionNotifier = new CompletionNotifier(completionCallbackUrl,
+                                                                           100,
+                                                                           10000,
+                                                                           Duration.ofSeconds(2),
+                                                                           5,
+                                                                           Duration.ofSeconds(1),
+                                                                           Duration.ofSeconds(5));
+            submissionQueue.addSubmissionListener(completionNotifier);
+            statusEventBus.subscribe(OrderStatusMessage.class, completionNotifier);
+            statusEventBus.subscribe(TransportOrderState.class, completionNotifier);
+            statusEventBus.subscribe(StatusMessageList.class, completionNotifier);
+        }
+        submissionQueue.start();
+        //-Dbridge.recordFile 时记录收到的状态和订单原始数据, 用于回放
+        String recordFile = System.getProperty(PROP_RECORD_FILE);
+        PayloadRecorder payloadRecorder = recordFile == null ? null : new PayloadRecorder(Paths.get(recordFile));
+        //创建调度器, -Dbridge.scheduler=quartz 时使用Quartz
+        JobScheduler scheduler = createScheduler(System.getProperty(PROP_SCHEDULER, SCHEDULER_EXECUTOR));
+        //每个订单来源一个任务, 按最小间隔执行, 来源没有订单时自行延长轮询间隔
+        for (OrderSource orderSource : createOrderSources(System.getProperty(PROP_ORDER_SOURCES, DEFAULT_ORDER_SOURCES))) {
+            //创建任务
+            orderSource.setPayloadRecorder(payloadRecorder);
+            OrderPollingJob orderPollingJob = pipeline.createOrderPollingJob(orderSource);
+            //执行时间超过间隔时跳过错过的执行
+            scheduler.schedule("orderPolling-" + orderSource.getName(),
+                               orderPollingJob,
+                               new JobSchedule(orderSource.getMinInterval())
+                                   .withJitter(Duration.ofMillis(500))
+                                   .withMisfirePolicy(JobSchedule.MisfirePolicy.SKIP));
+        }
+        StatusEventDispatcher statusEventDispatcher = pipeline.getStatusEventDispatcher();
+        //车辆精确位置轨迹按列写入内存映射文件, 每段100万条, 保留4周
+        //过期的轨迹段每小时删除一次, 不再上报状态的车辆的轨迹也会被删除
+        String trajectoryDirectory = System.getProperty(PROP_TRAJECTORY_DIRECTORY);
+        TrajectoryStore trajectoryStore = trajectoryDirectory == null
+            ? null
+            : new TrajectoryStore(Paths.get(trajectoryDirectory),
+                                  1 << 20,
+                                  Duration.ofDays(28),
+                                  Duration.ofHours(1));
+        if (trajectoryStore != null) {
+            trajectoryStore.open();
+            statusEventDispatcher.addConsumer("trajectories", trajectoryStore);
+        }
+        //状态消息通过WebSocket推送给多个客户端, 客户端可按处理状态/指定车辆过滤, 慢客户端只收到最新状态
+        String statusStreamPort = System.getProperty(PROP_STATUS_STREAM_PORT);
+        StatusStream statusStream = null;
+        if (statusStreamPort != null) {
+            statusStream = new StatusStream(Integer.parseInt(statusStreamPort),
+                                            "/v1/status/stream",
+                                            pipeline.getOrderStore(),
+                                            statusEventDispatcher);
+            statusStream.start();
+        }
+        pipeline.start(statusStream);
+        //状态数据增量同步: 只请求比已收到的序列号更新的状态消息, 丢失消息时重新获取全部状态
+        ResponseSource responseSource = new HttpResponseSource(KERNEL_BASE_URL, Duration.ZERO, Duration.ofSeconds(5));
+        if (payloadRecorder != null) {
+            responseSource = new RecordingResponseSource(responseSource, payloadRecorder);
+        }
+        RequestStatusHandler requestStatusHandler = new RequestStatusHandler(responseSource, Duration.ZERO);
+        scheduler.schedule("statusPolling",
+                           new StatusPollingJob(requestStatusHandler, statusEventDispatcher),
+                           new JobSchedule(Duration.ofSeconds(1))
+                               .withMisfirePolicy(JobSchedule.MisfirePolicy.SKIP));
         //调度器开始调度任务
         scheduler.start();
+        //进程退出时停止轮询, 处理完已收到的状态数据后关闭轨迹文件和记录文件
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> shutdown(scheduler,
+                                                                       statusEventDispatcher,
+                                                                       trajectoryStore,
+                                                                       payloadRecorder),
+                                                        "bridge-shutdown"));
+    }
+
+    private static void shutdown(JobScheduler scheduler,
+                                 StatusEventDispatcher statusEventDispatcher,
+                                 @Nullable TrajectoryStore trajectoryStore,
+                                 @Nullable PayloadRecorder payloadRecorder) {
+        scheduler.shutdown();
+        boolean consumed = false;
+        try {
+            consumed = statusEventDispatcher.awaitConsumed(Duration.ofSeconds(5));
+        }
+        catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+        statusEventDispatcher.terminate();
+        //轨迹文件只能在消费者不再追加数据后关闭, 否则未提交的数据留在内存映射文件中
+        if (trajectoryStore != null) {
+            if (consumed) {
+                trajectoryStore.close();
+            }
+            else {
+                LOG.warn("Status data not consumed in time, trajectories not closed");
+            }
+        }
+        if (payloadRecorder != null) {
+            payloadRecorder.close();
+        }
+    }
+    
+    private static List<OrderSource> createOrderSources(String sources) {
+        List<OrderSource> result = new ArrayList<>();
+        for (String source : sources.split(",")) {
+            if (source.isBlank()) {
+                continue;
+            }
+            int separator = source.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid order source: " + source);
+            }
+            result.add(new OrderSource(source.substring(0, separator).trim(),
+                                       source.substring(separator + 1).trim(),
+                                       Duration.ofSeconds(1),
+                                       Duration.ofSeconds(30),
+                                       2,
+                                       Duration.ofSeconds(5)));
+        }
+        return result;
+    }
+    
+    private static JobScheduler createScheduler(String type) {
+        if (SCHEDULER_QUARTZ.equals(type)) {
+            return new QuartzJobScheduler(2);
+        }
+        return new ExecutorJobScheduler(2);
     }
     
 }
@@ -0,0 +1,152 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.kernel;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Map;
+import static java.util.Objects.requireNonNull;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.httpclient.StatusPollingJob;
+import org.httpclient.v1.order.OrderSource;
+import org.httpclient.v1.order.SubmissionListener;
+import org.httpclient.v1.order.TransportSink;
+import org.httpclient.v1.order.binding.Transport;
+import org.httpclient.v1.replay.PayloadReplayer;
+import org.httpclient.v1.status.RequestStatusHandler;
+import org.httpclient.v1.status.StatusEventDispatcher;
+
+/**
+ * Replays a payload log recorded with <code>-Dbridge.recordFile</code> through the same
+ * {@link BridgePipeline} as {@link KernelStart}, without a kernel.
+ * Orders are counted instead of submitted and reported as accepted right away.
+ * The plant model is read from <code>-Dbridge.plantModelFile</code>, if given.
+ * <p>
+ * Usage: <code>ReplayStart &lt;log file&gt; [speed|max] [order source names...]</code>
+ * </p>
+ * <p>
+ * For each status consumer, the maximum and mean time from dispatching an event until the consumer
+ * has processed it are reported.
+ * </p>
+ *
+ * @author zzw
+ */
+public class ReplayStart {
+    
+    /**
+     * The system property holding the file the plant model is read from (empty plant model if unset).
+     */
+    private static final String PROP_PLANT_MODEL_FILE = "bridge.plantModelFile";
+    /**
+     * The maximum time to wait for the consumers to process the replayed events.
+     */
+    private static final Duration CONSUME_TIMEOUT = Duration.ofSeconds(60);
+    
+    public static void main(String[] args)
+        throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: ReplayStart <log file> [speed|max] [order source names...]");
+            System.exit(1);
+        }
+        double speed = args.length < 2 || "max".equals(args[1])
+            ? PayloadReplayer.MAX_SPEED
+            : Double.parseDouble(args[1]);
+        PayloadReplayer replayer = new PayloadReplayer(Paths.get(args[0]), speed);
+        //订单不提交给内核, 只计数, 并视为已接受
+        CountingSink countingSink = new CountingSink();
+        BridgePipeline pipeline = new BridgePipeline(BridgePipeline.loadPlantModel(System.getProperty(PROP_PLANT_MODEL_FILE),
+                                                                                   null),
+                                                     countingSink);
+        countingSink.setSubmissionListener(pipeline);
+        for (int i = 2; i < args.length; i++) {
+            replayer.addOrderPollingJob(pipeline.createOrderPollingJob(new OrderSource(args[i],
+                                                                                       "http://127.0.0.1/" + args[i],
+                                                                                       Duration.ofSeconds(1),
+                                                                                       Duration.ofSeconds(30),
+                                                                                       2,
+                                                                                       Duration.ofSeconds(5))));
+        }
+        //与KernelStart相同的消费者, 记录从分发到各消费者处理完成的延迟
+        StatusEventDispatcher statusEventDispatcher = pipeline.getStatusEventDispatcher();
+        statusEventDispatcher.recordLatencies();
+        pipeline.start(null);
+        replayer.setStatusPollingJob(new StatusPollingJob(new RequestStatusHandler(replayer, Duration.ZERO),
+                                                          statusEventDispatcher));
+        replayer.replay();
+        //等待所有消费者处理完已分发的事件后再停止
+        boolean consumed;
+        try {
+            consumed = statusEventDispatcher.awaitConsumed(CONSUME_TIMEOUT);
+        }
+        catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            consumed = false;
+        }
+        statusEventDispatcher.terminate();
+        countingSink.shutdown();
+        if (!consumed) {
+            System.err.printf("Consumers did not catch up within %d s, latencies are incomplete%n",
+                              CONSUME_TIMEOUT.getSeconds());
+        }
+        
+        System.out.printf("records: %d, bytes: %d, duration: %.1f ms, max. feeder lag: %.3f ms, "
+            + "mismatches: %d, status events: %d, orders: %d%n",
+                          replayer.getReplayedCount(),
+                          replayer.getReplayedBytes(),
+                          replayer.getDurationNanos() / 1e6,
+                          replayer.getMaxLagNanos() / 1e6,
+                          replayer.getMismatchCount(),
+                          statusEventDispatcher.getDispatchedCount(),
+                          countingSink.getSubmittedCount());
+        Map<String, Long> meanLatencies = statusEventDispatcher.getMeanLatencyNanos();
+        for (Map.Entry<String, Long> entry : statusEventDispatcher.getMaxLatencyNanos().entrySet()) {
+            System.out.printf("consumer %s: mean latency: %.3f ms, max. latency: %.3f ms%n",
+                              entry.getKey(),
+                              meanLatencies.get(entry.getKey()) / 1e6,
+                              entry.getValue() / 1e6);
+        }
+    }
+    
+    /**
+     * Counts the orders instead of submitting them, and reports them as accepted.
+     * Like the submission queue, it reports asynchronously, so listeners are not called back
+     * while they are passing an order on.
+     */
+    private static class CountingSink
+        implements TransportSink {
+        
+        private final AtomicLong submittedCount = new AtomicLong();
+        private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replay-submission");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private volatile SubmissionListener submissionListener;
+        
+        void setSubmissionListener(SubmissionListener submissionListener) {
+            this.submissionListener = requireNonNull(submissionListener, "submissionListener");
+        }
+        
+        @Override
+        public void submit(String orderName, Transport transport) {
+            submittedCount.incrementAndGet();
+            executor.execute(() -> submissionListener.onSubmitted(orderName, true));
+        }
+        
+        long getSubmittedCount() {
+            return submittedCount.get();
+        }
+        
+        void shutdown() {
+            executor.shutdown();
+        }
+    }
+    
+}
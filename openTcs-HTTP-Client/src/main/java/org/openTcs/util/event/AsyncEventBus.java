@@ -0,0 +1,425 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.openTcs.util.event;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static java.util.Objects.requireNonNull;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import static org.openTcs.util.Assertions.checkInRange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An implementation of {@link EventBus} delivering events asynchronously.
+ * <p>
+ * Each subscribed handler has a bounded queue of its own, which {@link #onEvent(java.lang.Object)}
+ * appends to without calling any handler; a slow handler thus only delays its own events, and
+ * each handler receives the events in the order they were published.
+ * What happens when a handler's queue is full is determined by the {@link OverflowPolicy}.
+ * </p>
+ * <p>
+ * Events are delivered either by a dedicated thread per handler or by a shared executor, which
+ * delivers at most {@link #DELIVERY_BATCH_SIZE} events to a handler before giving other handlers a
+ * turn.
+ * A {@link BatchEventHandler} receives all events queued for it in one call, up to
+ * {@link #DELIVERY_BATCH_SIZE}.
+ * An exception thrown by a handler is logged and counted; it affects neither the delivery of the
+ * following events nor that to other handlers.
+ * An {@link Error} thrown by a handler is logged and counted as well, and the delivery of the
+ * following events is handed to a new task before the error is passed on to the executor.
+ * </p>
+ *
+ * @author zzw
+ */
+public class AsyncEventBus
+    implements EventBus {
+
+  /**
+   * This class's logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(AsyncEventBus.class);
+  /**
+   * The maximum number of events delivered to a handler in one go by a shared executor, and to a
+   * batch handler in one call.
+   */
+  public static final int DELIVERY_BATCH_SIZE = 64;
+  /**
+   * The maximum number of events queued per handler.
+   */
+  private final int queueCapacity;
+  /**
+   * What happens when a handler's queue is full.
+   */
+  private final OverflowPolicy overflowPolicy;
+  /**
+   * Returns the keys of events replacing each other when conflating; <code>null</code> for events
+   * never replaced.
+   */
+  private final Function<Object, Object> conflationKey;
+  /**
+   * The executor delivering events to all handlers, or <code>null</code> for a thread per handler.
+   */
+  @Nullable
+  private final ExecutorService executor;
+  /**
+   * The subscribers, by handler.
+   */
+  private final Map<EventHandler, Subscriber> subscribers = new ConcurrentHashMap<>();
+  /**
+   * Numbers the delivery threads.
+   */
+  private final AtomicInteger threadCount = new AtomicInteger();
+  /**
+   * The number of events dropped because a handler's queue was full.
+   */
+  private final AtomicLong droppedCount = new AtomicLong();
+  /**
+   * The number of events replaced by newer ones before being delivered.
+   */
+  private final AtomicLong conflatedCount = new AtomicLong();
+  /**
+   * The number of exceptions thrown by handlers.
+   */
+  private final AtomicLong failedCount = new AtomicLong();
+
+  /**
+   * Creates a new instance delivering events by a dedicated thread per handler.
+   *
+   * @param queueCapacity The maximum number of events queued per handler.
+   * @param overflowPolicy What happens when a handler's queue is full; as no conflation key is
+   * given, {@link OverflowPolicy#CONFLATE} is the same as {@link OverflowPolicy#DROP_OLDEST}.
+   */
+  public AsyncEventBus(int queueCapacity, OverflowPolicy overflowPolicy) {
+    this(queueCapacity, overflowPolicy, event -> null, null);
+  }
+
+  /**
+   * Creates a new instance.
+   *
+   * @param queueCapacity The maximum number of events queued per handler.
+   * @param overflowPolicy What happens when a handler's queue is full.
+   * @param conflationKey Returns the keys of events replacing each other when conflating, e.g. the
+   * name of the vehicle an update is about; <code>null</code> for events never replaced.
+   * @param executor The executor delivering events to all handlers, or <code>null</code> for a
+   * dedicated thread per handler. The executor is owned by the caller and is not shut down with
+   * this event bus.
+   */
+  public AsyncEventBus(int queueCapacity,
+                       OverflowPolicy overflowPolicy,
+                       Function<Object, Object> conflationKey,
+                       @Nullable ExecutorService executor) {
+    this.queueCapacity = checkInRange(queueCapacity, 1, Integer.MAX_VALUE, "queueCapacity");
+    this.overflowPolicy = requireNonNull(overflowPolicy, "overflowPolicy");
+    this.conflationKey = requireNonNull(conflationKey, "conflationKey");
+    this.executor = executor;
+  }
+
+  @Override
+  public void onEvent(Object event) {
+    requireNonNull(event, "event");
+
+    for (Subscriber subscriber : subscribers.values()) {
+      subscriber.offer(event);
+    }
+  }
+
+  @Override
+  public void subscribe(EventHandler listener) {
+    requireNonNull(listener, "listener");
+
+    subscribers.computeIfAbsent(listener, Subscriber::new);
+  }
+
+  @Override
+  public void unsubscribe(EventHandler listener) {
+    requireNonNull(listener, "listener");
+
+    Subscriber subscriber = subscribers.remove(listener);
+    if (subscriber != null) {
+      subscriber.close();
+    }
+  }
+
+  /**
+   * Unsubscribes all handlers, discarding the events not yet delivered, and shuts down the
+   * delivery threads created by this event bus.
+   * A shared executor given on creation is left running.
+   */
+  public void shutdown() {
+    for (EventHandler listener : subscribers.keySet()) {
+      unsubscribe(listener);
+    }
+  }
+
+  /**
+   * Returns the number of events queued for the given handler.
+   *
+   * @param listener The handler.
+   * @return The number of events queued for the handler; 0 if it is not subscribed.
+   */
+  public int getQueuedCount(EventHandler listener) {
+    requireNonNull(listener, "listener");
+
+    Subscriber subscriber = subscribers.get(listener);
+    return subscriber == null ? 0 : subscriber.size();
+  }
+
+  /**
+   * Returns the number of events dropped so far because a handler's queue was full.
+   *
+   * @return The number of events dropped so far.
+   */
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  /**
+   * Returns the number of events replaced by newer ones before being delivered so far.
+   *
+   * @return The number of events replaced by newer ones so far.
+   */
+  public long getConflatedCount() {
+    return conflatedCount.get();
+  }
+
+  /**
+   * Returns the number of exceptions thrown by handlers so far.
+   *
+   * @return The number of exceptions thrown by handlers so far.
+   */
+  public long getFailedCount() {
+    return failedCount.get();
+  }
+
+  /**
+   * Defines what happens to an event published while a handler's queue is full.
+   */
+  public enum OverflowPolicy {
+    /**
+     * The publisher waits until the handler has taken an event from its queue.
+     * A handler must then not publish on the same event bus, as it may wait for itself.
+     */
+    BLOCK,
+    /**
+     * The oldest event queued is dropped.
+     */
+    DROP_OLDEST,
+    /**
+     * An event replaces the queued one with the same conflation key, keeping its position in the
+     * queue, even when the queue is not full.
+     * Events without a key, or with a key not queued, are treated as with {@link #DROP_OLDEST}.
+     */
+    CONFLATE;
+  }
+
+  /**
+   * A handler's queue and the delivery of its events.
+   */
+  private class Subscriber
+      implements Runnable {
+
+    /**
+     * The handler.
+     */
+    private final EventHandler handler;
+    /**
+     * The executor delivering to the handler.
+     */
+    private final ExecutorService deliveryExecutor;
+    /**
+     * Whether the executor delivers to this handler only.
+     */
+    private final boolean dedicated;
+    /**
+     * The queued events.
+     */
+    private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+    /**
+     * The queued events with conflation keys, by key.
+     */
+    private final Map<Object, Entry> entriesByKey = new HashMap<>();
+    /**
+     * Whether a delivery is scheduled or running.
+     */
+    private boolean scheduled;
+    /**
+     * Whether the handler has been unsubscribed.
+     */
+    private boolean closed;
+
+    Subscriber(EventHandler handler) {
+      this.handler = handler;
+      this.dedicated = executor == null;
+      this.deliveryExecutor = dedicated
+          ? Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable,
+                                       "AsyncEventBus-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          })
+          : executor;
+    }
+
+    void offer(Object event) {
+      Object key = overflowPolicy == OverflowPolicy.CONFLATE ? conflationKey.apply(event) : null;
+      synchronized (this) {
+        if (closed) {
+          return;
+        }
+        if (key != null) {
+          Entry queued = entriesByKey.get(key);
+          if (queued != null) {
+            queued.event = event;
+            conflatedCount.incrementAndGet();
+            return;
+          }
+        }
+        while (queue.size() >= queueCapacity && overflowPolicy == OverflowPolicy.BLOCK) {
+          try {
+            wait();
+          }
+          catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            droppedCount.incrementAndGet();
+            return;
+          }
+          if (closed) {
+            return;
+          }
+        }
+        if (queue.size() >= queueCapacity) {
+          remove();
+          droppedCount.incrementAndGet();
+        }
+        Entry entry = new Entry(key, event);
+        queue.add(entry);
+        if (key != null) {
+          entriesByKey.put(key, entry);
+        }
+        if (scheduled) {
+          return;
+        }
+        scheduled = true;
+      }
+      schedule();
+    }
+
+    synchronized int size() {
+      return queue.size();
+    }
+
+    void close() {
+      synchronized (this) {
+        closed = true;
+        queue.clear();
+        entriesByKey.clear();
+        notifyAll();
+      }
+      if (dedicated) {
+        deliveryExecutor.shutdown();
+      }
+    }
+
+    @Override
+    public void run() {
+      // A dedicated thread delivers until the queue is empty, a shared one takes turns.
+      int remaining = dedicated ? Integer.MAX_VALUE : DELIVERY_BATCH_SIZE;
+      while (true) {
+        Object event = null;
+        List<Object> batch = null;
+        synchronized (this) {
+          if (closed || queue.isEmpty()) {
+            scheduled = false;
+            return;
+          }
+          if (remaining == 0) {
+            break;
+          }
+          if (handler instanceof BatchEventHandler) {
+            int count = Math.min(Math.min(queue.size(), DELIVERY_BATCH_SIZE), remaining);
+            batch = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+              batch.add(remove());
+            }
+            remaining -= count;
+          }
+          else {
+            event = remove();
+            remaining--;
+          }
+          notifyAll();
+        }
+        try {
+          if (batch != null) {
+            ((BatchEventHandler) handler).onEvents(batch);
+          }
+          else {
+            handler.onEvent(event);
+          }
+        }
+        catch (RuntimeException exc) {
+          failedCount.incrementAndGet();
+          LOG.warn("Exception thrown by event handler {}", handler, exc);
+        }
+        catch (Error err) {
+          failedCount.incrementAndGet();
+          LOG.error("Error thrown by event handler {}", handler, err);
+          // Still scheduled - hand the remaining events to a new task, so neither they nor blocked
+          // publishers are stuck when the error terminates this task's thread.
+          schedule();
+          throw err;
+        }
+      }
+      schedule();
+    }
+
+    private Object remove() {
+      Entry entry = queue.remove();
+      if (entry.key != null) {
+        entriesByKey.remove(entry.key);
+      }
+      return entry.event;
+    }
+
+    private void schedule() {
+      try {
+        deliveryExecutor.execute(this);
+      }
+      catch (RejectedExecutionException exc) {
+        LOG.debug("Executor shut down, not delivering events to {}", handler);
+        synchronized (this) {
+          scheduled = false;
+        }
+      }
+    }
+  }
+
+  /**
+   * A queued event.
+   */
+  private static class Entry {
+
+    @Nullable
+    private final Object key;
+    private Object event;
+
+    Entry(@Nullable Object key, Object event) {
+      this.key = key;
+      this.event = event;
+    }
+  }
+}
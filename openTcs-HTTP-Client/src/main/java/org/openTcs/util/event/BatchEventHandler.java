@@ -0,0 +1,41 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.openTcs.util.event;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A handler processing events in batches.
+ * <p>
+ * Event sources supporting batches pass all events available to such a handler in one call, up to
+ * a maximum number, so batches are small while events are rare and grow under load.
+ * Other event sources pass each event on its own, as a batch of one.
+ * </p>
+ *
+ * @author zzw
+ */
+public interface BatchEventHandler
+    extends EventHandler {
+
+  /**
+   * Processes the event objects.
+   *
+   * @param events The event objects, in the order they were emitted. The list must not be
+   * modified and must not be kept after the call returns.
+   */
+  void onEvents(List<Object> events);
+
+  /**
+   * Processes the event object as a batch of one.
+   *
+   * @param event The event object.
+   */
+  @Override
+  default void onEvent(Object event) {
+    onEvents(Collections.singletonList(event));
+  }
+}
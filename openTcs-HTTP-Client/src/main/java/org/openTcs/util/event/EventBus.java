@@ -7,6 +7,8 @@
  */
 package org.openTcs.util.event;
 
+import java.util.List;
+
 /**
  * A distributor of events.
  * Forwards events received via {@link #onEvent(java.lang.Object)} to all subscribed handlers.
@@ -17,4 +19,15 @@ public interface EventBus
     extends EventHandler,
             EventSource {
 
+  /**
+   * Forwards the given events to all subscribed handlers, in order.
+   * {@link BatchEventHandler}s may receive the events in batches instead of one by one.
+   *
+   * @param events The events.
+   */
+  default void publishAll(List<?> events) {
+    for (Object event : events) {
+      onEvent(event);
+    }
+  }
 }
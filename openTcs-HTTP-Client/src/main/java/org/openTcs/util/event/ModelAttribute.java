@@ -0,0 +1,27 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.openTcs.util.event;
+
+import org.openTcs.data.TCSObject;
+
+/**
+ * An attribute of a model class whose changes can be detected, see {@link ObjectChangeRouter}.
+ * Implemented by enums, one per model class.
+ *
+ * @param <T> The model class.
+ * @author zzw
+ */
+public interface ModelAttribute<T extends TCSObject<T>> {
+
+  /**
+   * Returns the attribute's value in the given object, to be compared with
+   * {@link java.util.Objects#equals(java.lang.Object, java.lang.Object)}.
+   *
+   * @param object The object.
+   * @return The attribute's value.
+   */
+  Object valueOf(T object);
+}
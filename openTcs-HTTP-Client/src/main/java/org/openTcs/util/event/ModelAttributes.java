@@ -0,0 +1,152 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.openTcs.util.event;
+
+import java.util.function.Function;
+import org.openTcs.data.TCSObject;
+import org.openTcs.data.model.Point;
+import org.openTcs.data.model.Vehicle;
+import org.openTcs.data.order.TransportOrder;
+import org.openTcs.data.peripherals.PeripheralJob;
+
+/**
+ * The attributes of the model classes whose changes can be detected.
+ * An object's history is not an attribute, as it grows with every change.
+ *
+ * @author zzw
+ */
+public final class ModelAttributes {
+
+  /**
+   * Prevents instantiation.
+   */
+  private ModelAttributes() {
+  }
+
+  /**
+   * The attributes of a {@link Vehicle}.
+   */
+  public enum VehicleAttribute
+      implements ModelAttribute<Vehicle> {
+    PROPERTIES(TCSObject::getProperties),
+    LENGTH(Vehicle::getLength),
+    ENERGY_LEVEL_GOOD(Vehicle::getEnergyLevelGood),
+    ENERGY_LEVEL_CRITICAL(Vehicle::getEnergyLevelCritical),
+    ENERGY_LEVEL_FULLY_RECHARGED(Vehicle::getEnergyLevelFullyRecharged),
+    ENERGY_LEVEL_SUFFICIENTLY_RECHARGED(Vehicle::getEnergyLevelSufficientlyRecharged),
+    ENERGY_LEVEL(Vehicle::getEnergyLevel),
+    MAX_VELOCITY(Vehicle::getMaxVelocity),
+    MAX_REVERSE_VELOCITY(Vehicle::getMaxReverseVelocity),
+    RECHARGE_OPERATION(Vehicle::getRechargeOperation),
+    STATE(Vehicle::getState),
+    PROC_STATE(Vehicle::getProcState),
+    INTEGRATION_LEVEL(Vehicle::getIntegrationLevel),
+    TRANSPORT_ORDER(Vehicle::getTransportOrder),
+    ORDER_SEQUENCE(Vehicle::getOrderSequence),
+    ALLOWED_ORDER_TYPES(Vehicle::getAllowedOrderTypes),
+    ROUTE_PROGRESS_INDEX(Vehicle::getRouteProgressIndex),
+    CURRENT_POSITION(Vehicle::getCurrentPosition),
+    NEXT_POSITION(Vehicle::getNextPosition),
+    PRECISE_POSITION(Vehicle::getPrecisePosition),
+    ORIENTATION_ANGLE(Vehicle::getOrientationAngle);
+
+    private final Function<Vehicle, Object> getter;
+
+    VehicleAttribute(Function<Vehicle, Object> getter) {
+      this.getter = getter;
+    }
+
+    @Override
+    public Object valueOf(Vehicle object) {
+      return getter.apply(object);
+    }
+  }
+
+  /**
+   * The attributes of a {@link TransportOrder}.
+   * Drive orders are compared by identity, as a changed drive order is replaced by a new one.
+   */
+  public enum TransportOrderAttribute
+      implements ModelAttribute<TransportOrder> {
+    PROPERTIES(TCSObject::getProperties),
+    TYPE(TransportOrder::getType),
+    DEPENDENCIES(TransportOrder::getDependencies),
+    DRIVE_ORDERS(TransportOrder::getAllDriveOrders),
+    PERIPHERAL_RESERVATION_TOKEN(TransportOrder::getPeripheralReservationToken),
+    CURRENT_DRIVE_ORDER_INDEX(TransportOrder::getCurrentDriveOrderIndex),
+    STATE(TransportOrder::getState),
+    CREATION_TIME(TransportOrder::getCreationTime),
+    DEADLINE(TransportOrder::getDeadline),
+    FINISHED_TIME(TransportOrder::getFinishedTime),
+    INTENDED_VEHICLE(TransportOrder::getIntendedVehicle),
+    PROCESSING_VEHICLE(TransportOrder::getProcessingVehicle),
+    WRAPPING_SEQUENCE(TransportOrder::getWrappingSequence),
+    DISPENSABLE(TransportOrder::isDispensable);
+
+    private final Function<TransportOrder, Object> getter;
+
+    TransportOrderAttribute(Function<TransportOrder, Object> getter) {
+      this.getter = getter;
+    }
+
+    @Override
+    public Object valueOf(TransportOrder object) {
+      return getter.apply(object);
+    }
+  }
+
+  /**
+   * The attributes of a {@link Point}.
+   */
+  public enum PointAttribute
+      implements ModelAttribute<Point> {
+    PROPERTIES(TCSObject::getProperties),
+    POSITION(Point::getPosition),
+    TYPE(Point::getType),
+    VEHICLE_ORIENTATION_ANGLE(Point::getVehicleOrientationAngle),
+    INCOMING_PATHS(Point::getIncomingPaths),
+    OUTGOING_PATHS(Point::getOutgoingPaths),
+    ATTACHED_LINKS(Point::getAttachedLinks),
+    OCCUPYING_VEHICLE(Point::getOccupyingVehicle);
+
+    private final Function<Point, Object> getter;
+
+    PointAttribute(Function<Point, Object> getter) {
+      this.getter = getter;
+    }
+
+    @Override
+    public Object valueOf(Point object) {
+      return getter.apply(object);
+    }
+  }
+
+  /**
+   * The attributes of a {@link PeripheralJob}.
+   */
+  public enum PeripheralJobAttribute
+      implements ModelAttribute<PeripheralJob> {
+    PROPERTIES(TCSObject::getProperties),
+    RESERVATION_TOKEN(PeripheralJob::getReservationToken),
+    RELATED_VEHICLE(PeripheralJob::getRelatedVehicle),
+    RELATED_TRANSPORT_ORDER(PeripheralJob::getRelatedTransportOrder),
+    PERIPHERAL_OPERATION(PeripheralJob::getPeripheralOperation),
+    STATE(PeripheralJob::getState),
+    CREATION_TIME(PeripheralJob::getCreationTime),
+    FINISHED_TIME(PeripheralJob::getFinishedTime);
+
+    private final Function<PeripheralJob, Object> getter;
+
+    PeripheralJobAttribute(Function<PeripheralJob, Object> getter) {
+      this.getter = getter;
+    }
+
+    @Override
+    public Object valueOf(PeripheralJob object) {
+      return getter.apply(object);
+    }
+  }
+}
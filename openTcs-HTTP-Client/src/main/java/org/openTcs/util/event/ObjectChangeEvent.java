@@ -0,0 +1,100 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.openTcs.util.event;
+
+import java.util.EnumSet;
+import static java.util.Objects.requireNonNull;
+import java.util.Set;
+import org.openTcs.data.TCSObjectEvent;
+import static org.openTcs.util.Assertions.checkArgument;
+
+/**
+ * A {@link TCSObjectEvent} along with the attributes of the object that changed, among those
+ * subscribed to at the {@link ObjectChangeRouter}.
+ * For a created or removed object, all these attributes are considered changed.
+ *
+ * @author zzw
+ */
+public class ObjectChangeEvent {
+
+  /**
+   * The object event.
+   */
+  private final TCSObjectEvent event;
+  /**
+   * The type of the object's attributes.
+   */
+  private final Class<? extends Enum<?>> attributeType;
+  /**
+   * The changed attributes, as a bit mask of their ordinals.
+   */
+  private final long changedAttributes;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param event The object event.
+   * @param attributeType The type of the object's attributes.
+   * @param changedAttributes The changed attributes, as a bit mask of their ordinals.
+   */
+  ObjectChangeEvent(TCSObjectEvent event,
+                    Class<? extends Enum<?>> attributeType,
+                    long changedAttributes) {
+    this.event = requireNonNull(event, "event");
+    this.attributeType = requireNonNull(attributeType, "attributeType");
+    this.changedAttributes = changedAttributes;
+  }
+
+  /**
+   * Returns the object event.
+   *
+   * @return The object event.
+   */
+  public TCSObjectEvent getEvent() {
+    return event;
+  }
+
+  /**
+   * Checks whether the given attribute changed.
+   *
+   * @param attribute The attribute.
+   * @return <code>true</code> if the attribute is one of the object's and changed.
+   */
+  public boolean hasChanged(Enum<? extends ModelAttribute<?>> attribute) {
+    requireNonNull(attribute, "attribute");
+
+    return attribute.getDeclaringClass() == attributeType
+        && (changedAttributes & (1L << attribute.ordinal())) != 0;
+  }
+
+  /**
+   * Returns the changed attributes.
+   *
+   * @param <A> The type of the object's attributes.
+   * @param type The type of the object's attributes.
+   * @return The changed attributes.
+   */
+  public <A extends Enum<A> & ModelAttribute<?>> Set<A> getChangedAttributes(Class<A> type) {
+    requireNonNull(type, "type");
+    checkArgument(type == attributeType, "Attributes are of %s, not %s", attributeType, type);
+
+    Set<A> result = EnumSet.noneOf(type);
+    for (A attribute : type.getEnumConstants()) {
+      if ((changedAttributes & (1L << attribute.ordinal())) != 0) {
+        result.add(attribute);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "ObjectChangeEvent{"
+        + "event=" + event
+        + ", changedAttributes=" + Long.toBinaryString(changedAttributes)
+        + '}';
+  }
+}
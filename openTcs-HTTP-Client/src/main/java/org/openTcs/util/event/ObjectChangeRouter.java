@@ -0,0 +1,291 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.openTcs.util.event;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import static java.util.Objects.requireNonNull;
+import java.util.Set;
+import org.openTcs.data.TCSObject;
+import org.openTcs.data.TCSObjectEvent;
+import org.openTcs.data.model.Point;
+import org.openTcs.data.model.Vehicle;
+import org.openTcs.data.order.TransportOrder;
+import org.openTcs.data.peripherals.PeripheralJob;
+import static org.openTcs.util.Assertions.checkArgument;
+import org.openTcs.util.event.ModelAttributes.PeripheralJobAttribute;
+import org.openTcs.util.event.ModelAttributes.PointAttribute;
+import org.openTcs.util.event.ModelAttributes.TransportOrderAttribute;
+import org.openTcs.util.event.ModelAttributes.VehicleAttribute;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Passes {@link TCSObjectEvent}s to the handlers interested in the attributes that changed.
+ * <p>
+ * Handlers subscribe to a set of attributes of a model class, e.g.
+ * {@link VehicleAttribute#ENERGY_LEVEL}.
+ * For each object event, the subscribed attributes are compared between the previous and current
+ * object states - each at most once, and only as far as needed to decide whether a handler is
+ * interested - and the event is passed, as an {@link ObjectChangeEvent} holding all subscribed
+ * attributes that changed, only to the handlers subscribed to at least one of them.
+ * Events for objects of classes without attributes, and other events, are ignored.
+ * </p>
+ * <p>
+ * An exception thrown by a handler is logged; it does not affect the other handlers.
+ * Events must be passed to the router by one thread at a time.
+ * </p>
+ *
+ * @author zzw
+ */
+public class ObjectChangeRouter
+    implements EventHandler {
+
+  /**
+   * This class's logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(ObjectChangeRouter.class);
+  /**
+   * The attribute types, by model class.
+   */
+  private static final Map<Class<?>, Class<? extends Enum<?>>> ATTRIBUTE_TYPES
+      = Map.of(Vehicle.class, VehicleAttribute.class,
+               TransportOrder.class, TransportOrderAttribute.class,
+               Point.class, PointAttribute.class,
+               PeripheralJob.class, PeripheralJobAttribute.class);
+  /**
+   * The routes, by model class.
+   * Replaced whenever the subscriptions change.
+   */
+  private volatile Map<Class<?>, Route> routes = Map.of();
+  /**
+   * The number of object events received for objects with subscribers.
+   */
+  private volatile long eventCount;
+  /**
+   * The number of times a handler was skipped, as none of its attributes changed.
+   */
+  private volatile long skippedCount;
+
+  /**
+   * Creates a new instance.
+   */
+  public ObjectChangeRouter() {
+  }
+
+  /**
+   * Subscribes the given handler to changes of the given attributes.
+   * A handler subscribed to attributes of several model classes receives changes of each of them.
+   *
+   * @param <A> The type of the attributes.
+   * @param attributes The attributes, all of the same model class.
+   * @param handler The handler, receiving {@link ObjectChangeEvent}s.
+   */
+  public synchronized <A extends Enum<A> & ModelAttribute<?>> void subscribe(Set<A> attributes,
+                                                                              EventHandler handler) {
+    requireNonNull(attributes, "attributes");
+    requireNonNull(handler, "handler");
+    checkArgument(!attributes.isEmpty(), "No attributes given");
+
+    Class<A> attributeType = attributes.iterator().next().getDeclaringClass();
+    Class<?> objectClass = ATTRIBUTE_TYPES.entrySet().stream()
+        .filter(entry -> entry.getValue() == attributeType)
+        .map(Map.Entry::getKey)
+        .findFirst()
+        .orElseThrow(() -> new IllegalArgumentException("Unknown attributes: " + attributeType));
+    long mask = 0;
+    for (A attribute : attributes) {
+      mask |= 1L << attribute.ordinal();
+    }
+
+    Map<Class<?>, Route> newRoutes = new HashMap<>(routes);
+    Route route = newRoutes.get(objectClass);
+    newRoutes.put(objectClass,
+                  route == null
+                      ? new Route(attributeType, handler, mask)
+                      : route.with(handler, mask));
+    routes = newRoutes;
+  }
+
+  /**
+   * Unsubscribes the given handler from all attributes.
+   *
+   * @param handler The handler.
+   */
+  public synchronized void unsubscribe(EventHandler handler) {
+    requireNonNull(handler, "handler");
+
+    Map<Class<?>, Route> newRoutes = new HashMap<>();
+    for (Map.Entry<Class<?>, Route> entry : routes.entrySet()) {
+      Route route = entry.getValue().without(handler);
+      if (route != null) {
+        newRoutes.put(entry.getKey(), route);
+      }
+    }
+    routes = newRoutes;
+  }
+
+  @Override
+  public void onEvent(Object event) {
+    if (!(event instanceof TCSObjectEvent)) {
+      return;
+    }
+    TCSObjectEvent objectEvent = (TCSObjectEvent) event;
+    Route route = routes.get(objectEvent.getCurrentOrPreviousObjectState().getClass());
+    if (route == null) {
+      return;
+    }
+    eventCount++;
+
+    // Attributes are compared as handlers need them, each at most once per event.
+    long compared = 0;
+    long changes = 0;
+    ObjectChangeEvent changeEvent = null;
+    for (int i = 0; i < route.handlers.length; i++) {
+      long uncompared = route.masks[i] & ~compared;
+      if (uncompared != 0) {
+        changes |= route.changesOf(objectEvent, uncompared);
+        compared |= uncompared;
+      }
+      if ((route.masks[i] & changes) == 0) {
+        skippedCount++;
+        continue;
+      }
+      if (changeEvent == null) {
+        changes |= route.changesOf(objectEvent, route.subscribedMask & ~compared);
+        compared = route.subscribedMask;
+        changeEvent = new ObjectChangeEvent(objectEvent, route.attributeType, changes);
+      }
+      try {
+        route.handlers[i].onEvent(changeEvent);
+      }
+      catch (Exception exc) {
+        LOG.warn("Exception thrown by event handler {}", route.handlers[i], exc);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of object events received so far for objects with subscribers.
+   *
+   * @return The number of object events received so far.
+   */
+  public long getEventCount() {
+    return eventCount;
+  }
+
+  /**
+   * Returns the number of times so far a handler was skipped, as none of its attributes changed.
+   *
+   * @return The number of times a handler was skipped.
+   */
+  public long getSkippedCount() {
+    return skippedCount;
+  }
+
+  /**
+   * The handlers subscribed to attributes of a model class.
+   */
+  private static class Route {
+
+    /**
+     * The type of the attributes.
+     */
+    private final Class<? extends Enum<?>> attributeType;
+    /**
+     * The attributes, by ordinal.
+     */
+    private final ModelAttribute<?>[] attributes;
+    /**
+     * The handlers.
+     */
+    private final EventHandler[] handlers;
+    /**
+     * The attributes each handler is subscribed to, as bit masks of their ordinals.
+     */
+    private final long[] masks;
+    /**
+     * The attributes any handler is subscribed to, as a bit mask of their ordinals.
+     */
+    private final long subscribedMask;
+
+    Route(Class<? extends Enum<?>> attributeType, EventHandler handler, long mask) {
+      this(attributeType, new EventHandler[]{handler}, new long[]{mask});
+    }
+
+    private Route(Class<? extends Enum<?>> attributeType, EventHandler[] handlers, long[] masks) {
+      this.attributeType = attributeType;
+      this.attributes = (ModelAttribute<?>[]) attributeType.getEnumConstants();
+      this.handlers = handlers;
+      this.masks = masks;
+      long subscribed = 0;
+      for (long mask : masks) {
+        subscribed |= mask;
+      }
+      this.subscribedMask = subscribed;
+    }
+
+    Route with(EventHandler handler, long mask) {
+      for (int i = 0; i < handlers.length; i++) {
+        if (handlers[i].equals(handler)) {
+          long[] newMasks = masks.clone();
+          newMasks[i] |= mask;
+          return new Route(attributeType, handlers, newMasks);
+        }
+      }
+      EventHandler[] newHandlers = Arrays.copyOf(handlers, handlers.length + 1);
+      long[] newMasks = Arrays.copyOf(masks, masks.length + 1);
+      newHandlers[handlers.length] = handler;
+      newMasks[masks.length] = mask;
+      return new Route(attributeType, newHandlers, newMasks);
+    }
+
+    Route without(EventHandler handler) {
+      EventHandler[] newHandlers = new EventHandler[handlers.length];
+      long[] newMasks = new long[masks.length];
+      int count = 0;
+      for (int i = 0; i < handlers.length; i++) {
+        if (!handlers[i].equals(handler)) {
+          newHandlers[count] = handlers[i];
+          newMasks[count] = masks[i];
+          count++;
+        }
+      }
+      return count == 0
+          ? null
+          : new Route(attributeType,
+                      Arrays.copyOf(newHandlers, count),
+                      Arrays.copyOf(newMasks, count));
+    }
+
+    /**
+     * Returns which of the given attributes were changed by the given event.
+     *
+     * @param event The event.
+     * @param mask The attributes to compare, as a bit mask of their ordinals.
+     * @return The changed attributes, as a bit mask of their ordinals.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    long changesOf(TCSObjectEvent event, long mask) {
+      if (event.getType() != TCSObjectEvent.Type.OBJECT_MODIFIED) {
+        return mask;
+      }
+      TCSObject<?> previous = event.getPreviousObjectState();
+      TCSObject<?> current = event.getCurrentObjectState();
+      long changes = 0;
+      for (long remaining = mask; remaining != 0; remaining &= remaining - 1) {
+        int ordinal = Long.numberOfTrailingZeros(remaining);
+        ModelAttribute attribute = attributes[ordinal];
+        if (!Objects.equals(attribute.valueOf(previous), attribute.valueOf(current))) {
+          changes |= 1L << ordinal;
+        }
+      }
+      return changes;
+    }
+  }
+}
@@ -7,14 +7,30 @@
  */
 package org.openTcs.util.event;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import static java.util.Objects.requireNonNull;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * A plain implementation of {@link EventBus}.
+ * <p>
+ * Listeners may subscribe to all events or, via {@link #subscribe(java.lang.Class, EventHandler)},
+ * only to events of a given type (including its subtypes).
+ * The listeners receiving events of a class are determined once per class and cached until the
+ * subscriptions change, so an event is only passed to the listeners interested in it.
+ * A listener receives each event at most once, even if it subscribed to several of its types.
+ * </p>
+ * <p>
+ * Events published via {@link #publishAll(java.util.List)} are passed to {@link BatchEventHandler}s
+ * in a single batch per listener, after the other listeners have received them one by one.
+ * </p>
  *
  * @author Stefan Walter (Fraunhofer IML)
  */
@@ -26,14 +42,19 @@ public class SimpleEventBus
    */
   private static final Logger LOG = LoggerFactory.getLogger(SimpleEventBus.class);
   /**
-   * The listeners.
+   * The subscriptions, in the order they were made.
    */
-  private final Set<EventHandler> listeners = new CopyOnWriteArraySet<>();
+  private final Set<Subscription> subscriptions = new LinkedHashSet<>();
+  /**
+   * The listeners receiving events, by event class.
+   * Replaced whenever the subscriptions change.
+   */
+  private volatile ClassValue<EventHandler[]> routes = newRoutes();
 
   @Override
   public void onEvent(Object event) {
     try {
-      for (EventHandler listener : listeners) {
+      for (EventHandler listener : routes.get(event.getClass())) {
         listener.onEvent(event);
       }
     }
@@ -42,18 +63,115 @@ public class SimpleEventBus
     }
   }
 
+  @Override
+  public void publishAll(List<?> events) {
+    requireNonNull(events, "events");
+
+    Map<BatchEventHandler, List<Object>> batches = new LinkedHashMap<>();
+    for (Object event : events) {
+      try {
+        for (EventHandler listener : routes.get(event.getClass())) {
+          if (listener instanceof BatchEventHandler) {
+            batches.computeIfAbsent((BatchEventHandler) listener, key -> new ArrayList<>())
+                .add(event);
+          }
+          else {
+            listener.onEvent(event);
+          }
+        }
+      }
+      catch (Exception exc) {
+        LOG.warn("Exception thrown by event handler", exc);
+      }
+    }
+    for (Map.Entry<BatchEventHandler, List<Object>> entry : batches.entrySet()) {
+      try {
+        entry.getKey().onEvents(entry.getValue());
+      }
+      catch (Exception exc) {
+        LOG.warn("Exception thrown by event handler", exc);
+      }
+    }
+  }
+
   @Override
   public void subscribe(EventHandler listener) {
+    subscribe(Object.class, listener);
+  }
+
+  /**
+   * Subscribes the given listener to events of the given type emitted by this source.
+   *
+   * @param eventType The type of events the listener is interested in.
+   * @param listener The listener to be subscribed.
+   */
+  public synchronized void subscribe(Class<?> eventType, EventHandler listener) {
+    requireNonNull(eventType, "eventType");
     requireNonNull(listener, "listener");
 
-    listeners.add(listener);
+    if (subscriptions.add(new Subscription(eventType, listener))) {
+      routes = newRoutes();
+    }
   }
 
+  /**
+   * Unsubscribes the given listener from all events, regardless of the types it subscribed to.
+   *
+   * @param listener The listener to be unsubscribed.
+   */
   @Override
-  public void unsubscribe(EventHandler listener) {
+  public synchronized void unsubscribe(EventHandler listener) {
     requireNonNull(listener, "listener");
 
-    listeners.remove(listener);
+    if (subscriptions.removeIf(subscription -> subscription.listener.equals(listener))) {
+      routes = newRoutes();
+    }
+  }
+
+  private ClassValue<EventHandler[]> newRoutes() {
+    List<Subscription> snapshot = new ArrayList<>(subscriptions);
+    return new ClassValue<EventHandler[]>() {
+      @Override
+      protected EventHandler[] computeValue(Class<?> eventClass) {
+        Set<EventHandler> listeners = new LinkedHashSet<>();
+        for (Subscription subscription : snapshot) {
+          if (subscription.eventType.isAssignableFrom(eventClass)) {
+            listeners.add(subscription.listener);
+          }
+        }
+        return listeners.toArray(new EventHandler[listeners.size()]);
+      }
+    };
   }
 
+  /**
+   * A listener's subscription to events of a type.
+   */
+  private static class Subscription {
+
+    private final Class<?> eventType;
+    private final EventHandler listener;
+
+    Subscription(Class<?> eventType, EventHandler listener) {
+      this.eventType = eventType;
+      this.listener = listener;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Subscription)) {
+        return false;
+      }
+      Subscription other = (Subscription) obj;
+      return eventType == other.eventType && Objects.equals(listener, other.listener);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * eventType.hashCode() + Objects.hashCode(listener);
+    }
+  }
 }
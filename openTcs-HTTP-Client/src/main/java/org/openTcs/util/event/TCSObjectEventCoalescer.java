@@ -0,0 +1,330 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.openTcs.util.event;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import static java.util.Objects.requireNonNull;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.openTcs.data.TCSObject;
+import org.openTcs.data.TCSObjectEvent;
+import static org.openTcs.util.Assertions.checkArgument;
+
+/**
+ * Merges bursts of {@link TCSObjectEvent}s for the same object before passing them downstream.
+ * <p>
+ * Events are collected for a fixed window, starting with the first event collected.
+ * At the end of the window, the object events collected for each object - identified by its class
+ * and name - are merged into one, holding the earliest previous and the latest current state of
+ * the object, and passed downstream in the order the objects first appeared.
+ * The merged event's type follows the object's life cycle:
+ * </p>
+ * <ul>
+ * <li>An object created within the window is reported as created, with its latest state.</li>
+ * <li>An object removed within the window is reported as removed, with its earliest previous
+ * state.</li>
+ * <li>An object both created and removed within the window is not reported at all.</li>
+ * <li>An object removed and then created again within the window is reported as removed and as
+ * created, as separate events.</li>
+ * </ul>
+ * <p>
+ * Other events are collected as they are and passed downstream in the order they were received,
+ * relative to the object events: object events received after another event are not merged with
+ * those received before it.
+ * All events are passed downstream by one thread at a time, in the order they were collected.
+ * Batches of events are passed to a {@link BatchEventHandler} or
+ * {@link EventBus#publishAll(java.util.List)} in one go.
+ * </p>
+ *
+ * @author zzw
+ */
+public class TCSObjectEventCoalescer
+    implements BatchEventHandler {
+
+  /**
+   * The handler merged events are passed to.
+   */
+  private final EventHandler downstream;
+  /**
+   * The time object events are collected for (in ms).
+   */
+  private final long windowMillis;
+  /**
+   * Flushes the collected events at the end of each window.
+   */
+  private final ScheduledExecutorService executor;
+  /**
+   * The events collected, in the order received, with the object events merged.
+   */
+  private final List<Object> collected = new ArrayList<>();
+  /**
+   * The merged object events collected since the last other event, by object.
+   */
+  private final Map<ObjectKey, MergedEvent> mergeable = new HashMap<>();
+  /**
+   * Held while passing events downstream, so batches are passed on in the order collected.
+   */
+  private final Object deliveryLock = new Object();
+  /**
+   * The number of object events received.
+   */
+  private long receivedCount;
+  /**
+   * The number of merged object events passed downstream.
+   */
+  private long emittedCount;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param downstream The handler merged events are passed to.
+   * @param window The time object events are collected for.
+   */
+  public TCSObjectEventCoalescer(EventHandler downstream, Duration window) {
+    this.downstream = requireNonNull(downstream, "downstream");
+    this.windowMillis = requireNonNull(window, "window").toMillis();
+    checkArgument(windowMillis > 0, "window <= 0: %s", window);
+    this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "object-event-coalescer");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Stops coalescing.
+   * Events still being collected are merged and passed downstream immediately; events received
+   * afterwards are passed on as they are.
+   */
+  public void terminate() {
+    // Events received afterwards must not overtake those still being collected.
+    synchronized (deliveryLock) {
+      synchronized (this) {
+        executor.shutdown();
+      }
+      flush();
+    }
+  }
+
+  @Override
+  public void onEvent(Object event) {
+    requireNonNull(event, "event");
+
+    if (!collect(event)) {
+      synchronized (deliveryLock) {
+        downstream.onEvent(event);
+      }
+    }
+  }
+
+  @Override
+  public void onEvents(List<Object> events) {
+    requireNonNull(events, "events");
+
+    for (Object event : events) {
+      onEvent(event);
+    }
+  }
+
+  /**
+   * Merges the events collected so far and passes them downstream.
+   */
+  public void flush() {
+    synchronized (deliveryLock) {
+      List<Object> events;
+      synchronized (this) {
+        events = new ArrayList<>(collected.size());
+        for (Object entry : collected) {
+          if (entry instanceof MergedEvent) {
+            int previousSize = events.size();
+            ((MergedEvent) entry).addTo(events);
+            emittedCount += events.size() - previousSize;
+          }
+          else {
+            events.add(entry);
+          }
+        }
+        collected.clear();
+        mergeable.clear();
+      }
+      if (events.isEmpty()) {
+        return;
+      }
+      if (downstream instanceof EventBus) {
+        ((EventBus) downstream).publishAll(events);
+      }
+      else if (downstream instanceof BatchEventHandler) {
+        ((BatchEventHandler) downstream).onEvents(events);
+      }
+      else {
+        for (Object event : events) {
+          downstream.onEvent(event);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the number of object events received so far.
+   *
+   * @return The number of object events received so far.
+   */
+  public synchronized long getReceivedCount() {
+    return receivedCount;
+  }
+
+  /**
+   * Returns the number of merged object events passed downstream so far.
+   *
+   * @return The number of merged object events passed downstream so far.
+   */
+  public synchronized long getEmittedCount() {
+    return emittedCount;
+  }
+
+  /**
+   * Collects the given event, if coalescing has not been terminated.
+   *
+   * @param event The event.
+   * @return <code>true</code> if the event was collected.
+   */
+  private synchronized boolean collect(Object event) {
+    if (executor.isShutdown()) {
+      return false;
+    }
+    if (collected.isEmpty()) {
+      executor.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+    }
+    if (!(event instanceof TCSObjectEvent)) {
+      collected.add(event);
+      mergeable.clear();
+      return true;
+    }
+    TCSObjectEvent objectEvent = (TCSObjectEvent) event;
+    receivedCount++;
+    TCSObject<?> object = objectEvent.getCurrentOrPreviousObjectState();
+    ObjectKey key = new ObjectKey(object.getClass(), object.getName());
+    MergedEvent merged = mergeable.get(key);
+    if (merged == null) {
+      merged = new MergedEvent(objectEvent);
+      mergeable.put(key, merged);
+      collected.add(merged);
+    }
+    else {
+      merged.merge(new MergedEvent(objectEvent));
+    }
+    return true;
+  }
+
+  /**
+   * The events collected for an object, merged.
+   */
+  private static class MergedEvent {
+
+    /**
+     * The earliest event's type.
+     */
+    private final TCSObjectEvent.Type firstType;
+    /**
+     * The earliest previous state.
+     */
+    private final TCSObject<?> previousObjectState;
+    /**
+     * The latest event's type.
+     */
+    private TCSObjectEvent.Type lastType;
+    /**
+     * The latest current state.
+     */
+    private TCSObject<?> currentObjectState;
+    /**
+     * The events collected after the object was removed and created again, if any.
+     */
+    private MergedEvent recreated;
+
+    MergedEvent(TCSObjectEvent event) {
+      this.firstType = event.getType();
+      this.previousObjectState = event.getPreviousObjectState();
+      this.lastType = event.getType();
+      this.currentObjectState = event.getCurrentObjectState();
+    }
+
+    MergedEvent merge(MergedEvent later) {
+      if (recreated != null) {
+        recreated.merge(later);
+      }
+      else if (lastType == TCSObjectEvent.Type.OBJECT_REMOVED
+          && later.firstType == TCSObjectEvent.Type.OBJECT_CREATED) {
+        recreated = later;
+      }
+      else {
+        lastType = later.lastType;
+        currentObjectState = later.currentObjectState;
+      }
+      return this;
+    }
+
+    void addTo(List<Object> events) {
+      if (firstType == TCSObjectEvent.Type.OBJECT_CREATED) {
+        if (lastType != TCSObjectEvent.Type.OBJECT_REMOVED) {
+          events.add(new TCSObjectEvent(currentObjectState,
+                                        null,
+                                        TCSObjectEvent.Type.OBJECT_CREATED));
+        }
+      }
+      else if (lastType == TCSObjectEvent.Type.OBJECT_REMOVED) {
+        events.add(new TCSObjectEvent(null,
+                                      previousObjectState,
+                                      TCSObjectEvent.Type.OBJECT_REMOVED));
+      }
+      else {
+        events.add(new TCSObjectEvent(currentObjectState,
+                                      previousObjectState,
+                                      TCSObjectEvent.Type.OBJECT_MODIFIED));
+      }
+      if (recreated != null) {
+        recreated.addTo(events);
+      }
+    }
+  }
+
+  /**
+   * Identifies an object by its class and name.
+   */
+  private static class ObjectKey {
+
+    private final Class<?> objectClass;
+    private final String name;
+
+    ObjectKey(Class<?> objectClass, String name) {
+      this.objectClass = objectClass;
+      this.name = name;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof ObjectKey)) {
+        return false;
+      }
+      ObjectKey other = (ObjectKey) obj;
+      return objectClass == other.objectClass && Objects.equals(name, other.name);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * objectClass.hashCode() + Objects.hashCode(name);
+    }
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.httpclient.v1.order.OrderFanIn;
+import org.httpclient.v1.order.OrderSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link OrderPollingJob}.
+ *
+ * @author zzw
+ */
+class OrderPollingJobTest {
+
+  private final List<String> submitted = new ArrayList<>();
+
+  private OrderSource orderSource;
+
+  private OrderPollingJob job;
+
+  @BeforeEach
+  void setUp() {
+    orderSource = new OrderSource("test",
+                                  "http://localhost:1/",
+                                  Duration.ofSeconds(1),
+                                  Duration.ofSeconds(8),
+                                  1,
+                                  Duration.ofSeconds(1));
+    OrderFanIn orderFanIn = new OrderFanIn((orderName, transport) -> submitted.add(orderName), 8, 100);
+    job = new OrderPollingJob(orderSource, orderFanIn);
+  }
+
+  @AfterEach
+  void tearDown() {
+    orderSource.close();
+  }
+
+  @Test
+  void submitsValidOrders() {
+    assertEquals(2, job.submitOrders("[{\"orderNum\":\"o1\",\"loadingLocation\":\"L1\",\"unloadingLocation\":\"U1\"},"
+        + "{\"orderNum\":\"o2\",\"loadingLocation\":\"L2\",\"unloadingLocation\":\"U2\"}]"));
+    assertEquals(List.of("o1", "o2"), submitted);
+    assertEquals(0, job.getInvalidOrderCount());
+  }
+
+  @Test
+  void skipsInvalidOrdersAndSubmitsTheRest() {
+    assertEquals(2, job.submitOrders("[{\"loadingLocation\":\"L1\",\"unloadingLocation\":\"U1\"},"
+        + "{\"orderNum\":\"o2\",\"unloadingLocation\":\"U2\"},"
+        + "{\"orderNum\":\"o3\",\"loadingLocation\":\" \",\"unloadingLocation\":\"U3\"},"
+        + "{\"orderNum\":\"o4\",\"loadingLocation\":\"L4\",\"unloadingLocation\":\"U4\"},"
+        + "[\"not an order\"],"
+        + "{\"orderNum\":\"o5\",\"loadingLocation\":\"L5\",\"unloadingLocation\":\"U5\"}]"));
+    assertEquals(List.of("o4", "o5"), submitted);
+    assertEquals(4, job.getInvalidOrderCount());
+  }
+
+  @Test
+  void ignoresUnknownProperties() {
+    assertEquals(1, job.submitOrders("{\"orderNum\":\"o1\",\"loadingLocation\":\"L1\","
+        + "\"unloadingLocation\":\"U1\",\"priority\":3}"));
+    assertEquals(List.of("o1"), submitted);
+  }
+
+  @Test
+  void rejectsMalformedResponse() {
+    assertEquals(-1, job.submitOrders("[{\"orderNum\":"));
+    assertEquals(List.of(), submitted);
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.httpclient.v1.status.RequestStatusHandler;
+import org.httpclient.v1.status.ResponseSource;
+import org.httpclient.v1.status.StatusEventDispatcher;
+import org.httpclient.v1.status.binding.StatusMessage;
+import org.httpclient.v1.status.binding.VehicleState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link StatusPollingJob}.
+ *
+ * @author zzw
+ */
+class StatusPollingJobTest {
+
+  private final StubResponseSource responseSource = new StubResponseSource();
+
+  private final BlockingQueue<Object> dispatched = new LinkedBlockingQueue<>();
+
+  private StatusEventDispatcher dispatcher;
+
+  private StatusPollingJob job;
+
+  @BeforeEach
+  void setUp() {
+    dispatcher = new StatusEventDispatcher(1024, StatusEventDispatcher.WaitStrategy.YIELD);
+    dispatcher.addConsumer("test", (event, sequence, endOfBatch) -> dispatched.add(event));
+    dispatcher.start();
+    job = new StatusPollingJob(new RequestStatusHandler(responseSource, Duration.ZERO), dispatcher);
+  }
+
+  @AfterEach
+  void tearDown() {
+    dispatcher.terminate();
+  }
+
+  @Test
+  void takesSnapshotAtStartup()
+      throws Exception {
+    responseSource.events = events(3, 4, 5);
+    responseSource.vehicles = "[{\"name\":\"Vehicle-01\"}]";
+
+    job.execute();
+
+    assertEquals(List.of("/events?minSequenceNo=0&timeout=0", "/vehicles", "/transportOrders"),
+                 responseSource.paths);
+    assertEquals(5, job.getLastSequenceNumber());
+    assertEquals(1, job.getSnapshotCount());
+    assertEquals("Vehicle-01", ((VehicleState) nextDispatched()).getName());
+  }
+
+  @Test
+  void dispatchesNewMessagesIncrementally()
+      throws Exception {
+    responseSource.events = events(5);
+    job.execute();
+    responseSource.paths.clear();
+
+    responseSource.events = events(6, 7);
+    job.execute();
+
+    assertEquals(List.of("/events?minSequenceNo=6&timeout=0"), responseSource.paths);
+    assertEquals(6, ((StatusMessage) nextDispatched()).getSequenceNumber());
+    assertEquals(7, ((StatusMessage) nextDispatched()).getSequenceNumber());
+    assertEquals(7, job.getLastSequenceNumber());
+    assertEquals(1, job.getSnapshotCount());
+    assertFalse(job.isGapDetected());
+  }
+
+  @Test
+  void resyncsAfterGapWithoutRequestingAllMessages()
+      throws Exception {
+    responseSource.events = events(5);
+    job.execute();
+    responseSource.paths.clear();
+
+    // Message 7 is missing, so 8 and 9 must not be dispatched before the snapshot.
+    responseSource.events = events(6, 8, 9);
+    responseSource.vehicles = "[{\"name\":\"Vehicle-01\"}]";
+    job.execute();
+
+    assertTrue(job.isGapDetected());
+    assertEquals(List.of("/events?minSequenceNo=6&timeout=0", "/vehicles", "/transportOrders"),
+                 responseSource.paths);
+    assertEquals(6, ((StatusMessage) nextDispatched()).getSequenceNumber());
+    assertEquals("Vehicle-01", ((VehicleState) nextDispatched()).getName());
+    assertEquals(9, job.getLastSequenceNumber());
+    assertEquals(2, job.getSnapshotCount());
+  }
+
+  @Test
+  void resyncsAfterFailureFromLastKnownSequenceNumber()
+      throws Exception {
+    responseSource.events = events(5);
+    job.execute();
+    responseSource.paths.clear();
+
+    responseSource.failing = true;
+    assertThrows(IOException.class, job::execute);
+    responseSource.failing = false;
+    responseSource.paths.clear();
+
+    responseSource.events = events(6, 7);
+    job.execute();
+
+    assertEquals(List.of("/events?minSequenceNo=6&timeout=0", "/vehicles", "/transportOrders"),
+                 responseSource.paths);
+    assertEquals(7, job.getLastSequenceNumber());
+    assertEquals(2, job.getSnapshotCount());
+  }
+
+  @Test
+  void requestsAllMessagesIfNoneNewerAfterFailure()
+      throws Exception {
+    responseSource.events = events(5);
+    job.execute();
+
+    responseSource.failing = true;
+    assertThrows(IOException.class, job::execute);
+    responseSource.failing = false;
+    responseSource.paths.clear();
+
+    // The kernel was restarted, resetting its sequence numbers.
+    responseSource.events = events(1, 2);
+    job.execute();
+
+    assertEquals(List.of("/events?minSequenceNo=6&timeout=0",
+                         "/events?minSequenceNo=0&timeout=0",
+                         "/vehicles",
+                         "/transportOrders"),
+                 responseSource.paths);
+    assertEquals(2, job.getLastSequenceNumber());
+  }
+
+  private Object nextDispatched()
+      throws InterruptedException {
+    Object event = dispatched.poll(5, TimeUnit.SECONDS);
+    assertNotNull(event);
+    return event;
+  }
+
+  private static List<Long> events(long... sequenceNumbers) {
+    List<Long> result = new ArrayList<>();
+    for (long sequenceNumber : sequenceNumbers) {
+      result.add(sequenceNumber);
+    }
+    return result;
+  }
+
+  /**
+   * Provides canned responses, filtering the status messages by the requested sequence number.
+   */
+  private static class StubResponseSource
+      implements ResponseSource {
+
+    private final List<String> paths = new ArrayList<>();
+
+    private List<Long> events = List.of();
+
+    private String vehicles = "[]";
+
+    private volatile boolean failing;
+
+    @Override
+    public InputStream open(String path)
+        throws IOException {
+      if (failing) {
+        throw new IOException("Kernel not reachable");
+      }
+      paths.add(path);
+      if (path.startsWith("/events")) {
+        long minSequenceNumber = Long.parseLong(path.replaceAll(".*minSequenceNo=(\\d+).*", "$1"));
+        StringBuilder response = new StringBuilder("{\"statusMessages\":[");
+        String separator = "";
+        for (long sequenceNumber : events) {
+          if (sequenceNumber >= minSequenceNumber) {
+            response.append(separator)
+                .append("{\"type\":\"Vehicle\",\"sequenceNumber\":").append(sequenceNumber)
+                .append(",\"vehicleName\":\"Vehicle-01\",\"state\":\"IDLE\",\"procState\":\"IDLE\"}");
+            separator = ",";
+          }
+        }
+        return toStream(response.append("]}").toString());
+      }
+      if (path.equals("/vehicles")) {
+        return toStream(vehicles);
+      }
+      return toStream("[]");
+    }
+
+    private static InputStream toStream(String content) {
+      return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+}
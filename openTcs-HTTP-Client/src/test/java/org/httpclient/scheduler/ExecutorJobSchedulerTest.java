@@ -0,0 +1,85 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.scheduler;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link ExecutorJobScheduler}.
+ *
+ * @author zzw
+ */
+class ExecutorJobSchedulerTest {
+
+  private ExecutorJobScheduler scheduler;
+
+  @BeforeEach
+  void setUp() {
+    scheduler = new ExecutorJobScheduler(2);
+  }
+
+  @AfterEach
+  void tearDown() {
+    scheduler.shutdown();
+  }
+
+  @Test
+  void reschedulesJobAfterException() throws InterruptedException {
+    CountDownLatch executions = new CountDownLatch(3);
+    scheduler.schedule("failing", () -> {
+      executions.countDown();
+      throw new IllegalStateException("Expected failure");
+    }, new JobSchedule(Duration.ofMillis(10)));
+    scheduler.start();
+
+    assertTrue(executions.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void reschedulesJobAfterError() throws InterruptedException {
+    CountDownLatch executions = new CountDownLatch(3);
+    scheduler.schedule("failing", () -> {
+      executions.countDown();
+      throw new AssertionError("Expected failure");
+    }, new JobSchedule(Duration.ofMillis(10)));
+    scheduler.start();
+
+    assertTrue(executions.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void namesThreadsDistinctly() throws InterruptedException {
+    Set<String> threadNames = ConcurrentHashMap.newKeySet();
+    CountDownLatch executions = new CountDownLatch(2);
+    CountDownLatch release = new CountDownLatch(1);
+    PeriodicJob blockingJob = () -> {
+      threadNames.add(Thread.currentThread().getName());
+      executions.countDown();
+      try {
+        release.await(5, TimeUnit.SECONDS);
+      }
+      catch (InterruptedException exc) {
+        Thread.currentThread().interrupt();
+      }
+    };
+    scheduler.schedule("first", blockingJob, new JobSchedule(Duration.ofSeconds(1)));
+    scheduler.schedule("second", blockingJob, new JobSchedule(Duration.ofSeconds(1)));
+    scheduler.start();
+
+    assertTrue(executions.await(5, TimeUnit.SECONDS));
+    release.countDown();
+    assertEquals(Set.of("job-scheduler-1", "job-scheduler-2"), threadNames);
+  }
+}
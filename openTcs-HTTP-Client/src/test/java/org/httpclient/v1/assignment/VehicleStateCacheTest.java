@@ -0,0 +1,114 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.assignment;
+
+import java.time.Instant;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.httpclient.v1.status.binding.OrderStatusMessage;
+import org.httpclient.v1.status.binding.TransportOrderState;
+import org.httpclient.v1.status.binding.VehicleStatusMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openTcs.data.model.Vehicle;
+import org.openTcs.data.order.TransportOrder;
+
+/**
+ * Tests for {@link VehicleStateCache}.
+ *
+ * @author zzw
+ */
+class VehicleStateCacheTest {
+
+  private VehicleStateCache cache;
+
+  @BeforeEach
+  void setUp() {
+    cache = new VehicleStateCache();
+    cache.onEvent(idleMessage("Vehicle-01"));
+  }
+
+  @Test
+  void reservationSurvivesStatusUpdates() {
+    cache.markAssigned("Vehicle-01", "TOrder-1");
+
+    // The vehicle is still reported idle before the order reaches it.
+    cache.onEvent(idleMessage("Vehicle-01"));
+
+    assertEquals("TOrder-1", cache.getVehicle("Vehicle-01").getTransportOrder());
+    assertFalse(cache.getVehicle("Vehicle-01").isAvailable());
+    assertFalse(cache.getVehicles().iterator().next().isAvailable());
+  }
+
+  @Test
+  void rejectedSubmissionEndsReservation() {
+    cache.markAssigned("Vehicle-01", "TOrder-1");
+
+    cache.onSubmitted("TOrder-1", true);
+    assertFalse(cache.getVehicle("Vehicle-01").isAvailable());
+    cache.onSubmitted("TOrder-1", false);
+
+    assertTrue(cache.getVehicle("Vehicle-01").isAvailable());
+    assertNull(cache.getReservedVehicle("TOrder-1"));
+  }
+
+  @Test
+  void processingEndsReservation() {
+    cache.markAssigned("Vehicle-01", "TOrder-1");
+    VehicleStatusMessage processing = idleMessage("Vehicle-01");
+    processing.setTransportOrderName("TOrder-1");
+    processing.setProcState(Vehicle.ProcState.PROCESSING_ORDER);
+
+    cache.onEvent(processing);
+    assertNull(cache.getReservedVehicle("TOrder-1"));
+    cache.onEvent(idleMessage("Vehicle-01"));
+
+    assertTrue(cache.getVehicle("Vehicle-01").isAvailable());
+  }
+
+  @Test
+  void finishedOrderEndsReservation() {
+    cache.markAssigned("Vehicle-01", "TOrder-1");
+    cache.markAssigned("Vehicle-01", "TOrder-2");
+    OrderStatusMessage finished = new OrderStatusMessage();
+    finished.setOrderName("TOrder-1");
+    finished.setOrderState(OrderStatusMessage.OrderState.FINISHED);
+
+    cache.onEvent(finished);
+    assertFalse(cache.getVehicle("Vehicle-01").isAvailable());
+    TransportOrderState failed
+        = TransportOrderState.fromTransportOrder(new TransportOrder("TOrder-2", List.of()));
+    failed.setState(TransportOrder.State.FAILED);
+    cache.onEvent(failed);
+
+    assertTrue(cache.getVehicle("Vehicle-01").isAvailable());
+  }
+
+  @Test
+  void reassignmentMovesReservation() {
+    cache.onEvent(idleMessage("Vehicle-02"));
+    cache.markAssigned("Vehicle-01", "TOrder-1");
+
+    cache.markAssigned("Vehicle-02", "TOrder-1");
+
+    assertTrue(cache.getVehicle("Vehicle-01").isAvailable());
+    assertFalse(cache.getVehicle("Vehicle-02").isAvailable());
+    assertEquals("Vehicle-02", cache.getReservedVehicle("TOrder-1"));
+  }
+
+  private static VehicleStatusMessage idleMessage(String vehicleName) {
+    VehicleStatusMessage message = new VehicleStatusMessage();
+    message.setCreationTimeStamp(Instant.EPOCH);
+    message.setVehicleName(vehicleName);
+    message.setPosition("Point-0001");
+    message.setState(Vehicle.State.IDLE);
+    message.setProcState(Vehicle.ProcState.IDLE);
+    return message;
+  }
+}
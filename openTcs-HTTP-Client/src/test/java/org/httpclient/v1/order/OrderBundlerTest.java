@@ -0,0 +1,168 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.order;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.httpclient.v1.assignment.VehicleStateCache;
+import org.httpclient.v1.order.binding.Destination;
+import org.httpclient.v1.order.binding.Transport;
+import org.httpclient.v1.status.binding.VehicleStatusMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openTcs.data.model.Vehicle;
+
+/**
+ * Tests for {@link OrderBundler}.
+ *
+ * @author zzw
+ */
+class OrderBundlerTest {
+
+  /**
+   * The estimated travel time between any two points/locations (in ms).
+   */
+  private static final long TRAVEL_TIME = 1000;
+
+  private final BlockingQueue<String> passedOn = new LinkedBlockingQueue<>();
+
+  private final List<Transport> transports = new ArrayList<>();
+
+  private VehicleStateCache vehicleStateCache;
+
+  private VehicleWorkload vehicleWorkload;
+
+  private DeadlineEstimator deadlineEstimator;
+
+  private OrderBundler bundler;
+
+  @BeforeEach
+  void setUp() {
+    vehicleStateCache = new VehicleStateCache();
+    vehicleStateCache.update(idleMessage("Vehicle-01"));
+    vehicleStateCache.update(idleMessage("Vehicle-02"));
+    vehicleWorkload = new VehicleWorkload();
+    deadlineEstimator = new DeadlineEstimator((source, destination) -> OptionalLong.of(TRAVEL_TIME),
+                                              vehicleStateCache,
+                                              vehicleWorkload,
+                                              1.5,
+                                              Duration.ofMinutes(5),
+                                              Duration.ofHours(2));
+    bundler = new OrderBundler((orderName, transport) -> {
+      transports.add(transport);
+      passedOn.add(orderName);
+    },
+                               (source, destination) -> OptionalLong.of(TRAVEL_TIME),
+                               vehicleStateCache,
+                               deadlineEstimator,
+                               Duration.ofMillis(20),
+                               Duration.ofSeconds(30),
+                               4);
+  }
+
+  @AfterEach
+  void tearDown() {
+    bundler.terminate();
+  }
+
+  @Test
+  void chainingMovesReservationAndWorkload()
+      throws InterruptedException {
+    submitAssigned("TOrder-1", "Vehicle-01");
+    Transport successor = submitAssigned("TOrder-2", "Vehicle-02");
+    assertTrue(vehicleWorkload.getQueuedWork("Vehicle-02") > 0);
+
+    assertEquals("TOrder-1", passedOn.poll(10, TimeUnit.SECONDS));
+
+    assertEquals("Vehicle-01", successor.getIntendedVehicle());
+    assertEquals(List.of("TOrder-1"), successor.getDependencies());
+    assertEquals("Vehicle-01", vehicleStateCache.getReservedVehicle("TOrder-2"));
+    assertTrue(vehicleStateCache.getVehicle("Vehicle-02").isAvailable());
+    assertEquals(0, vehicleWorkload.getQueuedWork("Vehicle-02"));
+    assertTrue(vehicleWorkload.getQueuedWork("Vehicle-01") > 0);
+    assertEquals(1, bundler.getChainedOrderCount());
+  }
+
+  @Test
+  void successorKeepsChainVehicleReservedAfterPredecessorStarts()
+      throws InterruptedException {
+    submitAssigned("TOrder-1", "Vehicle-01");
+    submitAssigned("TOrder-2", "Vehicle-02");
+    assertEquals("TOrder-1", passedOn.poll(10, TimeUnit.SECONDS));
+
+    bundler.onSubmitted("TOrder-1", true);
+    assertEquals("TOrder-2", passedOn.poll(10, TimeUnit.SECONDS));
+    VehicleStatusMessage processing = idleMessage("Vehicle-01");
+    processing.setTransportOrderName("TOrder-1");
+    processing.setProcState(Vehicle.ProcState.PROCESSING_ORDER);
+    vehicleStateCache.update(processing);
+    vehicleStateCache.update(idleMessage("Vehicle-01"));
+
+    assertNull(vehicleStateCache.getReservedVehicle("TOrder-1"));
+    assertEquals("Vehicle-01", vehicleStateCache.getReservedVehicle("TOrder-2"));
+    assertEquals("TOrder-2", vehicleStateCache.getVehicle("Vehicle-01").getTransportOrder());
+  }
+
+  @Test
+  void ordersWithoutVehicleAreNotChained()
+      throws InterruptedException {
+    bundler.submit("TOrder-1", transport(null));
+    bundler.submit("TOrder-2", transport(null));
+
+    assertNotNull(passedOn.poll(10, TimeUnit.SECONDS));
+    assertNotNull(passedOn.poll(10, TimeUnit.SECONDS));
+    assertEquals(0, bundler.getChainedOrderCount());
+  }
+
+  private Transport submitAssigned(String orderName, String vehicleName) {
+    vehicleStateCache.markAssigned(vehicleName, orderName);
+    Instant deadline = deadlineEstimator.estimateDeadline(orderName,
+                                                          "Location-1",
+                                                          "Location-2",
+                                                          vehicleName);
+    Transport transport = transport(vehicleName);
+    transport.setDeadline(deadline);
+    bundler.submit(orderName, transport);
+    return transport;
+  }
+
+  private static Transport transport(String vehicleName) {
+    Transport transport = new Transport();
+    transport.setIntendedVehicle(vehicleName);
+    List<Destination> destinations = new ArrayList<>();
+    destinations.add(destination("Location-1"));
+    destinations.add(destination("Location-2"));
+    transport.setDestinations(destinations);
+    return transport;
+  }
+
+  private static Destination destination(String locationName) {
+    Destination destination = new Destination();
+    destination.setLocationName(locationName);
+    return destination;
+  }
+
+  private static VehicleStatusMessage idleMessage(String vehicleName) {
+    VehicleStatusMessage message = new VehicleStatusMessage();
+    message.setCreationTimeStamp(Instant.EPOCH);
+    message.setVehicleName(vehicleName);
+    message.setPosition("Point-0001");
+    message.setState(Vehicle.State.IDLE);
+    message.setProcState(Vehicle.ProcState.IDLE);
+    return message;
+  }
+}
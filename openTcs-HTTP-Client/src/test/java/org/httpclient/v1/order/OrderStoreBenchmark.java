@@ -0,0 +1,147 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.order;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Random;
+import org.httpclient.v1.order.binding.Transport;
+import org.httpclient.v1.status.binding.OrderStatusMessage;
+import org.httpclient.v1.status.binding.TransportOrderState;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.openTcs.data.order.TransportOrder;
+
+/**
+ * Measures storing, updating and querying a million transport orders.
+ * Run with <code>mvn test -Pbenchmark</code>.
+ *
+ * @author zzw
+ */
+class OrderStoreBenchmark {
+
+  /**
+   * The number of orders stored.
+   */
+  private static final int ORDER_COUNT = 1_000_000;
+  /**
+   * The number of vehicles orders are intended for.
+   */
+  private static final int VEHICLE_COUNT = 200;
+  /**
+   * The number of order types.
+   */
+  private static final int TYPE_COUNT = 10;
+  /**
+   * The number of queries of each kind measured.
+   */
+  private static final int QUERY_COUNT = 2_000;
+  /**
+   * The deadline of the first order; one order's deadline follows each second.
+   */
+  private static final Instant DEADLINE_BASE = Instant.parse("2024-01-01T00:00:00Z");
+
+  @Test
+  void queryMillionOrders() {
+    Random random = new Random(42);
+    OrderStore store = new OrderStore((orderName, transport) -> {
+    }, 100_000);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < ORDER_COUNT; i++) {
+      Transport transport = new Transport();
+      transport.setIntendedVehicle("Vehicle-" + random.nextInt(VEHICLE_COUNT));
+      transport.setDeadline(DEADLINE_BASE.plusSeconds(i));
+      store.submit("TOrder-" + i, transport);
+    }
+    long submitNanos = System.nanoTime() - start;
+
+    // The kernel reports all orders' types, then most orders as dispatchable.
+    start = System.nanoTime();
+    for (int i = 0; i < ORDER_COUNT; i++) {
+      TransportOrderState orderState
+          = TransportOrderState.fromTransportOrder(new TransportOrder("TOrder-" + i, List.of()));
+      orderState.setType("Type-" + (i % TYPE_COUNT));
+      orderState.setIntendedVehicle(store.getOrder("TOrder-" + i).getIntendedVehicle());
+      orderState.setState(TransportOrder.State.ACTIVE);
+      store.onEvent(orderState, i, true);
+    }
+    for (int i = 0; i < ORDER_COUNT; i += 2) {
+      store.onEvent(orderMessage("TOrder-" + i, OrderStatusMessage.OrderState.DISPATCHABLE),
+                    i,
+                    true);
+    }
+    long updateNanos = System.nanoTime() - start;
+    assertEquals(ORDER_COUNT, store.size());
+
+    // Warm up the JIT, then measure.
+    runQueries(store, random, QUERY_COUNT / 10);
+    double[] micros = runQueries(store, random, QUERY_COUNT);
+
+    System.out.printf("OrderStore: %d orders submitted in %d ms, %d updates in %d ms; per query: "
+        + "vehicle+state %.1f us, 1 minute deadline range+vehicle %.1f us, type+state %.1f us "
+        + "(full scan of the smallest bucket)%n",
+                      ORDER_COUNT,
+                      submitNanos / 1_000_000,
+                      ORDER_COUNT * 3 / 2,
+                      updateNanos / 1_000_000,
+                      micros[0],
+                      micros[1],
+                      micros[2]);
+    // An index bucket of about 5,000 orders, or a deadline range of 60 orders, is scanned instead
+    // of a million orders, which takes several hundred milliseconds.
+    assertTrue(micros[0] < 10_000, "Vehicle query took " + micros[0] + " us");
+    assertTrue(micros[1] < 1_000, "Deadline range query took " + micros[1] + " us");
+  }
+
+  /**
+   * Runs queries of each kind.
+   *
+   * @return The mean time per query of each kind (in us).
+   */
+  private static double[] runQueries(OrderStore store, Random random, int count) {
+    double[] micros = new double[3];
+    long matched = 0;
+
+    long start = System.nanoTime();
+    for (int i = 0; i < count; i++) {
+      matched += store.select(new OrderQuery()
+          .withState(TransportOrder.State.DISPATCHABLE)
+          .withIntendedVehicle("Vehicle-" + random.nextInt(VEHICLE_COUNT))).size();
+    }
+    micros[0] = (System.nanoTime() - start) / 1000.0 / count;
+
+    start = System.nanoTime();
+    for (int i = 0; i < count; i++) {
+      Instant from = DEADLINE_BASE.plusSeconds(random.nextInt(ORDER_COUNT - 60));
+      matched += store.select(new OrderQuery()
+          .withIntendedVehicle("Vehicle-" + random.nextInt(VEHICLE_COUNT))
+          .withDeadlineRange(from, from.plus(Duration.ofMinutes(1)))).size();
+    }
+    micros[1] = (System.nanoTime() - start) / 1000.0 / count;
+
+    start = System.nanoTime();
+    for (int i = 0; i < count / 100; i++) {
+      matched += store.select(new OrderQuery()
+          .withState(TransportOrder.State.ACTIVE)
+          .withType("Type-" + random.nextInt(TYPE_COUNT))).size();
+    }
+    micros[2] = (System.nanoTime() - start) / 1000.0 / (count / 100);
+
+    assertTrue(matched > 0);
+    return micros;
+  }
+
+  private static OrderStatusMessage orderMessage(String orderName,
+                                                 OrderStatusMessage.OrderState orderState) {
+    OrderStatusMessage message = new OrderStatusMessage();
+    message.setOrderName(orderName);
+    message.setOrderState(orderState);
+    return message;
+  }
+}
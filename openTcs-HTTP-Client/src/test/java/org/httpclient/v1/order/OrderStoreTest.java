@@ -0,0 +1,236 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.order;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.httpclient.v1.order.OrderStore.StoredOrder;
+import org.httpclient.v1.order.binding.Transport;
+import org.httpclient.v1.status.binding.OrderStatusMessage;
+import org.httpclient.v1.status.binding.TransportOrderState;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openTcs.data.order.TransportOrder;
+
+/**
+ * Tests for {@link OrderStore}.
+ *
+ * @author zzw
+ */
+class OrderStoreTest {
+
+  private static final Instant DEADLINE_BASE = Instant.parse("2024-01-01T00:00:00Z");
+
+  private final List<String> submitted = new ArrayList<>();
+
+  private OrderStore store;
+
+  @BeforeEach
+  void setUp() {
+    store = new OrderStore((orderName, transport) -> submitted.add(orderName), 3);
+  }
+
+  @Test
+  void passesOrdersDownstreamAndStoresThem() {
+    store.submit("TOrder-1", transport("Vehicle-01", DEADLINE_BASE));
+
+    assertEquals(List.of("TOrder-1"), submitted);
+    StoredOrder order = store.getOrder("TOrder-1");
+    assertEquals(TransportOrder.State.RAW, order.getState());
+    assertEquals("Vehicle-01", order.getIntendedVehicle());
+    assertEquals(DEADLINE_BASE, order.getDeadline());
+  }
+
+  @Test
+  void rejectedSubmissionRemovesOrder() {
+    store.submit("TOrder-1", transport(null, null));
+
+    store.onSubmitted("TOrder-1", false);
+
+    assertNull(store.getOrder("TOrder-1"));
+  }
+
+  @Test
+  void statusMessageKeepsDeadline() {
+    store.submit("TOrder-1", transport("Vehicle-01", DEADLINE_BASE));
+
+    store.onEvent(orderMessage("TOrder-1", OrderStatusMessage.OrderState.BEING_PROCESSED), 0, true);
+
+    StoredOrder order = store.getOrder("TOrder-1");
+    assertEquals(TransportOrder.State.BEING_PROCESSED, order.getState());
+    assertEquals("Vehicle-01", order.getProcessingVehicle());
+    assertEquals(DEADLINE_BASE, order.getDeadline());
+  }
+
+  @Test
+  void retainsFinalOrdersUpToMaximum() {
+    for (int i = 0; i < 5; i++) {
+      store.submit("TOrder-" + i, transport(null, null));
+      store.onEvent(orderMessage("TOrder-" + i, OrderStatusMessage.OrderState.FINISHED), i, true);
+    }
+
+    assertEquals(3, store.size());
+    assertNull(store.getOrder("TOrder-1"));
+    assertNotNull(store.getOrder("TOrder-2"));
+  }
+
+  @Test
+  void dropsUnknownFinalOrders() {
+    for (int i = 0; i < 3; i++) {
+      store.submit("TOrder-" + i, transport(null, null));
+      store.onEvent(orderMessage("TOrder-" + i, OrderStatusMessage.OrderState.FINISHED), i, true);
+    }
+
+    // A snapshot after a resync reports many orders that finished long ago.
+    for (int i = 0; i < 100; i++) {
+      store.onEvent(orderState("Old-" + i, TransportOrder.State.FINISHED, null), i, true);
+    }
+    store.onEvent(orderMessage("Old-100", OrderStatusMessage.OrderState.FAILED), 100, true);
+
+    assertEquals(3, store.size());
+    assertNotNull(store.getOrder("TOrder-0"));
+    assertEquals(101, store.getDroppedFinalOrderCount());
+  }
+
+  @Test
+  void storesUnknownActiveOrders() {
+    store.onEvent(orderState("TOrder-1", TransportOrder.State.DISPATCHABLE, "Transport"), 0, true);
+    store.onEvent(orderState("TOrder-1", TransportOrder.State.FINISHED, "Transport"), 1, true);
+
+    assertEquals(TransportOrder.State.FINISHED, store.getOrder("TOrder-1").getState());
+    assertEquals(0, store.getDroppedFinalOrderCount());
+  }
+
+  @Test
+  void scansSmallestIndexBucket() {
+    store = new OrderStore((orderName, transport) -> {
+    }, 1000);
+    for (int i = 0; i < 100; i++) {
+      store.submit("TOrder-" + i, transport("Vehicle-" + (i % 10), null));
+    }
+    for (int i = 0; i < 50; i++) {
+      TransportOrderState orderState = orderState("TOrder-" + i,
+                                                  TransportOrder.State.DISPATCHABLE,
+                                                  i < 5 ? "Charge" : "Transport");
+      orderState.setIntendedVehicle("Vehicle-" + (i % 10));
+      store.onEvent(orderState, i, true);
+    }
+
+    OrderQuery byVehicle = new OrderQuery()
+        .withState(TransportOrder.State.RAW)
+        .withIntendedVehicle("Vehicle-3");
+    OrderQuery byType = new OrderQuery()
+        .withState(TransportOrder.State.DISPATCHABLE)
+        .withIntendedVehicle("Vehicle-3")
+        .withType("Charge");
+
+    assertEquals(10, store.plannedScanSize(byVehicle));
+    assertEquals(5, store.select(byVehicle).size());
+    assertEquals(5, store.plannedScanSize(byType));
+    assertEquals(List.of("TOrder-3"), names(store.select(byType)));
+    assertEquals(100, store.plannedScanSize(new OrderQuery()));
+  }
+
+  @Test
+  void scansDeadlineRangeIfSmaller() {
+    store = new OrderStore((orderName, transport) -> {
+    }, 1000);
+    // One order per minute, half of them for the same vehicle.
+    for (int i = 0; i < 100; i++) {
+      store.submit("TOrder-" + i,
+                   transport(i % 2 == 0 ? "Vehicle-01" : "Vehicle-" + i, deadline(i)));
+    }
+
+    OrderQuery narrowRange = new OrderQuery()
+        .withIntendedVehicle("Vehicle-01")
+        .withDeadlineRange(deadline(10), deadline(20));
+    OrderQuery wideRange = new OrderQuery()
+        .withIntendedVehicle("Vehicle-01")
+        .withDeadlineRange(deadline(0), deadline(90));
+
+    assertEquals(10, store.plannedScanSize(narrowRange));
+    assertEquals(5, store.select(narrowRange).size());
+    assertEquals(50, store.plannedScanSize(wideRange));
+    assertEquals(45, store.select(wideRange).size());
+  }
+
+  @Test
+  void scansOpenDeadlineRanges() {
+    store = new OrderStore((orderName, transport) -> {
+    }, 1000);
+    for (int i = 0; i < 100; i++) {
+      store.submit("TOrder-" + i, transport(null, i < 90 ? deadline(i) : null));
+    }
+
+    OrderQuery from = new OrderQuery().withDeadlineRange(deadline(80), null);
+    OrderQuery to = new OrderQuery().withDeadlineRange(null, deadline(3));
+
+    assertEquals(10, store.plannedScanSize(from));
+    assertEquals(10, store.select(from).size());
+    assertEquals(3, store.plannedScanSize(to));
+    assertEquals(List.of("TOrder-0", "TOrder-1", "TOrder-2"), sortedNames(store.select(to)));
+  }
+
+  @Test
+  void indexesFollowUpdates() {
+    store.submit("TOrder-1", transport("Vehicle-01", null));
+    store.onEvent(orderMessage("TOrder-1", OrderStatusMessage.OrderState.BEING_PROCESSED), 0, true);
+
+    assertTrue(store.select(new OrderQuery().withState(TransportOrder.State.RAW)).isEmpty());
+    assertEquals(List.of("TOrder-1"),
+                 names(store.select(new OrderQuery().withProcessingVehicle("Vehicle-01"))));
+  }
+
+  private static Instant deadline(int minutes) {
+    return DEADLINE_BASE.plus(Duration.ofMinutes(minutes));
+  }
+
+  private static Transport transport(String intendedVehicle, Instant deadline) {
+    Transport transport = new Transport();
+    transport.setIntendedVehicle(intendedVehicle);
+    transport.setDeadline(deadline);
+    return transport;
+  }
+
+  private static OrderStatusMessage orderMessage(String orderName,
+                                                 OrderStatusMessage.OrderState orderState) {
+    OrderStatusMessage message = new OrderStatusMessage();
+    message.setOrderName(orderName);
+    message.setOrderState(orderState);
+    message.setProcessingVehicleName("Vehicle-01");
+    return message;
+  }
+
+  private static TransportOrderState orderState(String orderName,
+                                                TransportOrder.State state,
+                                                String type) {
+    TransportOrderState orderState
+        = TransportOrderState.fromTransportOrder(new TransportOrder(orderName, List.of()));
+    orderState.setState(state);
+    orderState.setType(type);
+    return orderState;
+  }
+
+  private static List<String> names(List<StoredOrder> orders) {
+    List<String> result = new ArrayList<>();
+    for (StoredOrder order : orders) {
+      result.add(order.getName());
+    }
+    return result;
+  }
+
+  private static List<String> sortedNames(List<StoredOrder> orders) {
+    List<String> result = names(orders);
+    result.sort(null);
+    return result;
+  }
+}
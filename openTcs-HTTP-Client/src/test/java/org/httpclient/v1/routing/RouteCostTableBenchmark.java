@@ -0,0 +1,151 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.routing;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.httpclient.v1.assignment.VehicleStateCache;
+import org.httpclient.v1.order.DeadlineEstimator;
+import org.httpclient.v1.order.VehicleWorkload;
+import org.httpclient.v1.status.binding.VehicleStatusMessage;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.openTcs.data.model.Triple;
+
+/**
+ * Measures travel time and deadline estimation on a large layout.
+ * Run with <code>mvn test -Pbenchmark</code>.
+ *
+ * @author zzw
+ */
+class RouteCostTableBenchmark {
+
+  /**
+   * The number of points along each side of the grid layout.
+   */
+  private static final int GRID_SIZE = 200;
+  /**
+   * The number of locations in the layout.
+   */
+  private static final int LOCATION_COUNT = 200;
+  /**
+   * The number of vehicles, moving around between estimations.
+   */
+  private static final int VEHICLE_COUNT = 100;
+  /**
+   * The number of estimations measured.
+   */
+  private static final int ESTIMATION_COUNT = 200_000;
+
+  @Test
+  void estimateOnLargeLayout() {
+    Random random = new Random(42);
+    PlantModel plantModel = createGridLayout(random);
+    RouteCostTable table = new RouteCostTable(plantModel, 64L * 1024 * 1024);
+
+    long start = System.nanoTime();
+    int precomputed = table.precompute(plantModel.getLocationNames());
+    long warmUpNanos = System.nanoTime() - start;
+    assertEquals(LOCATION_COUNT, precomputed);
+
+    VehicleStateCache vehicleStateCache = new VehicleStateCache();
+    VehicleWorkload vehicleWorkload = new VehicleWorkload();
+    DeadlineEstimator deadlineEstimator = new DeadlineEstimator(table,
+                                                                vehicleStateCache,
+                                                                vehicleWorkload,
+                                                                1.5,
+                                                                Duration.ofMinutes(5),
+                                                                Duration.ofHours(2));
+    List<String> locations = new ArrayList<>(plantModel.getLocationNames());
+
+    // Warm up the JIT, then measure with vehicles at new positions for every estimation.
+    runEstimations(plantModel,
+                   vehicleStateCache,
+                   vehicleWorkload,
+                   deadlineEstimator,
+                   locations,
+                   random,
+                   20_000);
+    start = System.nanoTime();
+    runEstimations(plantModel,
+                   vehicleStateCache,
+                   vehicleWorkload,
+                   deadlineEstimator,
+                   locations,
+                   random,
+                   ESTIMATION_COUNT);
+    long estimationNanos = System.nanoTime() - start;
+
+    double microsPerEstimation = estimationNanos / 1000.0 / ESTIMATION_COUNT;
+    System.out.printf("RouteCostTable: %d points, %d locations precomputed in %d ms (%.1f ms per "
+        + "location), %.2f us per deadline estimation with a moving vehicle%n",
+                      plantModel.getPointCount(),
+                      precomputed,
+                      warmUpNanos / 1_000_000,
+                      warmUpNanos / 1_000_000.0 / precomputed,
+                      microsPerEstimation);
+    assertTrue(microsPerEstimation < 20, "Estimation took " + microsPerEstimation + " us");
+  }
+
+  private static void runEstimations(PlantModel plantModel,
+                                     VehicleStateCache vehicleStateCache,
+                                     VehicleWorkload vehicleWorkload,
+                                     DeadlineEstimator deadlineEstimator,
+                                     List<String> locations,
+                                     Random random,
+                                     int count) {
+    for (int i = 0; i < count; i++) {
+      String vehicleName = "Vehicle-" + (i % VEHICLE_COUNT);
+      VehicleStatusMessage message = new VehicleStatusMessage();
+      message.setVehicleName(vehicleName);
+      message.setPosition(plantModel.getPointName(random.nextInt(plantModel.getPointCount())));
+      vehicleStateCache.update(message);
+      deadlineEstimator.estimateDeadline("Order-" + i,
+                                         locations.get(random.nextInt(locations.size())),
+                                         locations.get(random.nextInt(locations.size())),
+                                         vehicleName);
+      // Keep each vehicle's queue at a few orders, as if they were being processed.
+      if (i >= VEHICLE_COUNT * 4) {
+        vehicleWorkload.remove("Order-" + (i - VEHICLE_COUNT * 4));
+      }
+    }
+  }
+
+  /**
+   * Creates a grid of points connected by paths in both directions, with locations linked to
+   * random points.
+   */
+  private static PlantModel createGridLayout(Random random) {
+    PlantModel.Builder builder = new PlantModel.Builder();
+    for (int y = 0; y < GRID_SIZE; y++) {
+      for (int x = 0; x < GRID_SIZE; x++) {
+        builder.addPoint(pointName(x, y), new Triple(x * 1000, y * 1000, 0));
+      }
+    }
+    for (int y = 0; y < GRID_SIZE; y++) {
+      for (int x = 0; x < GRID_SIZE; x++) {
+        if (x + 1 < GRID_SIZE) {
+          builder.addPath(pointName(x, y), pointName(x + 1, y), 1000, 1000, 500);
+        }
+        if (y + 1 < GRID_SIZE) {
+          builder.addPath(pointName(x, y), pointName(x, y + 1), 1000, 500, 1000);
+        }
+      }
+    }
+    for (int i = 0; i < LOCATION_COUNT; i++) {
+      builder.addLocation("Location-" + i,
+                          List.of(pointName(random.nextInt(GRID_SIZE), random.nextInt(GRID_SIZE))));
+    }
+    return builder.build(1000);
+  }
+
+  private static String pointName(int x, int y) {
+    return "Point-" + x + "-" + y;
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.routing;
+
+import java.util.List;
+import java.util.OptionalLong;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openTcs.data.model.Triple;
+
+/**
+ * Tests for {@link RouteCostTable}.
+ *
+ * @author zzw
+ */
+class RouteCostTableTest {
+
+  private PlantModel plantModel;
+
+  @BeforeEach
+  void setUp() {
+    // A -> B -> C -> D (one-way at 1000 mm/s), A <-> D (both ways at 500 mm/s), E isolated.
+    plantModel = new PlantModel.Builder()
+        .addPoint("A", new Triple(0, 0, 0))
+        .addPoint("B", new Triple(1000, 0, 0))
+        .addPoint("C", new Triple(2000, 0, 0))
+        .addPoint("D", new Triple(3000, 0, 0))
+        .addPoint("E", new Triple(0, 5000, 0))
+        .addPath("A", "B", 1000, 1000, 0)
+        .addPath("B", "C", 1000, 1000, 0)
+        .addPath("C", "D", 1000, 1000, 0)
+        .addPath("A", "D", 3000, 500, 500)
+        .addLocation("Storage", List.of("C", "E"))
+        .addLocation("Unlinked", List.of())
+        .build(1000);
+  }
+
+  @Test
+  void estimatesShortestTravelTime() {
+    RouteCostTable table = new RouteCostTable(plantModel, 1024);
+
+    assertEquals(OptionalLong.of(3000), table.estimateTravelTime("A", "D"));
+    assertEquals(OptionalLong.of(0), table.estimateTravelTime("D", "D"));
+    assertEquals(OptionalLong.of(2000), table.estimateTravelTime("B", "D"));
+  }
+
+  @Test
+  void followsPathDirections() {
+    RouteCostTable table = new RouteCostTable(plantModel, 1024);
+
+    // D -> A only via the two-way path, D -> B via A.
+    assertEquals(OptionalLong.of(6000), table.estimateTravelTime("D", "A"));
+    assertEquals(OptionalLong.of(7000), table.estimateTravelTime("D", "B"));
+  }
+
+  @Test
+  void resolvesLocationsToTheirNearestLinkedPoint() {
+    RouteCostTable table = new RouteCostTable(plantModel, 1024);
+
+    assertEquals(OptionalLong.of(2000), table.estimateTravelTime("A", "Storage"));
+    assertEquals(OptionalLong.of(0), table.estimateTravelTime("Storage", "C"));
+    assertEquals(OptionalLong.of(1000), table.estimateTravelTime("Storage", "D"));
+  }
+
+  @Test
+  void returnsEmptyForUnknownOrUnreachableDestinations() {
+    RouteCostTable table = new RouteCostTable(plantModel, 1024);
+
+    assertFalse(table.estimateTravelTime("A", "E").isPresent());
+    assertFalse(table.estimateTravelTime("A", "Unknown").isPresent());
+    assertFalse(table.estimateTravelTime("Unknown", "A").isPresent());
+    assertFalse(table.estimateTravelTime("A", "Unlinked").isPresent());
+  }
+
+  @Test
+  void boundsCacheByMemory() {
+    // 5 points of 4 bytes each per row.
+    assertEquals(2, new RouteCostTable(plantModel, 40).getMaxCachedRows());
+    assertEquals(1, new RouteCostTable(plantModel, 1).getMaxCachedRows());
+  }
+
+  @Test
+  void yieldsSameResultsAfterEviction() {
+    RouteCostTable table = new RouteCostTable(plantModel, 20);
+
+    assertEquals(OptionalLong.of(3000), table.estimateTravelTime("A", "D"));
+    assertEquals(OptionalLong.of(6000), table.estimateTravelTime("D", "A"));
+    assertEquals(OptionalLong.of(3000), table.estimateTravelTime("A", "D"));
+  }
+
+  @Test
+  void precomputesUpToCacheCapacity() {
+    assertEquals(2, new RouteCostTable(plantModel, 40).precompute(List.of("A", "Unknown", "B", "C")));
+    assertEquals(1, new RouteCostTable(plantModel, 1024).precompute(plantModel.getLocationNames()));
+  }
+}
@@ -0,0 +1,204 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.status;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.httpclient.v1.status.binding.OrderStatusMessage;
+import org.httpclient.v1.status.binding.StatusMessageList;
+import org.httpclient.v1.status.binding.TransportOrderState;
+import org.httpclient.v1.status.binding.VehicleDeltaMessage;
+import org.httpclient.v1.status.binding.VehicleState;
+import org.httpclient.v1.status.binding.VehicleStateDelta;
+import org.httpclient.v1.status.binding.VehicleStatusMessage;
+import org.junit.jupiter.api.Test;
+import org.openTcs.data.model.Vehicle;
+import org.openTcs.data.order.TransportOrder;
+
+/**
+ * Tests for {@link ConflatingQueue}.
+ *
+ * @author zzw
+ */
+class ConflatingQueueTest {
+
+  private final ConflatingQueue queue = new ConflatingQueue();
+
+  @Test
+  void keepsLatestOrderMessageAtQueuedPosition() {
+    queue.offer(orderMessage(1, "TOrder-1"));
+    queue.offer(vehicleMessage(2, "Vehicle-01"));
+    OrderStatusMessage latest = orderMessage(3, "TOrder-1");
+    queue.offer(latest);
+
+    List<Object> events = queue.poll();
+
+    assertEquals(2, events.size());
+    assertSame(latest, events.get(0));
+    assertEquals(1, queue.getConflatedCount());
+  }
+
+  @Test
+  void mergesVehicleMessagesKeepingOmittedFields() {
+    VehicleStatusMessage first = vehicleMessage(1, "Vehicle-01");
+    first.setState(Vehicle.State.EXECUTING);
+    first.setProcState(Vehicle.ProcState.PROCESSING_ORDER);
+    first.setOrientationAngle(90.0);
+    first.setPrecisePosition(new VehicleStatusMessage.PrecisePosition(1, 2, 3));
+    queue.offer(first);
+    VehicleStatusMessage second = vehicleMessage(2, "Vehicle-01");
+    second.setPosition("Point-0002");
+    second.setTransportOrderName(null);
+    second.setState(Vehicle.State.IDLE);
+    queue.offer(second);
+
+    List<Object> events = queue.poll();
+
+    assertEquals(1, events.size());
+    VehicleStatusMessage merged = (VehicleStatusMessage) events.get(0);
+    assertEquals(2, merged.getSequenceNumber());
+    assertEquals("Point-0002", merged.getPosition());
+    assertNull(merged.getTransportOrderName());
+    assertEquals(Vehicle.State.IDLE, merged.getState());
+    assertEquals(Vehicle.ProcState.PROCESSING_ORDER, merged.getProcState());
+    assertEquals(90.0, merged.getOrientationAngle());
+    assertEquals(3, merged.getPrecisePosition().getZ());
+  }
+
+  @Test
+  void mergesVehicleDeltas() {
+    VehicleState state = VehicleState.fromVehicle(new Vehicle("Vehicle-01"));
+    state.setCurrentPosition("Point-0001");
+    VehicleState moved = VehicleState.copyOf(state);
+    moved.setCurrentPosition("Point-0002");
+    moved.setEnergyLevel(42);
+    queue.offer(deltaMessage(1, VehicleStateDelta.between(null, state)));
+    queue.offer(deltaMessage(2, VehicleStateDelta.between(state, moved)));
+
+    List<Object> events = queue.poll();
+
+    assertEquals(1, events.size());
+    VehicleState applied = ((VehicleDeltaMessage) events.get(0)).getDelta().applyTo(null);
+    assertEquals("Point-0002", applied.getCurrentPosition());
+    assertEquals(42, applied.getEnergyLevel());
+  }
+
+  @Test
+  void snapshotSupersedesQueuedMessage() {
+    queue.offer(vehicleMessage(1, "Vehicle-01"));
+    queue.offer(orderMessage(2, "TOrder-1"));
+    VehicleState snapshot = VehicleState.fromVehicle(new Vehicle("Vehicle-01"));
+    queue.offer(snapshot);
+    VehicleStatusMessage message = vehicleMessage(3, "Vehicle-01");
+    queue.offer(message);
+
+    List<Object> events = queue.poll();
+
+    assertEquals(3, events.size());
+    assertTrue(events.get(0) instanceof OrderStatusMessage);
+    assertSame(snapshot, events.get(1));
+    assertSame(message, events.get(2));
+  }
+
+  @Test
+  void orderMessageDoesNotReplaceSnapshot() {
+    TransportOrderState snapshot
+        = TransportOrderState.fromTransportOrder(new TransportOrder("TOrder-1", List.of()));
+    queue.offer(snapshot);
+    queue.offer(orderMessage(1, "TOrder-1"));
+
+    assertEquals(2, queue.size());
+  }
+
+  @Test
+  void splitsStatusMessageLists() {
+    StatusMessageList list = new StatusMessageList();
+    list.setTimeStamp(Instant.EPOCH);
+    list.setStatusMessages(List.of(vehicleMessage(1, "Vehicle-01"),
+                                   vehicleMessage(2, "Vehicle-02"),
+                                   vehicleMessage(3, "Vehicle-01")));
+
+    queue.offer(list);
+
+    assertEquals(2, queue.size());
+  }
+
+  @Test
+  void boundsOtherEventsByType() {
+    for (int i = 0; i < 1_000; i++) {
+      queue.offer("event-" + i);
+      queue.offer(i);
+    }
+
+    List<Object> events = queue.poll();
+
+    assertEquals(List.of("event-999", 999), events);
+  }
+
+  @Test
+  void sizeBoundedByVehicles() {
+    for (int i = 0; i < 10_000; i++) {
+      VehicleStatusMessage message = vehicleMessage(i, "Vehicle-" + (i % 10));
+      message.setProcState(i % 100 == 0 ? Vehicle.ProcState.IDLE : null);
+      queue.offer(message);
+    }
+
+    assertEquals(10, queue.size());
+    assertEquals(10_000 - 10, queue.getConflatedCount());
+  }
+
+  @Test
+  void drainWaitsForEvents()
+      throws InterruptedException {
+    Thread producer = new Thread(() -> {
+      try {
+        Thread.sleep(50);
+      }
+      catch (InterruptedException exc) {
+        Thread.currentThread().interrupt();
+      }
+      queue.offer(vehicleMessage(1, "Vehicle-01"));
+    });
+    producer.start();
+
+    List<Object> events = queue.drain(Duration.ofSeconds(10));
+    producer.join();
+
+    assertEquals(1, events.size());
+    assertTrue(queue.drain(Duration.ofMillis(10)).isEmpty());
+  }
+
+  private static VehicleStatusMessage vehicleMessage(long sequenceNumber, String vehicleName) {
+    VehicleStatusMessage message = new VehicleStatusMessage();
+    message.setSequenceNumber(sequenceNumber);
+    message.setCreationTimeStamp(Instant.EPOCH);
+    message.setVehicleName(vehicleName);
+    message.setPosition("Point-0001");
+    message.setTransportOrderName("TOrder-1");
+    return message;
+  }
+
+  private static OrderStatusMessage orderMessage(long sequenceNumber, String orderName) {
+    OrderStatusMessage message = new OrderStatusMessage();
+    message.setSequenceNumber(sequenceNumber);
+    message.setCreationTimeStamp(Instant.EPOCH);
+    message.setOrderName(orderName);
+    return message;
+  }
+
+  private static VehicleDeltaMessage deltaMessage(long sequenceNumber, VehicleStateDelta delta) {
+    VehicleDeltaMessage message = new VehicleDeltaMessage();
+    message.setSequenceNumber(sequenceNumber);
+    message.setCreationTimeStamp(Instant.EPOCH);
+    message.setDelta(delta);
+    return message;
+  }
+}
@@ -0,0 +1,241 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.status;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/**
+ * Tests for {@link StatusEventDispatcher}.
+ *
+ * @author zzw
+ */
+class StatusEventDispatcherTest {
+
+  private StatusEventDispatcher dispatcher;
+
+  @AfterEach
+  void tearDown() {
+    if (dispatcher != null) {
+      dispatcher.terminate();
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(StatusEventDispatcher.WaitStrategy.class)
+  void consumersSeeAllEventsInProducerOrder(StatusEventDispatcher.WaitStrategy waitStrategy)
+      throws Exception {
+    // A small buffer makes the producers wrap around many times.
+    dispatcher = new StatusEventDispatcher(64, waitStrategy);
+    int producerCount = 4;
+    int eventsPerProducer = 20_000;
+    List<List<long[]>> received = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      List<long[]> events = new ArrayList<>();
+      received.add(events);
+      dispatcher.addConsumer("consumer-" + i,
+                             (event, sequence, endOfBatch) -> events.add((long[]) event));
+    }
+    dispatcher.start();
+
+    ExecutorService producers = Executors.newFixedThreadPool(producerCount);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int producer = 0; producer < producerCount; producer++) {
+        long producerId = producer;
+        futures.add(producers.submit(() -> {
+          for (long i = 0; i < eventsPerProducer; i++) {
+            dispatcher.dispatch(new long[] {producerId, i});
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    }
+    finally {
+      producers.shutdownNow();
+    }
+    assertTrue(dispatcher.awaitConsumed(Duration.ofSeconds(30)));
+
+    for (List<long[]> events : received) {
+      assertEquals(producerCount * eventsPerProducer, events.size());
+      long[] next = new long[producerCount];
+      for (long[] event : events) {
+        // Each producer's events arrive in the order they were dispatched, without gaps.
+        assertEquals(next[(int) event[0]]++, event[1]);
+      }
+    }
+    // All consumers see the events in the same order.
+    for (int i = 0; i < received.get(0).size(); i++) {
+      assertTrue(received.get(0).get(i) == received.get(1).get(i)
+          && received.get(0).get(i) == received.get(2).get(i));
+    }
+  }
+
+  @Test
+  void terminateReleasesWaitingProducer()
+      throws Exception {
+    dispatcher = new StatusEventDispatcher(4, StatusEventDispatcher.WaitStrategy.BLOCKING);
+    CountDownLatch release = new CountDownLatch(1);
+    dispatcher.addConsumer("blocked", (event, sequence, endOfBatch) -> await(release));
+    dispatcher.start();
+
+    ExecutorService producer = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> future = producer.submit(() -> {
+        for (int i = 0; i < 10; i++) {
+          dispatcher.dispatch(i);
+        }
+      });
+      // The buffer is full, so the producer waits for the consumer.
+      assertThrows(TimeoutException.class, () -> future.get(200, TimeUnit.MILLISECONDS));
+
+      dispatcher.terminate();
+
+      ExecutionException exc
+          = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+      assertTrue(exc.getCause() instanceof IllegalStateException);
+    }
+    finally {
+      release.countDown();
+      producer.shutdownNow();
+    }
+  }
+
+  @Test
+  void blockedConsumerWakesUpForEvent()
+      throws InterruptedException {
+    dispatcher = new StatusEventDispatcher(16, StatusEventDispatcher.WaitStrategy.BLOCKING);
+    CountDownLatch consumed = new CountDownLatch(1);
+    dispatcher.addConsumer("consumer", (event, sequence, endOfBatch) -> consumed.countDown());
+    dispatcher.start();
+    // Let the consumer block.
+    Thread.sleep(50);
+
+    dispatcher.dispatch("event");
+
+    assertTrue(consumed.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void clearsSlotsProcessedByAllConsumers()
+      throws InterruptedException {
+    dispatcher = new StatusEventDispatcher(16, StatusEventDispatcher.WaitStrategy.BLOCKING);
+    dispatcher.addConsumer("first", (event, sequence, endOfBatch) -> {
+    });
+    dispatcher.addConsumer("second", (event, sequence, endOfBatch) -> {
+    });
+    dispatcher.start();
+    Object event = new Object();
+    WeakReference<Object> reference = new WeakReference<>(event);
+
+    dispatcher.dispatch(event);
+    event = null;
+    assertTrue(dispatcher.awaitConsumed(Duration.ofSeconds(10)));
+
+    for (int i = 0; i < 10 && reference.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertNull(reference.get());
+  }
+
+  @Test
+  void awaitConsumedWaitsForSlowestConsumer()
+      throws InterruptedException {
+    dispatcher = new StatusEventDispatcher(16, StatusEventDispatcher.WaitStrategy.PARK);
+    List<Object> fast = Collections.synchronizedList(new ArrayList<>());
+    List<Object> slow = Collections.synchronizedList(new ArrayList<>());
+    dispatcher.addConsumer("fast", (event, sequence, endOfBatch) -> fast.add(event));
+    dispatcher.addConsumer("slow", (event, sequence, endOfBatch) -> {
+      sleep(2);
+      slow.add(event);
+    });
+    dispatcher.start();
+
+    for (int i = 0; i < 100; i++) {
+      dispatcher.dispatch(i);
+    }
+
+    assertTrue(dispatcher.awaitConsumed(Duration.ofSeconds(10)));
+    assertEquals(100, fast.size());
+    assertEquals(100, slow.size());
+  }
+
+  @Test
+  void awaitConsumedTimesOut()
+      throws InterruptedException {
+    dispatcher = new StatusEventDispatcher(16, StatusEventDispatcher.WaitStrategy.PARK);
+    CountDownLatch release = new CountDownLatch(1);
+    dispatcher.addConsumer("blocked", (event, sequence, endOfBatch) -> await(release));
+    dispatcher.start();
+
+    dispatcher.dispatch("event");
+
+    assertFalse(dispatcher.awaitConsumed(Duration.ofMillis(50)));
+    release.countDown();
+    assertTrue(dispatcher.awaitConsumed(Duration.ofSeconds(10)));
+  }
+
+  @Test
+  void recordsLatencyUntilConsumed()
+      throws InterruptedException {
+    dispatcher = new StatusEventDispatcher(16, StatusEventDispatcher.WaitStrategy.PARK);
+    dispatcher.recordLatencies();
+    dispatcher.addConsumer("fast", (event, sequence, endOfBatch) -> {
+    });
+    dispatcher.addConsumer("slow", (event, sequence, endOfBatch) -> sleep(20));
+    dispatcher.start();
+
+    for (int i = 0; i < 5; i++) {
+      dispatcher.dispatch(i);
+    }
+    assertTrue(dispatcher.awaitConsumed(Duration.ofSeconds(10)));
+
+    long slowMax = dispatcher.getMaxLatencyNanos().get("slow");
+    assertTrue(slowMax >= TimeUnit.MILLISECONDS.toNanos(5 * 20), "Max. latency " + slowMax);
+    assertTrue(dispatcher.getMeanLatencyNanos().get("slow") >= TimeUnit.MILLISECONDS.toNanos(20));
+    assertTrue(dispatcher.getMaxLatencyNanos().get("fast") < slowMax);
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    }
+    catch (InterruptedException exc) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    }
+    catch (InterruptedException exc) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
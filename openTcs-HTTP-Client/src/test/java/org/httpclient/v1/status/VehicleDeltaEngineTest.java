@@ -0,0 +1,169 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.httpclient.v1.status.binding.VehicleDeltaMessage;
+import org.httpclient.v1.status.binding.VehicleState;
+import org.httpclient.v1.status.binding.VehicleStateDelta;
+import org.httpclient.v1.status.binding.VehicleStatusMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openTcs.data.model.Vehicle;
+
+/**
+ * Tests for {@link VehicleDeltaEngine}.
+ *
+ * @author zzw
+ */
+class VehicleDeltaEngineTest {
+
+  private static final int VEHICLE_COUNT = 5;
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  private final List<VehicleDeltaMessage> deltas = new ArrayList<>();
+
+  private VehicleDeltaEngine engine;
+
+  @BeforeEach
+  void setUp() {
+    engine = new VehicleDeltaEngine(event -> deltas.add((VehicleDeltaMessage) event));
+  }
+
+  @Test
+  void appliedDeltasReconstructStates()
+      throws Exception {
+    Random random = new Random(42);
+    Map<String, VehicleState> states = new HashMap<>();
+    for (int i = 0; i < VEHICLE_COUNT; i++) {
+      VehicleState state = randomState("Vehicle-" + i, random);
+      states.put(state.getName(), state);
+      engine.onEvent(state, i, true);
+    }
+    for (long sequenceNumber = 1; sequenceNumber <= 2_000; sequenceNumber++) {
+      String vehicleName = "Vehicle-" + random.nextInt(VEHICLE_COUNT);
+      if (random.nextInt(10) == 0) {
+        // A snapshot with changes of fields not carried by status messages.
+        VehicleState state = VehicleState.copyOf(states.get(vehicleName));
+        state.setEnergyLevel(random.nextInt(101));
+        state.setProperties(Map.of("load", Integer.toString(random.nextInt(3))));
+        states.put(vehicleName, state);
+        engine.onEvent(state, sequenceNumber, true);
+      }
+      else {
+        VehicleStatusMessage message = randomMessage(vehicleName, sequenceNumber, random);
+        states.put(vehicleName, apply(states.get(vehicleName), message));
+        engine.onEvent(message, sequenceNumber, true);
+      }
+    }
+
+    Map<String, VehicleState> reconstructed = new HashMap<>();
+    for (VehicleDeltaMessage delta : deltas) {
+      reconstructed.put(delta.getVehicleName(),
+                        delta.getDelta().applyTo(reconstructed.get(delta.getVehicleName())));
+    }
+    assertEquals(VEHICLE_COUNT, reconstructed.size());
+    for (VehicleState state : states.values()) {
+      assertEquals(mapper.writeValueAsString(state),
+                   mapper.writeValueAsString(reconstructed.get(state.getName())));
+      assertEquals(mapper.writeValueAsString(state),
+                   mapper.writeValueAsString(engine.getVehicleState(state.getName())));
+    }
+    assertTrue(engine.getUnchangedCount() > 0, "No unchanged update dropped");
+    assertEquals(deltas.size(), engine.getDeltaCount());
+  }
+
+  @Test
+  void mergedDeltasReconstructStates()
+      throws Exception {
+    Random random = new Random(7);
+    VehicleState initial = randomState("Vehicle-01", random);
+    engine.onEvent(initial, 0, true);
+    VehicleState state = initial;
+    for (long sequenceNumber = 1; sequenceNumber <= 200; sequenceNumber++) {
+      VehicleStatusMessage message = randomMessage("Vehicle-01", sequenceNumber, random);
+      state = apply(state, message);
+      engine.onEvent(message, sequenceNumber, true);
+    }
+
+    // Merging skipped deltas, as a conflating queue does, yields the same state.
+    VehicleDeltaMessage merged = deltas.get(0);
+    for (VehicleDeltaMessage delta : deltas.subList(1, deltas.size())) {
+      merged = merged.mergedWith(delta);
+    }
+    assertEquals(mapper.writeValueAsString(state),
+                 mapper.writeValueAsString(merged.getDelta().applyTo(null)));
+    assertEquals(deltas.get(deltas.size() - 1).getSequenceNumber(), merged.getSequenceNumber());
+  }
+
+  @Test
+  void firstDeltaContainsOnlyFieldsKnown() {
+    VehicleStatusMessage message = new VehicleStatusMessage();
+    message.setVehicleName("Vehicle-01");
+    message.setPosition("Point-0001");
+    message.setSequenceNumber(11);
+
+    engine.onEvent(message, 0, true);
+
+    assertEquals(1, deltas.size());
+    VehicleStateDelta delta = deltas.get(0).getDelta();
+    assertEquals(VehicleStateDelta.Field.CURRENT_POSITION.mask()
+        | VehicleStateDelta.Field.TRANSPORT_ORDER.mask(),
+                 delta.getChangedFields());
+    assertEquals(11, deltas.get(0).getSequenceNumber());
+  }
+
+  private static VehicleState randomState(String name, Random random) {
+    VehicleState state = VehicleState.fromVehicle(new Vehicle(name));
+    state.setLength(1000 + random.nextInt(500));
+    state.setEnergyLevel(random.nextInt(101));
+    state.setIntegrationLevel(Vehicle.IntegrationLevel.TO_BE_UTILIZED);
+    state.setState(Vehicle.State.IDLE);
+    state.setProcState(Vehicle.ProcState.IDLE);
+    state.setCurrentPosition("Point-" + random.nextInt(10));
+    return state;
+  }
+
+  private static VehicleStatusMessage randomMessage(String vehicleName,
+                                                    long sequenceNumber,
+                                                    Random random) {
+    VehicleStatusMessage message = new VehicleStatusMessage();
+    message.setSequenceNumber(sequenceNumber);
+    message.setVehicleName(vehicleName);
+    message.setPosition("Point-" + random.nextInt(10));
+    message.setTransportOrderName(random.nextBoolean() ? null : "TOrder-" + random.nextInt(3));
+    // Messages may omit the state and processing state, leaving them unchanged.
+    if (random.nextBoolean()) {
+      message.setState(Vehicle.State.values()[random.nextInt(Vehicle.State.values().length)]);
+    }
+    if (random.nextBoolean()) {
+      message.setProcState(
+          Vehicle.ProcState.values()[random.nextInt(Vehicle.ProcState.values().length)]);
+    }
+    return message;
+  }
+
+  private static VehicleState apply(VehicleState state, VehicleStatusMessage message) {
+    VehicleState result = VehicleState.copyOf(state);
+    result.setCurrentPosition(message.getPosition());
+    result.setTransportOrder(message.getTransportOrderName());
+    if (message.getState() != null) {
+      result.setState(message.getState());
+    }
+    if (message.getProcState() != null) {
+      result.setProcState(message.getProcState());
+    }
+    return result;
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.status.binding;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.openTcs.data.model.Location;
+import org.openTcs.data.model.LocationType;
+import org.openTcs.data.order.DriveOrder;
+import org.openTcs.data.order.TransportOrder;
+
+/**
+ * Compares the conversion of transport orders by a {@link StatusBindingConverter} with the static
+ * conversion, while a share of the drive orders changes state between rounds.
+ * Run with <code>mvn test -Pbenchmark</code>.
+ *
+ * @author zzw
+ */
+class StatusBindingConverterBenchmark {
+
+  /**
+   * The number of transport orders.
+   */
+  private static final int ORDER_COUNT = 10_000;
+  /**
+   * The number of drive orders per transport order.
+   */
+  private static final int DRIVE_ORDER_COUNT = 3;
+  /**
+   * The number of drive orders changing state between two rounds.
+   */
+  private static final int CHANGES_PER_ROUND = 1_000;
+  /**
+   * The number of rounds used to warm up the JIT.
+   */
+  private static final int WARM_UP_ROUNDS = 20;
+  /**
+   * The number of rounds measured.
+   */
+  private static final int MEASURED_ROUNDS = 20;
+
+  @Test
+  void convertChangingOrders() {
+    Random random = new Random(42);
+    LocationType locationType = new LocationType("LocationType-01");
+    List<Location> locations = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      locations.add(new Location("Location-" + i, locationType.getReference()));
+    }
+    List<TransportOrder> orders = new ArrayList<>();
+    List<List<DriveOrder>> driveOrders = new ArrayList<>();
+    for (int i = 0; i < ORDER_COUNT; i++) {
+      List<DriveOrder> orderDriveOrders = new ArrayList<>();
+      for (int k = 0; k < DRIVE_ORDER_COUNT; k++) {
+        Location location = locations.get(random.nextInt(locations.size()));
+        orderDriveOrders.add(new DriveOrder(new DriveOrder.Destination(location.getReference())));
+      }
+      driveOrders.add(orderDriveOrders);
+      orders.add(new TransportOrder("TOrder-" + i, orderDriveOrders));
+    }
+    StatusBindingConverter converter = new StatusBindingConverter();
+
+    Measurement staticConversion = new Measurement();
+    Measurement cachedConversion = new Measurement();
+    for (int round = 0; round < WARM_UP_ROUNDS + MEASURED_ROUNDS; round++) {
+      // Drive orders changing state are replaced by new instances, as in the kernel.
+      for (int i = 0; i < CHANGES_PER_ROUND; i++) {
+        List<DriveOrder> orderDriveOrders = driveOrders.get(random.nextInt(ORDER_COUNT));
+        int index = random.nextInt(DRIVE_ORDER_COUNT);
+        orderDriveOrders.set(index,
+                             orderDriveOrders.get(index).withState(
+                                 DriveOrder.State.values()[random.nextInt(3)]));
+      }
+      boolean measured = round >= WARM_UP_ROUNDS;
+
+      staticConversion.start();
+      for (TransportOrder order : orders) {
+        OrderStatusMessage.fromTransportOrder(order, round, Instant.EPOCH);
+      }
+      staticConversion.stop(measured);
+
+      cachedConversion.start();
+      for (TransportOrder order : orders) {
+        converter.toOrderStatusMessage(order, round, Instant.EPOCH);
+      }
+      cachedConversion.stop(measured);
+    }
+
+    System.out.printf("StatusBindingConverter: %d orders with %d drive orders, %d changed per round: "
+        + "static %.2f ms (%d KB), converter %.2f ms (%d KB) per round%n",
+                      ORDER_COUNT,
+                      DRIVE_ORDER_COUNT,
+                      CHANGES_PER_ROUND,
+                      staticConversion.millisPerRound(),
+                      staticConversion.kilobytesPerRound(),
+                      cachedConversion.millisPerRound(),
+                      cachedConversion.kilobytesPerRound());
+    assertTrue(cachedConversion.bytes < staticConversion.bytes,
+               "Converter allocated more than the static conversion");
+  }
+
+  /**
+   * Accumulates the time taken and the bytes allocated by the current thread.
+   */
+  private static class Measurement {
+
+    private long startNanos;
+    private long startBytes;
+    private long nanos;
+    private long bytes;
+    private int rounds;
+
+    void start() {
+      startBytes = allocatedBytes();
+      startNanos = System.nanoTime();
+    }
+
+    void stop(boolean measured) {
+      long endNanos = System.nanoTime();
+      long endBytes = allocatedBytes();
+      if (measured) {
+        nanos += endNanos - startNanos;
+        bytes += endBytes - startBytes;
+        rounds++;
+      }
+    }
+
+    double millisPerRound() {
+      return nanos / 1_000_000.0 / rounds;
+    }
+
+    long kilobytesPerRound() {
+      return bytes / 1024 / rounds;
+    }
+
+    private static long allocatedBytes() {
+      return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+          .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.status.binding;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openTcs.data.model.Location;
+import org.openTcs.data.model.LocationType;
+import org.openTcs.data.order.DriveOrder;
+import org.openTcs.data.order.TransportOrder;
+
+/**
+ * Tests for {@link StatusBindingConverter}.
+ *
+ * @author zzw
+ */
+class StatusBindingConverterTest {
+
+  private final ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+  private StatusBindingConverter converter;
+
+  private List<DriveOrder> driveOrders;
+
+  private TransportOrder order;
+
+  @BeforeEach
+  void setUp() {
+    converter = new StatusBindingConverter();
+    LocationType locationType = new LocationType("LocationType-01");
+    driveOrders = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      Location location = new Location("Location-0" + i, locationType.getReference());
+      driveOrders.add(new DriveOrder(new DriveOrder.Destination(location.getReference())));
+    }
+    order = new TransportOrder("TOrder-01", driveOrders);
+  }
+
+  @Test
+  void convertsLikeStaticConversions()
+      throws Exception {
+    assertEquals(
+        mapper.writeValueAsString(OrderStatusMessage.fromTransportOrder(order, 7, Instant.EPOCH)),
+        mapper.writeValueAsString(converter.toOrderStatusMessage(order, 7, Instant.EPOCH)));
+    assertEquals(mapper.writeValueAsString(TransportOrderState.fromTransportOrder(order)),
+                 mapper.writeValueAsString(converter.toTransportOrderState(order)));
+  }
+
+  @Test
+  void sharesResultsOfUnchangedOrder() {
+    OrderStatusMessage first = converter.toOrderStatusMessage(order, 1, Instant.EPOCH);
+    OrderStatusMessage second = converter.toOrderStatusMessage(order, 2, Instant.EPOCH);
+
+    assertSame(first.getDestinations(), second.getDestinations());
+    assertSame(first.getDestinations(), converter.toTransportOrderState(order).getDestinations());
+    assertEquals(1, converter.getCachedCount());
+  }
+
+  @Test
+  void reconvertsOnlyReplacedDriveOrders() {
+    List<Destination> before = converter.toOrderStatusMessage(order, 1, Instant.EPOCH)
+        .getDestinations();
+    driveOrders.set(1, driveOrders.get(1).withState(DriveOrder.State.TRAVELLING));
+    List<Destination> after = converter.toOrderStatusMessage(order, 2, Instant.EPOCH)
+        .getDestinations();
+
+    assertNotSame(before, after);
+    assertSame(before.get(0), after.get(0));
+    assertNotSame(before.get(1), after.get(1));
+    assertSame(before.get(2), after.get(2));
+    assertEquals(Destination.State.PRISTINE, before.get(1).getState());
+    assertEquals(Destination.State.TRAVELLING, after.get(1).getState());
+  }
+
+  @Test
+  void sharedResultsCannotBeModified() {
+    OrderStatusMessage message = converter.toOrderStatusMessage(order, 1, Instant.EPOCH);
+    Destination destination = message.getDestinations().get(0);
+
+    assertThrows(UnsupportedOperationException.class,
+                 () -> message.getDestinations().add(new Destination()));
+    assertThrows(UnsupportedOperationException.class, () -> message.getProperties().add(new Property()));
+    assertThrows(UnsupportedOperationException.class,
+                 () -> destination.setState(Destination.State.FAILED));
+    assertThrows(UnsupportedOperationException.class,
+                 () -> destination.setProperties(new ArrayList<>()));
+    assertThrows(UnsupportedOperationException.class,
+                 () -> destination.getProperties().add(new Property()));
+  }
+}
@@ -0,0 +1,356 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.status.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.httpclient.v1.status.binding.Destination;
+import org.httpclient.v1.status.binding.OrderStatusMessage;
+import org.httpclient.v1.status.binding.Property;
+import org.httpclient.v1.status.binding.StatusMessage;
+import org.httpclient.v1.status.binding.StatusMessageList;
+import org.httpclient.v1.status.binding.VehicleDeltaMessage;
+import org.httpclient.v1.status.binding.VehicleState;
+import org.httpclient.v1.status.binding.VehicleStateDelta;
+import org.httpclient.v1.status.binding.VehicleStatusMessage;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openTcs.data.model.Vehicle;
+
+/**
+ * Tests for {@link BinaryStatusMessageCodec}.
+ *
+ * @author zzw
+ */
+class BinaryStatusMessageCodecTest {
+
+  private static final Instant TIME_STAMP = Instant.parse("2021-06-01T12:00:00.123456789Z");
+
+  private BinaryStatusMessageCodec codec;
+
+  @BeforeEach
+  void setUp() {
+    codec = new BinaryStatusMessageCodec();
+  }
+
+  @Test
+  void roundTripPreservesAllFields()
+      throws IOException {
+    VehicleStatusMessage vehicleMessage = vehicleMessage(17, "Vehicle-01");
+    vehicleMessage.setTransportOrderName("TOrder-1");
+    vehicleMessage.setPosition("Point-0001");
+    vehicleMessage.setPrecisePosition(new VehicleStatusMessage.PrecisePosition(-1500, 2500, 0));
+    vehicleMessage.setOrientationAngle(-90.5);
+    vehicleMessage.setState(Vehicle.State.EXECUTING);
+    vehicleMessage.setProcState(Vehicle.ProcState.PROCESSING_ORDER);
+
+    OrderStatusMessage orderMessage = new OrderStatusMessage();
+    orderMessage.setSequenceNumber(12);
+    orderMessage.setCreationTimeStamp(TIME_STAMP.minusSeconds(3));
+    orderMessage.setOrderName("TOrder-1");
+    orderMessage.setProcessingVehicleName("Vehicle-01");
+    orderMessage.setOrderState(OrderStatusMessage.OrderState.BEING_PROCESSED);
+    Destination destination = new Destination();
+    destination.setLocationName("Storage 01");
+    destination.setOperation("Load cargo");
+    destination.setState(Destination.State.TRAVELLING);
+    destination.setProperties(List.of(property("priority", "1"), property("station", "Ä-1")));
+    orderMessage.setDestinations(List.of(destination));
+    orderMessage.setProperties(List.of(property("priority", "1")));
+
+    StatusMessageList decoded = roundTrip(vehicleMessage, orderMessage);
+
+    assertSameContent(messageList(vehicleMessage, orderMessage), decoded);
+    VehicleStatusMessage decodedVehicle = (VehicleStatusMessage) decoded.getStatusMessages().get(0);
+    assertEquals(-90.5, decodedVehicle.getOrientationAngle());
+    assertEquals(-1500, decodedVehicle.getPrecisePosition().getX());
+  }
+
+  @Test
+  void roundTripPreservesNulls()
+      throws IOException {
+    VehicleStatusMessage vehicleMessage = vehicleMessage(1, "Vehicle-01");
+    vehicleMessage.setTransportOrderName(null);
+    vehicleMessage.setPosition(null);
+    vehicleMessage.setState(null);
+    vehicleMessage.setProcState(null);
+
+    OrderStatusMessage orderMessage = new OrderStatusMessage();
+    orderMessage.setCreationTimeStamp(TIME_STAMP);
+    orderMessage.setOrderName("TOrder-1");
+    orderMessage.setProcessingVehicleName(null);
+    orderMessage.setOrderState(null);
+    // A destination without a state.
+    Destination destination = new Destination();
+    orderMessage.setDestinations(List.of(destination));
+
+    StatusMessageList decoded = roundTrip(vehicleMessage, orderMessage);
+
+    assertSameContent(messageList(vehicleMessage, orderMessage), decoded);
+    VehicleStatusMessage decodedVehicle = (VehicleStatusMessage) decoded.getStatusMessages().get(0);
+    assertNull(decodedVehicle.getTransportOrderName());
+    assertNull(decodedVehicle.getPosition());
+    assertNull(decodedVehicle.getPrecisePosition());
+    assertNull(decodedVehicle.getState());
+    assertNull(decodedVehicle.getProcState());
+    OrderStatusMessage decodedOrder = (OrderStatusMessage) decoded.getStatusMessages().get(1);
+    assertNull(decodedOrder.getProcessingVehicleName());
+    assertNull(decodedOrder.getOrderState());
+    assertNull(decodedOrder.getDestinations().get(0).getState());
+  }
+
+  @Test
+  void roundTripPreservesNaNOrientationAngle()
+      throws IOException {
+    VehicleStatusMessage vehicleMessage = vehicleMessage(1, "Vehicle-01");
+    vehicleMessage.setOrientationAngle(Double.NaN);
+
+    StatusMessageList decoded = roundTrip(vehicleMessage);
+
+    VehicleStatusMessage decodedVehicle = (VehicleStatusMessage) decoded.getStatusMessages().get(0);
+    assertTrue(Double.isNaN(decodedVehicle.getOrientationAngle()));
+  }
+
+  @Test
+  void roundTripPreservesSequenceNumbersAndTimeStamps()
+      throws IOException {
+    VehicleStatusMessage first = vehicleMessage(Long.MAX_VALUE, "Vehicle-01");
+    VehicleStatusMessage second = vehicleMessage(3, "Vehicle-01");
+    second.setCreationTimeStamp(Instant.EPOCH);
+
+    StatusMessageList decoded = roundTrip(first, second);
+
+    assertEquals(TIME_STAMP, decoded.getTimeStamp());
+    assertEquals(Long.MAX_VALUE, decoded.getStatusMessages().get(0).getSequenceNumber());
+    assertEquals(3, decoded.getStatusMessages().get(1).getSequenceNumber());
+    assertEquals(Instant.EPOCH, decoded.getStatusMessages().get(1).getCreationTimeStamp());
+  }
+
+  @Test
+  void roundTripPreservesVehicleDeltas()
+      throws IOException {
+    VehicleState vehicle = VehicleState.fromVehicle(new Vehicle("Vehicle-01"));
+    vehicle.setProperties(Map.of("color", "red"));
+    vehicle.setLength(1200);
+    vehicle.setEnergyLevel(-1);
+    vehicle.setCurrentPosition("Point-0001");
+    VehicleDeltaMessage complete = deltaMessage(3, VehicleStateDelta.between(null, vehicle));
+    VehicleState moved = VehicleState.copyOf(vehicle);
+    moved.setCurrentPosition("Point-0002");
+    moved.setEnergyLevel(55);
+    moved.setTransportOrder(null);
+    VehicleDeltaMessage partial = deltaMessage(4, VehicleStateDelta.between(vehicle, moved));
+
+    StatusMessageList decoded = roundTrip(complete, partial);
+
+    assertSameContent(messageList(complete, partial), decoded);
+    VehicleStateDelta decodedPartial
+        = ((VehicleDeltaMessage) decoded.getStatusMessages().get(1)).getDelta();
+    assertEquals(partial.getDelta().getChangedFields(), decodedPartial.getChangedFields());
+    assertNull(decodedPartial.getLength());
+    assertEquals("Point-0002",
+                 decodedPartial.applyTo(vehicle).getCurrentPosition());
+  }
+
+  @Test
+  void rejectsUnknownChangedFields() {
+    VehicleStateDelta delta = new VehicleStateDelta();
+    delta.setName("Vehicle-01");
+    delta.setChangedFields(1 << VehicleStateDelta.Field.values().length);
+
+    byte[] data = codec.encode(messageList(deltaMessage(1, delta)));
+
+    assertThrows(IOException.class, () -> codec.decode(data));
+  }
+
+  @Test
+  void rejectsTruncatedInput() {
+    VehicleStatusMessage vehicleMessage = vehicleMessage(5, "Vehicle-01");
+    vehicleMessage.setPosition("Point-0001");
+    vehicleMessage.setPrecisePosition(new VehicleStatusMessage.PrecisePosition(1, 2, 3));
+    vehicleMessage.setOrientationAngle(45.0);
+    byte[] data = codec.encode(messageList(vehicleMessage));
+
+    for (int length = 0; length < data.length; length++) {
+      byte[] truncated = Arrays.copyOf(data, length);
+      assertThrows(IOException.class, () -> codec.decode(truncated), "length " + length);
+    }
+  }
+
+  @Test
+  void rejectsTrailingData() {
+    byte[] data = codec.encode(messageList(vehicleMessage(1, "Vehicle-01")));
+
+    assertThrows(IOException.class, () -> codec.decode(Arrays.copyOf(data, data.length + 1)));
+  }
+
+  @Test
+  void rejectsOtherFormats() {
+    assertThrows(IOException.class, () -> codec.decode("{}".getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  void rejectsOtherFormatVersions() {
+    byte[] data = codec.encode(messageList(vehicleMessage(1, "Vehicle-01")));
+    data[1]++;
+
+    assertThrows(IOException.class, () -> codec.decode(data));
+  }
+
+  @Test
+  void rejectsStringReferenceNotWrittenBefore() {
+    ByteArrayOutputStream data = vehicleMessageHeader();
+    // The vehicle name refers to the first string, which has not been written.
+    data.write(2);
+
+    assertThrows(IOException.class, () -> codec.decode(data.toByteArray()));
+  }
+
+  @Test
+  void rejectsNegativeStringReference() {
+    ByteArrayOutputStream data = vehicleMessageHeader();
+    // A variable length integer overflowing into the sign bit.
+    for (int i = 0; i < 9; i++) {
+      data.write(0xFF);
+    }
+    data.write(0x01);
+
+    assertThrows(IOException.class, () -> codec.decode(data.toByteArray()));
+  }
+
+  @Test
+  void rejectsStringLongerThanInput() {
+    ByteArrayOutputStream data = vehicleMessageHeader();
+    data.write(1);
+    data.write(100);
+    data.write('V');
+
+    assertThrows(IOException.class, () -> codec.decode(data.toByteArray()));
+  }
+
+  @Test
+  void rejectsUnknownEnumValue() {
+    ByteArrayOutputStream data = vehicleMessageHeader();
+    writeNewString(data, "Vehicle-01");
+    data.write(0);
+    data.write(0);
+    writeNewString(data, "FLYING");
+
+    assertThrows(IOException.class, () -> codec.decode(data.toByteArray()));
+  }
+
+  @Test
+  void rejectsUnknownMessageType() {
+    byte[] data = codec.encode(messageList(vehicleMessage(1, "Vehicle-01")));
+    // Magic, version, time stamp (seconds and nanoseconds), count - then the first message's type.
+    int typeOffset = 2 + varLongSize(zigZag(TIME_STAMP.getEpochSecond()))
+        + varLongSize(TIME_STAMP.getNano()) + 1;
+    data[typeOffset] = 9;
+
+    assertThrows(IOException.class, () -> codec.decode(data));
+  }
+
+  @Test
+  void writesRepeatedStringsOnce() {
+    byte[] single = codec.encode(messageList(vehicleMessage(1, "Vehicle-with-a-long-name")));
+    byte[] repeated = codec.encode(messageList(vehicleMessage(1, "Vehicle-with-a-long-name"),
+                                               vehicleMessage(2, "Vehicle-with-a-long-name")));
+
+    assertTrue(repeated.length < 2 * single.length - "Vehicle-with-a-long-name".length(),
+               single.length + " / " + repeated.length);
+  }
+
+  private StatusMessageList roundTrip(StatusMessage... messages)
+      throws IOException {
+    return codec.decode(codec.encode(messageList(messages)));
+  }
+
+  private static void assertSameContent(StatusMessageList expected, StatusMessageList actual)
+      throws IOException {
+    JsonStatusMessageCodec jsonCodec = new JsonStatusMessageCodec();
+    assertEquals(new String(jsonCodec.encode(expected), StandardCharsets.UTF_8),
+                 new String(jsonCodec.encode(actual), StandardCharsets.UTF_8));
+  }
+
+  private static StatusMessageList messageList(StatusMessage... messages) {
+    StatusMessageList messageList = new StatusMessageList();
+    messageList.setTimeStamp(TIME_STAMP);
+    messageList.setStatusMessages(List.of(messages));
+    return messageList;
+  }
+
+  private static VehicleStatusMessage vehicleMessage(long sequenceNumber, String vehicleName) {
+    VehicleStatusMessage message = new VehicleStatusMessage();
+    message.setSequenceNumber(sequenceNumber);
+    message.setCreationTimeStamp(TIME_STAMP.minusMillis(250));
+    message.setVehicleName(vehicleName);
+    return message;
+  }
+
+  private static VehicleDeltaMessage deltaMessage(long sequenceNumber, VehicleStateDelta delta) {
+    VehicleDeltaMessage message = new VehicleDeltaMessage();
+    message.setSequenceNumber(sequenceNumber);
+    message.setCreationTimeStamp(TIME_STAMP.minusMillis(100));
+    message.setDelta(delta);
+    return message;
+  }
+
+  private static Property property(String key, String value) {
+    Property property = new Property();
+    property.setKey(key);
+    property.setValue(value);
+    return property;
+  }
+
+  /**
+   * Returns the encoding of a list with a single vehicle message, up to the vehicle's name.
+   */
+  private static ByteArrayOutputStream vehicleMessageHeader() {
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    // Magic and version.
+    data.write(0x53);
+    data.write(2);
+    // The list's time stamp (seconds and nanoseconds), the number of messages.
+    data.write(0);
+    data.write(0);
+    data.write(1);
+    // The message's type, sequence number and time stamp.
+    data.write(1);
+    data.write(0);
+    data.write(0);
+    data.write(0);
+    return data;
+  }
+
+  private static void writeNewString(ByteArrayOutputStream data, String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    data.write(1);
+    data.write(bytes.length);
+    data.write(bytes, 0, bytes.length);
+  }
+
+  private static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static int varLongSize(long value) {
+    int size = 1;
+    while ((value & ~0x7FL) != 0) {
+      value >>>= 7;
+      size++;
+    }
+    return size;
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.stream;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.httpclient.v1.order.OrderStore;
+import org.httpclient.v1.status.StatusEventDispatcher;
+import org.httpclient.v1.status.binding.StatusMessage;
+import org.httpclient.v1.status.binding.StatusMessageList;
+import org.httpclient.v1.status.binding.VehicleStatusMessage;
+import org.httpclient.v1.status.codec.JsonStatusMessageCodec;
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openTcs.data.model.Vehicle;
+
+/**
+ * Tests for {@link StatusStream}.
+ *
+ * @author zzw
+ */
+class StatusStreamTest {
+
+  private static final int VEHICLE_COUNT = 20;
+
+  private final HttpClient httpClient = HttpClient.newHttpClient();
+
+  private StatusEventDispatcher dispatcher;
+  private StatusStream statusStream;
+  private final List<WebSocket> clients = new ArrayList<>();
+
+  @BeforeEach
+  void setUp() {
+    dispatcher = new StatusEventDispatcher(1024, StatusEventDispatcher.WaitStrategy.YIELD);
+    statusStream = new StatusStream(0,
+                                    "/status",
+                                    new OrderStore((orderName, transport) -> {
+                                    }, 1000),
+                                    dispatcher);
+    statusStream.start();
+    dispatcher.addConsumer("statusStream", statusStream);
+    dispatcher.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    for (WebSocket client : clients) {
+      client.abort();
+    }
+    statusStream.stop();
+    dispatcher.terminate();
+  }
+
+  @Test
+  void sendsCurrentStateOnConnect()
+      throws Exception {
+    dispatcher.dispatch(vehicleMessage("Vehicle-01", "Point-1", Vehicle.State.IDLE));
+    // A later message without state must not hide the state known before.
+    dispatcher.dispatch(vehicleMessage("Vehicle-01", "Point-2", null));
+
+    ClientView view = connect();
+
+    assertTrue(view.awaitPosition("Vehicle-01", "Point-2"));
+    assertEquals(Vehicle.State.IDLE, view.states.get("Vehicle-01"));
+  }
+
+  @Test
+  void sendsCurrentStateWhileIdle()
+      throws Exception {
+    dispatcher.dispatch(vehicleMessage("Vehicle-01", "Point-1", Vehicle.State.IDLE));
+    // Let the consumer go idle - no event follows the connect but the stream's own marker.
+    Thread.sleep(200);
+
+    ClientView view = connect();
+
+    assertTrue(view.awaitPosition("Vehicle-01", "Point-1"));
+  }
+
+  @Test
+  void clientsConnectingDuringTrafficEndUpWithTheLatestState()
+      throws Exception {
+    AtomicBoolean connecting = new AtomicBoolean(true);
+    Thread producer = new Thread(() -> {
+      int round = 0;
+      while (connecting.get()) {
+        dispatchRound("Point-" + round++);
+        if (round % 10 == 0) {
+          try {
+            Thread.sleep(1);
+          }
+          catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+        }
+      }
+      dispatchRound("Point-final");
+    });
+    producer.start();
+    List<ClientView> views = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      views.add(connect());
+      Thread.sleep(20);
+    }
+    connecting.set(false);
+    producer.join();
+
+    for (ClientView view : views) {
+      for (int vehicle = 0; vehicle < VEHICLE_COUNT; vehicle++) {
+        assertTrue(view.awaitPosition("Vehicle-" + vehicle, "Point-final"),
+                   "Vehicle-" + vehicle + " at " + view.positions.get("Vehicle-" + vehicle));
+      }
+    }
+  }
+
+  private void dispatchRound(String position) {
+    for (int vehicle = 0; vehicle < VEHICLE_COUNT; vehicle++) {
+      dispatcher.dispatch(vehicleMessage("Vehicle-" + vehicle, position, Vehicle.State.EXECUTING));
+    }
+  }
+
+  private ClientView connect()
+      throws Exception {
+    ClientView view = new ClientView();
+    WebSocket client = httpClient.newWebSocketBuilder()
+        .buildAsync(URI.create("ws://localhost:" + statusStream.getPort() + "/status"), view)
+        .get(5, TimeUnit.SECONDS);
+    clients.add(client);
+    return view;
+  }
+
+  private static VehicleStatusMessage vehicleMessage(String vehicleName,
+                                                     String position,
+                                                     Vehicle.State state) {
+    VehicleStatusMessage message = new VehicleStatusMessage();
+    message.setVehicleName(vehicleName);
+    message.setPosition(position);
+    message.setState(state);
+    return message;
+  }
+
+  /**
+   * The vehicles' state as seen by a client.
+   */
+  private static class ClientView
+      implements WebSocket.Listener {
+
+    private final JsonStatusMessageCodec codec = new JsonStatusMessageCodec();
+    private final StringBuilder text = new StringBuilder();
+    private final Map<String, String> positions = new ConcurrentHashMap<>();
+    private final Map<String, Vehicle.State> states = new ConcurrentHashMap<>();
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+      text.append(data);
+      if (last) {
+        StatusMessageList messageList;
+        try {
+          messageList = codec.decode(text.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        catch (IOException exc) {
+          throw new UncheckedIOException(exc);
+        }
+        text.setLength(0);
+        for (StatusMessage message : messageList.getStatusMessages()) {
+          VehicleStatusMessage vehicleMessage = (VehicleStatusMessage) message;
+          positions.put(vehicleMessage.getVehicleName(), vehicleMessage.getPosition());
+          if (vehicleMessage.getState() != null) {
+            states.put(vehicleMessage.getVehicleName(), vehicleMessage.getState());
+          }
+        }
+      }
+      webSocket.request(1);
+      return null;
+    }
+
+    boolean awaitPosition(String vehicleName, String position)
+        throws InterruptedException {
+      long deadline = System.currentTimeMillis() + 10_000;
+      while (!position.equals(positions.get(vehicleName))) {
+        if (System.currentTimeMillis() > deadline) {
+          return false;
+        }
+        Thread.sleep(10);
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.httpclient.v1.trajectory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link TrajectoryStore}.
+ *
+ * @author zzw
+ */
+class TrajectoryStoreTest {
+
+  /**
+   * The vehicle's name, containing characters not allowed in file names.
+   */
+  private static final String VEHICLE = "Vehicle 01/A";
+
+  @TempDir
+  Path directory;
+
+  private final List<TrajectoryStore> stores = new ArrayList<>();
+
+  @AfterEach
+  void tearDown() {
+    for (TrajectoryStore store : stores) {
+      store.close();
+    }
+  }
+
+  @Test
+  void samplesBecomeVisibleWithCommit()
+      throws IOException {
+    TrajectoryStore store = open(Duration.ofDays(1), Duration.ofHours(1));
+    long time = System.currentTimeMillis();
+
+    store.append(VEHICLE, time, 1, 2, 3, 90.0);
+    assertEquals(0, scan(store, time, time + 1).size());
+
+    store.commit();
+    List<long[]> samples = scan(store, time, time + 1);
+    assertEquals(1, samples.size());
+    assertEquals(List.of(time, 1L, 2L, 3L, 90L), List.of(samples.get(0)[0],
+                                                          samples.get(0)[1],
+                                                          samples.get(0)[2],
+                                                          samples.get(0)[3],
+                                                          samples.get(0)[4]));
+    assertEquals(1, store.getSampleCount());
+  }
+
+  @Test
+  void reopenedStoreScansSamplesOfAllSegments()
+      throws IOException {
+    TrajectoryStore store = open(Duration.ofDays(1), Duration.ofHours(1));
+    long start = System.currentTimeMillis();
+    int count = 3 * TrajectorySegment.INDEX_INTERVAL + 10;
+    for (int i = 0; i < count; i++) {
+      store.append(VEHICLE, start + i * 10, i, -i, 0, Double.NaN);
+    }
+    stores.remove(store);
+    store.close();
+    assertEquals(4, segmentFiles().size());
+
+    TrajectoryStore reopened = open(Duration.ofDays(1), Duration.ofHours(1));
+    assertEquals(Set.of(VEHICLE), reopened.getVehicleNames());
+    List<long[]> samples = scan(reopened, start + 100, start + 3000);
+    assertEquals(290, samples.size());
+    for (int i = 0; i < samples.size(); i++) {
+      assertEquals(start + 100 + i * 10, samples.get(i)[0]);
+      assertEquals(10 + i, samples.get(i)[1]);
+      assertEquals(-10 - i, samples.get(i)[2]);
+    }
+
+    // Appending continues behind the samples already stored.
+    reopened.append(VEHICLE, start + count * 10, count, 0, 0, Double.NaN);
+    reopened.commit();
+    assertEquals(count + 1, scan(reopened, start, start + count * 10 + 1).size());
+  }
+
+  @Test
+  void dropsSamplesOlderThanLastOne()
+      throws IOException {
+    TrajectoryStore store = open(Duration.ofDays(1), Duration.ofHours(1));
+    long time = System.currentTimeMillis();
+
+    store.append(VEHICLE, time, 0, 0, 0, 0.0);
+    store.append(VEHICLE, time - 1, 0, 0, 0, 0.0);
+    store.commit();
+
+    assertEquals(1, scan(store, time - 1, time + 1).size());
+    assertEquals(1, store.getDroppedCount());
+  }
+
+  @Test
+  void evictsExpiredSegmentsOfIdleVehicles()
+      throws IOException {
+    TrajectoryStore store = open(Duration.ofDays(1), Duration.ofHours(1));
+    long old = System.currentTimeMillis() - Duration.ofDays(2).toMillis();
+    appendFullSegmentAndOneSample(store, old);
+    assertEquals(2, segmentFiles().size());
+
+    store.evictExpired();
+
+    assertEquals(1, segmentFiles().size());
+    assertEquals(1, scan(store, old, old + Duration.ofDays(1).toMillis()).size());
+  }
+
+  @Test
+  void evictsExpiredSegmentsPeriodically()
+      throws IOException, InterruptedException {
+    TrajectoryStore store = open(Duration.ofDays(1), Duration.ofMillis(20));
+    long old = System.currentTimeMillis() - Duration.ofDays(2).toMillis();
+    appendFullSegmentAndOneSample(store, old);
+
+    long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+    while (segmentFiles().size() > 1 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(1, segmentFiles().size());
+  }
+
+  private TrajectoryStore open(Duration retention, Duration evictionInterval)
+      throws IOException {
+    TrajectoryStore store = new TrajectoryStore(directory,
+                                                TrajectorySegment.INDEX_INTERVAL,
+                                                retention,
+                                                evictionInterval);
+    store.open();
+    stores.add(store);
+    return store;
+  }
+
+  private void appendFullSegmentAndOneSample(TrajectoryStore store, long start) {
+    for (int i = 0; i <= TrajectorySegment.INDEX_INTERVAL; i++) {
+      store.append(VEHICLE, start + i, i, i, 0, Double.NaN);
+    }
+    store.commit();
+  }
+
+  private List<Path> segmentFiles()
+      throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      return files.filter(Files::isRegularFile).toList();
+    }
+  }
+
+  private static List<long[]> scan(TrajectoryStore store, long from, long to) {
+    List<long[]> samples = new ArrayList<>();
+    store.scan(VEHICLE,
+               Instant.ofEpochMilli(from),
+               Instant.ofEpochMilli(to),
+               (time, x, y, z, angle) -> samples.add(new long[] {time, x, y, z, (long) angle}));
+    return samples;
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.openTcs.util.event;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.openTcs.data.TCSObjectEvent;
+import org.openTcs.data.model.Location;
+import org.openTcs.data.model.LocationType;
+import org.openTcs.data.model.Vehicle;
+import org.openTcs.data.peripherals.PeripheralJob;
+import org.openTcs.data.peripherals.PeripheralOperation;
+import org.openTcs.util.event.ModelAttributes.PeripheralJobAttribute;
+
+/**
+ * Tests for {@link ObjectChangeRouter}.
+ *
+ * @author zzw
+ */
+class ObjectChangeRouterTest {
+
+  private final ObjectChangeRouter router = new ObjectChangeRouter();
+
+  private final List<ObjectChangeEvent> stateChanges = new ArrayList<>();
+
+  private final List<ObjectChangeEvent> tokenChanges = new ArrayList<>();
+
+  private final PeripheralJob job = new PeripheralJob(
+      "PJob-01",
+      "token-1",
+      new PeripheralOperation(new Location("Location-01",
+                                           new LocationType("LType-01").getReference())
+          .getReference(),
+                              "open",
+                              PeripheralOperation.ExecutionTrigger.BEFORE_MOVEMENT,
+                              true));
+
+  @Test
+  void skipsHandlersWhoseAttributesAreUnchanged() {
+    subscribeHandlers();
+    PeripheralJob processed = job.withState(PeripheralJob.State.BEING_PROCESSED);
+    TCSObjectEvent event
+        = new TCSObjectEvent(processed, job, TCSObjectEvent.Type.OBJECT_MODIFIED);
+
+    router.onEvent(event);
+
+    assertEquals(1, stateChanges.size());
+    assertSame(event, stateChanges.get(0).getEvent());
+    assertEquals(EnumSet.of(PeripheralJobAttribute.STATE),
+                 stateChanges.get(0).getChangedAttributes(PeripheralJobAttribute.class));
+    assertTrue(tokenChanges.isEmpty());
+    assertEquals(1, router.getEventCount());
+    assertEquals(1, router.getSkippedCount());
+  }
+
+  @Test
+  void passesAllSubscribedAttributesThatChanged() {
+    subscribeHandlers();
+    PeripheralJob changed = job.withState(PeripheralJob.State.BEING_PROCESSED)
+        .withReservationToken("token-2");
+
+    router.onEvent(new TCSObjectEvent(changed, job, TCSObjectEvent.Type.OBJECT_MODIFIED));
+
+    Set<PeripheralJobAttribute> expected = EnumSet.of(PeripheralJobAttribute.STATE,
+                                                      PeripheralJobAttribute.RESERVATION_TOKEN);
+    assertEquals(1, stateChanges.size());
+    assertEquals(1, tokenChanges.size());
+    assertSame(stateChanges.get(0), tokenChanges.get(0));
+    assertEquals(expected,
+                 stateChanges.get(0).getChangedAttributes(PeripheralJobAttribute.class));
+    assertEquals(0, router.getSkippedCount());
+  }
+
+  @Test
+  void treatsCreatedAndRemovedObjectsAsChangedInAllAttributes() {
+    subscribeHandlers();
+    Set<PeripheralJobAttribute> subscribed = EnumSet.of(PeripheralJobAttribute.STATE,
+                                                        PeripheralJobAttribute.RESERVATION_TOKEN);
+
+    router.onEvent(new TCSObjectEvent(job, null, TCSObjectEvent.Type.OBJECT_CREATED));
+    router.onEvent(new TCSObjectEvent(null, job, TCSObjectEvent.Type.OBJECT_REMOVED));
+
+    assertEquals(2, stateChanges.size());
+    assertEquals(2, tokenChanges.size());
+    for (ObjectChangeEvent change : stateChanges) {
+      assertEquals(subscribed, change.getChangedAttributes(PeripheralJobAttribute.class));
+    }
+    assertEquals(0, router.getSkippedCount());
+  }
+
+  @Test
+  void ignoresUnchangedObjectsAndEventsWithoutSubscribers() {
+    subscribeHandlers();
+
+    router.onEvent(new TCSObjectEvent(job, job, TCSObjectEvent.Type.OBJECT_MODIFIED));
+    router.onEvent(new TCSObjectEvent(new Vehicle("Vehicle-01"),
+                                      null,
+                                      TCSObjectEvent.Type.OBJECT_CREATED));
+    router.onEvent("other");
+
+    assertTrue(stateChanges.isEmpty());
+    assertTrue(tokenChanges.isEmpty());
+    assertEquals(1, router.getEventCount());
+    assertEquals(2, router.getSkippedCount());
+  }
+
+  @Test
+  void unsubscribedHandlerIsNoLongerCalled() {
+    EventHandler stateHandler = subscribeHandlers();
+    router.unsubscribe(stateHandler);
+
+    router.onEvent(new TCSObjectEvent(job.withState(PeripheralJob.State.FINISHED),
+                                      job,
+                                      TCSObjectEvent.Type.OBJECT_MODIFIED));
+    router.onEvent(new TCSObjectEvent(job.withReservationToken("token-2"),
+                                      job,
+                                      TCSObjectEvent.Type.OBJECT_MODIFIED));
+
+    assertTrue(stateChanges.isEmpty());
+    assertEquals(1, tokenChanges.size());
+    assertEquals(1, router.getSkippedCount());
+  }
+
+  @Test
+  void handlerExceptionDoesNotAffectOtherHandlers() {
+    router.subscribe(EnumSet.of(PeripheralJobAttribute.STATE), event -> {
+      throw new IllegalStateException("Handler failed");
+    });
+    subscribeHandlers();
+
+    router.onEvent(new TCSObjectEvent(job.withState(PeripheralJob.State.FAILED),
+                                      job,
+                                      TCSObjectEvent.Type.OBJECT_MODIFIED));
+
+    assertEquals(1, stateChanges.size());
+  }
+
+  /**
+   * Subscribes a handler to state changes and one to reservation token changes.
+   *
+   * @return The handler subscribed to state changes.
+   */
+  private EventHandler subscribeHandlers() {
+    EventHandler stateHandler = event -> stateChanges.add((ObjectChangeEvent) event);
+    router.subscribe(EnumSet.of(PeripheralJobAttribute.STATE), stateHandler);
+    router.subscribe(EnumSet.of(PeripheralJobAttribute.RESERVATION_TOKEN),
+                     event -> tokenChanges.add((ObjectChangeEvent) event));
+    return stateHandler;
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.openTcs.util.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.httpclient.v1.status.binding.OrderStatusMessage;
+import org.httpclient.v1.status.binding.StatusMessage;
+import org.httpclient.v1.status.binding.VehicleStatusMessage;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.openTcs.data.TCSObjectEvent;
+import org.openTcs.data.model.Vehicle;
+import org.openTcs.util.ClassMatcher;
+
+/**
+ * Measures publishing mixed {@link TCSObjectEvent} and {@link StatusMessage} traffic to 50
+ * handlers, each interested in one type, with type-keyed subscriptions versus handlers receiving
+ * all events and filtering them with a {@link ClassMatcher}.
+ * Run with <code>mvn test -Pbenchmark</code>.
+ *
+ * @author zzw
+ */
+class SimpleEventBusBenchmark {
+
+  /**
+   * The number of handlers.
+   */
+  private static final int HANDLER_COUNT = 50;
+  /**
+   * The types the handlers are interested in, in turn.
+   */
+  private static final Class<?>[] HANDLER_TYPES = {
+    TCSObjectEvent.class,
+    StatusMessage.class,
+    VehicleStatusMessage.class,
+    OrderStatusMessage.class,
+    Object.class
+  };
+  /**
+   * The number of events published per round.
+   */
+  private static final int EVENT_COUNT = 300_000;
+  /**
+   * The number of rounds measured, after as many warm-up rounds.
+   */
+  private static final int ROUND_COUNT = 5;
+
+  @Test
+  void publishMixedTraffic() {
+    List<Object> events = new ArrayList<>(EVENT_COUNT);
+    Vehicle vehicle = new Vehicle("Vehicle-01");
+    for (int i = 0; i < EVENT_COUNT; i++) {
+      switch (i % 3) {
+        case 0:
+          events.add(new TCSObjectEvent(vehicle, vehicle, TCSObjectEvent.Type.OBJECT_MODIFIED));
+          break;
+        case 1:
+          events.add(new VehicleStatusMessage());
+          break;
+        default:
+          events.add(new OrderStatusMessage());
+      }
+    }
+
+    long[] typedDeliveries = new long[1];
+    SimpleEventBus typedBus = new SimpleEventBus();
+    long[] filteredDeliveries = new long[1];
+    SimpleEventBus filteringBus = new SimpleEventBus();
+    for (int i = 0; i < HANDLER_COUNT; i++) {
+      Class<?> type = HANDLER_TYPES[i % HANDLER_TYPES.length];
+      typedBus.subscribe(type, event -> typedDeliveries[0]++);
+      ClassMatcher matcher = new ClassMatcher(type);
+      filteringBus.subscribe(event -> {
+        if (matcher.test(event)) {
+          filteredDeliveries[0]++;
+        }
+      });
+    }
+
+    double typedNanos = Double.MAX_VALUE;
+    double filteredNanos = Double.MAX_VALUE;
+    for (int round = 0; round < 2 * ROUND_COUNT; round++) {
+      long start = System.nanoTime();
+      for (Object event : events) {
+        filteringBus.onEvent(event);
+      }
+      long filtered = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (Object event : events) {
+        typedBus.onEvent(event);
+      }
+      long typed = System.nanoTime() - start;
+
+      if (round >= ROUND_COUNT) {
+        filteredNanos = Math.min(filteredNanos, (double) filtered / EVENT_COUNT);
+        typedNanos = Math.min(typedNanos, (double) typed / EVENT_COUNT);
+      }
+    }
+
+    System.out.printf("SimpleEventBus: %d handlers, %d deliveries per round; per event: "
+        + "type-keyed subscriptions %.1f ns, filtering with ClassMatcher %.1f ns%n",
+                      HANDLER_COUNT,
+                      typedDeliveries[0] / (2 * ROUND_COUNT),
+                      typedNanos,
+                      filteredNanos);
+    assertEquals(filteredDeliveries[0], typedDeliveries[0]);
+    // Each event is passed to the 20 to 30 handlers interested in it, instead of all 50 handlers
+    // testing it against their types.
+    assertTrue(typedNanos * 5 < filteredNanos,
+               "Typed: " + typedNanos + " ns, filtered: " + filteredNanos + " ns");
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.openTcs.util.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.httpclient.v1.status.binding.OrderStatusMessage;
+import org.httpclient.v1.status.binding.StatusMessage;
+import org.httpclient.v1.status.binding.VehicleStatusMessage;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link SimpleEventBus}.
+ *
+ * @author zzw
+ */
+class SimpleEventBusTest {
+
+  private final SimpleEventBus bus = new SimpleEventBus();
+
+  private final List<String> received = new ArrayList<>();
+
+  @Test
+  void routesEventsToSubscribersOfTheirTypesAndSupertypes() {
+    bus.subscribe(StatusMessage.class, recorder("status"));
+    bus.subscribe(VehicleStatusMessage.class, recorder("vehicle"));
+    bus.subscribe(OrderStatusMessage.class, recorder("order"));
+    bus.subscribe(recorder("all"));
+
+    bus.onEvent(new VehicleStatusMessage());
+    assertEquals(List.of("status", "vehicle", "all"), received);
+
+    received.clear();
+    bus.onEvent(new OrderStatusMessage());
+    assertEquals(List.of("status", "order", "all"), received);
+
+    received.clear();
+    bus.onEvent("text");
+    assertEquals(List.of("all"), received);
+  }
+
+  @Test
+  void deliversEventOnceToListenerSubscribedToSeveralMatchingTypes() {
+    EventHandler listener = recorder("listener");
+    bus.subscribe(VehicleStatusMessage.class, listener);
+    bus.subscribe(StatusMessage.class, listener);
+    bus.subscribe(listener);
+    bus.subscribe(StatusMessage.class, listener);
+
+    bus.onEvent(new VehicleStatusMessage());
+    bus.publishAll(List.of(new VehicleStatusMessage()));
+
+    assertEquals(List.of("listener", "listener"), received);
+  }
+
+  @Test
+  void unsubscribeInvalidatesCachedRoutes() {
+    EventHandler listener = recorder("listener");
+    bus.subscribe(VehicleStatusMessage.class, listener);
+    bus.subscribe(StatusMessage.class, listener);
+    bus.subscribe(StatusMessage.class, recorder("other"));
+    bus.onEvent(new VehicleStatusMessage());
+    assertEquals(List.of("listener", "other"), received);
+
+    // All of the listener's subscriptions are removed, including the routes already cached.
+    received.clear();
+    bus.unsubscribe(listener);
+    bus.onEvent(new VehicleStatusMessage());
+    assertEquals(List.of("other"), received);
+  }
+
+  @Test
+  void subscribeInvalidatesCachedRoutes() {
+    bus.subscribe(StatusMessage.class, recorder("first"));
+    bus.onEvent(new VehicleStatusMessage());
+
+    received.clear();
+    bus.subscribe(VehicleStatusMessage.class, recorder("second"));
+    bus.onEvent(new VehicleStatusMessage());
+    assertEquals(List.of("first", "second"), received);
+  }
+
+  private EventHandler recorder(String name) {
+    return event -> received.add(name);
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.openTcs.util.event;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.openTcs.data.TCSObject;
+import org.openTcs.data.TCSObjectEvent;
+import org.openTcs.data.model.Vehicle;
+
+/**
+ * Tests for {@link TCSObjectEventCoalescer}.
+ *
+ * @author zzw
+ */
+class TCSObjectEventCoalescerTest {
+
+  private final BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+
+  private TCSObjectEventCoalescer coalescer
+      = new TCSObjectEventCoalescer(received::add, Duration.ofHours(1));
+
+  @AfterEach
+  void tearDown() {
+    coalescer.terminate();
+  }
+
+  @Test
+  void mergesCreationAndModificationsIntoCreationWithLatestState() {
+    Vehicle first = new Vehicle("Vehicle-01");
+    Vehicle second = new Vehicle("Vehicle-01");
+    Vehicle third = new Vehicle("Vehicle-01");
+
+    coalescer.onEvent(created(first));
+    coalescer.onEvent(modified(first, second));
+    coalescer.onEvent(modified(second, third));
+    coalescer.flush();
+
+    assertEquals(1, received.size());
+    assertEvent(received.poll(), TCSObjectEvent.Type.OBJECT_CREATED, third, null);
+    assertEquals(3, coalescer.getReceivedCount());
+    assertEquals(1, coalescer.getEmittedCount());
+  }
+
+  @Test
+  void mergesModificationsAndRemovalIntoRemovalWithEarliestPreviousState() {
+    Vehicle first = new Vehicle("Vehicle-01");
+    Vehicle second = new Vehicle("Vehicle-01");
+
+    coalescer.onEvent(modified(first, second));
+    coalescer.onEvent(removed(second));
+    coalescer.flush();
+
+    assertEquals(1, received.size());
+    assertEvent(received.poll(), TCSObjectEvent.Type.OBJECT_REMOVED, null, first);
+  }
+
+  @Test
+  void dropsObjectCreatedAndRemovedWithinWindow() {
+    Vehicle first = new Vehicle("Vehicle-01");
+    Vehicle second = new Vehicle("Vehicle-01");
+
+    coalescer.onEvent(created(first));
+    coalescer.onEvent(modified(first, second));
+    coalescer.onEvent(removed(second));
+    coalescer.flush();
+
+    assertTrue(received.isEmpty());
+    assertEquals(3, coalescer.getReceivedCount());
+    assertEquals(0, coalescer.getEmittedCount());
+  }
+
+  @Test
+  void reportsRemovalAndRecreationSeparately() {
+    Vehicle first = new Vehicle("Vehicle-01");
+    Vehicle second = new Vehicle("Vehicle-01");
+    Vehicle third = new Vehicle("Vehicle-01");
+
+    coalescer.onEvent(removed(first));
+    coalescer.onEvent(created(second));
+    coalescer.onEvent(modified(second, third));
+    coalescer.flush();
+
+    assertEquals(2, received.size());
+    assertEvent(received.poll(), TCSObjectEvent.Type.OBJECT_REMOVED, null, first);
+    assertEvent(received.poll(), TCSObjectEvent.Type.OBJECT_CREATED, third, null);
+  }
+
+  @Test
+  void mergesPerObjectInOrderOfFirstAppearance() {
+    Vehicle a1 = new Vehicle("Vehicle-01");
+    Vehicle a2 = new Vehicle("Vehicle-01");
+    Vehicle a3 = new Vehicle("Vehicle-01");
+    Vehicle b1 = new Vehicle("Vehicle-02");
+    Vehicle b2 = new Vehicle("Vehicle-02");
+
+    coalescer.onEvent(modified(a1, a2));
+    coalescer.onEvent(modified(b1, b2));
+    coalescer.onEvent(modified(a2, a3));
+    coalescer.flush();
+
+    assertEquals(2, received.size());
+    assertEvent(received.poll(), TCSObjectEvent.Type.OBJECT_MODIFIED, a3, a1);
+    assertEvent(received.poll(), TCSObjectEvent.Type.OBJECT_MODIFIED, b2, b1);
+  }
+
+  @Test
+  void keepsObjectEventsInOrderRelativeToOtherEvents() {
+    Vehicle a1 = new Vehicle("Vehicle-01");
+    Vehicle a2 = new Vehicle("Vehicle-01");
+    Vehicle a3 = new Vehicle("Vehicle-01");
+
+    coalescer.onEvent(modified(a1, a2));
+    coalescer.onEvent("other");
+    coalescer.onEvent(modified(a2, a3));
+    coalescer.flush();
+
+    assertEquals(3, received.size());
+    assertEvent(received.poll(), TCSObjectEvent.Type.OBJECT_MODIFIED, a2, a1);
+    assertEquals("other", received.poll());
+    assertEvent(received.poll(), TCSObjectEvent.Type.OBJECT_MODIFIED, a3, a2);
+  }
+
+  @Test
+  void flushesAtEndOfWindow()
+      throws InterruptedException {
+    coalescer.terminate();
+    coalescer = new TCSObjectEventCoalescer(received::add, Duration.ofMillis(20));
+    Vehicle first = new Vehicle("Vehicle-01");
+    Vehicle second = new Vehicle("Vehicle-01");
+
+    coalescer.onEvent(modified(first, second));
+
+    assertEvent(received.poll(10, TimeUnit.SECONDS),
+                TCSObjectEvent.Type.OBJECT_MODIFIED,
+                second,
+                first);
+  }
+
+  @Test
+  void passesEventsOnAsTheyAreAfterTermination() {
+    Vehicle first = new Vehicle("Vehicle-01");
+    Vehicle second = new Vehicle("Vehicle-01");
+    Vehicle third = new Vehicle("Vehicle-01");
+
+    coalescer.onEvent(modified(first, second));
+    coalescer.terminate();
+    assertEquals(1, received.size());
+
+    TCSObjectEvent event = modified(second, third);
+    coalescer.onEvent(event);
+    assertEquals(2, received.size());
+    received.poll();
+    assertSame(event, received.poll());
+  }
+
+  private static void assertEvent(Object event,
+                                  TCSObjectEvent.Type type,
+                                  TCSObject<?> current,
+                                  TCSObject<?> previous) {
+    assertTrue(event instanceof TCSObjectEvent, "Not an object event: " + event);
+    TCSObjectEvent objectEvent = (TCSObjectEvent) event;
+    assertEquals(type, objectEvent.getType());
+    if (current == null) {
+      assertNull(objectEvent.getCurrentObjectState());
+    }
+    else {
+      assertSame(current, objectEvent.getCurrentObjectState());
+    }
+    if (previous == null) {
+      assertNull(objectEvent.getPreviousObjectState());
+    }
+    else {
+      assertSame(previous, objectEvent.getPreviousObjectState());
+    }
+  }
+
+  private static TCSObjectEvent created(TCSObject<?> object) {
+    return new TCSObjectEvent(object, null, TCSObjectEvent.Type.OBJECT_CREATED);
+  }
+
+  private static TCSObjectEvent modified(TCSObject<?> previous, TCSObject<?> current) {
+    return new TCSObjectEvent(current, previous, TCSObjectEvent.Type.OBJECT_MODIFIED);
+  }
+
+  private static TCSObjectEvent removed(TCSObject<?> previous) {
+    return new TCSObjectEvent(null, previous, TCSObjectEvent.Type.OBJECT_REMOVED);
+  }
+}